@@ -0,0 +1,105 @@
+/* Spatial Operations & Editing Tools for uDig
+ * 
+ * Axios Engineering under a funding contract with: 
+ *      Diputación Foral de Gipuzkoa, Ordenación Territorial 
+ *
+ *      http://b5m.gipuzkoa.net
+ *      http://www.axios.es 
+ *
+ * (C) 2006, Diputación Foral de Gipuzkoa, Ordenación Territorial (DFG-OT). 
+ * DFG-OT agrees to licence under Lesser General Public License (LGPL).
+ * 
+ * You can redistribute it and/or modify it under the terms of the 
+ * GNU Lesser General Public License as published by the Free Software 
+ * Foundation; version 2.1 of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package es.axios.geotools.util;
+
+import static org.junit.Assert.*;
+
+import org.geotools.geometry.jts.GeometryCoordinateSequenceTransformer;
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ * @author Mauricio Pazos (www.axios.es)
+ * @author Aritz Davila (www.axios.es)
+ * @since 1.3.1
+ */
+public class MathTransformCacheTest {
+
+	private static final String	UTM_30N_WKT	= "PROJCS[\"WGS 84 / UTM zone 30N\"," //$NON-NLS-1$
+												+ "GEOGCS[\"WGS 84\",DATUM[\"WGS_1984\",SPHEROID[\"WGS 84\",6378137,298.257223563]]," //$NON-NLS-1$
+												+ "PRIMEM[\"Greenwich\",0],UNIT[\"degree\",0.0174532925199433]]," //$NON-NLS-1$
+												+ "PROJECTION[\"Transverse_Mercator\"],PARAMETER[\"latitude_of_origin\",0]," //$NON-NLS-1$
+												+ "PARAMETER[\"central_meridian\",-3],PARAMETER[\"scale_factor\",0.9996]," //$NON-NLS-1$
+												+ "PARAMETER[\"false_easting\",500000],PARAMETER[\"false_northing\",0]," //$NON-NLS-1$
+												+ "UNIT[\"metre\",1]]";													//$NON-NLS-1$
+
+	private MathTransformCache	cache;
+	private CoordinateReferenceSystem	utmCrs;
+
+	@Before
+	public void setUp() throws Exception {
+
+		this.cache = new MathTransformCache(2);
+		this.utmCrs = CRS.parseWKT(UTM_30N_WKT);
+	}
+
+	@Test
+	public void testIdentity() throws Exception {
+
+		assertTrue(cache.isIdentity(DefaultGeographicCRS.WGS84, DefaultGeographicCRS.WGS84));
+		assertFalse(cache.isIdentity(DefaultGeographicCRS.WGS84, utmCrs));
+
+		assertTrue(cache.isIdentity(DefaultGeographicCRS.WGS84, DefaultGeographicCRS.WGS84));
+
+		assertEquals(2, cache.getMisses());
+		assertEquals(1, cache.getHits());
+	}
+
+	@Test
+	public void testTransformerIsReused() throws Exception {
+
+		GeometryFactory gf = new GeometryFactory();
+
+		GeometryCoordinateSequenceTransformer first = cache.getTransformer(gf, DefaultGeographicCRS.WGS84, utmCrs,
+					true);
+		GeometryCoordinateSequenceTransformer second = cache.getTransformer(gf, DefaultGeographicCRS.WGS84, utmCrs,
+					true);
+
+		assertSame(first, second);
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+
+		Point point = gf.createPoint(new Coordinate(-3, 0));
+		Geometry projected = first.transform(point);
+
+		assertEquals(500000, projected.getCoordinate().x, 1.0E-3);
+		assertEquals(0, projected.getCoordinate().y, 1.0E-3);
+	}
+
+	@Test
+	public void testBounded() throws Exception {
+
+		cache.isIdentity(DefaultGeographicCRS.WGS84, utmCrs);
+		cache.isIdentity(utmCrs, DefaultGeographicCRS.WGS84);
+		cache.isIdentity(utmCrs, utmCrs);
+
+		assertEquals(2, cache.size());
+		assertEquals(3, cache.getMisses());
+	}
+}
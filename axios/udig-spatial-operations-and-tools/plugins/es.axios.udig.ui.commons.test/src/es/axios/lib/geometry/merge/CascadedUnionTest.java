@@ -0,0 +1,98 @@
+/* Spatial Operations & Editing Tools for uDig
+ * 
+ * Axios Engineering under a funding contract with: 
+ *      Diputación Foral de Gipuzkoa, Ordenación Territorial 
+ *
+ *      http://b5m.gipuzkoa.net
+ *      http://www.axios.es 
+ *
+ * (C) 2006, Diputación Foral de Gipuzkoa, Ordenación Territorial (DFG-OT). 
+ * DFG-OT agrees to licence under Lesser General Public License (LGPL).
+ * 
+ * You can redistribute it and/or modify it under the terms of the 
+ * GNU Lesser General Public License as published by the Free Software 
+ * Foundation; version 2.1 of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package es.axios.lib.geometry.merge;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * @author Mauricio Pazos (www.axios.es)
+ * @author Aritz Davila (www.axios.es)
+ * @since 1.3.1
+ */
+public class CascadedUnionTest {
+
+	private static final GeometryFactory	GEOMETRY_FACTORY	= new GeometryFactory();
+
+	/**
+	 * The cascaded union of a grid of adjacent squares must be equal to the
+	 * pairwise union.
+	 */
+	@Test
+	public void testUnionEqualsPairwise() throws Exception {
+
+		List<Geometry> grid = createGrid(20);
+
+		Geometry pairwise = null;
+		for (Geometry square : grid) {
+			pairwise = (pairwise == null) ? square : pairwise.union(square);
+		}
+		Geometry cascaded = CascadedUnion.union(grid);
+
+		assertNotNull(cascaded);
+		assertTrue(cascaded.isValid());
+		assertEquals(pairwise.getArea(), cascaded.getArea(), 1.0E-9);
+		assertTrue(pairwise.equals(cascaded));
+	}
+
+	/**
+	 * The geometries added in several batches must produce the same union.
+	 */
+	@Test
+	public void testUnionInBatches() throws Exception {
+
+		List<Geometry> grid = createGrid(10);
+
+		CascadedUnion cascadedUnion = new CascadedUnion(7);
+		for (Geometry square : grid) {
+			cascadedUnion.add(square);
+		}
+		Geometry result = cascadedUnion.getResult();
+
+		assertEquals(100.0, result.getArea(), 1.0E-9);
+		assertTrue(result.equals(GEOMETRY_FACTORY.toGeometry(new Envelope(0, 10, 0, 10))));
+	}
+
+	@Test
+	public void testEmptyUnion() throws Exception {
+
+		assertNull(new CascadedUnion().getResult());
+	}
+
+	private List<Geometry> createGrid(final int size) {
+
+		List<Geometry> grid = new ArrayList<Geometry>(size * size);
+		for (int row = 0; row < size; row++) {
+			for (int col = 0; col < size; col++) {
+				grid.add(GEOMETRY_FACTORY.toGeometry(new Envelope(col, col + 1, row, row + 1)));
+			}
+		}
+		return grid;
+	}
+}
@@ -0,0 +1,148 @@
+/* Spatial Operations & Editing Tools for uDig
+ * 
+ * Axios Engineering under a funding contract with: 
+ *      Diputación Foral de Gipuzkoa, Ordenación Territorial 
+ *
+ *      http://b5m.gipuzkoa.net
+ *      http://www.axios.es 
+ *
+ * (C) 2006, Diputación Foral de Gipuzkoa, Ordenación Territorial (DFG-OT). 
+ * DFG-OT agrees to licence under Lesser General Public License (LGPL).
+ * 
+ * You can redistribute it and/or modify it under the terms of the 
+ * GNU Lesser General Public License as published by the Free Software 
+ * Foundation; version 2.1 of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package es.axios.lib.geometry.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * @author Mauricio Pazos (www.axios.es)
+ * @author Aritz Davila (www.axios.es)
+ * @since 1.3.1
+ */
+public class PreparedIntersectorTest {
+
+	private static final GeometryFactory	GEOMETRY_FACTORY	= new GeometryFactory();
+
+	/**
+	 * The prepared intersector must produce the same result that the full
+	 * operations over a complex coastline like polygon.
+	 */
+	@Test
+	public void testCoastlineEqualsFullOperations() throws Exception {
+
+		Polygon coastline = createCoastline(20000, 100.0);
+		List<Geometry> cells = createGrid(new Envelope(-120, 120, -120, 120), 24);
+
+		long start = System.currentTimeMillis();
+		List<Geometry> full = new ArrayList<Geometry>(cells.size());
+		for (Geometry cell : cells) {
+			full.add(coastline.intersects(cell) ? coastline.intersection(cell) : null);
+		}
+		long fullTime = System.currentTimeMillis() - start;
+
+		start = System.currentTimeMillis();
+		PreparedIntersector intersector = new PreparedIntersector(coastline);
+		List<Geometry> prepared = new ArrayList<Geometry>(cells.size());
+		for (Geometry cell : cells) {
+			prepared.add(intersector.intersection(cell));
+		}
+		long preparedTime = System.currentTimeMillis() - start;
+
+		for (int i = 0; i < cells.size(); i++) {
+			Geometry expected = full.get(i);
+			Geometry actual = prepared.get(i);
+			if (expected == null) {
+				assertNull(actual);
+			} else {
+				assertNotNull(actual);
+				assertEquals(expected.getArea(), actual.getArea(), 1.0E-6);
+			}
+		}
+		System.out.println("coastline intersection full: " + fullTime + " ms prepared: " + preparedTime + " ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+	/**
+	 * If the base geometry contains the other geometry the result is the other
+	 * geometry, and the base geometry if it is contained.
+	 */
+	@Test
+	public void testContainment() throws Exception {
+
+		Geometry big = GEOMETRY_FACTORY.toGeometry(new Envelope(0, 10, 0, 10));
+		Geometry small = GEOMETRY_FACTORY.toGeometry(new Envelope(2, 4, 2, 4));
+
+		Geometry result = new PreparedIntersector(big).intersection(small);
+		assertTrue(result.equals(small));
+
+		result = new PreparedIntersector(small).intersection(big);
+		assertTrue(result.equals(small));
+	}
+
+	/**
+	 * Disjoint geometries do not produce intersection.
+	 */
+	@Test
+	public void testDisjoint() throws Exception {
+
+		Geometry first = GEOMETRY_FACTORY.toGeometry(new Envelope(0, 1, 0, 1));
+		Geometry second = GEOMETRY_FACTORY.toGeometry(new Envelope(2, 3, 2, 3));
+
+		PreparedIntersector intersector = new PreparedIntersector(first);
+
+		assertFalse(intersector.intersects(second));
+		assertNull(intersector.intersection(second));
+	}
+
+	/**
+	 * Creates a star shaped polygon with random radius for each vertex
+	 */
+	private Polygon createCoastline(final int vertices, final double radius) {
+
+		Random random = new Random(17);
+		Coordinate[] coords = new Coordinate[vertices + 1];
+		for (int i = 0; i < vertices; i++) {
+			double angle = (2 * Math.PI * i) / vertices;
+			double r = radius * (0.8 + (0.2 * random.nextDouble()));
+			coords[i] = new Coordinate(r * Math.cos(angle), r * Math.sin(angle));
+		}
+		coords[vertices] = new Coordinate(coords[0]);
+
+		return GEOMETRY_FACTORY.createPolygon(GEOMETRY_FACTORY.createLinearRing(coords), null);
+	}
+
+	private List<Geometry> createGrid(final Envelope extent, final int size) {
+
+		final double width = extent.getWidth() / size;
+		final double height = extent.getHeight() / size;
+
+		List<Geometry> cells = new ArrayList<Geometry>(size * size);
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				double x = extent.getMinX() + (i * width);
+				double y = extent.getMinY() + (j * height);
+				cells.add(GEOMETRY_FACTORY.toGeometry(new Envelope(x, x + width, y, y + height)));
+			}
+		}
+		return cells;
+	}
+}
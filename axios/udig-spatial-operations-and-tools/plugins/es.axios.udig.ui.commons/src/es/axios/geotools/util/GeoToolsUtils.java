@@ -27,7 +27,6 @@ import javax.measure.unit.Unit;
 
 import org.geotools.geometry.jts.CoordinateSequenceTransformer;
 import org.geotools.geometry.jts.GeometryCoordinateSequenceTransformer;
-import org.geotools.referencing.CRS;
 import org.geotools.resources.CRSUtilities;
 import org.opengis.feature.IllegalAttributeException;
 import org.opengis.feature.simple.SimpleFeature;
@@ -139,7 +138,7 @@ public class GeoToolsUtils {
 		transformer = new GeometryCoordinateSequenceTransformer(csTransformer);
 		MathTransform mathTransform;
 		try {
-			mathTransform = CRS.findMathTransform(geomCrs, reprojectCrs, true);
+			mathTransform = MathTransformCache.getInstance().getMathTransform(geomCrs, reprojectCrs, true);
 		} catch (FactoryException e) {
 			throw new OperationNotFoundException(e.getMessage());
 		}
@@ -175,17 +174,21 @@ public class GeoToolsUtils {
 		assert geomCrs != null : "geomCrs cannot be null";
 		assert reprojectCrs != null : "reprojectCrs cannot be null";
 
-		if (geomCrs.equals(reprojectCrs)) {
+		if (geomCrs == reprojectCrs) {
 			return geom;
 		}
-		if (CRS.equalsIgnoreMetadata(geomCrs, reprojectCrs)) {
-			return geom;
-		}
-
-		GeometryFactory gFactory = geom.getFactory();
-
+		// the identity and the transformer are retrieved from cache
+		MathTransformCache cache = MathTransformCache.getInstance();
 		GeometryCoordinateSequenceTransformer transformer;
-		transformer = getTransformer(gFactory, geomCrs, reprojectCrs);
+		try {
+			if (cache.isIdentity(geomCrs, reprojectCrs)) {
+				return geom;
+			}
+			transformer = cache.getTransformer(geom.getFactory(), geomCrs, reprojectCrs, true);
+
+		} catch (FactoryException e) {
+			throw new OperationNotFoundException(e.getMessage());
+		}
 		Geometry geometry;
 		try {
 			geometry = transformer.transform(geom);
@@ -232,16 +235,13 @@ public class GeoToolsUtils {
 		assert segmentCrs != null;
 		assert reprojectCrs != null;
 
-		if (segmentCrs.equals(reprojectCrs)) {
-			return segment;
-		}
-		if (CRS.equalsIgnoreMetadata(segmentCrs, reprojectCrs)) {
-			return segment;
-		}
-
+		MathTransformCache cache = MathTransformCache.getInstance();
 		MathTransform mathTransform;
 		try {
-			mathTransform = CRS.findMathTransform(segmentCrs, reprojectCrs, true);
+			if (cache.isIdentity(segmentCrs, reprojectCrs)) {
+				return segment;
+			}
+			mathTransform = cache.getMathTransform(segmentCrs, reprojectCrs, true);
 		} catch (FactoryException e) {
 			throw new RuntimeException(e.getMessage());
 		}
@@ -0,0 +1,282 @@
+/* Spatial Operations & Editing Tools for uDig
+ * 
+ * Axios Engineering under a funding contract with: 
+ *      Diputación Foral de Gipuzkoa, Ordenación Territorial 
+ *
+ *      http://b5m.gipuzkoa.net
+ *      http://www.axios.es 
+ *
+ * (C) 2006, Diputación Foral de Gipuzkoa, Ordenación Territorial (DFG-OT). 
+ * DFG-OT agrees to licence under Lesser General Public License (LGPL).
+ * 
+ * You can redistribute it and/or modify it under the terms of the 
+ * GNU Lesser General Public License as published by the Free Software 
+ * Foundation; version 2.1 of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package es.axios.geotools.util;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.geotools.geometry.jts.GeometryCoordinateSequenceTransformer;
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.operation.transform.IdentityTransform;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.MathTransform;
+
+import com.vividsolutions.jts.geom.CoordinateSequenceFactory;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * Cache of the transformations between coordinate reference systems.
+ * <p>
+ * For each (source CRS, target CRS, lenient) the cache maintains if both
+ * systems are equals ignoring metadata, the {@link MathTransform} found by
+ * GeoTools and a geometry transformer for each thread (the transformers are
+ * not thread safe).
+ * </p>
+ * <p>
+ * The key compares the CRS instances, not their definition, because the
+ * process use the same instances many times. The cache is bounded, if it
+ * is full an entry is discarded to add the new one.
+ * </p>
+ * 
+ * @author Mauricio Pazos (www.axios.es)
+ * @author Aritz Davila (www.axios.es)
+ * @since 1.3.1
+ */
+public final class MathTransformCache {
+
+	/** max number of entries of the shared cache */
+	public static final int							DEFAULT_MAX_SIZE	= 128;
+
+	private static final MathTransformCache			INSTANCE			= new MathTransformCache(DEFAULT_MAX_SIZE);
+
+	private final int								maxSize;
+	private final ConcurrentMap<Key, Entry>			cache;
+	private final AtomicLong						hits				= new AtomicLong();
+	private final AtomicLong						misses				= new AtomicLong();
+
+	/**
+	 * New cache
+	 * 
+	 * @param maxSize
+	 *            max number of entries
+	 */
+	public MathTransformCache(final int maxSize) {
+
+		assert maxSize > 0;
+
+		this.maxSize = maxSize;
+		this.cache = new ConcurrentHashMap<Key, Entry>(maxSize);
+	}
+
+	/**
+	 * @return the cache shared by the application
+	 */
+	public static MathTransformCache getInstance() {
+
+		return INSTANCE;
+	}
+
+	/**
+	 * @param sourceCrs
+	 * @param targetCrs
+	 * @return true if both CRS are equals ignoring metadata
+	 * @throws FactoryException
+	 */
+	public boolean isIdentity(final CoordinateReferenceSystem sourceCrs, final CoordinateReferenceSystem targetCrs)
+		throws FactoryException {
+
+		return getEntry(sourceCrs, targetCrs, true).identity;
+	}
+
+	/**
+	 * @param sourceCrs
+	 * @param targetCrs
+	 * @param lenient
+	 * @return the math transform from source to target
+	 * @throws FactoryException
+	 */
+	public MathTransform getMathTransform(	final CoordinateReferenceSystem sourceCrs,
+											final CoordinateReferenceSystem targetCrs,
+											final boolean lenient) throws FactoryException {
+
+		return getEntry(sourceCrs, targetCrs, lenient).getMathTransform();
+	}
+
+	/**
+	 * Returns a geometry transformer for the current thread. The transformer
+	 * must not be shared with other threads.
+	 * 
+	 * @param gFactory
+	 *            factory of the geometries to transform
+	 * @param sourceCrs
+	 * @param targetCrs
+	 * @param lenient
+	 * @return the geometry transformer
+	 * @throws FactoryException
+	 */
+	public GeometryCoordinateSequenceTransformer getTransformer(final GeometryFactory gFactory,
+																final CoordinateReferenceSystem sourceCrs,
+																final CoordinateReferenceSystem targetCrs,
+																final boolean lenient) throws FactoryException {
+
+		return getEntry(sourceCrs, targetCrs, lenient).getTransformer(gFactory);
+	}
+
+	/**
+	 * @return the number of requests found in cache
+	 */
+	public long getHits() {
+
+		return this.hits.get();
+	}
+
+	/**
+	 * @return the number of requests which required to compute the
+	 *         transformation
+	 */
+	public long getMisses() {
+
+		return this.misses.get();
+	}
+
+	/**
+	 * @return the number of entries
+	 */
+	public int size() {
+
+		return this.cache.size();
+	}
+
+	/**
+	 * Removes all entries and resets the counters
+	 */
+	public void clear() {
+
+		this.cache.clear();
+		this.hits.set(0);
+		this.misses.set(0);
+	}
+
+	private Entry getEntry(	final CoordinateReferenceSystem sourceCrs,
+							final CoordinateReferenceSystem targetCrs,
+							final boolean lenient) throws FactoryException {
+
+		assert sourceCrs != null;
+		assert targetCrs != null;
+
+		Key key = new Key(sourceCrs, targetCrs, lenient);
+		Entry entry = this.cache.get(key);
+		if (entry != null) {
+			this.hits.incrementAndGet();
+			return entry;
+		}
+		this.misses.incrementAndGet();
+
+		// two threads could compute the same entry, the result is the same
+		entry = new Entry(sourceCrs, targetCrs, lenient);
+
+		if (this.cache.size() >= this.maxSize) {
+			Iterator<Key> iter = this.cache.keySet().iterator();
+			if (iter.hasNext()) {
+				this.cache.remove(iter.next());
+			}
+		}
+		Entry previous = this.cache.putIfAbsent(key, entry);
+
+		return (previous != null) ? previous : entry;
+	}
+
+	/**
+	 * (source CRS, target CRS, lenient). The CRS are compared by identity.
+	 */
+	private static final class Key {
+
+		private final CoordinateReferenceSystem	sourceCrs;
+		private final CoordinateReferenceSystem	targetCrs;
+		private final boolean					lenient;
+		private final int						hash;
+
+		Key(final CoordinateReferenceSystem sourceCrs, final CoordinateReferenceSystem targetCrs, final boolean lenient) {
+
+			this.sourceCrs = sourceCrs;
+			this.targetCrs = targetCrs;
+			this.lenient = lenient;
+			this.hash = 31 * (31 * System.identityHashCode(sourceCrs) + System.identityHashCode(targetCrs))
+						+ (lenient ? 1 : 0);
+		}
+
+		@Override
+		public int hashCode() {
+
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+
+			return (this.sourceCrs == other.sourceCrs) && (this.targetCrs == other.targetCrs)
+						&& (this.lenient == other.lenient);
+		}
+	}
+
+	/**
+	 * The transformation between two CRS
+	 */
+	private static final class Entry {
+
+		private final boolean											identity;
+		private final MathTransform										mathTransform;
+		private final ThreadLocal<GeometryCoordinateSequenceTransformer>	transformer	= new ThreadLocal<GeometryCoordinateSequenceTransformer>();
+		private final ThreadLocal<CoordinateSequenceFactory>			csFactory	= new ThreadLocal<CoordinateSequenceFactory>();
+
+		Entry(final CoordinateReferenceSystem sourceCrs, final CoordinateReferenceSystem targetCrs, final boolean lenient)
+			throws FactoryException {
+
+			this.identity = sourceCrs.equals(targetCrs) || CRS.equalsIgnoreMetadata(sourceCrs, targetCrs);
+			this.mathTransform = this.identity ? IdentityTransform.create(sourceCrs.getCoordinateSystem()
+						.getDimension()) : CRS.findMathTransform(sourceCrs, targetCrs, lenient);
+		}
+
+		MathTransform getMathTransform() {
+
+			return this.mathTransform;
+		}
+
+		/**
+		 * Returns the transformer of the current thread. It is created again
+		 * if the coordinate sequence factory changes.
+		 */
+		GeometryCoordinateSequenceTransformer getTransformer(final GeometryFactory gFactory) {
+
+			CoordinateSequenceFactory factory = gFactory.getCoordinateSequenceFactory();
+
+			GeometryCoordinateSequenceTransformer current = this.transformer.get();
+			if ((current == null) || (this.csFactory.get() != factory)) {
+
+				current = new GeometryCoordinateSequenceTransformer(
+							new CoordSeqFactoryPreservingCoordinateSequenceTransformer(factory));
+				current.setMathTransform(this.mathTransform);
+
+				this.transformer.set(current);
+				this.csFactory.set(factory);
+			}
+			return current;
+		}
+	}
+}
@@ -0,0 +1,221 @@
+/* Spatial Operations & Editing Tools for uDig
+ * 
+ * Axios Engineering under a funding contract with: 
+ *      Diputación Foral de Gipuzkoa, Ordenación Territorial 
+ *
+ *      http://b5m.gipuzkoa.net
+ *      http://www.axios.es 
+ *
+ * (C) 2006, Diputación Foral de Gipuzkoa, Ordenación Territorial (DFG-OT). 
+ * DFG-OT agrees to licence under Lesser General Public License (LGPL).
+ * 
+ * You can redistribute it and/or modify it under the terms of the 
+ * GNU Lesser General Public License as published by the Free Software 
+ * Foundation; version 2.1 of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package es.axios.lib.geometry.merge;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+/**
+ * <p>
+ * 
+ * <pre>
+ * Union of a set of geometries by tree reduction.
+ * 
+ * The geometries are grouped by spatial proximity using a packed R-tree (STRtree), 
+ * then the union is done from the leaves to the root of tree, joining the result of 
+ * near nodes. Each union works with geometries of similar size, so the cost is lower 
+ * than adding one geometry at time to an accumulated result.
+ * 
+ * The geometries can be added one by one. To maintain bounded the memory used, when 
+ * the number of added geometries reaches the batch size, they are reduced to their 
+ * partial union.
+ * </pre>
+ * 
+ * </p>
+ * 
+ * @author Mauricio Pazos (www.axios.es)
+ * @author Aritz Davila (www.axios.es)
+ * @since 1.3.1
+ */
+public final class CascadedUnion {
+
+	/** number of children of each tree node */
+	private static final int	NODE_CAPACITY		= 4;
+
+	/** number of geometries added before doing a partial union */
+	public static final int		DEFAULT_BATCH_SIZE	= 1000;
+
+	private final int			batchSize;
+	private final List<Geometry>	pending;
+	private final List<Geometry>	partialUnions		= new ArrayList<Geometry>();
+
+	/**
+	 * New instance with the default batch size
+	 */
+	public CascadedUnion() {
+
+		this(DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * New instance
+	 * 
+	 * @param batchSize
+	 *            number of geometries added before doing a partial union
+	 */
+	public CascadedUnion(final int batchSize) {
+
+		assert batchSize > 1 : "batch size must be greater than 1"; //$NON-NLS-1$
+
+		this.batchSize = batchSize;
+		this.pending = new ArrayList<Geometry>(batchSize);
+	}
+
+	/**
+	 * Does the union of the geometries.
+	 * 
+	 * @param geometries
+	 * @return the union or null if the collection is empty
+	 */
+	public static Geometry union(final Collection<Geometry> geometries) {
+
+		CascadedUnion cascadedUnion = new CascadedUnion(Math.max(geometries.size(), 2));
+		for (Geometry geometry : geometries) {
+			cascadedUnion.add(geometry);
+		}
+		return cascadedUnion.getResult();
+	}
+
+	/**
+	 * Adds the geometry to the union.
+	 * 
+	 * @param geometry
+	 */
+	public void add(final Geometry geometry) {
+
+		if (geometry == null) {
+			throw new NullPointerException();
+		}
+		this.pending.add(geometry);
+
+		if (this.pending.size() >= this.batchSize) {
+
+			this.partialUnions.add(reduce(this.pending));
+			this.pending.clear();
+		}
+	}
+
+	/**
+	 * @return the union of added geometries or null if there is not any
+	 *         geometry
+	 */
+	public Geometry getResult() {
+
+		if (!this.pending.isEmpty()) {
+
+			this.partialUnions.add(reduce(this.pending));
+			this.pending.clear();
+		}
+		if (this.partialUnions.isEmpty()) {
+			return null;
+		}
+		Geometry result = reduce(this.partialUnions);
+
+		// the result is maintained to continue adding geometries
+		this.partialUnions.clear();
+		this.partialUnions.add(result);
+
+		return result;
+	}
+
+	/**
+	 * Makes the union of the geometries using the tree of their envelopes.
+	 * 
+	 * @param geometries
+	 * @return the union
+	 */
+	private static Geometry reduce(final List<Geometry> geometries) {
+
+		assert !geometries.isEmpty();
+
+		if (geometries.size() == 1) {
+			return geometries.get(0);
+		}
+		STRtree index = new STRtree(NODE_CAPACITY);
+		List<Geometry> emptyGeometries = new ArrayList<Geometry>();
+		for (Geometry geometry : geometries) {
+
+			if (geometry.isEmpty()) {
+				emptyGeometries.add(geometry);
+			} else {
+				index.insert(geometry.getEnvelopeInternal(), geometry);
+			}
+		}
+		if (emptyGeometries.size() == geometries.size()) {
+			return geometries.get(0);
+		}
+		List<?> itemsTree = index.itemsTree();
+
+		return unionTree(itemsTree);
+	}
+
+	/**
+	 * Does the union of each node's children then the union of results.
+	 * 
+	 * @param node
+	 *            list of geometries or other nodes
+	 * @return the union of node
+	 */
+	private static Geometry unionTree(final List<?> node) {
+
+		List<Geometry> geometries = new ArrayList<Geometry>(node.size());
+		for (Object child : node) {
+
+			if (child instanceof List<?>) {
+				geometries.add(unionTree((List<?>) child));
+			} else {
+				geometries.add((Geometry) child);
+			}
+		}
+		return binaryUnion(geometries, 0, geometries.size());
+	}
+
+	/**
+	 * Does the union of the geometries between start (inclusive) and end
+	 * (exclusive) joining the near geometries.
+	 * 
+	 * @param geometries
+	 * @param start
+	 * @param end
+	 * @return the union
+	 */
+	private static Geometry binaryUnion(final List<Geometry> geometries, final int start, final int end) {
+
+		if (end - start <= 1) {
+
+			return geometries.get(start);
+
+		} else if (end - start == 2) {
+
+			return geometries.get(start).union(geometries.get(start + 1));
+		}
+		final int middle = (end + start) / 2;
+
+		Geometry first = binaryUnion(geometries, start, middle);
+		Geometry second = binaryUnion(geometries, middle, end);
+
+		return first.union(second);
+	}
+}
@@ -0,0 +1,129 @@
+/* Spatial Operations & Editing Tools for uDig
+ * 
+ * Axios Engineering under a funding contract with: 
+ *      Diputación Foral de Gipuzkoa, Ordenación Territorial 
+ *
+ *      http://b5m.gipuzkoa.net
+ *      http://www.axios.es 
+ *
+ * (C) 2006, Diputación Foral de Gipuzkoa, Ordenación Territorial (DFG-OT). 
+ * DFG-OT agrees to license under Lesser General Public License (LGPL).
+ * 
+ * You can redistribute it and/or modify it under the terms of the 
+ * GNU Lesser General Public License as published by the Free Software 
+ * Foundation; version 2.1 of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package es.axios.lib.geometry.util;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+
+/**
+ * <p>
+ * 
+ * <pre>
+ * Intersects a base geometry with many other geometries.
+ * 
+ * The base geometry is prepared only once, so the tests against each geometry 
+ * reuse its indexed segments. Each test begins with an envelope check. When one 
+ * geometry covers the other the intersection is the covered geometry and the 
+ * overlay operation is not done.
+ * </pre>
+ * 
+ * </p>
+ * <p>
+ * Instances are not thread safe, each thread must create its own.
+ * </p>
+ * 
+ * @author Mauricio Pazos (www.axios.es)
+ * @author Aritz Davila (www.axios.es)
+ * @since 1.3.1
+ */
+public final class PreparedIntersector {
+
+	private final Geometry			base;
+	private final Envelope			baseEnvelope;
+	private final PreparedGeometry	prepared;
+
+	/**
+	 * New instance
+	 * 
+	 * @param base
+	 *            the geometry that will be intersected with the others
+	 */
+	public PreparedIntersector(final Geometry base) {
+
+		assert base != null;
+
+		this.base = base;
+		this.baseEnvelope = base.getEnvelopeInternal();
+		this.prepared = isHeterogeneousCollection(base) ? null : PreparedGeometryFactory.prepare(base);
+	}
+
+	/**
+	 * @return the base geometry
+	 */
+	public Geometry getBase() {
+
+		return this.base;
+	}
+
+	/**
+	 * @param other
+	 * @return true if the base geometry intersects the other geometry
+	 */
+	public boolean intersects(final Geometry other) {
+
+		if (!this.baseEnvelope.intersects(other.getEnvelopeInternal())) {
+			return false;
+		}
+		if (this.prepared == null) {
+			return this.base.intersects(other);
+		}
+		return this.prepared.intersects(other);
+	}
+
+	/**
+	 * Computes the intersection between the base geometry and the other
+	 * geometry.
+	 * 
+	 * @param other
+	 * @return the intersection or null if the geometries do not intersect
+	 */
+	public Geometry intersection(final Geometry other) {
+
+		if (!intersects(other)) {
+			return null;
+		}
+		if ((this.prepared != null) && !isHeterogeneousCollection(other)) {
+
+			if (this.prepared.covers(other)) {
+				return (Geometry) other.clone();
+			}
+			if (other.getEnvelopeInternal().covers(this.baseEnvelope) && other.covers(this.base)) {
+				return (Geometry) this.base.clone();
+			}
+		}
+		return this.base.intersection(other);
+	}
+
+	/**
+	 * The relate operations are not defined for GeometryCollection (the Multi
+	 * geometries are supported).
+	 * 
+	 * @param geometry
+	 * @return true if the geometry is a GeometryCollection
+	 */
+	private static boolean isHeterogeneousCollection(final Geometry geometry) {
+
+		return GeometryCollection.class.equals(geometry.getClass());
+	}
+}
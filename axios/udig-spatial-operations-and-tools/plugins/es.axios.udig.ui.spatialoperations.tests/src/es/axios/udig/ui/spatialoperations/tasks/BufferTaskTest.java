@@ -20,6 +20,7 @@
  */
 package es.axios.udig.ui.spatialoperations.tasks;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -353,6 +354,59 @@ public class BufferTaskTest extends AbstractTaskTest {
 
 	}
 
+	/**
+	 * Creates a buffer from the source shapefile MultiPolygon2 using four
+	 * threads and put the result on the new shapefile newTargetBufferParallel.
+	 * 
+	 * Check that there is a buffer for each source feature and all source
+	 * features were counted as processed.
+	 * 
+	 * @throws IOException
+	 * @throws SchemaException
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	@Test
+	public void testBufferTaskParallel()
+		throws IOException, SchemaException, InterruptedException, ExecutionException {
+
+		// initialize the parameters
+
+		firstShp = "MultiPolygon2.shp";
+		newShp = TASK_PATH + "newTargetBufferParallel";
+
+		isCreatingNewLayer = true;
+
+		width = 10.0;
+		unitOfMeasure = valueOfUnit("m");
+		mergeGeometries = false;
+		quadrantSegments = 8;
+		capStyle = CapStyle.capRound;
+
+		initTaskParameters();
+
+		assertNotNull(task);
+		assertNotNull(targetStore);
+
+		task.setThreads(4);
+
+		// execute
+
+		runTask();
+
+		// obtain the result and check the data.
+
+		SimpleFeatureStore resultStore = (SimpleFeatureStore) future.get();
+
+		assertNotNull(resultStore);
+
+		final int sourceCount = reader.getFeatures(PATH + firstShp).size();
+
+		assertEquals(sourceCount, resultStore.getFeatures().size());
+		assertEquals(sourceCount, task.getTotalCount());
+		assertEquals(sourceCount, task.getProcessedCount());
+	}
+
 	/**
 	 * Creates a buffer from the source shapefile MultiPolygon2, merge the
 	 * resultant features and put them on the new shapefile
@@ -20,28 +20,40 @@
  */
 package es.axios.udig.ui.spatialoperations.tasks;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 
+import org.geotools.data.DataUtilities;
 import org.geotools.data.FeatureStore;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.simple.SimpleFeatureStore;
 import org.geotools.feature.FeatureCollection;
 import org.geotools.feature.SchemaException;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.junit.Test;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.GeometryDescriptor;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Polygon;
 
+import es.axios.geotools.util.FeatureUtil;
 import es.axios.udig.spatialoperations.tasks.IClipTask;
 import es.axios.udig.spatialoperations.tasks.SpatialOperationFactory;
 import es.axios.udig.ui.spatialoperations.ShapefileUtil.ShapeReader;
@@ -91,6 +103,9 @@ public class ClipTaskTest extends AbstractTaskTest {
 
 	private static final String	TASK_PATH			= "ClipTask/";
 
+	private static final int	GRID_SIZE			= 10;
+	private static final double	GRID_CELL			= 1.0;
+
 	@Override
 	protected Callable<FeatureStore<SimpleFeatureType, SimpleFeature>>  getCurrentTask() {
 
@@ -335,4 +350,119 @@ public class ClipTaskTest extends AbstractTaskTest {
 			}
 		}
 	}
+
+	/**
+	 * Clips a synthetic grid of squares using other grid displaced half cell,
+	 * first evaluating all the using features for each source feature and
+	 * then using the spatial index.
+	 * 
+	 * Checks both executions produce the same number of features and the same
+	 * area, and prints the time spent by each one.
+	 * 
+	 * @throws IOException
+	 * @throws SchemaException
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	@Test
+	public void testClipTaskSpatialIndexOnGrid()
+		throws IOException, SchemaException, InterruptedException, ExecutionException {
+
+		final SimpleFeatureCollection sourceGrid = createGrid("SourceGrid", GRID_SIZE, 0.0); //$NON-NLS-1$
+		final SimpleFeatureCollection usingGrid = createGrid("UsingGrid", GRID_SIZE, GRID_CELL / 2); //$NON-NLS-1$
+
+		// clips evaluating all the using features
+		long start = System.currentTimeMillis();
+		SimpleFeatureStore scanStore = runGridClip(sourceGrid, usingGrid, "newGridClipScan.shp", false); //$NON-NLS-1$
+		final long scanTime = System.currentTimeMillis() - start;
+
+		// clips evaluating the using features selected by the index
+		start = System.currentTimeMillis();
+		SimpleFeatureStore indexStore = runGridClip(sourceGrid, usingGrid, "newGridClipIndex.shp", true); //$NON-NLS-1$
+		final long indexTime = System.currentTimeMillis() - start;
+
+		System.out.println("Clip " + GRID_SIZE + "x" + GRID_SIZE + " grid. Scan: " + scanTime + " ms. Index: " //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+					+ indexTime + " ms."); //$NON-NLS-1$
+
+		SimpleFeatureCollection scanResult = scanStore.getFeatures();
+		SimpleFeatureCollection indexResult = indexStore.getFeatures();
+
+		assertFalse(indexResult.isEmpty());
+		assertEquals(scanResult.size(), indexResult.size());
+		assertEquals(computeArea(scanResult), computeArea(indexResult), 1.0E-6);
+	}
+
+	/**
+	 * Clips the source grid using the grid in a new shapefile.
+	 * 
+	 * @return the target store
+	 */
+	private SimpleFeatureStore runGridClip(	final SimpleFeatureCollection sourceGrid,
+											final SimpleFeatureCollection usingGrid,
+											final String shpName,
+											final boolean spatialIndexEnabled)
+		throws IOException, SchemaException, InterruptedException, ExecutionException {
+
+		final CoordinateReferenceSystem crs = DefaultGeographicCRS.WGS84;
+
+		targetStore = createNewTargetStore(PATH + TASK_PATH + shpName, sourceGrid.getSchema());
+
+		IClipTask task = SpatialOperationFactory.createClip(usingGrid, sourceGrid, targetStore, crs, crs, crs, true,
+					"SourceGrid", "GridClip", crs); //$NON-NLS-1$ //$NON-NLS-2$
+		task.setSpatialIndexEnabled(spatialIndexEnabled);
+		this.task = task;
+
+		runTask();
+
+		return (SimpleFeatureStore) future.get();
+	}
+
+	/**
+	 * Creates a grid of size x size square cells.
+	 * 
+	 * @param typeName
+	 * @param size
+	 *            number of rows and columns
+	 * @param offset
+	 *            displacement of the grid origin
+	 * @return the grid features
+	 */
+	private SimpleFeatureCollection createGrid(final String typeName, final int size, final double offset) {
+
+		SimpleFeatureTypeBuilder typeBuilder = FeatureUtil.createDefaultFeatureType(typeName,
+					DefaultGeographicCRS.WGS84, MultiPolygon.class);
+		typeBuilder.add("cell", Integer.class); //$NON-NLS-1$
+		SimpleFeatureType type = typeBuilder.buildFeatureType();
+
+		GeometryFactory gf = new GeometryFactory();
+		SimpleFeatureBuilder builder = new SimpleFeatureBuilder(type);
+		List<SimpleFeature> cells = new ArrayList<SimpleFeature>(size * size);
+		for (int row = 0; row < size; row++) {
+			for (int col = 0; col < size; col++) {
+
+				double x = offset + col * GRID_CELL;
+				double y = offset + row * GRID_CELL;
+				Polygon square = (Polygon) gf.toGeometry(new Envelope(x, x + GRID_CELL, y, y + GRID_CELL));
+
+				builder.add(gf.createMultiPolygon(new Polygon[] { square }));
+				builder.add(Integer.valueOf(row * size + col));
+				cells.add(builder.buildFeature(null));
+			}
+		}
+		return DataUtilities.collection(cells);
+	}
+
+	private double computeArea(final SimpleFeatureCollection fc) {
+
+		double area = 0;
+		SimpleFeatureIterator it = fc.features();
+		try {
+			while (it.hasNext()) {
+				area += ((Geometry) it.next().getDefaultGeometry()).getArea();
+			}
+		} finally {
+			it.close();
+		}
+		return area;
+	}
 }
@@ -0,0 +1,221 @@
+/* Spatial Operations & Editing Tools for uDig
+ * 
+ * Axios Engineering under a funding contract with: 
+ *      Diputación Foral de Gipuzkoa, Ordenación Territorial 
+ *
+ *      http://b5m.gipuzkoa.net
+ *      http://www.axios.es 
+ *
+ * (C) 2006, Diputación Foral de Gipuzkoa, Ordenación Territorial (DFG-OT). 
+ * DFG-OT agrees to licence under Lesser General Public License (LGPL).
+ * 
+ * You can redistribute it and/or modify it under the terms of the 
+ * GNU Lesser General Public License as published by the Free Software 
+ * Foundation; version 2.1 of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package es.axios.udig.ui.spatialoperations.tasks.benchmark;
+
+import java.io.IOException;
+
+import org.geotools.data.memory.MemoryDataStore;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.data.simple.SimpleFeatureStore;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.MultiLineString;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Polygon;
+
+import es.axios.geotools.util.FeatureUtil;
+
+/**
+ * Synthetic layers used by the benchmarks. All the layers are held in a
+ * {@link MemoryDataStore}.
+ * 
+ * <pre>
+ * polygons: size square cells of side 1 in rows of ceil(sqrt(size)) cells. The
+ *           "group" attribute is the row of the cell.
+ * strips:   one rectangle per row, displaced half cell, which covers the half of 
+ *           two rows of cells.
+ * lines:    one horizontal line per row crossing the middle of its cells.
+ * rings:    one closed line inside each cell of the diagonal.
+ * </pre>
+ * 
+ * The number of strips, lines and rings grows with the square root of the size,
+ * so the tasks which compare each feature with all the features of the second
+ * layer are still tractable with 100k features.
+ * 
+ * @author Mauricio Pazos (www.axios.es)
+ * @author Aritz Davila (www.axios.es)
+ * @since 1.3.1
+ */
+final class SyntheticGrid {
+
+	public static final CoordinateReferenceSystem	CRS					= DefaultGeographicCRS.WGS84;
+
+	public static final String						POLYGONS			= "polygons";	//$NON-NLS-1$
+	public static final String						STRIPS				= "strips";	//$NON-NLS-1$
+	public static final String						LINES				= "lines";		//$NON-NLS-1$
+	public static final String						RINGS				= "rings";		//$NON-NLS-1$
+	public static final String						GROUP_ATTRIBUTE		= "group";		//$NON-NLS-1$
+
+	private static final GeometryFactory			GEOMETRY_FACTORY	= new GeometryFactory();
+
+	private final int								size;
+	private final int								side;
+	private final MemoryDataStore					store				= new MemoryDataStore();
+
+	private SyntheticGrid(final int size) {
+
+		this.size = size;
+		this.side = (int) Math.ceil(Math.sqrt(size));
+	}
+
+	/**
+	 * Creates the layers
+	 * 
+	 * @param size
+	 *            number of polygons
+	 * @return {@link SyntheticGrid}
+	 * @throws IOException
+	 */
+	public static SyntheticGrid newInstance(final int size) throws IOException {
+
+		assert size > 0;
+
+		SyntheticGrid grid = new SyntheticGrid(size);
+		grid.createPolygons();
+		grid.createStrips();
+		grid.createLines();
+		grid.createRings();
+
+		return grid;
+	}
+
+	/**
+	 * @return the number of polygons
+	 */
+	public int getSize() {
+
+		return this.size;
+	}
+
+	public SimpleFeatureSource getSource(final String layer) throws IOException {
+
+		return this.store.getFeatureSource(layer);
+	}
+
+	public SimpleFeatureCollection getFeatures(final String layer) throws IOException {
+
+		return getSource(layer).getFeatures();
+	}
+
+	/**
+	 * Creates an empty store in memory with the "group" attribute.
+	 * 
+	 * @param typeName
+	 * @param geometryClass
+	 * @return the new store
+	 * @throws IOException
+	 */
+	public static SimpleFeatureStore createTargetStore(final String typeName, final Class<? extends Geometry> geometryClass)
+		throws IOException {
+
+		SimpleFeatureTypeBuilder typeBuilder = FeatureUtil.createDefaultFeatureType(typeName, CRS, geometryClass);
+		typeBuilder.add(GROUP_ATTRIBUTE, Integer.class);
+		SimpleFeatureType type = typeBuilder.buildFeatureType();
+
+		MemoryDataStore target = new MemoryDataStore();
+		target.createSchema(type);
+
+		return (SimpleFeatureStore) target.getFeatureSource(typeName);
+	}
+
+	private void createPolygons() throws IOException {
+
+		SimpleFeatureBuilder builder = createLayer(POLYGONS, MultiPolygon.class);
+		for (int i = 0; i < this.size; i++) {
+
+			int row = i / this.side;
+			int col = i % this.side;
+			Polygon square = (Polygon) GEOMETRY_FACTORY.toGeometry(new Envelope(col, col + 1, row, row + 1));
+
+			builder.add(GEOMETRY_FACTORY.createMultiPolygon(new Polygon[] { square }));
+			builder.add(Integer.valueOf(row));
+			this.store.addFeature(builder.buildFeature(null));
+		}
+	}
+
+	private void createStrips() throws IOException {
+
+		SimpleFeatureBuilder builder = createLayer(STRIPS, MultiPolygon.class);
+		for (int row = 0; row < this.side; row++) {
+
+			double y = row + 0.5;
+			Polygon strip = (Polygon) GEOMETRY_FACTORY.toGeometry(new Envelope(-0.5, this.side + 0.5, y, y + 1));
+
+			builder.add(GEOMETRY_FACTORY.createMultiPolygon(new Polygon[] { strip }));
+			builder.add(Integer.valueOf(row));
+			this.store.addFeature(builder.buildFeature(null));
+		}
+	}
+
+	private void createLines() throws IOException {
+
+		SimpleFeatureBuilder builder = createLayer(LINES, MultiLineString.class);
+		for (int row = 0; row < this.side; row++) {
+
+			double y = row + 0.5;
+			LineString line = GEOMETRY_FACTORY.createLineString(new Coordinate[] { new Coordinate(-1, y),
+						new Coordinate(this.side + 1, y) });
+
+			builder.add(GEOMETRY_FACTORY.createMultiLineString(new LineString[] { line }));
+			builder.add(Integer.valueOf(row));
+			this.store.addFeature(builder.buildFeature(null));
+		}
+	}
+
+	private void createRings() throws IOException {
+
+		SimpleFeatureBuilder builder = createLayer(RINGS, MultiLineString.class);
+		for (int i = 0; i < this.side; i++) {
+
+			double min = i + 0.25;
+			double max = i + 0.75;
+			LineString ring = GEOMETRY_FACTORY.createLineString(new Coordinate[] { new Coordinate(min, min),
+						new Coordinate(max, min), new Coordinate(max, max), new Coordinate(min, max),
+						new Coordinate(min, min) });
+
+			builder.add(GEOMETRY_FACTORY.createMultiLineString(new LineString[] { ring }));
+			builder.add(Integer.valueOf(i));
+			this.store.addFeature(builder.buildFeature(null));
+		}
+	}
+
+	private SimpleFeatureBuilder createLayer(final String typeName, final Class<? extends Geometry> geometryClass)
+		throws IOException {
+
+		SimpleFeatureTypeBuilder typeBuilder = FeatureUtil.createDefaultFeatureType(typeName, CRS, geometryClass);
+		typeBuilder.add(GROUP_ATTRIBUTE, Integer.class);
+		SimpleFeatureType type = typeBuilder.buildFeatureType();
+
+		this.store.createSchema(type);
+
+		return new SimpleFeatureBuilder(type);
+	}
+}
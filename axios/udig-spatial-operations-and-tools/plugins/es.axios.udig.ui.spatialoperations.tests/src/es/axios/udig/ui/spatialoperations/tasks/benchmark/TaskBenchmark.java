@@ -0,0 +1,338 @@
+/* Spatial Operations & Editing Tools for uDig
+ * 
+ * Axios Engineering under a funding contract with: 
+ *      Diputación Foral de Gipuzkoa, Ordenación Territorial 
+ *
+ *      http://b5m.gipuzkoa.net
+ *      http://www.axios.es 
+ *
+ * (C) 2006, Diputación Foral de Gipuzkoa, Ordenación Territorial (DFG-OT). 
+ * DFG-OT agrees to licence under Lesser General Public License (LGPL).
+ * 
+ * You can redistribute it and/or modify it under the terms of the 
+ * GNU Lesser General Public License as published by the Free Software 
+ * Foundation; version 2.1 of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package es.axios.udig.ui.spatialoperations.tasks.benchmark;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.measure.unit.NonSI;
+
+import org.opengis.filter.Filter;
+
+import com.vividsolutions.jts.geom.MultiPolygon;
+
+import es.axios.udig.spatialoperations.tasks.IBufferTask;
+import es.axios.udig.spatialoperations.tasks.IBufferTask.CapStyle;
+import es.axios.udig.spatialoperations.tasks.IIntersectTask;
+import es.axios.udig.spatialoperations.tasks.ISpatialOperationTask;
+import es.axios.udig.spatialoperations.tasks.SpatialOperationFactory;
+import es.axios.udig.spatialoperations.tasks.SpatialRelation;
+
+/**
+ * Throughput benchmark of the spatial operation tasks.
+ * <p>
+ * Each task is executed over the layers of a {@link SyntheticGrid} held in
+ * memory, so the result does not depend on the disk. The grid and the target
+ * store are created before each iteration and are not measured. The task runs
+ * in the current thread calling {@link ISpatialOperationTask#call()}.
+ * </p>
+ * <p>
+ * The report has the features of the source layer processed by second and the
+ * bytes allocated by second in the benchmark thread. The allocated bytes are
+ * only available if the virtual machine provides
+ * <code>com.sun.management.ThreadMXBean</code>, otherwise -1 is reported.
+ * The threads used by the parallel tasks are not included in that measure.
+ * </p>
+ * 
+ * <pre>
+ * Usage: TaskBenchmark [-threads=n] [-warmup=n] [-iterations=n] [size ...]
+ * 
+ * Default: -threads=1 -warmup=2 -iterations=5 1000 10000 100000
+ * </pre>
+ * 
+ * @author Mauricio Pazos (www.axios.es)
+ * @author Aritz Davila (www.axios.es)
+ * @since 1.3.1
+ */
+public final class TaskBenchmark {
+
+	/**
+	 * The benchmarked operation.
+	 */
+	static enum Operation {
+		Buffer, Clip, Intersect, Dissolve, SpatialJoin, Split, Fill, Hole
+	}
+
+	/**
+	 * Result of one operation
+	 */
+	static final class Result {
+
+		private final Operation	operation;
+		private final int		size;
+		private final double	featuresPerSecond;
+		private final double	bytesPerSecond;
+
+		private Result(final Operation operation, final int size, final double featuresPerSecond,
+						final double bytesPerSecond) {
+
+			this.operation = operation;
+			this.size = size;
+			this.featuresPerSecond = featuresPerSecond;
+			this.bytesPerSecond = bytesPerSecond;
+		}
+
+		public Operation getOperation() {
+			return this.operation;
+		}
+
+		public int getSize() {
+			return this.size;
+		}
+
+		public double getFeaturesPerSecond() {
+			return this.featuresPerSecond;
+		}
+
+		/**
+		 * @return the allocated bytes by second or -1 if it is not available
+		 */
+		public double getBytesPerSecond() {
+			return this.bytesPerSecond;
+		}
+
+		@Override
+		public String toString() {
+
+			return String.format("%-12s %8d %14.1f %14.1f", this.operation, this.size, this.featuresPerSecond, //$NON-NLS-1$
+						this.bytesPerSecond / (1024 * 1024));
+		}
+	}
+
+	private static final int[]		DEFAULT_SIZES		= { 1000, 10000, 100000 };
+
+	private static final double		BUFFER_WIDTH		= 0.1;
+
+	private static final Method		ALLOCATED_BYTES		= findAllocatedBytesMethod();
+
+	private int						threads				= 1;
+	private int						warmup				= 2;
+	private int						iterations			= 5;
+
+	public void setThreads(final int threads) {
+
+		assert threads > 0;
+		this.threads = threads;
+	}
+
+	public void setWarmup(final int warmup) {
+
+		assert warmup >= 0;
+		this.warmup = warmup;
+	}
+
+	public void setIterations(final int iterations) {
+
+		assert iterations > 0;
+		this.iterations = iterations;
+	}
+
+	/**
+	 * Runs all the operations with each size and prints the report.
+	 * 
+	 * @param args
+	 *            see the class comment
+	 * @throws Exception
+	 */
+	public static void main(final String[] args) throws Exception {
+
+		TaskBenchmark benchmark = new TaskBenchmark();
+		List<Integer> sizes = new ArrayList<Integer>();
+		for (String arg : args) {
+
+			if (arg.startsWith("-threads=")) { //$NON-NLS-1$
+				benchmark.setThreads(Integer.parseInt(arg.substring("-threads=".length()))); //$NON-NLS-1$
+			} else if (arg.startsWith("-warmup=")) { //$NON-NLS-1$
+				benchmark.setWarmup(Integer.parseInt(arg.substring("-warmup=".length()))); //$NON-NLS-1$
+			} else if (arg.startsWith("-iterations=")) { //$NON-NLS-1$
+				benchmark.setIterations(Integer.parseInt(arg.substring("-iterations=".length()))); //$NON-NLS-1$
+			} else {
+				sizes.add(Integer.valueOf(arg));
+			}
+		}
+		if (sizes.isEmpty()) {
+			for (int size : DEFAULT_SIZES) {
+				sizes.add(size);
+			}
+		}
+
+		PrintStream out = System.out;
+		out.println(String.format("%-12s %8s %14s %14s", "operation", "features", "features/s", "MB/s")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+		for (int size : sizes) {
+			for (Operation operation : Operation.values()) {
+
+				out.println(benchmark.run(operation, size));
+			}
+		}
+	}
+
+	/**
+	 * Runs the warm up and the measured iterations of the operation.
+	 * 
+	 * @param operation
+	 * @param size
+	 *            number of polygons of the grid
+	 * @return the average of the measured iterations
+	 * @throws Exception
+	 */
+	public Result run(final Operation operation, final int size) throws Exception {
+
+		SyntheticGrid grid = SyntheticGrid.newInstance(size);
+
+		for (int i = 0; i < this.warmup; i++) {
+			createTask(operation, grid).call();
+		}
+
+		long elapsed = 0;
+		long allocated = 0;
+		for (int i = 0; i < this.iterations; i++) {
+
+			ISpatialOperationTask<?> task = createTask(operation, grid);
+
+			long startBytes = getAllocatedBytes();
+			long start = System.nanoTime();
+
+			task.call();
+
+			elapsed += System.nanoTime() - start;
+			long endBytes = getAllocatedBytes();
+			allocated = (startBytes < 0 || allocated < 0) ? -1 : allocated + (endBytes - startBytes);
+		}
+		double seconds = elapsed / 1.0E9;
+		double featuresPerSecond = (size * (double) this.iterations) / seconds;
+		double bytesPerSecond = (allocated < 0) ? -1 : allocated / seconds;
+
+		return new Result(operation, size, featuresPerSecond, bytesPerSecond);
+	}
+
+	/**
+	 * Creates the task for the operation with a new target store.
+	 */
+	private ISpatialOperationTask<?> createTask(final Operation operation, final SyntheticGrid grid)
+		throws Exception {
+
+		final String targetName = "target"; //$NON-NLS-1$
+
+		switch (operation) {
+		case Buffer:
+			IBufferTask buffer = SpatialOperationFactory.createBuffer(grid.getFeatures(SyntheticGrid.POLYGONS),
+						SyntheticGrid.createTargetStore(targetName, MultiPolygon.class), SyntheticGrid.CRS,
+						BUFFER_WIDTH, NonSI.DEGREE_ANGLE, false, 8, CapStyle.capRound, SyntheticGrid.CRS,
+						SyntheticGrid.CRS);
+			buffer.setThreads(this.threads);
+			return buffer;
+
+		case Clip:
+			return SpatialOperationFactory.createClip(grid.getFeatures(SyntheticGrid.STRIPS), grid
+						.getFeatures(SyntheticGrid.POLYGONS), SyntheticGrid.createTargetStore(targetName,
+						MultiPolygon.class), SyntheticGrid.CRS, SyntheticGrid.CRS, SyntheticGrid.CRS, true,
+						SyntheticGrid.POLYGONS, targetName, SyntheticGrid.CRS);
+
+		case Intersect:
+			IIntersectTask intersect = SpatialOperationFactory.createIntersect(SyntheticGrid.createTargetStore(
+						targetName, MultiPolygon.class), grid.getFeatures(SyntheticGrid.POLYGONS), grid
+						.getFeatures(SyntheticGrid.STRIPS), SyntheticGrid.CRS, SyntheticGrid.CRS, false, null,
+						SyntheticGrid.CRS);
+			intersect.setThreads(this.threads);
+			return intersect;
+
+		case Dissolve:
+			return SpatialOperationFactory.createDissolve(grid.getSource(SyntheticGrid.POLYGONS), Filter.INCLUDE,
+						Collections.singletonList(SyntheticGrid.GROUP_ATTRIBUTE), SyntheticGrid.CRS, SyntheticGrid
+									.createTargetStore(targetName, MultiPolygon.class), SyntheticGrid.CRS,
+						SyntheticGrid.CRS);
+
+		case SpatialJoin:
+			return SpatialOperationFactory.createSpatialJoin(grid.getFeatures(SyntheticGrid.POLYGONS), grid
+						.getFeatures(SyntheticGrid.STRIPS), SpatialRelation.Intersects, SyntheticGrid.CRS,
+						SyntheticGrid.createTargetStore(targetName, MultiPolygon.class), SyntheticGrid.CRS,
+						SyntheticGrid.CRS, SyntheticGrid.CRS);
+
+		case Split:
+			return SpatialOperationFactory.createSplit(SyntheticGrid.createTargetStore(targetName,
+						MultiPolygon.class), grid.getFeatures(SyntheticGrid.POLYGONS), grid
+						.getFeatures(SyntheticGrid.LINES), SyntheticGrid.CRS, SyntheticGrid.CRS, true,
+						SyntheticGrid.CRS, SyntheticGrid.CRS, SyntheticGrid.POLYGONS, targetName);
+
+		case Fill:
+			return SpatialOperationFactory.createFill(SyntheticGrid.createTargetStore(targetName,
+						MultiPolygon.class), grid.getFeatures(SyntheticGrid.POLYGONS), grid
+						.getFeatures(SyntheticGrid.RINGS), SyntheticGrid.CRS, SyntheticGrid.CRS, SyntheticGrid.CRS,
+						SyntheticGrid.CRS, false);
+
+		case Hole:
+			return SpatialOperationFactory.createHole(grid.getFeatures(SyntheticGrid.POLYGONS), grid
+						.getFeatures(SyntheticGrid.RINGS), SyntheticGrid.createTargetStore(targetName,
+						MultiPolygon.class), SyntheticGrid.CRS, SyntheticGrid.CRS, SyntheticGrid.CRS,
+						SyntheticGrid.CRS, true, SyntheticGrid.POLYGONS, targetName);
+
+		default:
+			throw new IllegalArgumentException("Unknown operation: " + operation); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * @return the bytes allocated by the current thread or -1 if the virtual
+	 *         machine does not provide this measure
+	 */
+	private static long getAllocatedBytes() {
+
+		if (ALLOCATED_BYTES == null) {
+			return -1;
+		}
+		try {
+			ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			Long bytes = (Long) ALLOCATED_BYTES.invoke(bean, Long.valueOf(Thread.currentThread().getId()));
+
+			return bytes.longValue();
+
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * The allocated bytes are provided by com.sun.management.ThreadMXBean,
+	 * which is not present in all the virtual machines.
+	 */
+	private static Method findAllocatedBytesMethod() {
+
+		try {
+			ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			Class<?> sunBean = Class.forName("com.sun.management.ThreadMXBean"); //$NON-NLS-1$
+			if (!sunBean.isInstance(bean)) {
+				return null;
+			}
+			Method method = sunBean.getMethod("getThreadAllocatedBytes", long.class); //$NON-NLS-1$
+			method.invoke(bean, Long.valueOf(Thread.currentThread().getId()));
+
+			return method;
+
+		} catch (Exception e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,57 @@
+/* Spatial Operations & Editing Tools for uDig
+ * 
+ * Axios Engineering under a funding contract with: 
+ *      Diputación Foral de Gipuzkoa, Ordenación Territorial 
+ *
+ *      http://b5m.gipuzkoa.net
+ *      http://www.axios.es 
+ *
+ * (C) 2006, Diputación Foral de Gipuzkoa, Ordenación Territorial (DFG-OT). 
+ * DFG-OT agrees to licence under Lesser General Public License (LGPL).
+ * 
+ * You can redistribute it and/or modify it under the terms of the 
+ * GNU Lesser General Public License as published by the Free Software 
+ * Foundation; version 2.1 of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package es.axios.udig.ui.spatialoperations.tasks.benchmark;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import es.axios.udig.ui.spatialoperations.tasks.benchmark.TaskBenchmark.Operation;
+import es.axios.udig.ui.spatialoperations.tasks.benchmark.TaskBenchmark.Result;
+
+/**
+ * Runs one iteration of each benchmarked operation with the smallest grid.
+ * Use {@link TaskBenchmark#main(String[])} to get the complete report.
+ * 
+ * @author Mauricio Pazos (www.axios.es)
+ * @author Aritz Davila (www.axios.es)
+ * @since 1.3.1
+ */
+public class TaskBenchmarkTest {
+
+	private static final int	SIZE	= 1000;
+
+	@Test
+	public void testAllOperations() throws Exception {
+
+		TaskBenchmark benchmark = new TaskBenchmark();
+		benchmark.setWarmup(0);
+		benchmark.setIterations(1);
+
+		for (Operation operation : Operation.values()) {
+
+			Result result = benchmark.run(operation, SIZE);
+			System.out.println(result);
+
+			assertTrue(operation + " throughput", result.getFeaturesPerSecond() > 0); //$NON-NLS-1$
+		}
+	}
+}
@@ -22,6 +22,7 @@ package es.axios.udig.spatialoperations.tasks;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.logging.Logger;
@@ -39,6 +40,7 @@ import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryCollection;
 import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.index.strtree.STRtree;
 
 import es.axios.geotools.util.GeoToolsUtils;
 import es.axios.lib.geometry.util.GeometryUtil;
@@ -71,12 +73,144 @@ abstract class AbstractCommonTask extends AbstractSpatialOperationTask<FeatureSt
 	protected String												targetLayerName			= null;
 	protected CoordinateReferenceSystem								targetCrs				= null;
 
+	/** using features' envelopes on map's CRS, built the first time it is required */
+	private STRtree													usingIndex				= null;
+	private List<SimpleFeature>										usingList				= null;
+	private boolean													spatialIndexEnabled		= true;
+
 	@Override
 	protected FeatureStore<SimpleFeatureType, SimpleFeature> getResult() {
 
 		return this.targetStore;
 	}
 
+	/**
+	 * Enables or disables the spatial index used to select the using features
+	 * which could modify a source feature. If it is disabled all the using
+	 * features are evaluated. It is enabled by default.
+	 * 
+	 * @param enabled
+	 */
+	public void setSpatialIndexEnabled(final boolean enabled) {
+
+		this.spatialIndexEnabled = enabled;
+	}
+
+	/**
+	 * Cuts the feature with the using features which envelope intersects it.
+	 * The process stops when the number of geometries of feature is modified.
+	 * 
+	 * @param fidToCut
+	 *            the feature to cut
+	 * @return true if the count of geometry to cut was modified, false in
+	 *         other case.
+	 * @throws SpatialOperationException
+	 */
+	protected boolean cutSourceWithCandidates(final String fidToCut) throws SpatialOperationException {
+
+		boolean numGeomModified = false;
+
+		if (!this.spatialIndexEnabled) {
+
+			FeatureIterator<SimpleFeature> iterUsing = null;
+			try {
+				iterUsing = this.usingFeatures.features();
+				while (iterUsing.hasNext() && !numGeomModified) {
+
+					SimpleFeature usingFeature = iterUsing.next();
+
+					numGeomModified = cutSourceWithUsingFeature(fidToCut, this.sourceCrs, usingFeature,
+								this.usingCrs, this.mapCrs);
+				}
+			} finally {
+				if (iterUsing != null) {
+					iterUsing.close();
+				}
+			}
+			return numGeomModified;
+		}
+
+		List<SimpleFeature> candidates = getUsingCandidates(fidToCut);
+		for (int i = 0; (i < candidates.size()) && !numGeomModified; i++) {
+
+			numGeomModified = cutSourceWithUsingFeature(fidToCut, this.sourceCrs, candidates.get(i), this.usingCrs,
+						this.mapCrs);
+		}
+		return numGeomModified;
+	}
+
+	/**
+	 * Retrieves the using features which envelope intersects the envelope of
+	 * the feature. The features are returned in the same order they have in
+	 * the using collection.
+	 * 
+	 * @param fid
+	 *            the feature to cut
+	 * @return the candidate using features
+	 * @throws SpatialOperationException
+	 */
+	private List<SimpleFeature> getUsingCandidates(final String fid) throws SpatialOperationException {
+
+		try {
+			if (this.usingIndex == null) {
+				buildUsingIndex();
+			}
+			SimpleFeature feature = findFeature(this.targetStore, fid);
+
+			Geometry geomOnMap = GeoToolsUtils.reproject((Geometry) feature.getDefaultGeometry(), this.sourceCrs,
+						this.mapCrs);
+
+			@SuppressWarnings("unchecked")
+			List<Integer> positions = this.usingIndex.query(geomOnMap.getEnvelopeInternal());
+			Collections.sort(positions);
+
+			List<SimpleFeature> candidates = new ArrayList<SimpleFeature>(positions.size());
+			for (Integer position : positions) {
+				candidates.add(this.usingList.get(position));
+			}
+			return candidates;
+
+		} catch (SpatialOperationException e) {
+			throw e;
+		} catch (Exception e) {
+			final String msg = e.getMessage();
+			LOGGER.severe(msg);
+			throw makeException(e, msg);
+		}
+	}
+
+	/**
+	 * Reads the using features and indexes their envelopes projected on map's
+	 * CRS. The index value is the position of the feature in the using
+	 * collection.
+	 * 
+	 * @throws Exception
+	 */
+	private void buildUsingIndex() throws Exception {
+
+		this.usingIndex = new STRtree();
+		this.usingList = new ArrayList<SimpleFeature>();
+
+		FeatureIterator<SimpleFeature> iter = null;
+		try {
+			iter = this.usingFeatures.features();
+			while (iter.hasNext()) {
+
+				SimpleFeature usingFeature = iter.next();
+				Geometry usingGeomOnMap = GeoToolsUtils.reproject((Geometry) usingFeature.getDefaultGeometry(),
+							this.usingCrs, this.mapCrs);
+
+				this.usingIndex.insert(usingGeomOnMap.getEnvelopeInternal(), Integer.valueOf(this.usingList.size()));
+				this.usingList.add(usingFeature);
+			}
+		} finally {
+			if (iter != null) {
+				iter.close();
+			}
+		}
+		this.usingIndex.build();
+	}
+
 	protected boolean cutSourceWithUsingFeature(final String fidToHole,
 												final CoordinateReferenceSystem featureToHoleCrs,
 												final SimpleFeature usingFeature,
@@ -21,35 +21,24 @@
 package es.axios.udig.spatialoperations.tasks;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.logging.Logger;
 
 import org.geotools.data.DataUtilities;
-import org.geotools.data.FeatureEvent;
-import org.geotools.data.FeatureEvent.Type;
-import org.geotools.data.FeatureListener;
 import org.geotools.data.FeatureStore;
-import org.geotools.data.Query;
-import org.geotools.data.Transaction;
 import org.geotools.data.simple.SimpleFeatureStore;
 import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.feature.FeatureCollection;
 import org.geotools.feature.FeatureIterator;
-import org.geotools.referencing.CRS;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
-import org.opengis.feature.type.AttributeDescriptor;
-import org.opengis.feature.type.GeometryDescriptor;
-import org.opengis.filter.Filter;
 import org.opengis.filter.FilterFactory;
 import org.opengis.filter.Id;
 import org.opengis.filter.identity.FeatureId;
-import org.opengis.filter.spatial.BBOX;
 
-import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 
 import es.axios.geotools.util.FeatureUtil;
@@ -74,14 +63,25 @@ abstract class AbstractSpatialOperationTask<V> {
 	protected static final FilterFactory					FILTER_FACTORY	= CommonFactoryFinder
 																							.getFilterFactory(null);
 
+	private int												batchSize		= BatchFeatureWriter.DEFAULT_BATCH_SIZE;
+
+	private BatchFeatureWriter								writer			= null;
+
+	private int												threads			= ParallelFeatureProcessor
+																							.getDefaultThreads();
+
+	private volatile int									processedCount	= 0;
+
+	private volatile int									totalCount		= -1;
+
 	public V call() throws Exception {
 
 		assert targetStore != null : "target store is null!"; //$NON-NLS-1$
 
-		addListeners();
-
 		perform();
 
+		flushFeatures();
+
 		return getResult();
 	}
 
@@ -153,6 +153,109 @@ abstract class AbstractSpatialOperationTask<V> {
 		return ex;
 	}
 
+	/**
+	 * Sets the number of features committed in each transaction.
+	 * 
+	 * @param batchSize
+	 *            less than or equal to 0 commits all the result in one
+	 *            transaction
+	 */
+	public void setBatchSize(final int batchSize) {
+
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Sets the number of threads used to compute the features.
+	 * 
+	 * @param threads
+	 *            less than or equal to 1 computes the features in the task's
+	 *            thread
+	 */
+	public void setThreads(final int threads) {
+
+		this.threads = threads;
+	}
+
+	public int getProcessedCount() {
+
+		return this.processedCount;
+	}
+
+	public int getTotalCount() {
+
+		return this.totalCount;
+	}
+
+	/**
+	 * Sets the number of source features that the task will process.
+	 * 
+	 * @param totalCount
+	 */
+	protected void setTotalCount(final int totalCount) {
+
+		this.totalCount = totalCount;
+	}
+
+	/**
+	 * Increments the number of processed features. It must be called from the
+	 * task's thread.
+	 */
+	protected void worked() {
+
+		this.processedCount++;
+	}
+
+	/**
+	 * @return a new {@link ParallelFeatureProcessor} which uses the threads
+	 *         set for this task
+	 */
+	protected <R> ParallelFeatureProcessor<R> newFeatureProcessor() {
+
+		return ParallelFeatureProcessor.newInstance(this.threads, ParallelFeatureProcessor.DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Returns the writer associated to the store. If there is a writer for
+	 * other store its pending features are committed before creating the new
+	 * writer.
+	 * 
+	 * @param store
+	 * @return the {@link BatchFeatureWriter} for the store
+	 * @throws IOException
+	 */
+	protected BatchFeatureWriter getWriter(final FeatureStore<SimpleFeatureType, SimpleFeature> store)
+		throws IOException {
+
+		assert store != null;
+
+		if ((this.writer != null) && (this.writer.getStore() != store)) {
+			this.writer.flush();
+			this.writer = null;
+		}
+		if (this.writer == null) {
+			this.writer = BatchFeatureWriter.newInstance(store, this.batchSize);
+		}
+		return this.writer;
+	}
+
+	/**
+	 * Commits the features pending in the current batch.
+	 * 
+	 * @throws SpatialOperationException
+	 */
+	protected void flushFeatures() throws SpatialOperationException {
+
+		if (this.writer == null) {
+			return;
+		}
+		try {
+			this.writer.flush();
+		} catch (IOException e) {
+			throw makeException(e, Messages.AbstractTask_failed_inserting_feature);
+		}
+	}
+
 	/**
 	 * Creates a new feature in the store using the geometry. This method copies
 	 * the data present in the "to clip feature" as source to create the new
@@ -163,17 +266,58 @@ abstract class AbstractSpatialOperationTask<V> {
 	 * @return the new feature
 	 * @throws SpatialOperationException
 	 */
-	// TODO REFACTOR.
 	protected SimpleFeature createFeatureInStore(final FeatureStore<SimpleFeatureType, SimpleFeature> store,
 													final SimpleFeature feature,
 													final Class<? extends Geometry> expectedClass,
 													final boolean isCreatingNewLayer) throws SpatialOperationException {
 
-		Transaction transaction = store.getTransaction();
-		List<FeatureId> fidSet;
+		SimpleFeature newFeature = createFeatureFor(store, feature, expectedClass, isCreatingNewLayer);
+
+		SimpleFeature storedFeature = insertFeature(store, newFeature);
+		assert storedFeature != null;
+
+		return storedFeature;
+	}
+
+	/**
+	 * Copies the feature in the store. The new feature is added in the current
+	 * batch, use this method if the process does not require the stored
+	 * feature.
+	 * 
+	 * @param store
+	 * @param feature
+	 * @param expectedClass
+	 * @param isCreatingNewLayer
+	 * @throws SpatialOperationException
+	 */
+	protected void copyFeatureInStore(	final FeatureStore<SimpleFeatureType, SimpleFeature> store,
+										final SimpleFeature feature,
+										final Class<? extends Geometry> expectedClass,
+										final boolean isCreatingNewLayer) throws SpatialOperationException {
+
+		SimpleFeature newFeature = createFeatureFor(store, feature, expectedClass, isCreatingNewLayer);
+
+		insert(store, newFeature);
+	}
+
+	/**
+	 * Creates a new feature for the store's feature type, projecting the
+	 * feature's geometry on store's CRS.
+	 * 
+	 * @param store
+	 * @param feature
+	 * @param expectedClass
+	 * @param isCreatingNewLayer
+	 *            if true the attributes of feature are copied
+	 * @return the new feature
+	 * @throws SpatialOperationException
+	 */
+	protected SimpleFeature createFeatureFor(	final FeatureStore<SimpleFeatureType, SimpleFeature> store,
+												final SimpleFeature feature,
+												final Class<? extends Geometry> expectedClass,
+												final boolean isCreatingNewLayer) throws SpatialOperationException {
 		try {
 			// project the feature geometry on store's CRS
-			
 			Geometry geomProjected = GeoToolsUtils.reproject(
 					(Geometry) feature.getDefaultGeometry(), 
 					feature.getFeatureType().getCoordinateReferenceSystem(), 
@@ -189,52 +333,14 @@ abstract class AbstractSpatialOperationTask<V> {
 
 				newFeature = FeatureUtil.copyAttributes(feature, newFeature);
 			}
+			return newFeature;
 
-			// clear the list.
-			addedID.clear();
-			committedID.clear();
-
-			fidSet = store.addFeatures(DataUtilities.collection(new SimpleFeature[] { newFeature }));
-
-			transaction.commit();
-
-			retrieveAfterCommit();
-
-			String fid;
-
-			if (addedID.size() != 0) {
-				fid = getCommittedFID();
-			} else {
-				FeatureId id = fidSet.iterator().next();
-				fid = id.getID();
-			}
-
-			addedID.clear();
-			committedID.clear();
-
-			SimpleFeature storedFeature = findFeature(store, fid);
-			assert storedFeature != null;
-
-			return storedFeature;
 		} catch (Exception e) {
 
-			try {
-				transaction.rollback();
-			} catch (IOException e1) {
-				e1.printStackTrace();
-				throw makeException(e1);
-			}
 			final String msg = Messages.AbstractCommonTask_failed_creating_layer;
 			LOGGER.severe(msg);
 			throw makeException(e, msg);
-		} finally {
-			try {
-				transaction.close();
-			} catch (IOException e) {
-				throw makeException(e);
-			}
 		}
-
 	}
 
 	/**
@@ -275,54 +381,31 @@ abstract class AbstractSpatialOperationTask<V> {
 		}
 	}
 
+	/**
+	 * Inserts the feature and retrieves it from the store. The features
+	 * pending in the current batch are committed in the same transaction.
+	 * 
+	 * @param store
+	 * @param newFeature
+	 * @return the inserted feature
+	 * @throws SpatialOperationException
+	 */
 	protected SimpleFeature insertFeature(FeatureStore<SimpleFeatureType, SimpleFeature> store, SimpleFeature newFeature)
 		throws SpatialOperationException {
 
-		Transaction transaction = store.getTransaction();
-		List<FeatureId> newIds;
 		try {
-
-			// clear the list.
-			addedID.clear();
-			committedID.clear();
-			newIds = store.addFeatures(DataUtilities.collection(new SimpleFeature[] { newFeature }));
+			List<String> newIds = getWriter(store).writeAndCommit(Collections.singletonList(newFeature));
 
 			if (newIds.size() != 1) {
 				final String msg = Messages.DissolveTask_failed_inserting;
 				throw createException(msg);
 			}
-			transaction.commit();
-
-			retrieveAfterCommit();
-
-			String fid;
-
-			if (addedID.size() != 0) {
-				fid = getCommittedFID();
-			} else {
-				FeatureId id = newIds.iterator().next();
-				fid = id.getID();
-			}
-
-			addedID.clear();
-			committedID.clear();
-			SimpleFeature insertedFeature = findFeature(store, fid);
+			SimpleFeature insertedFeature = findFeature(store, newIds.get(0));
 
 			return insertedFeature;
+
 		} catch (IOException e) {
-			try {
-				transaction.rollback();
-			} catch (IOException e1) {
-				throw createException(e1);
-			}
 			throw createException(e);
-		} finally {
-			try {
-				transaction.close();
-			} catch (IOException e) {
-				e.printStackTrace();
-				throw createException(e);
-			}
 		}
 	}
 
@@ -340,141 +423,22 @@ abstract class AbstractSpatialOperationTask<V> {
 												final FeatureStore<SimpleFeatureType, SimpleFeature> store)
 		throws SpatialOperationException {
 
-		Transaction transaction = store.getTransaction();
-
 		try {
-			SimpleFeature[] featuresArray = features.toArray(new SimpleFeature[features.size()]);
-
-			// clear the list.
-			addedID.clear();
-			committedID.clear();
-
-			List<FeatureId> fidSet = store.addFeatures(DataUtilities.collection(featuresArray));
-
-			transaction.commit();
+			List<String> newIds = getWriter(store).writeAndCommit(features);
 
-			retrieveAfterCommit();
-
-			Set<String> fid = new HashSet<String>();
-
-			if (addedID.size() != 0) {
-				fid = getCommittedFIDs();
-			} else {
-				FeatureId id = fidSet.iterator().next();
-				fid.add(id.getID());
-			}
-
-			addedID.clear();
-			committedID.clear();
-
-			// Set<String> insertedID = new HashSet<String>();
-			// for (FeatureId id : fidSet) {
-			// insertedID.add(id.getID());
-			// }
-			return fid;
-
-		} catch (Exception e) {
+			return new HashSet<String>(newIds);
 
-			try {
-				transaction.rollback();
-			} catch (IOException e1) {
-				e1.printStackTrace();
-			}
+		} catch (IOException e) {
 
-			e.printStackTrace();
 			final String msg = e.getMessage();
 			LOGGER.severe(msg);
 			throw makeException(e, msg);
-		} finally {
-			try {
-				transaction.close();
-			} catch (IOException e) {
-				e.printStackTrace();
-				throw makeException(e);
-			}
-		}
-	}
-
-	/**
-	 * Will use a query created when features were added to the store to
-	 * retrieve the same features but whit different ID because they were
-	 * committed.
-	 * 
-	 * @throws IOException
-	 */
-	protected void retrieveAfterCommit() throws IOException {
-
-		if (!addedID.isEmpty()) {
-
-			assert query != null : "query musn't be null."; //$NON-NLS-1$
-
-			FeatureCollection<SimpleFeatureType, SimpleFeature> collection = null;
-			FeatureIterator<SimpleFeature> iter = null;
-
-			try {
-				collection = targetStore.getFeatures(query);
-				iter = collection.features();
-				while (iter.hasNext()) {
-
-					SimpleFeature feature = iter.next();
-					committedID.add(feature.getID());
-				}
-			} finally {
-				if (iter != null) {
-					iter.close();
-				}
-			}
-		}
-	}
-
-	/**
-	 * Search for the ID contained on the committedID set that isn't contained
-	 * on the addedID set.
-	 * 
-	 * @return The ID of the feature added after being committed.
-	 */
-	private String getCommittedFID() {
-
-		for (String idAfter : committedID) {
-			// we assume this ID is the new one.
-			boolean newID = true;
-			for (String idBefore : addedID) {
-				if (idBefore.equals(idAfter)) {
-					newID = false;
-					break;
-				}
-			}
-			if (newID) {
-				return idAfter;
-			}
-		}
-		// instead of returning null
-		return addedID.iterator().next();
-	}
-
-	private Set<String> getCommittedFIDs() {
-
-		Set<String> newIDs = new HashSet<String>();
-
-		for (String idAfter : committedID) {
-			// we assume this ID is the new one.
-			boolean newID = true;
-			for (String idBefore : addedID) {
-				if (idBefore.equals(idAfter)) {
-					newID = false;
-					break;
-				}
-			}
-			if (newID) {
-				newIDs.add(idAfter);
-			}
 		}
-
-		return newIDs;
 	}
 
 	/**
-	 * insert the feature in the target store
+	 * Adds the feature in the current batch of the target store. The feature
+	 * will be committed when the batch is full or the task finishes.
 	 * 
 	 * @param newFeature
 	 * @throws SpatialOperationException
@@ -482,158 +446,12 @@ abstract class AbstractSpatialOperationTask<V> {
 	protected void insert(FeatureStore<SimpleFeatureType, SimpleFeature> targetStore, SimpleFeature newFeature)
 		throws SpatialOperationException {
 
-		Transaction transaction = targetStore.getTransaction();
-
 		try {
-			List<FeatureId> newIds = targetStore.addFeatures(DataUtilities
-						.collection(new SimpleFeature[] { newFeature }));
-
-			if (newIds.size() != 1) {
-				final String msg = Messages.AbstractTask_failed_inserting_feature;
-
-				throw createException(msg);
-			}
+			getWriter(targetStore).write(newFeature);
 
-			transaction.commit();
 		} catch (IOException e) {
-			try {
-				transaction.rollback();
-			} catch (IOException e1) {
-
-				throw makeException(e1);
-			}
-			throw makeException(e);
-		} finally {
-			try {
-				transaction.close();
-			} catch (IOException e) {
-				e.printStackTrace();
-				throw makeException(e);
-			}
-		}
-	}
-
-	protected void addListeners() {
-
-		// initialize the listener.
-		FeatureListener targetListener = new FeatureListener() {
-
-			public void changed(FeatureEvent featureEvent) {
-
-				Type eventType = featureEvent.getType();
-				switch (eventType) {
-
-				case ADDED:
-
-					featuresAdded(featureEvent.getBounds());
-					break;
-				case COMMIT:
-					// TODO this will work on uDig trunk, right now the commit
-					// event doesn't notify.
-					// TEST IT NOW!
-					featuresChanged(featureEvent.getBounds());
-					break;
-				case REMOVED:
-
-					break;
-				default:
-					break;
-				}
-			}
-		};
-
-		assert targetListener != null : "listener is null"; //$NON-NLS-1$
-
-		targetStore.addFeatureListener(targetListener);
-	}
-
-	private Set<String>		addedID		= new HashSet<String>();
-	private Set<String>		committedID	= new HashSet<String>();
-	private Query	query		= null;
-
-	protected void featuresAdded(Envelope bounds) {
-
-		FeatureCollection<SimpleFeatureType, SimpleFeature> collection = null;
-		FeatureIterator<SimpleFeature> iter = null;
-
-		try {
-
-			collection = getFeatureCollection(bounds);
-			iter = collection.features();
-			while (iter.hasNext()) {
-
-				SimpleFeature feature = iter.next();
-				addedID.add(feature.getID());
-			}
-		} finally {
-			if (iter != null) {
-				iter.close();
-			}
-		}
-	}
-
-	protected void featuresChanged(Envelope bounds) {
-
-		FeatureCollection<SimpleFeatureType, SimpleFeature> collection = null;
-		FeatureIterator<SimpleFeature> iter = null;
-
-		try {
-
-			collection = getFeatureCollection(bounds);
-			iter = collection.features();
-			while (iter.hasNext()) {
-
-				SimpleFeature feature = iter.next();
-				committedID.add(feature.getID());
-			}
-		} finally {
-			if (iter != null) {
-				iter.close();
-			}
-		}
-	}
-
-	private FeatureCollection<SimpleFeatureType, SimpleFeature> getFeatureCollection(Envelope bounds) {
-
-		SimpleFeatureType schema = targetStore.getSchema();
-		final List<String> queryAtts = obtainQueryAttributesForFeatureTable(schema);
-		final Query query = new Query(schema.getTypeName(), Filter.EXCLUDE, queryAtts
-					.toArray(new String[0]));
-
-		// TODO TEST IT.
-		BBOX bboxFilter;
-		String name = schema.getGeometryDescriptor().getName().getLocalPart();
-		FeatureCollection<SimpleFeatureType, SimpleFeature> collection = null;
-		try {
-			double minx = bounds.getMinX();
-			double miny = bounds.getMinY();
-			double maxx = bounds.getMaxX();
-			double maxy = bounds.getMaxY();
-			String srs = CRS.lookupIdentifier(schema.getCoordinateReferenceSystem(), false);
-			bboxFilter = FILTER_FACTORY.bbox(name, minx, miny, maxx, maxy, srs);
-
-			query.setFilter(bboxFilter);
-
-			collection = targetStore.getFeatures(query);
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-		// set the value of the query.
-		this.query = query;
-
-		return collection;
-	}
-
-	private List<String> obtainQueryAttributesForFeatureTable(final SimpleFeatureType schema) {
-		final List<String> queryAtts = new ArrayList<String>();
-
-		for (int i = 0; i < schema.getAttributeCount(); i++) {
-			AttributeDescriptor attr = schema.getDescriptor(i);
-			if (!(attr instanceof GeometryDescriptor)) {
-				queryAtts.add(attr.getName().getLocalPart());
-			}
+			throw makeException(e, Messages.AbstractTask_failed_inserting_feature);
 		}
-		return queryAtts;
 	}
 
 	/**
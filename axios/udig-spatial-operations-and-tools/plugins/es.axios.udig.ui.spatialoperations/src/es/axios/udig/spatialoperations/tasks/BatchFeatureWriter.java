@@ -0,0 +1,196 @@
+/* Spatial Operations & Editing Tools for uDig
+ * 
+ * Axios Engineering under a funding contract with: 
+ *      Diputación Foral de Gipuzkoa, Ordenación Territorial 
+ *
+ *      http://b5m.gipuzkoa.net
+ *      http://www.axios.es 
+ *
+ * (C) 2006, Diputación Foral de Gipuzkoa, Ordenación Territorial (DFG-OT). 
+ * DFG-OT agrees to licence under Lesser General Public License (LGPL).
+ * 
+ * You can redistribute it and/or modify it under the terms of the 
+ * GNU Lesser General Public License as published by the Free Software 
+ * Foundation; version 2.1 of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package es.axios.udig.spatialoperations.tasks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.geotools.data.FeatureStore;
+import org.geotools.data.Transaction;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.identity.FeatureId;
+
+import es.axios.udig.spatialoperations.internal.i18n.Messages;
+
+/**
+ * Buffered writer for the task's result features.
+ * <p>
+ * The features are accumulated and added in the store in batches. Each batch
+ * is added with only one <code>addFeatures</code> call and committed in one
+ * transaction. The identifiers of the new features are taken from the
+ * <code>addFeatures</code> result, they are read after the commit because the
+ * store updates them with the definitive identifiers.
+ * </p>
+ * 
+ * @author Mauricio Pazos (www.axios.es)
+ * @author Aritz Davila (www.axios.es)
+ * @since 1.3.1
+ */
+final class BatchFeatureWriter {
+
+	private static final Logger								LOGGER				= Logger.getLogger(BatchFeatureWriter.class
+																								.getName());
+
+	/** number of features committed in each transaction if it is not set */
+	public static final int									DEFAULT_BATCH_SIZE	= 500;
+
+	private final FeatureStore<SimpleFeatureType, SimpleFeature>	store;
+	private final int										batchSize;
+	private final List<SimpleFeature>						pending;
+	private int												writtenCount		= 0;
+
+	private BatchFeatureWriter(final FeatureStore<SimpleFeatureType, SimpleFeature> store, final int batchSize) {
+
+		this.store = store;
+		this.batchSize = batchSize;
+		this.pending = new ArrayList<SimpleFeature>((batchSize > 0) ? batchSize : DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * New instance of {@link BatchFeatureWriter}
+	 * 
+	 * @param store
+	 *            the store where the features will be written
+	 * @param batchSize
+	 *            number of features committed in each transaction. If it is
+	 *            less than or equal to 0 the features are only committed when
+	 *            {@link #flush()} is called.
+	 * @return {@link BatchFeatureWriter}
+	 */
+	public static BatchFeatureWriter newInstance(	final FeatureStore<SimpleFeatureType, SimpleFeature> store,
+													final int batchSize) {
+
+		assert store != null;
+
+		return new BatchFeatureWriter(store, batchSize);
+	}
+
+	/**
+	 * @return the store where the features are written
+	 */
+	public FeatureStore<SimpleFeatureType, SimpleFeature> getStore() {
+
+		return this.store;
+	}
+
+	/**
+	 * @return the number of features committed by this writer
+	 */
+	public int getWrittenCount() {
+
+		return this.writtenCount;
+	}
+
+	/**
+	 * Adds the feature to the current batch. The batch is committed when it
+	 * reaches the batch size.
+	 * 
+	 * @param feature
+	 * @throws IOException
+	 */
+	public void write(final SimpleFeature feature) throws IOException {
+
+		assert feature != null;
+
+		this.pending.add(feature);
+
+		if ((this.batchSize > 0) && (this.pending.size() >= this.batchSize)) {
+			flush();
+		}
+	}
+
+	/**
+	 * Commits the pending features together with the provided features. This
+	 * method is used when the task requires the identifiers of the new
+	 * features to continue its process.
+	 * 
+	 * @param features
+	 * @return the identifiers of the provided features, in the same order
+	 * @throws IOException
+	 */
+	public List<String> writeAndCommit(final Collection<SimpleFeature> features) throws IOException {
+
+		assert features != null;
+
+		this.pending.addAll(features);
+
+		List<String> fids = flush();
+
+		// the provided features are the last added to the batch
+		return fids.subList(fids.size() - features.size(), fids.size());
+	}
+
+	/**
+	 * Adds the pending features in the store and commits them in one
+	 * transaction.
+	 * 
+	 * @return the identifiers of the inserted features, in the same order they
+	 *         were written
+	 * @throws IOException
+	 */
+	public List<String> flush() throws IOException {
+
+		if (this.pending.isEmpty()) {
+			return Collections.emptyList();
+		}
+		Transaction transaction = this.store.getTransaction();
+		try {
+			// a list collection is used to maintain the order of the features
+			// in the returned identifiers
+			SimpleFeatureType schema = this.store.getSchema();
+			List<FeatureId> newIds = this.store.addFeatures(new ListFeatureCollection(schema, this.pending));
+
+			if (newIds.size() != this.pending.size()) {
+				throw new IOException(Messages.AbstractTask_failed_inserting_feature);
+			}
+			transaction.commit();
+
+			List<String> fids = new ArrayList<String>(newIds.size());
+			for (FeatureId id : newIds) {
+				fids.add(id.getID());
+			}
+			this.writtenCount += fids.size();
+
+			return fids;
+
+		} catch (IOException e) {
+			try {
+				transaction.rollback();
+			} catch (IOException e1) {
+				LOGGER.severe(e1.getMessage());
+			}
+			throw e;
+		} finally {
+			this.pending.clear();
+			try {
+				transaction.close();
+			} catch (IOException e) {
+				LOGGER.severe(e.getMessage());
+			}
+		}
+	}
+}
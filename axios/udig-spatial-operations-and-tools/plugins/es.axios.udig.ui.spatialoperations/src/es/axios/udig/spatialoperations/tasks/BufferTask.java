@@ -20,21 +20,16 @@
  */
 package es.axios.udig.spatialoperations.tasks;
 
-import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.measure.unit.Unit;
 
-import org.geotools.data.DataSourceException;
-import org.geotools.data.DataUtilities;
 import org.geotools.data.FeatureStore;
-import org.geotools.data.Transaction;
 import org.geotools.data.simple.SimpleFeatureStore;
 
 import org.geotools.feature.FeatureCollection;
-import org.geotools.feature.FeatureIterator;
 
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
@@ -42,11 +37,11 @@ import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.OperationNotFoundException;
 import org.opengis.referencing.operation.TransformException;
 
-import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 
 import es.axios.geotools.util.FeatureUtil;
 import es.axios.geotools.util.GeoToolsUtils;
+import es.axios.lib.geometry.merge.CascadedUnion;
 import es.axios.udig.spatialoperations.internal.i18n.Messages;
 
 /**
@@ -76,6 +71,8 @@ final class BufferTask extends AbstractSpatialOperationTask<SimpleFeatureStore>
 	// End cap style definition
 	private CapStyle											endCapStyle;
 
+	private UnionStrategy										unionStrategy	= UnionStrategy.Cascaded;
+
 	/**
 	 * To create an instance must use
 	 * {@link #createProcess(FeatureCollection, FeatureStore, CoordinateReferenceSystem, Double, Unit, boolean, Integer)}
@@ -136,6 +133,13 @@ final class BufferTask extends AbstractSpatialOperationTask<SimpleFeatureStore>
 		return task;
 	}
 
+	public void setUnionStrategy(final UnionStrategy strategy) {
+
+		assert strategy != null;
+
+		this.unionStrategy = strategy;
+	}
+
 	/**
 	 * Returns the {@link FeatureStore} with the buffer result
 	 */
@@ -147,52 +151,93 @@ final class BufferTask extends AbstractSpatialOperationTask<SimpleFeatureStore>
 
 	/**
 	 * Takes each source feature and makes the buffer putting the result on
-	 * target store
+	 * target store. The buffers are computed in parallel, the results are
+	 * merged or inserted in the source order.
 	 */
 	@Override
 	protected void perform() throws SpatialOperationException {
 
 		final int quadSegments = this.quadrantSegments.intValue();
-		final Double width = this.distance.doubleValue();
+		final double width = this.distance.doubleValue();
 
-		SimpleFeature sourceFeature = null;
-		Geometry mergedGeometry = null;
-		FeatureIterator<SimpleFeature> iterator = null;
+		final CascadedUnion cascadedUnion = new CascadedUnion();
+		final Geometry[] mergedGeometry = new Geometry[1];
 
 		try {
-			iterator = this.source.features();
-			while (iterator.hasNext()) {
+			setTotalCount(this.source.size());
 
-				sourceFeature = iterator.next();
+			ParallelFeatureProcessor<Geometry> processor = newFeatureProcessor();
+			processor.process(this.source, new ParallelFeatureProcessor.FeatureFunction<Geometry>() {
 
-				Geometry geometry = (Geometry) sourceFeature.getDefaultGeometry();
-				geometry = GeoToolsUtils.reproject(geometry, this.sourceCrs, this.crs);
-				geometry = makeBufferGeometry(geometry, width, quadSegments, this.endCapStyle);
-				geometry = GeoToolsUtils.reproject(geometry, this.crs, this.targetCrs);
+				public Geometry compute(SimpleFeature sourceFeature) throws Exception {
 
-				if (this.mergeGeometries) {
-					if (mergedGeometry == null) {
-						mergedGeometry = geometry;
+					return makeBuffer(sourceFeature, width, quadSegments);
+				}
+			}, new ParallelFeatureProcessor.ResultHandler<Geometry>() {
+
+				public void handle(SimpleFeature sourceFeature, Geometry geometry) throws Exception {
+
+					if (mergeGeometries) {
+						if (UnionStrategy.Cascaded.equals(unionStrategy)) {
+							cascadedUnion.add(geometry);
+						} else if (mergedGeometry[0] == null) {
+							mergedGeometry[0] = geometry;
+						} else {
+							mergedGeometry[0] = mergedGeometry[0].union(geometry);
+						}
+						// TODO if the target layer has simple geometry and the
+						// union result is Multi... this operation will haven't
+						// effects
+						// TODO Must be checked by the command
+						// TODO Is needed a review of all scenario for this
+						// option, now it produce only a feature for
+						// multipolygon.
+						// First ie: multipoligons with intersects == false , I
+						// think this option must produce merge features "only"
+						// if its intersection is true
 					} else {
-						mergedGeometry = mergedGeometry.union(geometry);
+						insertBufferedFeature(sourceFeature, geometry, targetStore);
 					}
-					// TODO if the target layer has simple geometry and the
-					// union result is Multi... this operation will haven't
-					// effects
-					// TODO Must be checked by the command
-					// TODO Is needed a review of all scenario for this option,
-					// now it produce only a feature for multipolygon.
-					// First ie: multipoligons with intersects == false , I
-					// think this option must produce merge features "only"
-					// if its intersection is true
-				} else {
-					insertBufferedFeature(sourceFeature, geometry, this.targetStore);
+					worked();
 				}
-			}
+			});
 			if (this.mergeGeometries) {
-				insertBufferedFeature(mergedGeometry, this.targetStore);
+				if (UnionStrategy.Cascaded.equals(this.unionStrategy)) {
+					mergedGeometry[0] = cascadedUnion.getResult();
+				}
+				insertBufferedFeature(mergedGeometry[0], this.targetStore);
 			}
 
+		} catch (SpatialOperationException e) {
+
+			throw e;
+		} catch (Exception e) {
+
+			throw makeException(e);
+		}
+	}
+
+	/**
+	 * Makes the buffer of the source feature's geometry and projects it on
+	 * the target CRS. This method is called from the worker threads.
+	 * 
+	 * @param sourceFeature
+	 * @param width
+	 * @param quadSegments
+	 * @return the buffer on target CRS
+	 * @throws SpatialOperationException
+	 */
+	private Geometry makeBuffer(final SimpleFeature sourceFeature, final double width, final int quadSegments)
+		throws SpatialOperationException {
+
+		try {
+			Geometry geometry = (Geometry) sourceFeature.getDefaultGeometry();
+			geometry = GeoToolsUtils.reproject(geometry, this.sourceCrs, this.crs);
+			geometry = makeBufferGeometry(geometry, width, quadSegments, this.endCapStyle);
+			geometry = GeoToolsUtils.reproject(geometry, this.crs, this.targetCrs);
+
+			return geometry;
+
 		} catch (OperationNotFoundException e) {
 			final String message = MessageFormat.format(Messages.BufferProcess_failed_transforming, sourceFeature
 						.getID(), e.getMessage());
@@ -201,15 +246,6 @@ final class BufferTask extends AbstractSpatialOperationTask<SimpleFeatureStore>
 			String message = MessageFormat.format(Messages.BufferProcess_failed_transforming_feature_to_crs,
 						sourceFeature.getID(), e.getMessage());
 			throw makeException(e, message);
-		} catch (Exception e) {
-
-			throw makeException(e);
-		} finally {
-
-			if (iterator != null) {
-				iterator.close();
-			}
-
 		}
 	}
 
@@ -252,41 +288,20 @@ final class BufferTask extends AbstractSpatialOperationTask<SimpleFeatureStore>
 										final FeatureStore<SimpleFeatureType, SimpleFeature> targetStore) 
 		throws SpatialOperationException {
 
-		Transaction transaction = targetStore.getTransaction();
+		SimpleFeature newFeature;
 		try {
 			// copy the feature's property values
 			final SimpleFeatureType targetType = targetStore.getSchema();
-			SimpleFeature newFeature = FeatureUtil.createFeatureUsing(sourceFeature, targetType, bufferedGeometry);
-			targetStore.addFeatures(DataUtilities.collection(new SimpleFeature[] { newFeature }));
-
-			transaction.commit();
-
-		} catch (DataSourceException de) {
-
-			String msg = ""; //$NON-NLS-1$
-			msg += "source ID: " + sourceFeature.getID() + "\n"; //$NON-NLS-1$ //$NON-NLS-2$
-			msg += "Source geom: " + sourceFeature + "\n"; //$NON-NLS-1$ //$NON-NLS-2$
-			throw makeException(de, msg);
+			newFeature = FeatureUtil.createFeatureUsing(sourceFeature, targetType, bufferedGeometry);
 
 		} catch (Exception e) {
-			try {
-				targetStore.getTransaction().rollback();
-			} catch (IOException e1) {
-				e1.printStackTrace();
-			}
 			e.printStackTrace();
 
 			final String msg = Messages.BufferProcess_adding_feature_to_store + ":" + e.getMessage(); //$NON-NLS-1$
 			LOGGER.log(Level.SEVERE, msg);
-
-		} finally {
-			try {
-				transaction.close();
-			} catch (IOException e) {
-				e.printStackTrace();
-				LOGGER.log(Level.SEVERE, e.getLocalizedMessage());
-			}
+			return;
 		}
+		insert(targetStore, newFeature);
 	}
 
 	/**
@@ -300,45 +315,17 @@ final class BufferTask extends AbstractSpatialOperationTask<SimpleFeatureStore>
 										final FeatureStore<SimpleFeatureType, SimpleFeature> targetStore)
 		throws SpatialOperationException {
 
-		Transaction transaction = targetStore.getTransaction();
+		SimpleFeature newFeature;
 		try {
 			final SimpleFeatureType targetType = targetStore.getSchema();
-			SimpleFeature newFeature = FeatureUtil.createFeatureWithGeometry(targetType, bufferedGeometry);
-			targetStore.addFeatures(DataUtilities.collection(new SimpleFeature[] { newFeature }));
+			newFeature = FeatureUtil.createFeatureWithGeometry(targetType, bufferedGeometry);
 
-			transaction.commit();
 		} catch (Exception e) {
-			try {
-				transaction.rollback();
-			} catch (IOException e1) {
-				e1.printStackTrace();
-			}
 			e.printStackTrace();
 
 			final String msg = Messages.BufferProcess_adding_feature_to_store + ":" + e.getMessage(); //$NON-NLS-1$
 			throw makeException(e, msg);
-		} finally {
-			try {
-				transaction.close();
-			} catch (IOException e) {
-				e.printStackTrace();
-				throw makeException(e);
-			}
 		}
-	}
-
-	@Override
-	protected void featuresAdded(Envelope bounds) {
-
-	}
-
-	@Override
-	protected void featuresChanged(Envelope bounds) {
-
-	}
-
-	@Override
-	protected void addListeners() {
-
+		insert(targetStore, newFeature);
 	}
 }
@@ -139,7 +139,6 @@ final class ClipTask extends AbstractCommonTask implements IClipTask {
 	protected void perform() throws SpatialOperationException {
 
 		FeatureIterator<SimpleFeature> iterSource = null;
-		FeatureIterator<SimpleFeature> iterUsing = null;
 		try {
 			// adds each feature to hole in the target layer
 			iterSource = this.sourceFeatures.features();
@@ -169,15 +168,10 @@ final class ClipTask extends AbstractCommonTask implements IClipTask {
 
 					String fidToHole = this.featuresInProcessing.get(i);
 
-					iterUsing = this.usingFeatures.features();
-					boolean numGeomToHoleModified = false;
-					while (iterUsing.hasNext() && !numGeomToHoleModified) {
+					// only the using features which envelope intersects the
+					// feature are evaluated
+					boolean numGeomToHoleModified = cutSourceWithCandidates(fidToHole);
 
-						SimpleFeature usingFeature = iterUsing.next();
-
-						numGeomToHoleModified = cutSourceWithUsingFeature(fidToHole, sourceCrs, usingFeature, usingCrs, mapCrs);
-					}
-					iterUsing.close();
 					i = (numGeomToHoleModified) ? 0 : i + 1;
 				}
 			}
@@ -189,9 +183,6 @@ final class ClipTask extends AbstractCommonTask implements IClipTask {
 			
 		} finally {
 
-			if (iterUsing != null) {
-				iterUsing.close();
-			}
 			if (iterSource != null) {
 				iterSource.close();
 			}
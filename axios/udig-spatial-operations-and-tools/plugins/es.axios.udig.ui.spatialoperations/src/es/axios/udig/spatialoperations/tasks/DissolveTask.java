@@ -21,14 +21,19 @@
 package es.axios.udig.spatialoperations.tasks;
 
 import java.io.IOException;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.geotools.data.FeatureSource;
 import org.geotools.data.FeatureStore;
 import org.geotools.data.Query;
 import org.geotools.data.QueryCapabilities;
-import org.geotools.data.Transaction;
 import org.geotools.data.simple.SimpleFeatureSource;
 import org.geotools.data.simple.SimpleFeatureStore;
 import org.geotools.factory.CommonFactoryFinder;
@@ -37,10 +42,8 @@ import org.geotools.feature.FeatureIterator;
 import org.opengis.feature.Property;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
-import org.opengis.feature.type.GeometryDescriptor;
 import org.opengis.filter.Filter;
 import org.opengis.filter.FilterFactory;
-import org.opengis.filter.Id;
 import org.opengis.filter.sort.SortBy;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
@@ -48,6 +51,7 @@ import com.vividsolutions.jts.geom.Geometry;
 
 import es.axios.geotools.util.FeatureUtil;
 import es.axios.geotools.util.GeoToolsUtils;
+import es.axios.lib.geometry.merge.CascadedUnion;
 import es.axios.lib.geometry.util.GeometryUtil;
 
 /**
@@ -72,6 +76,8 @@ final class DissolveTask extends AbstractSpatialOperationTask<SimpleFeatureStore
 	private final CoordinateReferenceSystem						targetCrs;
 	private final Class<? extends Geometry>						targetGeometryClass;
 	private FeatureCollection<SimpleFeatureType, SimpleFeature>	sortedSource;
+	private UnionStrategy										unionStrategy	= UnionStrategy.Cascaded;
+	private int													unionThreads	= 1;
 
 	/**
 	 * new instance of DissolveProcess
@@ -187,6 +193,18 @@ final class DissolveTask extends AbstractSpatialOperationTask<SimpleFeatureStore
 		}
 	}
 
+	public void setUnionStrategy(final UnionStrategy strategy) {
+
+		assert strategy != null;
+
+		this.unionStrategy = strategy;
+	}
+
+	public void setUnionThreads(final int threads) {
+
+		this.unionThreads = threads;
+	}
+
 	/**
 	 * Does the union of that features with equals values in their dissolve
 	 * properties
@@ -194,78 +212,112 @@ final class DissolveTask extends AbstractSpatialOperationTask<SimpleFeatureStore
 	@Override
 	protected void perform() throws SpatialOperationException {
 
-		if (this.sortedSource.isEmpty()) {
-			return;
-		}
-
 		FeatureIterator<SimpleFeature> iter = null;
+		ExecutorService executor = null;
+		LinkedList<Future<SimpleFeature>> dissolvedGroups = new LinkedList<Future<SimpleFeature>>();
 		try {
-			SimpleFeature currentFeature, dissolveFeature;
-
-			// insert the feature to dissolve
+			if (this.sortedSource.isEmpty()) {
+				return;
+			}
+			if (this.unionThreads > 1) {
+				executor = Executors.newFixedThreadPool(this.unionThreads);
+			}
+			// the group's geometries are accumulated until the last feature
+			// of group is found, then the group is dissolved and added to the
+			// current batch of the target store.
 			iter = this.sortedSource.features();
-			currentFeature = iter.next(); 
-			dissolveFeature = insertIntoStore(this.targetStore, currentFeature);
-			do {
-				// iterates while the features set if it have equal property value
-				StringBuffer groupPropValue = getGroupValues(currentFeature, this.dissolveProperties);
+			SimpleFeature groupFeature = iter.next();
+			GroupKey groupPropValue = GroupKey.newInstance(groupFeature, this.dissolveProperties);
+			GroupUnion groupUnion = new GroupUnion(GeoToolsUtils.reproject((Geometry) groupFeature
+						.getDefaultGeometry(), this.sourceCrs, this.mapCrs));
 
-				boolean endOfGroup = false;
-				while ( iter.hasNext()  && !endOfGroup) {
+			while (iter.hasNext()) {
 
-					currentFeature = iter.next();
-					
-					StringBuffer currentPropValue = getGroupValues(currentFeature, this.dissolveProperties);
-
-					// if the current feature has not got the attribute value of this merge group then finish this merge feature and save it.
-					if (currentPropValue.toString().equals(groupPropValue.toString())) {
-						// dissolve the current feature within the same attributes
-						dissolveFeature = makeGeometryUnion(
-											dissolveFeature, currentFeature, 
-											this.sourceCrs, this.mapCrs, this.targetCrs);
-					} else {
-						endOfGroup = true;
-					}
-				} 
-				
-				modifyGeometry(this.targetStore, dissolveFeature);
+				SimpleFeature currentFeature = iter.next();
 
-				if( endOfGroup ){
+				GroupKey currentPropValue = GroupKey.newInstance(currentFeature, this.dissolveProperties);
 
-					// initialize the next iteration inserting the feature not processed because it is not part of processed group 
-					dissolveFeature = insertIntoStore(this.targetStore, currentFeature);
-				} 
-				
-			}while (iter.hasNext() );
-			
+				Geometry currentGeometry = GeoToolsUtils.reproject((Geometry) currentFeature.getDefaultGeometry(),
+							this.sourceCrs, this.mapCrs);
+
+				if (currentPropValue.equals(groupPropValue)) {
+					// dissolve the current feature within the same attributes
+					groupUnion.add(currentGeometry);
+				} else {
+					// the current feature is the first of next group
+					dissolveGroup(executor, dissolvedGroups, groupUnion, groupFeature);
+
+					groupFeature = currentFeature;
+					groupPropValue = currentPropValue;
+					groupUnion = new GroupUnion(currentGeometry);
+				}
+			}
+			dissolveGroup(executor, dissolvedGroups, groupUnion, groupFeature);
+
+			// inserts the groups which are being dissolved by the executor
+			while (!dissolvedGroups.isEmpty()) {
+				insert(this.targetStore, dissolvedGroups.removeFirst().get());
+			}
+
+		} catch (SpatialOperationException e) {
+			throw e;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof SpatialOperationException) {
+				throw (SpatialOperationException) e.getCause();
+			}
+			throw new SpatialOperationException(e.getCause());
 		} catch (Exception e) {
 			throw new SpatialOperationException(e);
 		} finally {
 			if (iter != null) {
 				iter.close();
 			}
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+			if (this.sortedSource instanceof OrderedFeatureCollection) {
+				// deletes the temporal files used to sort the source
+				((OrderedFeatureCollection) this.sortedSource).dispose();
+			}
 		}
 	}
 
 	/**
-	 * Makes an string using the values of dissolve properties
-	 * @param dissolveFeature
-	 * @param dissolveProperties
-	 * @return values of dissolve properties in an StringBuffer
+	 * Dissolves the group and inserts the new feature in the target store. If
+	 * there is an executor the group is dissolved in other thread and the
+	 * feature is inserted when the previous groups were inserted.
+	 * 
+	 * @param executor
+	 *            the executor or null to dissolve in the current thread
+	 * @param dissolvedGroups
+	 *            groups submitted to the executor in the order they were read
+	 * @param groupUnion
+	 * @param groupFeature
+	 * @throws Exception
 	 */
-	private StringBuffer getGroupValues(	final SimpleFeature dissolveFeature, final List<String> dissolveProperties) {
+	private void dissolveGroup(	final ExecutorService executor,
+								final LinkedList<Future<SimpleFeature>> dissolvedGroups,
+								final GroupUnion groupUnion,
+								final SimpleFeature groupFeature) throws Exception {
 
-		StringBuffer groupValue = new StringBuffer(50);
-		for (String property : dissolveProperties) {
-			
-			Object value = dissolveFeature.getAttribute(property);
-			if (value != null) {
-				groupValue = groupValue.append(value.toString());
-			} else {
-				groupValue = groupValue.append(""); //$NON-NLS-1$
+		Callable<SimpleFeature> dissolve = new Callable<SimpleFeature>() {
+
+			public SimpleFeature call() throws Exception {
+
+				return createGroupFeature(groupUnion.getResult(), groupFeature);
 			}
+		};
+		if (executor == null) {
+			insert(this.targetStore, dissolve.call());
+			return;
+		}
+		dissolvedGroups.add(executor.submit(dissolve));
+
+		// waits for the first groups to maintain bounded the number of groups
+		// in memory
+		while (dissolvedGroups.size() > 2 * this.unionThreads) {
+			insert(this.targetStore, dissolvedGroups.removeFirst().get());
 		}
-		return groupValue;
 	}
 
 	/**
@@ -332,36 +384,21 @@ final class DissolveTask extends AbstractSpatialOperationTask<SimpleFeatureStore
 	}
 
 	/**
-	 * Does the geometry union of the last dissolve feature with the current
-	 * feature.
+	 * Does the geometry union of the dissolve geometry with the current
+	 * feature's geometry. Both geometries must be in the same CRS.
 	 * 
-	 * @param dissolveFeature
-	 * @param currentFeature
-	 * @param sourceCrs
-	 * @param crs
-	 * @param targetCrs
-	 * @return new dissolve feature projected on the target's CRS
-	 * @throws SpatialDataProcessException
+	 * @param dissolveGeometry
+	 * @param currentGeometry
+	 * @return the union geometry
+	 * @throws SpatialOperationException
 	 */
-	private SimpleFeature makeGeometryUnion(final SimpleFeature dissolveFeature,
-											final SimpleFeature currentFeature,
-											final CoordinateReferenceSystem sourceCrs,
-											final CoordinateReferenceSystem crs,
-											final CoordinateReferenceSystem targetCrs) throws SpatialOperationException {
+	private Geometry makeGeometryUnion(final Geometry dissolveGeometry, final Geometry currentGeometry)
+		throws SpatialOperationException {
 
 		try {
-			Geometry dissolveOnCrs = GeoToolsUtils.reproject((Geometry) dissolveFeature.getDefaultGeometry(),
-						sourceCrs, crs);
-			Geometry currentOnCrs = GeoToolsUtils.reproject((Geometry) currentFeature.getDefaultGeometry(), sourceCrs,
-						crs);
-
-			Geometry union = dissolveOnCrs.union(currentOnCrs);
+			Geometry union = dissolveGeometry.union(currentGeometry);
 
-			Geometry unionOnTargetCrs = GeoToolsUtils.reproject(union, crs, targetCrs);
-
-			dissolveFeature.setDefaultGeometry(unionOnTargetCrs);
-
-			return dissolveFeature;
+			return union;
 
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -370,29 +407,32 @@ final class DissolveTask extends AbstractSpatialOperationTask<SimpleFeatureStore
 	}
 
 	/**
-	 * Creates the a new feature with the geometry and  the dissolve properties 
-	 * @param store
-	 * @param feature
-	 * @return the inserted feature
+	 * Creates the new feature with the group's geometry and the dissolve
+	 * properties.
 	 * 
+	 * @param groupGeometry
+	 *            the dissolved geometry in map's CRS
+	 * @param groupFeature
+	 *            the feature that contains the dissolve properties' values
+	 * @return the new feature
 	 * @throws SpatialOperationException
 	 */
-	private SimpleFeature insertIntoStore(FeatureStore<SimpleFeatureType, SimpleFeature> store, SimpleFeature feature)
-		throws SpatialOperationException{
+	private SimpleFeature createGroupFeature(final Geometry groupGeometry, final SimpleFeature groupFeature)
+		throws SpatialOperationException {
 
-		// creates the new features 
+		// creates the new features
 		SimpleFeature newFeature = createDissoveFeature(
-				(Geometry) feature.getDefaultGeometry(),
-				feature, 
-				this.targetStore.getSchema(), 
-				this.sourceCrs,
-				this.targetCrs, 
+				groupGeometry,
+				groupFeature,
+				this.targetStore.getSchema(),
+				this.mapCrs,
+				this.targetCrs,
 				this.dissolveProperties);
 
-		// inserts the second feature in target layer
-		SimpleFeature insertedFeature = insertFeature(store, newFeature);
+		Geometry adaptedGeom = GeometryUtil.adapt((Geometry) newFeature.getDefaultGeometry(), this.targetGeometryClass);
+		newFeature.setDefaultGeometry(adaptedGeom);
 
-		return insertedFeature;
+		return newFeature;
 	}
 
 	/**
@@ -469,39 +509,37 @@ final class DissolveTask extends AbstractSpatialOperationTask<SimpleFeatureStore
 		}
 	}
 
-	private void modifyGeometry(final FeatureStore<SimpleFeatureType, SimpleFeature> store,
-								final SimpleFeature dissolveFeature) throws SpatialOperationException {
-
-		// inserts the second feature in target layer
-		Transaction transaction = store.getTransaction();
+	/**
+	 * Accumulates the geometries of a group using the union strategy set in
+	 * the task.
+	 */
+	private final class GroupUnion {
 
-		try {
-			Class<? extends Geometry> geomClass = this.targetGeometryClass;
+		private Geometry		pairwiseUnion	= null;
+		private CascadedUnion	cascadedUnion	= null;
 
-			Geometry adaptedGeom = GeometryUtil.adapt((Geometry) dissolveFeature.getDefaultGeometry(), geomClass);
+		GroupUnion(final Geometry firstGeometry) {
 
-			// modifies the feature's geometry in the store
-			GeometryDescriptor geomAttr = store.getSchema().getGeometryDescriptor();
+			if (UnionStrategy.Cascaded.equals(unionStrategy)) {
+				this.cascadedUnion = new CascadedUnion();
+				this.cascadedUnion.add(firstGeometry);
+			} else {
+				this.pairwiseUnion = firstGeometry;
+			}
+		}
 
-			String fid = dissolveFeature.getID();
-			Id filter = getFilterId(fid);
-			store.modifyFeatures(geomAttr.getName(), adaptedGeom, filter);
+		void add(final Geometry geometry) throws SpatialOperationException {
 
-			transaction.commit();
-		} catch (IOException e) {
-			try {
-				store.getTransaction().rollback();
-			} catch (IOException e1) {
-				throw createException(e1);
-			}
-			throw createException(e);
-		} finally {
-			try {
-				transaction.close();
-			} catch (IOException e) {
-				e.printStackTrace();
-				throw createException(e);
+			if (this.cascadedUnion != null) {
+				this.cascadedUnion.add(geometry);
+			} else {
+				this.pairwiseUnion = makeGeometryUnion(this.pairwiseUnion, geometry);
 			}
 		}
+
+		Geometry getResult() {
+
+			return (this.cascadedUnion != null) ? this.cascadedUnion.getResult() : this.pairwiseUnion;
+		}
 	}
 }
@@ -49,6 +49,7 @@ import com.vividsolutions.jts.geom.Polygon;
 import es.axios.geotools.util.FeatureUtil;
 import es.axios.geotools.util.GeoToolsUtils;
 import es.axios.lib.geometry.util.GeometryUtil;
+import es.axios.lib.geometry.util.PreparedIntersector;
 
 /**
  * <pre>
@@ -77,6 +78,7 @@ final class FillTask extends AbstractSpatialOperationTask<FeatureStore<SimpleFea
 	private CoordinateReferenceSystem							mapCrs					= null;
 	private CoordinateReferenceSystem							targetCrs				= null;
 	private boolean isCopySourceFeatures;
+	private boolean												preparedGeometryEnabled	= true;
 
 	/**
 	 * To create an instance must use:
@@ -128,6 +130,11 @@ final class FillTask extends AbstractSpatialOperationTask<FeatureStore<SimpleFea
 		return task;
 	}
 
+	public void setPreparedGeometryEnabled(final boolean enabled) {
+
+		this.preparedGeometryEnabled = enabled;
+	}
+
 	@Override
 	protected FeatureStore<SimpleFeatureType, SimpleFeature> getResult() {
 
@@ -305,6 +312,12 @@ final class FillTask extends AbstractSpatialOperationTask<FeatureStore<SimpleFea
 
 			Set<Geometry> intersectsGeometries = new HashSet<Geometry>();
 
+			// the fill geometry is prepared once to test all the polygons
+			PreparedIntersector intersector = null;
+			if (this.preparedGeometryEnabled) {
+				intersector = new PreparedIntersector(fillGeomOnMap);
+			}
+
 			while (iterFirst.hasNext()) {
 
 				SimpleFeature polygonFeature = iterFirst.next();
@@ -317,7 +330,9 @@ final class FillTask extends AbstractSpatialOperationTask<FeatureStore<SimpleFea
 
 					Geometry referenceGeom = polyGeomOnMap.getGeometryN(i);
 					// if intersects, add to the Set.
-					if (fillGeomOnMap.intersects(referenceGeom)) {
+					boolean intersects = (intersector != null) ? intersector.intersects(referenceGeom) : fillGeomOnMap
+								.intersects(referenceGeom);
+					if (intersects) {
 						intersectsGeometries.add(referenceGeom);
 					}
 				}
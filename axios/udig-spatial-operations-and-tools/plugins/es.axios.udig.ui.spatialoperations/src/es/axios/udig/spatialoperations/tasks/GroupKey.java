@@ -0,0 +1,140 @@
+/* Spatial Operations & Editing Tools for uDig
+ * 
+ * Axios Engineering under a funding contract with: 
+ *      Diputación Foral de Gipuzkoa, Ordenación Territorial 
+ *
+ *      http://b5m.gipuzkoa.net
+ *      http://www.axios.es 
+ *
+ * (C) 2006, Diputación Foral de Gipuzkoa, Ordenación Territorial (DFG-OT). 
+ * DFG-OT agrees to licence under Lesser General Public License (LGPL).
+ * 
+ * You can redistribute it and/or modify it under the terms of the 
+ * GNU Lesser General Public License as published by the Free Software 
+ * Foundation; version 2.1 of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package es.axios.udig.spatialoperations.tasks;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+import org.opengis.feature.simple.SimpleFeature;
+
+/**
+ * Key used to group the features by the values of a list of properties.
+ * <p>
+ * The values maintain their type, so two keys are equal only if each value is
+ * equal (i.e. the values "1","23" and "12","3" are different keys). The keys
+ * are sorted comparing value by value, the null values are first.
+ * </p>
+ * 
+ * @author Mauricio Pazos (www.axios.es)
+ * @author Aritz Davila (www.axios.es)
+ * @since 1.3.1
+ */
+final class GroupKey implements Comparable<GroupKey>, Serializable {
+
+	private static final long	serialVersionUID	= -2236406470127000392L;
+
+	private final Object[]		values;
+
+	private GroupKey(final Object[] values) {
+
+		this.values = values;
+	}
+
+	/**
+	 * Creates the key with the values of the properties.
+	 * 
+	 * @param feature
+	 * @param properties
+	 *            property names
+	 * @return {@link GroupKey}
+	 */
+	public static GroupKey newInstance(final SimpleFeature feature, final List<String> properties) {
+
+		assert feature != null;
+		assert properties != null;
+
+		Object[] values = new Object[properties.size()];
+		int i = 0;
+		for (String property : properties) {
+			values[i++] = feature.getAttribute(property);
+		}
+		return new GroupKey(values);
+	}
+
+	/**
+	 * @param o
+	 *            a group key with the same number of values
+	 */
+	public int compareTo(final GroupKey o) {
+
+		assert o != null;
+		assert this.values.length == o.values.length;
+
+		for (int i = 0; i < this.values.length; i++) {
+
+			int result = compareValues(this.values[i], o.values[i]);
+			if (result != 0) {
+				return result;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Compares the values using their natural order if they have the same
+	 * class, numbers by their double value, else by their string
+	 * representation.
+	 */
+	@SuppressWarnings("unchecked")
+	private static int compareValues(final Object value, final Object other) {
+
+		if (value == null) {
+			return (other == null) ? 0 : -1;
+		}
+		if (other == null) {
+			return 1;
+		}
+		if ((value instanceof Comparable) && value.getClass().equals(other.getClass())) {
+
+			return ((Comparable<Object>) value).compareTo(other);
+		}
+		if ((value instanceof Number) && (other instanceof Number)) {
+
+			return Double.compare(((Number) value).doubleValue(), ((Number) other).doubleValue());
+		}
+		return value.toString().compareTo(other.toString());
+	}
+
+	@Override
+	public int hashCode() {
+
+		return Arrays.hashCode(this.values);
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof GroupKey)) {
+			return false;
+		}
+		return Arrays.equals(this.values, ((GroupKey) obj).values);
+	}
+
+	@Override
+	public String toString() {
+
+		return Arrays.toString(this.values);
+	}
+}
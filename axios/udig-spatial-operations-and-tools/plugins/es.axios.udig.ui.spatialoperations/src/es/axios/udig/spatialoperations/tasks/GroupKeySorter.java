@@ -0,0 +1,416 @@
+/* Spatial Operations & Editing Tools for uDig
+ * 
+ * Axios Engineering under a funding contract with: 
+ *      Diputación Foral de Gipuzkoa, Ordenación Territorial 
+ *
+ *      http://b5m.gipuzkoa.net
+ *      http://www.axios.es 
+ *
+ * (C) 2006, Diputación Foral de Gipuzkoa, Ordenación Territorial (DFG-OT). 
+ * DFG-OT agrees to licence under Lesser General Public License (LGPL).
+ * 
+ * You can redistribute it and/or modify it under the terms of the 
+ * GNU Lesser General Public License as published by the Free Software 
+ * Foundation; version 2.1 of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package es.axios.udig.spatialoperations.tasks;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.logging.Logger;
+
+/**
+ * Sorts the association (group key, feature id) of a feature collection.
+ * <p>
+ * The associations are maintained in an array which is sorted in memory. If
+ * the number of associations exceeds the memory threshold the sorted arrays
+ * are written in temporal files (runs), then they are merged in only one
+ * sorted file (external merge sort).
+ * </p>
+ * <p>
+ * The sort is stable, the features with the same key maintain the order they
+ * were added.
+ * </p>
+ * 
+ * @author Mauricio Pazos (www.axios.es)
+ * @author Aritz Davila (www.axios.es)
+ * @since 1.3.1
+ */
+final class GroupKeySorter implements Iterable<GroupKeySorter.Association> {
+
+	private static final Logger		LOGGER						= Logger.getLogger(GroupKeySorter.class.getName());
+
+	/** number of associations maintained in memory if it is not set */
+	public static final int			DEFAULT_MEMORY_THRESHOLD	= 200000;
+
+	/** the object streams are reset with this frequency to release its references */
+	private static final int		RESET_FREQUENCY				= 1000;
+
+	private static final String		TEMP_FILE_PREFIX			= "dissolve"; //$NON-NLS-1$
+
+	private final int				memoryThreshold;
+	private Association[]			buffer;
+	private int						bufferSize					= 0;
+	private int						size						= 0;
+	private final List<File>		runs						= new ArrayList<File>();
+	private File					sortedFile					= null;
+	private boolean					sorted						= false;
+
+	/**
+	 * Implements the association (group key, featureId) used to sort the
+	 * feature collection.
+	 */
+	static final class Association implements Comparable<Association>, Serializable {
+
+		private static final long	serialVersionUID	= 3475016476961432946L;
+
+		private final GroupKey		key;
+		private final String		featureId;
+
+		Association(final GroupKey key, final String featureId) {
+
+			assert key != null;
+			assert featureId != null;
+
+			this.key = key;
+			this.featureId = featureId;
+		}
+
+		public GroupKey getKey() {
+			return this.key;
+		}
+
+		public String getFeatureId() {
+			return this.featureId;
+		}
+
+		public int compareTo(final Association o) {
+
+			return this.key.compareTo(o.key);
+		}
+
+		@Override
+		public String toString() {
+			return "[" + this.key + ", " + this.featureId + "]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+	}
+
+	/**
+	 * New instance
+	 * 
+	 * @param memoryThreshold
+	 *            max number of associations maintained in memory
+	 */
+	public GroupKeySorter(final int memoryThreshold) {
+
+		assert memoryThreshold > 0;
+
+		this.memoryThreshold = memoryThreshold;
+		this.buffer = new Association[Math.min(memoryThreshold, 1024)];
+	}
+
+	/**
+	 * Adds the association to sort
+	 * 
+	 * @param key
+	 * @param featureId
+	 * @throws IOException
+	 */
+	public void add(final GroupKey key, final String featureId) throws IOException {
+
+		assert !this.sorted : "the associations were sorted"; //$NON-NLS-1$
+
+		if (this.bufferSize == this.buffer.length) {
+
+			if (this.bufferSize >= this.memoryThreshold) {
+				spill();
+			} else {
+				Association[] newBuffer = new Association[Math.min(this.buffer.length * 2, this.memoryThreshold)];
+				System.arraycopy(this.buffer, 0, newBuffer, 0, this.bufferSize);
+				this.buffer = newBuffer;
+			}
+		}
+		this.buffer[this.bufferSize++] = new Association(key, featureId);
+		this.size++;
+	}
+
+	/**
+	 * @return the number of associations
+	 */
+	public int size() {
+
+		return this.size;
+	}
+
+	/**
+	 * Sorts the associations. If some association was written in disk, merges
+	 * the runs in a sorted file.
+	 * 
+	 * @throws IOException
+	 */
+	public void sort() throws IOException {
+
+		assert !this.sorted;
+
+		if (this.runs.isEmpty()) {
+			// Arrays.sort is a stable merge sort for objects
+			Arrays.sort(this.buffer, 0, this.bufferSize);
+		} else {
+			spill();
+			this.buffer = null;
+			merge();
+		}
+		this.sorted = true;
+	}
+
+	/**
+	 * Deletes the temporal files
+	 */
+	public void dispose() {
+
+		for (File run : this.runs) {
+			deleteFile(run);
+		}
+		this.runs.clear();
+		if (this.sortedFile != null) {
+			deleteFile(this.sortedFile);
+			this.sortedFile = null;
+		}
+	}
+
+	/**
+	 * Closes the sorted file opened by the iterator, if the iteration was not
+	 * completed.
+	 * 
+	 * @param iter
+	 *            iterator returned by {@link #iterator()}
+	 */
+	public void close(final Iterator<Association> iter) {
+
+		if (iter instanceof RunReader) {
+			((RunReader) iter).close();
+		}
+	}
+
+	/**
+	 * @return iterator over the sorted associations
+	 */
+	public Iterator<Association> iterator() {
+
+		assert this.sorted : "sort() must be called before iterate"; //$NON-NLS-1$
+
+		if (this.sortedFile == null) {
+
+			return Arrays.asList(this.buffer).subList(0, this.bufferSize).iterator();
+		}
+		try {
+			return new RunReader(this.sortedFile, 0);
+
+		} catch (IOException e) {
+			final String msg = e.getMessage();
+			LOGGER.severe(msg);
+			throw new IllegalStateException(msg, e);
+		}
+	}
+
+	/**
+	 * Sorts the associations in memory and writes them in a new run
+	 * 
+	 * @throws IOException
+	 */
+	private void spill() throws IOException {
+
+		if (this.bufferSize == 0) {
+			return;
+		}
+		Arrays.sort(this.buffer, 0, this.bufferSize);
+
+		File run = createTempFile();
+		this.runs.add(run);
+
+		ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(run)));
+		try {
+			for (int i = 0; i < this.bufferSize; i++) {
+
+				writeAssociation(out, this.buffer[i], i);
+				this.buffer[i] = null;
+			}
+		} finally {
+			out.close();
+		}
+		this.bufferSize = 0;
+	}
+
+	/**
+	 * Merges the runs in the sorted file. If two associations have the same
+	 * key the first is the association of the first run.
+	 * 
+	 * @throws IOException
+	 */
+	private void merge() throws IOException {
+
+		PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(this.runs.size());
+		for (int i = 0; i < this.runs.size(); i++) {
+
+			RunReader reader = new RunReader(this.runs.get(i), i);
+			if (reader.hasNext()) {
+				queue.add(reader);
+			} else {
+				reader.close();
+			}
+		}
+		this.sortedFile = createTempFile();
+		ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(
+					this.sortedFile)));
+		try {
+			int count = 0;
+			while (!queue.isEmpty()) {
+
+				RunReader reader = queue.poll();
+				writeAssociation(out, reader.next(), count++);
+
+				if (reader.hasNext()) {
+					queue.add(reader);
+				} else {
+					reader.close();
+				}
+			}
+		} finally {
+			out.close();
+			for (RunReader reader : queue) {
+				reader.close();
+			}
+			for (File run : this.runs) {
+				deleteFile(run);
+			}
+			this.runs.clear();
+		}
+	}
+
+	private static void writeAssociation(final ObjectOutputStream out, final Association association, final int count)
+		throws IOException {
+
+		out.writeObject(association);
+		if ((count + 1) % RESET_FREQUENCY == 0) {
+			out.reset();
+		}
+	}
+
+	private static File createTempFile() throws IOException {
+
+		File file = File.createTempFile(TEMP_FILE_PREFIX, null);
+		file.deleteOnExit();
+
+		return file;
+	}
+
+	private static void deleteFile(final File file) {
+
+		if (!file.delete()) {
+			LOGGER.warning("cannot delete " + file.getAbsolutePath()); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Reads the associations written in a file. It is used to merge the runs
+	 * and to iterate the sorted file.
+	 */
+	private final class RunReader implements Iterator<Association>, Comparable<RunReader> {
+
+		private final ObjectInputStream	in;
+		private final int				order;
+		private Association				current	= null;
+		private boolean					closed	= false;
+
+		/**
+		 * @param file
+		 * @param order
+		 *            used to decide between associations with the same key
+		 * @throws IOException
+		 */
+		RunReader(final File file, final int order) throws IOException {
+
+			this.in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+			this.order = order;
+
+			readNext();
+		}
+
+		private void readNext() {
+
+			try {
+				this.current = (Association) this.in.readObject();
+
+			} catch (EOFException e) {
+				this.current = null;
+				close();
+			} catch (Exception e) {
+				close();
+				final String msg = e.getMessage();
+				LOGGER.severe(msg);
+				throw new IllegalStateException(msg, e);
+			}
+		}
+
+		public boolean hasNext() {
+
+			return this.current != null;
+		}
+
+		public Association next() {
+
+			if (this.current == null) {
+				throw new NoSuchElementException();
+			}
+			Association next = this.current;
+			readNext();
+
+			return next;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		public int compareTo(final RunReader o) {
+
+			int result = this.current.compareTo(o.current);
+			if (result == 0) {
+				result = (this.order < o.order) ? -1 : ((this.order == o.order) ? 0 : 1);
+			}
+			return result;
+		}
+
+		void close() {
+
+			if (this.closed) {
+				return;
+			}
+			this.closed = true;
+			try {
+				this.in.close();
+			} catch (IOException e) {
+				LOGGER.warning(e.getMessage());
+			}
+		}
+	}
+}
@@ -121,7 +121,6 @@ final class HoleTask extends AbstractCommonTask implements IHoleTask {
 	protected void perform() throws SpatialOperationException {
 
 		FeatureIterator<SimpleFeature> iterSource = null;
-		FeatureIterator<SimpleFeature> iterUsing = null;
 		try {
 			// adds each feature to hole in the target layer
 			iterSource = this.sourceFeatures.features();
@@ -151,14 +150,10 @@ final class HoleTask extends AbstractCommonTask implements IHoleTask {
 
 					String fidToHole = this.featuresInProcessing.get(i);
 
-					iterUsing = this.usingFeatures.features();
-					boolean numGeomToHoleModified = false;
-					while (iterUsing.hasNext() && !numGeomToHoleModified) {
+					// only the using features which envelope intersects the
+					// feature are evaluated
+					boolean numGeomToHoleModified = cutSourceWithCandidates(fidToHole);
 
-						SimpleFeature usingFeature = iterUsing.next();
-
-						numGeomToHoleModified = cutSourceWithUsingFeature(fidToHole, sourceCrs, usingFeature, usingCrs, mapCrs);
-					}
 					i = (numGeomToHoleModified) ? 0 : i + 1;
 				}
 			}
@@ -170,9 +165,6 @@ final class HoleTask extends AbstractCommonTask implements IHoleTask {
 			
 		} finally {
 
-			if (iterUsing != null) {
-				iterUsing.close();
-			}
 			if (iterSource != null) {
 				iterSource.close();
 			}
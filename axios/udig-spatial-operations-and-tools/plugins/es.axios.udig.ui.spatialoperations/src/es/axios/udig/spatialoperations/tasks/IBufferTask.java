@@ -20,8 +20,6 @@
  */
 package es.axios.udig.spatialoperations.tasks;
 
-import java.util.concurrent.Callable;
-
 import org.geotools.data.FeatureStore;
 import org.geotools.data.simple.SimpleFeatureStore;
 import org.opengis.feature.simple.SimpleFeature;
@@ -37,7 +35,7 @@ import com.vividsolutions.jts.operation.buffer.BufferParameters;
  * @author Aritz Davila (www.axios.es)
  * 
  */
-public interface IBufferTask extends Callable<FeatureStore<SimpleFeatureType, SimpleFeature>>  {
+public interface IBufferTask extends ISpatialOperationTask<FeatureStore<SimpleFeatureType, SimpleFeature>> {
 
 	public static enum CapStyle {
 
@@ -59,4 +57,21 @@ public interface IBufferTask extends Callable<FeatureStore<SimpleFeatureType, Si
 
 	public SimpleFeatureStore call() throws Exception;
 
+	/**
+	 * Sets the strategy used to merge the buffered geometries. The default is
+	 * {@link UnionStrategy#Cascaded}.
+	 * 
+	 * @param strategy
+	 */
+	public void setUnionStrategy(final UnionStrategy strategy);
+
+	/**
+	 * Sets the number of threads used to compute the buffer of the source
+	 * features. If it is less than or equal to 1 the features are computed
+	 * in the task's thread. The default is the number of available
+	 * processors.
+	 * 
+	 * @param threads
+	 */
+	public void setThreads(final int threads);
 }
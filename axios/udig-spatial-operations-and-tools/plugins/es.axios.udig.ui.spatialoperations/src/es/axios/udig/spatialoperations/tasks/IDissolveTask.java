@@ -20,8 +20,6 @@
  */
 package es.axios.udig.spatialoperations.tasks;
 
-import java.util.concurrent.Callable;
-
 import org.geotools.data.FeatureStore;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
@@ -37,8 +35,25 @@ import org.opengis.feature.simple.SimpleFeatureType;
  * @author Aritz Davila (www.axios.es)
  * 
  */
-public interface IDissolveTask extends Callable<FeatureStore<SimpleFeatureType, SimpleFeature>> {
+public interface IDissolveTask extends ISpatialOperationTask<FeatureStore<SimpleFeatureType, SimpleFeature>> {
 
 	public FeatureStore<SimpleFeatureType, SimpleFeature> call() throws Exception;
 
+	/**
+	 * Sets the strategy used to make the union of each group. The default is
+	 * {@link UnionStrategy#Cascaded}.
+	 * 
+	 * @param strategy
+	 */
+	public void setUnionStrategy(final UnionStrategy strategy);
+
+	/**
+	 * Sets the number of threads used to make the union of the groups. If it
+	 * is less than or equal to 1 the groups are dissolved in the task's
+	 * thread.
+	 * 
+	 * @param threads
+	 */
+	public void setUnionThreads(final int threads);
+
 }
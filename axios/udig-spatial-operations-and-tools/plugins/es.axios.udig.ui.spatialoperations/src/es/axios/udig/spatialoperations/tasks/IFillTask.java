@@ -20,8 +20,6 @@
  */
 package es.axios.udig.spatialoperations.tasks;
 
-import java.util.concurrent.Callable;
-
 import org.geotools.data.FeatureStore;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
@@ -33,8 +31,16 @@ import org.opengis.feature.simple.SimpleFeatureType;
  * @author Mauricio Pazos (www.axios.es)
  * @since 1.2.0
  */
-public interface IFillTask extends Callable<FeatureStore<SimpleFeatureType, SimpleFeature>> {
+public interface IFillTask extends ISpatialOperationTask<FeatureStore<SimpleFeatureType, SimpleFeature>> {
 
 	public FeatureStore<SimpleFeatureType, SimpleFeature> call() throws Exception;
 
+	/**
+	 * Enables the test of the features in first layer against the fill
+	 * geometry prepared only once (the default). If it is disabled each
+	 * polygon is tested with the full intersects operation.
+	 * 
+	 * @param enabled
+	 */
+	public void setPreparedGeometryEnabled(final boolean enabled);
 }
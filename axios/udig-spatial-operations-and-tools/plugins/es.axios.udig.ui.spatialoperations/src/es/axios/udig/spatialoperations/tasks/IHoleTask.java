@@ -20,8 +20,6 @@
  */
 package es.axios.udig.spatialoperations.tasks;
 
-import java.util.concurrent.Callable;
-
 import org.geotools.data.FeatureStore;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
@@ -33,7 +31,15 @@ import org.opengis.feature.simple.SimpleFeatureType;
  * @author Mauricio Pazos (www.axios.es)
  * @since 1.2.0
  */
-public interface IHoleTask extends Callable<FeatureStore<SimpleFeatureType, SimpleFeature>> {
+public interface IHoleTask extends ISpatialOperationTask<FeatureStore<SimpleFeatureType, SimpleFeature>> {
 
 	public FeatureStore<SimpleFeatureType, SimpleFeature> call() throws Exception;
+
+	/**
+	 * Enables or disables the spatial index used to select the features
+	 * which hole the source features. It is enabled by default.
+	 * 
+	 * @param enabled
+	 */
+	public void setSpatialIndexEnabled(final boolean enabled);
 }
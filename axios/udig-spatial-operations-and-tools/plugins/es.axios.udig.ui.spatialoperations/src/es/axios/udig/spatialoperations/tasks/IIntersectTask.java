@@ -20,8 +20,6 @@
  */
 package es.axios.udig.spatialoperations.tasks;
 
-import java.util.concurrent.Callable;
-
 import org.geotools.data.FeatureStore;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
@@ -32,7 +30,26 @@ import org.opengis.feature.simple.SimpleFeatureType;
  * @author Aritz Davila (www.axios.es)
  * @author Mauricio Pazos (www.axios.es)
  */
-public interface IIntersectTask extends Callable<FeatureStore<SimpleFeatureType, SimpleFeature>> {
+public interface IIntersectTask extends ISpatialOperationTask<FeatureStore<SimpleFeatureType, SimpleFeature>> {
 
 	public FeatureStore<SimpleFeatureType, SimpleFeature> call() throws Exception;
+
+	/**
+	 * Sets the number of threads used to compute the intersections of the source
+	 * features. If it is less than or equal to 1 the features are computed
+	 * in the task's thread. The default is the number of available
+	 * processors.
+	 * 
+	 * @param threads
+	 */
+	public void setThreads(final int threads);
+
+	/**
+	 * Enables the test of the features using the base geometry prepared only
+	 * once (the default). If it is disabled each pair of geometries is
+	 * intersected with the full overlay operation.
+	 * 
+	 * @param enabled
+	 */
+	public void setPreparedGeometryEnabled(final boolean enabled);
 }
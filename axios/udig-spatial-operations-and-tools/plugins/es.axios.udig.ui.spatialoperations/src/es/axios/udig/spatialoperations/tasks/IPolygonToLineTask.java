@@ -20,8 +20,6 @@
  */
 package es.axios.udig.spatialoperations.tasks;
 
-import java.util.concurrent.Callable;
-
 import org.geotools.data.FeatureStore;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
@@ -33,7 +31,17 @@ import org.opengis.feature.simple.SimpleFeatureType;
  * @author Mauricio Pazos (www.axios.es)
  * @since 1.2.0 
  */
-public interface IPolygonToLineTask extends Callable<FeatureStore<SimpleFeatureType, SimpleFeature>> {
+public interface IPolygonToLineTask extends ISpatialOperationTask<FeatureStore<SimpleFeatureType, SimpleFeature>> {
 
 	public FeatureStore<SimpleFeatureType, SimpleFeature> call() throws Exception;
+
+	/**
+	 * Sets the number of threads used to compute the lines of the source
+	 * features. If it is less than or equal to 1 the features are computed
+	 * in the task's thread. The default is the number of available
+	 * processors.
+	 * 
+	 * @param threads
+	 */
+	public void setThreads(final int threads);
 }
@@ -20,8 +20,6 @@
  */
 package es.axios.udig.spatialoperations.tasks;
 
-import java.util.concurrent.Callable;
-
 
 /**
  * <p>
@@ -34,7 +32,7 @@ import java.util.concurrent.Callable;
  * @author Aritz Davila   (www.axios.es)
  *
  */
-public interface ISpatialJoinTask<V> extends Callable<V> {
+public interface ISpatialJoinTask<V> extends ISpatialOperationTask<V> {
 
 	public V  call() throws Exception;
 }
@@ -0,0 +1,57 @@
+/* Spatial Operations & Editing Tools for uDig
+ * 
+ * Axios Engineering under a funding contract with: 
+ *      Diputación Foral de Gipuzkoa, Ordenación Territorial 
+ *
+ *      http://b5m.gipuzkoa.net
+ *      http://www.axios.es 
+ *
+ * (C) 2006, Diputación Foral de Gipuzkoa, Ordenación Territorial (DFG-OT). 
+ * DFG-OT agrees to licence under Lesser General Public License (LGPL).
+ * 
+ * You can redistribute it and/or modify it under the terms of the 
+ * GNU Lesser General Public License as published by the Free Software 
+ * Foundation; version 2.1 of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package es.axios.udig.spatialoperations.tasks;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Common interface for the spatial operation tasks.
+ * <p>
+ * The result features are written in the target store in batches. Each batch
+ * is committed in one transaction.
+ * </p>
+ * 
+ * @author Mauricio Pazos (www.axios.es)
+ * @author Aritz Davila (www.axios.es)
+ * @since 1.3.1
+ */
+public interface ISpatialOperationTask<V> extends Callable<V> {
+
+	/**
+	 * Sets the number of features committed in each transaction. A value
+	 * less than or equal to 0 commits all the task's result in only one
+	 * transaction.
+	 * 
+	 * @param batchSize
+	 */
+	public void setBatchSize(final int batchSize);
+
+	/**
+	 * @return the number of source features processed
+	 */
+	public int getProcessedCount();
+
+	/**
+	 * @return the number of source features to process or -1 if the task
+	 *         does not know it
+	 */
+	public int getTotalCount();
+}
@@ -20,8 +20,6 @@
  */
 package es.axios.udig.spatialoperations.tasks;
 
-import java.util.concurrent.Callable;
-
 import org.geotools.data.FeatureStore;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
@@ -33,7 +31,7 @@ import org.opengis.feature.simple.SimpleFeatureType;
  * @author Mauricio Pazos (www.axios.es)
  * @since 1.2.0
  */
-public interface ISplitTask extends Callable<FeatureStore<SimpleFeatureType, SimpleFeature>> {
+public interface ISplitTask extends ISpatialOperationTask<FeatureStore<SimpleFeatureType, SimpleFeature>> {
 
 	public FeatureStore<SimpleFeatureType, SimpleFeature> call() throws Exception;
 
@@ -49,6 +49,7 @@ import com.vividsolutions.jts.geom.Polygon;
 import es.axios.geotools.util.FeatureTypeUnionBuilder;
 import es.axios.geotools.util.GeoToolsUtils;
 import es.axios.lib.geometry.util.GeometryUtil;
+import es.axios.lib.geometry.util.PreparedIntersector;
 import es.axios.udig.spatialoperations.internal.i18n.Messages;
 
 /**
@@ -72,6 +73,27 @@ final class IntersectTask extends AbstractSpatialOperationTask<FeatureStore<Simp
 	private FeatureTypeUnionBuilder								featureUnionBuilder;
 	private CoordinateReferenceSystem							secondLayerCrs;
 
+	private List<SimpleFeature>									secondLayerFeatures;
+	private List<Geometry>										secondLayerGeometries;
+
+	private boolean												preparedGeometryEnabled	= true;
+
+	/**
+	 * Intersection between a feature in first layer and a feature in second
+	 * layer
+	 */
+	private static final class Intersection {
+
+		final SimpleFeature	featureInSecondLayer;
+		final Geometry		geometry;
+
+		Intersection(final SimpleFeature featureInSecondLayer, final Geometry geometry) {
+
+			this.featureInSecondLayer = featureInSecondLayer;
+			this.geometry = geometry;
+		}
+	}
+
 	/**
 	 * To create an instance must use
 	 * {@link #createProcess(FeatureStore, FeatureCollection, FeatureCollection, CoordinateReferenceSystem, CoordinateReferenceSystem)}
@@ -126,117 +148,188 @@ final class IntersectTask extends AbstractSpatialOperationTask<FeatureStore<Simp
 		return task;
 	}
 
+	public void setPreparedGeometryEnabled(final boolean enabled) {
+
+		this.preparedGeometryEnabled = enabled;
+	}
+
 	@Override
 	protected FeatureStore<SimpleFeatureType, SimpleFeature> getResult() {
 
 		return this.targetStore;
 	}
 
+	/**
+	 * Computes the intersections of each feature in first layer in parallel.
+	 * The features of second layer are projected on map CRS only once and
+	 * shared by the worker threads. The new features are created and inserted
+	 * in the task's thread following the order of the first layer.
+	 */
 	@Override
 	protected void perform() throws SpatialOperationException {
 
-		FeatureIterator<SimpleFeature> iter = null;
 		try {
-			iter = featuresInFirstLayer.features();
-			while (iter.hasNext()) {
+			loadSecondLayer();
 
-				SimpleFeature featureInFirstLayer = iter.next();
+			final CoordinateReferenceSystem targetLayerCrs = this.targetStore.getSchema().getGeometryDescriptor()
+						.getCoordinateReferenceSystem();
 
-				createIntersectionFeaturesUsingGeomety(this.featuresInSecondLayer, featureInFirstLayer, firstLayerCrs,
-							this.targetStore, mapCrs);
-			}
+			setTotalCount(this.featuresInFirstLayer.size());
+
+			ParallelFeatureProcessor<List<Intersection>> processor = newFeatureProcessor();
+			processor.process(this.featuresInFirstLayer,
+						new ParallelFeatureProcessor.FeatureFunction<List<Intersection>>() {
+
+							public List<Intersection> compute(SimpleFeature featureInFirstLayer) throws Exception {
+
+								return computeIntersections(featureInFirstLayer, firstLayerCrs, mapCrs,
+											targetLayerCrs);
+							}
+						}, new ParallelFeatureProcessor.ResultHandler<List<Intersection>>() {
+
+							public void handle(SimpleFeature featureInFirstLayer, List<Intersection> intersections)
+								throws Exception {
+
+								insertIntersectionFeatures(featureInFirstLayer, intersections, targetStore);
+								worked();
+							}
+						});
 
 		} catch (Exception e) {
 
 			throw makeException(e, e.getMessage());
 		} finally {
 
-			if (iter != null) {
-				featuresInFirstLayer.close(iter);
-			}
+			this.secondLayerFeatures = null;
+			this.secondLayerGeometries = null;
 		}
 	}
 
 	/**
-	 * Creates new features using the intersection between the baseGeometry and
-	 * the geometries of featuresInSecondLayer.
-	 * 
-	 * @param featuresInSecondLayer
-	 *            features used to intersect
-	 * @param baseGeometry
-	 *            geometry used to intersect the features on second layer
-	 * @param targetFeatureType
-	 *            feature type used to create the new intersection features
+	 * Reads the features of second layer and projects their geometries on map
+	 * CRS.
 	 * 
-	 * @return list of new intersection features
-	 * @throws SpatialOperationException
+	 * @throws Exception
 	 */
-	private final void createIntersectionFeaturesUsingGeomety(	final FeatureCollection<SimpleFeatureType, SimpleFeature> featuresInSecondLayer,
-																final SimpleFeature featureInFirstLayer,
-																final CoordinateReferenceSystem baseGeomCrs,
-																final FeatureStore<SimpleFeatureType, SimpleFeature> store,
-																final CoordinateReferenceSystem mapCrs)
-		throws SpatialOperationException {
+	private void loadSecondLayer() throws Exception {
 
-		assert featuresInSecondLayer != null;
-		assert featureInFirstLayer != null;
-		assert store != null;
-
-		final SimpleFeatureType featureType = this.targetStore.getSchema();
-		final CoordinateReferenceSystem targetLayerCrs = featureType.getGeometryDescriptor()
-					.getCoordinateReferenceSystem();
+		this.secondLayerFeatures = new ArrayList<SimpleFeature>();
+		this.secondLayerGeometries = new ArrayList<Geometry>();
 
 		FeatureIterator<SimpleFeature> iter = null;
 		try {
-
-			// project the base geometry to map
-			Geometry baseGeometry = (Geometry) featureInFirstLayer.getDefaultGeometry();
-			Geometry baseGeomOnMapCrs = GeoToolsUtils.reproject(baseGeometry, baseGeomCrs, mapCrs);
-			// System.out.println(baseGeomOnMapCrs);
-			// First does the graphic operations and creates a command
-			// for each feature intersected finally executes all command.
-			iter = featuresInSecondLayer.features();
+			iter = this.featuresInSecondLayer.features();
 			while (iter.hasNext()) {
 
 				SimpleFeature featureInSecondLayer = iter.next();
 
 				Geometry featureGeometry = (Geometry) featureInSecondLayer.getDefaultGeometry();
+				Geometry featureGeomOnMapCrs = GeoToolsUtils.reproject(featureGeometry, this.secondLayerCrs,
+							this.mapCrs);
+
+				this.secondLayerFeatures.add(featureInSecondLayer);
+				this.secondLayerGeometries.add(featureGeomOnMapCrs);
+			}
+		} finally {
+			if (iter != null) {
+				this.featuresInSecondLayer.close(iter);
+			}
+		}
+	}
 
-				Geometry featureGeomOnMapCrs = GeoToolsUtils.reproject(featureGeometry, secondLayerCrs, mapCrs);
+	/**
+	 * Computes the intersection between the geometry of the feature in first
+	 * layer and the geometries of second layer. This method is called from the
+	 * worker threads.
+	 * 
+	 * @param featureInFirstLayer
+	 *            feature used to intersect the features on second layer
+	 * @param baseGeomCrs
+	 * @param mapCrs
+	 * @param targetLayerCrs
+	 * @return the intersections projected on target layer CRS
+	 * @throws SpatialOperationException
+	 */
+	private List<Intersection> computeIntersections(	final SimpleFeature featureInFirstLayer,
+														final CoordinateReferenceSystem baseGeomCrs,
+														final CoordinateReferenceSystem mapCrs,
+														final CoordinateReferenceSystem targetLayerCrs)
+		throws SpatialOperationException {
 
-				if (baseGeomOnMapCrs.intersects(featureGeomOnMapCrs)) {
+		assert featureInFirstLayer != null;
 
-					// makes the intersection on map crs
-					final Geometry intersectionOnMapCrs = baseGeomOnMapCrs.intersection(featureGeomOnMapCrs);
+		List<Intersection> intersections = new ArrayList<Intersection>();
+		try {
 
-					final Geometry intersectionGeometry = GeoToolsUtils.reproject(intersectionOnMapCrs, mapCrs,
-								targetLayerCrs);
+			// project the base geometry to map
+			Geometry baseGeometry = (Geometry) featureInFirstLayer.getDefaultGeometry();
+			Geometry baseGeomOnMapCrs = GeoToolsUtils.reproject(baseGeometry, baseGeomCrs, mapCrs);
+
+			// the base geometry is prepared once to test all the features
+			PreparedIntersector intersector = null;
+			if (this.preparedGeometryEnabled) {
+				intersector = new PreparedIntersector(baseGeomOnMapCrs);
+			}
+			for (int i = 0; i < this.secondLayerGeometries.size(); i++) {
 
-					if (GeometryCollection.class.equals(intersectionGeometry.getClass())
-								&& containsDistinctGeoms(intersectionGeometry)) {
+				Geometry featureGeomOnMapCrs = this.secondLayerGeometries.get(i);
 
-						// group lines with lines, polygons with polygons, and
-						// points with points, make one geometry of each group
-						// and insert it as a separate features.
-						groupAndInsert(intersectionGeometry, featureInFirstLayer, featureInSecondLayer, store);
-					} else {
-						// adds the feature in the store associated to the layer
-						SimpleFeature intersectFeature = createIntersectFeature(intersectionGeometry,
-									featureInFirstLayer, featureInSecondLayer);
+				// makes the intersection on map crs
+				Geometry intersectionOnMapCrs = null;
+				if (intersector != null) {
+					intersectionOnMapCrs = intersector.intersection(featureGeomOnMapCrs);
 
-						insert(store, intersectFeature);
-					}
+				} else if (baseGeomOnMapCrs.intersects(featureGeomOnMapCrs)) {
+					intersectionOnMapCrs = baseGeomOnMapCrs.intersection(featureGeomOnMapCrs);
 				}
+				if (intersectionOnMapCrs == null) {
+					continue;
+				}
+				final Geometry intersectionGeometry = GeoToolsUtils.reproject(intersectionOnMapCrs, mapCrs,
+							targetLayerCrs);
 
+				intersections.add(new Intersection(this.secondLayerFeatures.get(i), intersectionGeometry));
 			}
 
 		} catch (Exception e) {
 
 			final String emsg = MessageFormat.format(Messages.IntersectProcess_intersection_fail, e.getMessage());
 			makeException(e, emsg);
-		} finally {
-			if (iter != null) {
-				featuresInSecondLayer.close(iter);
+		}
+		return intersections;
+	}
+
+	/**
+	 * Creates the new features using the intersections computed for the
+	 * feature in first layer.
+	 * 
+	 * @param featureInFirstLayer
+	 * @param intersections
+	 * @param store
+	 * @throws SpatialOperationException
+	 */
+	private void insertIntersectionFeatures(final SimpleFeature featureInFirstLayer,
+											final List<Intersection> intersections,
+											final FeatureStore<SimpleFeatureType, SimpleFeature> store)
+		throws SpatialOperationException {
+
+		for (Intersection intersection : intersections) {
+
+			final Geometry intersectionGeometry = intersection.geometry;
+
+			if (GeometryCollection.class.equals(intersectionGeometry.getClass())
+						&& containsDistinctGeoms(intersectionGeometry)) {
+
+				// group lines with lines, polygons with polygons, and
+				// points with points, make one geometry of each group
+				// and insert it as a separate features.
+				groupAndInsert(intersectionGeometry, featureInFirstLayer, intersection.featureInSecondLayer, store);
+			} else {
+				// adds the feature in the store associated to the layer
+				SimpleFeature intersectFeature = createIntersectFeature(intersectionGeometry, featureInFirstLayer,
+							intersection.featureInSecondLayer);
+
+				insert(store, intersectFeature);
 			}
 		}
 	}
@@ -21,14 +21,19 @@
 package es.axios.udig.spatialoperations.tasks;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.geotools.data.Query;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.feature.CollectionListener;
 import org.geotools.feature.FeatureCollection;
 import org.geotools.feature.FeatureIterator;
@@ -37,6 +42,8 @@ import org.opengis.feature.FeatureVisitor;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory;
+import org.opengis.filter.identity.FeatureId;
 import org.opengis.filter.sort.SortBy;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.util.ProgressListener;
@@ -56,8 +63,14 @@ import org.opengis.util.ProgressListener;
  */
 final class OrderedFeatureCollection implements FeatureCollection<SimpleFeatureType, SimpleFeature> {
 
+	/** number of features retrieved in each query while the collection is iterated */
+	private static final int											FETCH_SIZE	= 500;
+
+	private static final FilterFactory									FILTER_FACTORY	= CommonFactoryFinder
+																						.getFilterFactory(null);
+
 	private final SimpleFeatureCollection	sortedCollection;
-	private final List<Association>										sortedIndex;
+	private final GroupKeySorter										sortedIndex;
 
 	private SimpleFeatureSource											source;
 	private CoordinateReferenceSystem									crs;
@@ -67,6 +80,27 @@ final class OrderedFeatureCollection implements FeatureCollection<SimpleFeatureT
 									final List<String> dissolveProperty,
 									final CoordinateReferenceSystem sourceCrs) throws IOException {
 
+		this(source, filter, dissolveProperty, sourceCrs, GroupKeySorter.DEFAULT_MEMORY_THRESHOLD);
+	}
+
+	/**
+	 * New instance
+	 * 
+	 * @param source
+	 * @param filter
+	 * @param dissolveProperty
+	 * @param sourceCrs
+	 * @param memoryThreshold
+	 *            max number of sort entries maintained in memory, over this
+	 *            value the sort is done in disk
+	 * @throws IOException
+	 */
+	public OrderedFeatureCollection(final SimpleFeatureSource source,
+									final Filter filter,
+									final List<String> dissolveProperty,
+									final CoordinateReferenceSystem sourceCrs,
+									final int memoryThreshold) throws IOException {
+
 		assert source != null;
 		assert filter != null;
 		assert dissolveProperty != null;
@@ -77,7 +111,7 @@ final class OrderedFeatureCollection implements FeatureCollection<SimpleFeatureT
 		// Creates index for that DataStores which don't support the
 		// Query.sortBy
 		this.sortedCollection = retrieveFeatures(this.source, filter, dissolveProperty,  this.crs);
-		this.sortedIndex = sort(this.sortedCollection, dissolveProperty);
+		this.sortedIndex = sort(this.sortedCollection, dissolveProperty, memoryThreshold);
 		
 		assert this.sortedCollection.size() == this.sortedIndex.size();
 	}
@@ -101,178 +135,71 @@ final class OrderedFeatureCollection implements FeatureCollection<SimpleFeatureT
 	}
 
 	/**
-	 * Implements the association (property, featureId) used to sort the feature
-	 * collection.
+	 * Creates the sorted index of features. The index contains the
+	 * association between the dissolve property values and the feature id.
 	 * 
-	 * @author Mauricio Pazos (www.axios.es)
-	 * @since 1.1
+	 * @param original
+	 * @param dissolveProperties
+	 * @param memoryThreshold
+	 * @return the sorted index
+	 * @throws IOException
 	 */
-	private class Association implements Comparable<Association> {
-
-		private final Object	sortProperty;
-		private final String	featureId;
-
-		/**
-		 * @return the sortProperty
-		 */
-		public final Object getSortProperty() {
-			return sortProperty;
-		}
-
-		/**
-		 * @return the featureId
-		 */
-		public final String getFeatureId() {
-			return featureId;
-		}
+	private GroupKeySorter sort(final FeatureCollection<SimpleFeatureType, SimpleFeature> original,
+								final List<String> dissolveProperties,
+								final int memoryThreshold) throws IOException {
 
-		/**
-		 * 
-		 * @param sortProperty
-		 *            could be null
-		 * @param featureId
-		 *            a not null value
-		 */
-		public Association(Object sortProperty, String featureId) {
-			assert featureId != null;
-
-			this.sortProperty = sortProperty;
-			this.featureId = featureId;
-		}
-
-		/**
-		 * @param o
-		 *            an association
-		 */
-		public int compareTo(final Association o) {
-
-			assert o != null;
-
-			if ((this.sortProperty == null) && (o.getSortProperty() != null)) {
-				return -1;
-			}
-
-			if ((this.sortProperty != null) && (o.getSortProperty() == null)) {
-				return 1;
-			}
-
-			if ((this.sortProperty == null) && (o.getSortProperty() == null)) {
-				return 0;
-			}
-
-			return this.sortProperty.toString().compareTo(o.getSortProperty().toString());
-		}
-
-		/*
-		 * (non-Javadoc)
-		 * 
-		 * @see java.lang.Object#hashCode()
-		 */
-		@Override
-		public int hashCode() {
-			final int prime = 31;
-			int result = 1;
-			result = prime * result + ((featureId == null) ? 0 : featureId.hashCode());
-			result = prime * result + ((sortProperty == null) ? 0 : sortProperty.hashCode());
-			return result;
-		}
+		GroupKeySorter sorter = new GroupKeySorter(memoryThreshold);
+		FeatureIterator<SimpleFeature> iter = null;
+		try {
+			iter = original.features();
+			while (iter.hasNext()) {
 
-		/*
-		 * (non-Javadoc)
-		 * 
-		 * @see java.lang.Object#equals(java.lang.Object)
-		 */
-		@Override
-		public boolean equals(Object obj) {
-			if (this == obj) {
-				return true;
-			}
-			if (obj == null) {
-				return false;
+				SimpleFeature feature = iter.next();
+				sorter.add(GroupKey.newInstance(feature, dissolveProperties), feature.getID());
 			}
-			if (!getClass().equals(obj.getClass())) {
-				return false;
+		} finally {
+			if (iter != null) {
+				iter.close();
 			}
-			final Association other = (Association) obj;
-			if (featureId == null) {
-				if (other.featureId != null) {
-					return false;
-				}
-			} else if (!featureId.equals(other.featureId)) {
-				return false;
-			}
-			if (sortProperty == null) {
-				if (other.sortProperty != null) {
-					return false;
-				}
-			} else if (!sortProperty.equals(other.sortProperty)) {
-				return false;
-			}
-			return true;
-		}
-
-		/*
-		 * (non-Javadoc)
-		 * 
-		 * @see java.lang.Object#toString()
-		 */
-		@Override
-		public String toString() {
-			return "[" + this.sortProperty + ", " + this.featureId + "]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 		}
+		sorter.sort();
 
+		return sorter;
 	}
 
 	/**
-	 * Create an order list of features using the ordering by insertion algorithm.
-	 * The List contains {@link Association} witch relate the dissolve property values and the feature id.
+	 * Retrieves the features which have the indeed ids
 	 * 
-	 * @param original
-	 * @param dissolveProperties
-	 * @return
+	 * @param fids
+	 * @return map of (feature id, feature)
 	 */
-	private List<Association> sort(	final FeatureCollection<SimpleFeatureType, SimpleFeature> original,
-									final List<String> dissolveProperties) {
+	private Map<String, SimpleFeature> retrieveFeatures(final List<String> fids) {
+
+		Set<FeatureId> ids = new HashSet<FeatureId>(fids.size());
+		for (String fid : fids) {
+			ids.add(FILTER_FACTORY.featureId(fid));
+		}
+		Query query = new Query();
+		query.setFilter(FILTER_FACTORY.id(ids));
+		query.setCoordinateSystem(this.crs);
 
-		// inserts in order the features <sortProp, IDs>
-		List<Association> indexList = new LinkedList<Association>();
+		Map<String, SimpleFeature> features = new HashMap<String, SimpleFeature>(fids.size());
 		FeatureIterator<SimpleFeature> iter = null;
 		try {
-			iter = original.features();
+			iter = this.source.getFeatures(query).features();
 			while (iter.hasNext()) {
+
 				SimpleFeature feature = iter.next();
-				// searches the value for each attribute position.
-				StringBuffer stringBuffer = new StringBuffer(50);
-				for (String  property: dissolveProperties) {
-
-					Object attribute = feature.getAttribute(property);
-					if (attribute != null) {
-						stringBuffer = stringBuffer.append(attribute.toString());
-					} else {
-						stringBuffer = stringBuffer.append(""); //$NON-NLS-1$
-					}
-				}
-				Association currentMap = new Association(stringBuffer.toString(), feature.getID());
-
-				Association map = null;
-				int posFound = -1;
-				for (int i = 0; i < indexList.size() && (posFound == -1); i++) {
-					map = indexList.get(i);
-					if (currentMap.compareTo(map) <= 0) {
-						posFound = i;
-					}
-				}
-				if (posFound >= 0) {
-					indexList.add(posFound, currentMap);
-				} else {
-					indexList.add(currentMap);
-				}
+				features.put(feature.getID(), feature);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		} finally {
+			if (iter != null) {
+				iter.close();
 			}
-		} catch (Exception e) {
-			e.printStackTrace();
-
 		}
-		return indexList;
+		return features;
 	}
 
 	/**
@@ -295,35 +222,46 @@ final class OrderedFeatureCollection implements FeatureCollection<SimpleFeatureT
 		throw new UnsupportedOperationException();
 	}
 
+	/**
+	 * Iterates the features in order. The features are retrieved in blocks
+	 * of {@link #FETCH_SIZE} using their ids.
+	 */
 	public FeatureIterator<SimpleFeature> features() {
 
 		FeatureIterator<SimpleFeature> iterator;
 		iterator = new FeatureIterator<SimpleFeature>() {
 
-			Iterator<Association>	sortedIter	= sortedIndex.iterator();
+			Iterator<GroupKeySorter.Association>	sortedIter	= sortedIndex.iterator();
+			List<String>							fetchedIds	= new ArrayList<String>(FETCH_SIZE);
+			Map<String, SimpleFeature>				fetched		= null;
+			int										position	= 0;
 
 			public void close() {
+				if (sortedIter != null) {
+					sortedIndex.close(sortedIter);
+				}
 				sortedIter = null;
+				fetched = null;
 			}
 
 			public boolean hasNext() {
 
-				return sortedIter.hasNext();
+				return (position < fetchedIds.size()) || sortedIter.hasNext();
 			}
 
 			public SimpleFeature next() {
-				Association map = sortedIter.next();
 
-				SimpleFeature feature = null;
-				FeatureIterator<SimpleFeature> fIter = sortedCollection.features();
-				while (fIter.hasNext()) {
-					feature = fIter.next();
-
-					if (feature.getID().equals(map.getFeatureId())) {
-						break;
+				if (position >= fetchedIds.size()) {
+					// retrieves the next block of features
+					fetchedIds.clear();
+					while (sortedIter.hasNext() && (fetchedIds.size() < FETCH_SIZE)) {
+						fetchedIds.add(sortedIter.next().getFeatureId());
 					}
+					fetched = retrieveFeatures(fetchedIds);
+					position = 0;
 				}
-				fIter.close();
+				SimpleFeature feature = fetched.get(fetchedIds.get(position++));
+
 				assert feature != null;
 				return feature;
 			}
@@ -332,6 +270,15 @@ final class OrderedFeatureCollection implements FeatureCollection<SimpleFeatureT
 		return iterator;
 	}
 
+	/**
+	 * Deletes the temporal files of the sorted index. The collection cannot be
+	 * iterated after this call.
+	 */
+	public void dispose() {
+
+		this.sortedIndex.dispose();
+	}
+
 	public SimpleFeatureType getFeatureType() {
 
 		return this.sortedCollection.getSchema();
@@ -363,7 +310,7 @@ final class OrderedFeatureCollection implements FeatureCollection<SimpleFeatureT
 	}
 
 	public Object[] toArray() {
-		return this.sortedIndex.toArray();
+		throw new UnsupportedOperationException();
 	}
 
 	public ReferencedEnvelope getBounds() {
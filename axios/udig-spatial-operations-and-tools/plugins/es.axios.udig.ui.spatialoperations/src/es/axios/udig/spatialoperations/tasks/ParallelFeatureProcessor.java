@@ -0,0 +1,257 @@
+/* Spatial Operations & Editing Tools for uDig
+ * 
+ * Axios Engineering under a funding contract with: 
+ *      Diputación Foral de Gipuzkoa, Ordenación Territorial 
+ *
+ *      http://b5m.gipuzkoa.net
+ *      http://www.axios.es 
+ *
+ * (C) 2006, Diputación Foral de Gipuzkoa, Ordenación Territorial (DFG-OT). 
+ * DFG-OT agrees to licence under Lesser General Public License (LGPL).
+ * 
+ * You can redistribute it and/or modify it under the terms of the 
+ * GNU Lesser General Public License as published by the Free Software 
+ * Foundation; version 2.1 of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package es.axios.udig.spatialoperations.tasks;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.FeatureIterator;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * Computes a result for each source feature using a pool of worker threads.
+ * <p>
+ * The source features are read in the caller thread and partitioned in
+ * chunks, each chunk is computed by a worker. The results are delivered to the
+ * {@link ResultHandler} in the caller thread following the source order, so
+ * the handler can write in the target store without synchronization. At most
+ * two chunks per thread are pending at the same time.
+ * </p>
+ * <p>
+ * If the caller thread is interrupted the pending chunks are cancelled and
+ * the process finishes with {@link InterruptedException}.
+ * </p>
+ * 
+ * @author Mauricio Pazos (www.axios.es)
+ * @author Aritz Davila (www.axios.es)
+ * @since 1.3.1
+ */
+final class ParallelFeatureProcessor<R> {
+
+	/** number of features computed by a worker in each step */
+	public static final int	DEFAULT_CHUNK_SIZE	= 64;
+
+	/**
+	 * Computes the result for one feature. The implementation is called from
+	 * the worker threads.
+	 */
+	interface FeatureFunction<R> {
+
+		R compute(final SimpleFeature feature) throws Exception;
+	}
+
+	/**
+	 * Receives the result of each feature in the source order. The
+	 * implementation is called from the caller thread.
+	 */
+	interface ResultHandler<R> {
+
+		void handle(final SimpleFeature feature, final R result) throws Exception;
+	}
+
+	private final int		threads;
+	private final int		chunkSize;
+
+	private ParallelFeatureProcessor(final int threads, final int chunkSize) {
+
+		this.threads = threads;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * New instance of {@link ParallelFeatureProcessor}
+	 * 
+	 * @param threads
+	 *            number of worker threads. If it is less than or equal to 1
+	 *            the features are computed in the caller thread.
+	 * @param chunkSize
+	 *            number of features computed in each step
+	 * @return new instance of {@link ParallelFeatureProcessor}
+	 */
+	public static <R> ParallelFeatureProcessor<R> newInstance(final int threads, final int chunkSize) {
+
+		assert chunkSize > 0;
+
+		return new ParallelFeatureProcessor<R>(threads, chunkSize);
+	}
+
+	/**
+	 * @return the number of available processors
+	 */
+	public static int getDefaultThreads() {
+
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Computes the function for each source feature and delivers the results
+	 * to the handler.
+	 * 
+	 * @param source
+	 * @param function
+	 * @param handler
+	 * @throws InterruptedException
+	 *             if the caller thread was interrupted
+	 * @throws Exception
+	 *             the first exception thrown by the function or the handler
+	 */
+	public void process(final FeatureCollection<SimpleFeatureType, SimpleFeature> source,
+						final FeatureFunction<R> function,
+						final ResultHandler<R> handler) throws Exception {
+
+		FeatureIterator<SimpleFeature> iter = null;
+		ExecutorService executor = null;
+		LinkedList<Chunk> pending = new LinkedList<Chunk>();
+		try {
+			if (this.threads > 1) {
+				executor = Executors.newFixedThreadPool(this.threads);
+			}
+			iter = source.features();
+			while (iter.hasNext()) {
+
+				checkInterrupted();
+
+				List<SimpleFeature> features = nextChunk(iter);
+				ChunkComputation computation = new ChunkComputation(features, function);
+
+				if (executor == null) {
+					deliver(features, computation.call(), handler);
+				} else {
+					pending.addLast(new Chunk(features, executor.submit(computation)));
+
+					if (pending.size() >= 2 * this.threads) {
+						deliver(pending.removeFirst(), handler);
+					}
+				}
+			}
+			while (!pending.isEmpty()) {
+				deliver(pending.removeFirst(), handler);
+			}
+		} finally {
+			for (Chunk chunk : pending) {
+				chunk.future.cancel(true);
+			}
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+			if (iter != null) {
+				iter.close();
+			}
+		}
+	}
+
+	private List<SimpleFeature> nextChunk(final FeatureIterator<SimpleFeature> iter) {
+
+		List<SimpleFeature> features = new ArrayList<SimpleFeature>(this.chunkSize);
+		while (iter.hasNext() && (features.size() < this.chunkSize)) {
+			features.add(iter.next());
+		}
+		return features;
+	}
+
+	/**
+	 * Waits the chunk's results and delivers them to the handler
+	 */
+	private void deliver(final Chunk chunk, final ResultHandler<R> handler) throws Exception {
+
+		List<R> results;
+		try {
+			results = chunk.future.get();
+
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw (Error) cause;
+		}
+		deliver(chunk.features, results, handler);
+	}
+
+	private void deliver(final List<SimpleFeature> features, final List<R> results, final ResultHandler<R> handler)
+		throws Exception {
+
+		for (int i = 0; i < features.size(); i++) {
+
+			checkInterrupted();
+
+			handler.handle(features.get(i), results.get(i));
+		}
+	}
+
+	private void checkInterrupted() throws InterruptedException {
+
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+	}
+
+	/**
+	 * Source features of a chunk and its pending results
+	 */
+	private final class Chunk {
+
+		final List<SimpleFeature>	features;
+		final Future<List<R>>		future;
+
+		Chunk(final List<SimpleFeature> features, final Future<List<R>> future) {
+
+			this.features = features;
+			this.future = future;
+		}
+	}
+
+	/**
+	 * Computes the results of a chunk in a worker thread
+	 */
+	private final class ChunkComputation implements Callable<List<R>> {
+
+		private final List<SimpleFeature>	features;
+		private final FeatureFunction<R>	function;
+
+		ChunkComputation(final List<SimpleFeature> features, final FeatureFunction<R> function) {
+
+			this.features = features;
+			this.function = function;
+		}
+
+		public List<R> call() throws Exception {
+
+			List<R> results = new ArrayList<R>(this.features.size());
+			for (SimpleFeature feature : this.features) {
+
+				if (Thread.currentThread().isInterrupted()) {
+					throw new InterruptedException();
+				}
+				results.add(this.function.compute(feature));
+			}
+			return results;
+		}
+	}
+}
@@ -20,13 +20,14 @@
  */
 package es.axios.udig.spatialoperations.tasks;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.logging.Logger;
 
 import org.geotools.data.FeatureStore;
 import org.geotools.data.simple.SimpleFeatureStore;
 import org.geotools.feature.FeatureCollection;
-import org.geotools.feature.FeatureIterator;
 import org.opengis.feature.IllegalAttributeException;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
@@ -109,76 +110,67 @@ final class PolygonToLineTask extends AbstractSpatialOperationTask<SimpleFeature
 		return this.targetStore;
 	}
 
+	/**
+	 * Converts the source features in parallel. The lines are inserted in the
+	 * source order.
+	 */
 	@Override
 	protected void perform() throws SpatialOperationException {
 
-		FeatureIterator<SimpleFeature> iter = null;
-		SimpleFeature featureToTransform = null;
-
 		try {
-
-			iter = featuresFromSource.features();
-
-			SimpleFeatureType featureType = this.targetStore.getSchema();
+			final SimpleFeatureType featureType = this.targetStore.getSchema();
 			final CoordinateReferenceSystem targetLayerCrs = featureType.getGeometryDescriptor()
 						.getCoordinateReferenceSystem();
 
-			while (iter.hasNext()) {
+			setTotalCount(this.featuresFromSource.size());
 
-				featureToTransform = iter.next();
-				Geometry defaultGeometry = (Geometry) featureToTransform.getDefaultGeometry();
-				if (defaultGeometry.isValid()) {
+			ParallelFeatureProcessor<List<Geometry>> processor = newFeatureProcessor();
+			processor.process(this.featuresFromSource, new ParallelFeatureProcessor.FeatureFunction<List<Geometry>>() {
 
-					if (explode) {
+				public List<Geometry> compute(SimpleFeature featureToTransform) throws Exception {
 
-						createFeatureExplode(featureToTransform, targetLayerCrs, featureType);
-					} else {
-						createFeature(featureToTransform, targetLayerCrs, featureType);
+					Geometry defaultGeometry = (Geometry) featureToTransform.getDefaultGeometry();
+					if (!defaultGeometry.isValid()) {
+						LOGGER.severe("Not a valid geometry!! \nFID: " + featureToTransform.getID() + "\nGeometry: " //$NON-NLS-1$
+									+ defaultGeometry.toText());
+						return Collections.emptyList();
 					}
-				} else {
-					LOGGER.severe("Not a valid geometry!! \nFID: " + featureToTransform.getID() + "\nGeometry: " //$NON-NLS-1$
-								+ defaultGeometry.toText());
+					Geometry lines = convertToLine(featureToTransform, targetLayerCrs);
+					if (explode) {
+						return explodeLines(lines);
+					}
+					return Collections.singletonList(lines);
 				}
+			}, new ParallelFeatureProcessor.ResultHandler<List<Geometry>>() {
 
-			}
+				public void handle(SimpleFeature featureToTransform, List<Geometry> lines) throws Exception {
+
+					for (Geometry line : lines) {
+						createFeature(featureToTransform, line, featureType);
+					}
+					worked();
+				}
+			});
 		} catch (Exception e) {
 
 			throw makeException(e, e.getMessage());
-		} finally {
-
-			if (iter != null) {
-				iter.close();
-			}
 		}
 
 	}
 
 	/**
-	 * Convert each segment of the polygon feature in one lineString feature and
-	 * inserts it.
+	 * Splits the lines in one lineString for each segment.
 	 * 
-	 * @param featureToTransform
-	 *            Feature to explode
-	 * @param targetLayerCrs
-	 *            Target layer CRS
-	 * @param featureType
-	 *            Target featureType
-	 * @throws OperationNotFoundException
-	 * @throws TransformException
-	 * @throws IllegalAttributeException
-	 * @throws SpatialOperationException
+	 * @param lines
+	 *            the boundary of the polygon feature
+	 * @return the segments
 	 */
-	private void createFeatureExplode(	SimpleFeature featureToTransform,
-										CoordinateReferenceSystem targetLayerCrs,
-										SimpleFeatureType featureType)
-		throws OperationNotFoundException, TransformException, IllegalAttributeException, SpatialOperationException {
+	private List<Geometry> explodeLines(final Geometry lines) {
 
-		SimpleFeature transformedFeature;
-		Coordinate[] newCoor;
-		Geometry lines = convertToLine(featureToTransform, targetLayerCrs);
+		List<Geometry> segments = new ArrayList<Geometry>();
 
 		// get the geometries of that feature.
-		List<? extends Geometry> linesList =  LineStringExtracter.getLines(lines);
+		List<? extends Geometry> linesList = LineStringExtracter.getLines(lines);
 
 		for (Geometry lineSegment : linesList) {
 
@@ -192,42 +184,36 @@ final class PolygonToLineTask extends AbstractSpatialOperationTask<SimpleFeature
 			for (int i = 0; i < coordFiltered.length - 1; i++) {
 				// for each geometry, create lineStrings as sides has the
 				// geometry.
-				newCoor = new Coordinate[2];
+				Coordinate[] newCoor = new Coordinate[2];
 				newCoor[0] = coordFiltered[i];
 				newCoor[1] = coordFiltered[i + 1];
 				coordinates = coorFac.create(newCoor);
 				LineString lineString = gfac.createLineString(coordinates);
 
-				transformedFeature = FeatureUtil.createFeatureUsing(featureToTransform, featureType, lineString);
-				insert(targetStore, transformedFeature);
+				segments.add(lineString);
 			}
 		}
+		return segments;
 	}
 
 	/**
-	 * Convert the polygon feature into a lineString feature and inserts it.
+	 * Creates a new feature with the line and inserts it.
 	 * 
 	 * @param featureToTransform
 	 *            The polygon feature.
-	 * @param targetLayerCrs
-	 *            Target CRS.
+	 * @param line
+	 *            the line on target CRS
 	 * @param featureType
 	 *            Target feature type.
-	 * @throws OperationNotFoundException
-	 * @throws TransformException
 	 * @throws IllegalAttributeException
 	 * @throws SpatialOperationException
 	 */
 	private void createFeature(	SimpleFeature featureToTransform,
-								CoordinateReferenceSystem targetLayerCrs,
+								Geometry line,
 								SimpleFeatureType featureType)
-		throws OperationNotFoundException, TransformException, IllegalAttributeException, SpatialOperationException {
-
-		Geometry mlineString;
-		mlineString = convertToLine(featureToTransform, targetLayerCrs);
-		// the new feature will belong to this ID
+		throws IllegalAttributeException, SpatialOperationException {
 
-		SimpleFeature transformedFeature = FeatureUtil.createFeatureUsing(featureToTransform, featureType, mlineString);
+		SimpleFeature transformedFeature = FeatureUtil.createFeatureUsing(featureToTransform, featureType, line);
 		insert(targetStore, transformedFeature);
 	}
 
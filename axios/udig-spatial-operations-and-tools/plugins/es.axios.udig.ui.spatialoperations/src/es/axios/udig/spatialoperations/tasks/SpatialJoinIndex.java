@@ -0,0 +1,235 @@
+/* Spatial Operations & Editing Tools for uDig
+ * 
+ * Axios Engineering under a funding contract with: 
+ *      Diputación Foral de Gipuzkoa, Ordenación Territorial 
+ *
+ *      http://b5m.gipuzkoa.net
+ *      http://www.axios.es 
+ *
+ * (C) 2006, Diputación Foral de Gipuzkoa, Ordenación Territorial (DFG-OT). 
+ * DFG-OT agrees to licence under Lesser General Public License (LGPL).
+ * 
+ * You can redistribute it and/or modify it under the terms of the 
+ * GNU Lesser General Public License as published by the Free Software 
+ * Foundation; version 2.1 of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package es.axios.udig.spatialoperations.tasks;
+
+import java.util.List;
+
+import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.FeatureIterator;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.OperationNotFoundException;
+import org.opengis.referencing.operation.TransformException;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+import es.axios.geotools.util.GeoToolsUtils;
+
+/**
+ * Index of the reference features used by the spatial join.
+ * <p>
+ * The reference geometries are projected on map's CRS, prepared and inserted
+ * in a packed R-tree (STRtree). The spatial relation of a geometry is only
+ * evaluated against the reference geometries which envelope intersects it.
+ * </p>
+ * <p>
+ * The reference geometry is the prepared one, so the relation is evaluated
+ * in inverse way when it is required (i.e. <code>a within b</code> is
+ * evaluated as <code>b contains a</code>).
+ * </p>
+ * 
+ * @author Mauricio Pazos (www.axios.es)
+ * @author Aritz Davila (www.axios.es)
+ * @since 1.3.1
+ */
+final class SpatialJoinIndex {
+
+	private final STRtree	index	= new STRtree();
+
+	private SpatialJoinIndex() {
+
+	}
+
+	/**
+	 * Creates the index of the reference features.
+	 * 
+	 * @param referenceFeatures
+	 * @param referenceCrs
+	 *            crs of reference features
+	 * @param mapCrs
+	 *            crs used to evaluate the spatial relation
+	 * @return {@link SpatialJoinIndex}
+	 * @throws OperationNotFoundException
+	 * @throws TransformException
+	 */
+	public static SpatialJoinIndex newInstance(	final FeatureCollection<SimpleFeatureType, SimpleFeature> referenceFeatures,
+												final CoordinateReferenceSystem referenceCrs,
+												final CoordinateReferenceSystem mapCrs)
+		throws OperationNotFoundException, TransformException {
+
+		assert referenceFeatures != null;
+		assert referenceCrs != null;
+		assert mapCrs != null;
+
+		SpatialJoinIndex joinIndex = new SpatialJoinIndex();
+
+		FeatureIterator<SimpleFeature> iter = null;
+		try {
+			iter = referenceFeatures.features();
+			while (iter.hasNext()) {
+
+				SimpleFeature feature = iter.next();
+				Geometry geomOnMap = GeoToolsUtils.reproject((Geometry) feature.getDefaultGeometry(), referenceCrs,
+							mapCrs);
+
+				joinIndex.index.insert(geomOnMap.getEnvelopeInternal(), PreparedGeometryFactory.prepare(geomOnMap));
+			}
+		} finally {
+			if (iter != null) {
+				iter.close();
+			}
+		}
+		joinIndex.index.build();
+
+		return joinIndex;
+	}
+
+	/**
+	 * Evaluates if the geometry fulfills the spatial relation with at least one
+	 * reference geometry. The disjoint relation must be fulfilled with all
+	 * reference geometries.
+	 * 
+	 * @param relation
+	 * @param geomOnMap
+	 *            geometry projected on map's CRS
+	 * @param distance
+	 *            the distance used by the within distance relation
+	 * @return true if the relation exists
+	 */
+	public boolean existRelation(final SpatialRelation relation, final Geometry geomOnMap, final Double distance) {
+
+		assert relation != null;
+		assert geomOnMap != null;
+
+		Envelope searchEnvelope = new Envelope(geomOnMap.getEnvelopeInternal());
+		if (SpatialRelation.IsWithinDistance.equals(relation)) {
+			assert distance != null : "must set the distance for within distance relation"; //$NON-NLS-1$
+			searchEnvelope.expandBy(distance);
+		}
+
+		@SuppressWarnings("unchecked")
+		List<PreparedGeometry> candidates = this.index.query(searchEnvelope);
+
+		if (SpatialRelation.Disjoint.equals(relation)) {
+			// the geometry is disjoint with those reference geometries which
+			// envelope does not intersect it.
+			for (PreparedGeometry reference : candidates) {
+				if (reference.intersects(geomOnMap)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		for (PreparedGeometry reference : candidates) {
+			if (evaluate(relation, geomOnMap, reference, distance)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Evaluates <code>geom relation reference</code>
+	 * 
+	 * @param relation
+	 * @param geom
+	 * @param reference
+	 * @param distance
+	 * @return true if the relation exists
+	 */
+	private boolean evaluate(	final SpatialRelation relation,
+								final Geometry geom,
+								final PreparedGeometry reference,
+								final Double distance) {
+
+		boolean exist = false;
+		switch (relation) {
+		case Intersects:
+
+			exist = reference.intersects(geom);
+			break;
+
+		case Contains: // inverse within
+
+			exist = reference.within(geom);
+			break;
+
+		case Within: // inverse contains
+
+			exist = reference.contains(geom);
+			break;
+
+		case IsCoverBy: // inverse covers
+
+			exist = reference.covers(geom);
+			break;
+
+		case Covers: // inverse coveredBy
+
+			exist = reference.coveredBy(geom);
+			break;
+
+		case Crosses:
+
+			// do overlaps when geometries dimension is the same and also is
+			// 2.
+			Geometry referenceGeom = reference.getGeometry();
+			if ((geom.getDimension() == referenceGeom.getDimension()) && geom.getDimension() == 2) {
+
+				exist = reference.overlaps(geom);
+			} else {
+
+				exist = reference.crosses(geom);
+			}
+			break;
+
+		case Equals:
+
+			exist = geom.equals(reference.getGeometry());
+			break;
+
+		case Overlaps:
+
+			exist = reference.overlaps(geom);
+			break;
+
+		case Touches:
+
+			exist = reference.touches(geom);
+			break;
+
+		case IsWithinDistance:
+
+			exist = geom.isWithinDistance(reference.getGeometry(), distance);
+			break;
+
+		default:
+			assert false : "unsupported spatial relation"; //$NON-NLS-1$
+			break;
+		}
+		return exist;
+	}
+}
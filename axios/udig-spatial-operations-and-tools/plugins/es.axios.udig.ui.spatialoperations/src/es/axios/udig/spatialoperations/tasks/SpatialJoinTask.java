@@ -275,6 +275,8 @@ final class SpatialJoinTask extends AbstractSpatialOperationTask<Object> impleme
 
 		perform();
 
+		flushFeatures();
+
 		Object result = null;
 		if (Mode.copy.equals(this.processMode)) {
 
@@ -301,22 +303,19 @@ final class SpatialJoinTask extends AbstractSpatialOperationTask<Object> impleme
 		FeatureIterator<SimpleFeature> iterFirstSource = null;
 
 		try {
+			// the reference features are read only once
+			SpatialJoinIndex referenceIndex = SpatialJoinIndex.newInstance(this.referenceFeatures,
+						this.secondSourceCrs, this.mapCrs);
 
 			iterFirstSource = this.firstSource.features();
 			while (iterFirstSource.hasNext()) {
 
 				SimpleFeature featureInFirst = iterFirstSource.next();
 				Geometry firstGeom = (Geometry) featureInFirst.getDefaultGeometry();
+				Geometry firstGeomOnMap = GeoToolsUtils.reproject(firstGeom, this.firstSourceCrs, this.mapCrs);
 
-				boolean existRelation = false;
-
-				if (SpatialRelation.Disjoint.equals(this.spatialRelation)) {
-
-					existRelation = existDisjoint(firstGeom);
-				} else {
-
-					existRelation = existeRelation(this.spatialRelation, firstGeom);
-				}
+				boolean existRelation = referenceIndex.existRelation(this.spatialRelation, firstGeomOnMap,
+							this.distance);
 
 				if (existRelation) {
 					if (Mode.selection.equals(this.processMode)) {
@@ -352,85 +351,6 @@ final class SpatialJoinTask extends AbstractSpatialOperationTask<Object> impleme
 		featureIds.add(fid);
 	}
 
-	/**
-	 * Feature from source must fulfill geometry disjoint with all features of
-	 * reference features.
-	 * 
-	 * @param firstGeom
-	 * @return true if the spatial relation is true, false in other case
-	 * @throws SpatialOperationException
-	 */
-	private boolean existDisjoint(final Geometry firstGeom) throws SpatialOperationException {
-
-		FeatureIterator<SimpleFeature> iterSecondSource = null;
-		try {
-			iterSecondSource = this.referenceFeatures.features();
-			while (iterSecondSource.hasNext()) {
-
-				SimpleFeature featureInSecond = iterSecondSource.next();
-				Geometry secondGeom = (Geometry) featureInSecond.getDefaultGeometry();
-
-				if (!existGeometryRelation(SpatialRelation.Disjoint, firstGeom, this.firstSourceCrs, secondGeom,
-							this.secondSourceCrs, this.mapCrs)) {
-
-					return false;
-				}
-
-			}
-			return true;
-
-		} finally {
-			if (iterSecondSource != null) {
-				iterSecondSource.close();
-			}
-		}
-
-	}
-
-	/**
-	 * Feature from source must fulfill geometry relation at least with one
-	 * feature from reference features. This method do not considerate the
-	 * disjoint spatial relation. To disjoint this task use the method
-	 * {@link #existDisjoint(Geometry)}.
-	 * 
-	 * 
-	 * @param relation
-	 * @param firstGeom
-	 * 
-	 * @return True if exist relation, false in other case
-	 * @throws SpatialDataProcessException
-	 */
-	private boolean existeRelation(final SpatialRelation relation, final Geometry firstGeom)
-		throws SpatialOperationException {
-
-		assert !relation.equals(SpatialRelation.Disjoint) : "illegal argument: disjoint is not handed by this method"; //$NON-NLS-1$
-
-		FeatureIterator<SimpleFeature> iterSecondSource = null;
-		try {
-			iterSecondSource = this.referenceFeatures.features();
-
-			while (iterSecondSource.hasNext()) {
-
-				SimpleFeature featureInSecond = iterSecondSource.next();
-				Geometry referenceGeom = (Geometry) featureInSecond.getDefaultGeometry();
-
-				if (existGeometryRelation(relation, firstGeom, this.firstSourceCrs, referenceGeom,
-							this.secondSourceCrs, this.mapCrs)) {
-
-					return true;
-				}
-			}
-			return false;
-
-		} catch (Exception e) {
-			throw makeException(e);
-		} finally {
-			if (iterSecondSource != null) {
-				iterSecondSource.close();
-			}
-		}
-	}
-
 	/**
 	 * Inserts a new feature using the geometry presents in the second feature.
 	 * This method do not copies alphanumeric data to the target layer. TODO a
@@ -483,110 +403,6 @@ final class SpatialJoinTask extends AbstractSpatialOperationTask<Object> impleme
 		}
 	}
 
-	/**
-	 * Evaluates the geometry relation between the first and second geometry,
-	 * using the CRS specified.
-	 * 
-	 * @param relation
-	 * @param firstGeom
-	 * @param firstCrs
-	 * @param secondGeom
-	 * @param secondCrs
-	 * @param crs
-	 * @return
-	 * @throws SpatialOperationException
-	 * @throws SpatialDataProcessException
-	 */
-	private boolean existGeometryRelation(	final SpatialRelation relation,
-											final Geometry firstGeom,
-											final CoordinateReferenceSystem firstCrs,
-											final Geometry secondGeom,
-											final CoordinateReferenceSystem secondCrs,
-											final CoordinateReferenceSystem crs) throws SpatialOperationException {
-
-		try {
-
-			Geometry firstGeomOnCrs = GeoToolsUtils.reproject(firstGeom, firstCrs, crs);
-			Geometry secondGeomOnCrs = GeoToolsUtils.reproject(secondGeom, secondCrs, crs);
-
-			boolean exist = false;
-			switch (relation) {
-			case Intersects:
-
-				exist = firstGeomOnCrs.intersects(secondGeomOnCrs);
-				break;
-
-			case Disjoint: // inverse intersects
-
-				exist = firstGeomOnCrs.disjoint(secondGeomOnCrs);
-				break;
-
-			case Contains:
-
-				exist = firstGeomOnCrs.contains(secondGeomOnCrs);
-				break;
-
-			case Within: // inverse contains
-
-				exist = firstGeomOnCrs.within(secondGeomOnCrs);
-				break;
-
-			case IsCoverBy:
-
-				exist = firstGeomOnCrs.coveredBy(secondGeomOnCrs);
-				break;
-
-			case Covers: // inverse coveredBy
-
-				exist = firstGeomOnCrs.covers(secondGeomOnCrs);
-				break;
-
-			case Crosses:
-
-				// do overlaps when geometries dimension is the same and also is
-				// 2.
-				if ((firstGeomOnCrs.getDimension() == secondGeomOnCrs.getDimension())
-							&& firstGeomOnCrs.getDimension() == 2) {
-
-					exist = firstGeomOnCrs.overlaps(secondGeomOnCrs);
-				} else {
-
-					exist = firstGeomOnCrs.crosses(secondGeomOnCrs);
-				}
-
-				break;
-
-			case Equals:
-
-				exist = firstGeomOnCrs.equals(secondGeomOnCrs);
-				break;
-
-			case Overlaps:
-
-				exist = firstGeomOnCrs.overlaps(secondGeomOnCrs);
-				break;
-
-			case Touches:
-
-				exist = firstGeomOnCrs.touches(secondGeomOnCrs);
-				break;
-			case IsWithinDistance:
-				assert this.distance != null: "must set the distance for within distance relation";		 //$NON-NLS-1$
-				exist = firstGeomOnCrs.isWithinDistance(secondGeomOnCrs, this.distance);
-				break;
-
-			default:
-				assert false : "unsupported spatial relation"; //$NON-NLS-1$
-				break;
-			}
-			return exist;
-
-		} catch (Exception e) {
-			throw makeException(e);
-		}
-
-	}
-
 	/**
 	 * Returns the target with the join result.
 	 * 
@@ -0,0 +1,261 @@
+/* Spatial Operations & Editing Tools for uDig
+ * 
+ * Axios Engineering under a funding contract with: 
+ *      Diputación Foral de Gipuzkoa, Ordenación Territorial 
+ *
+ *      http://b5m.gipuzkoa.net
+ *      http://www.axios.es 
+ *
+ * (C) 2006, Diputación Foral de Gipuzkoa, Ordenación Territorial (DFG-OT). 
+ * DFG-OT agrees to licence under Lesser General Public License (LGPL).
+ * 
+ * You can redistribute it and/or modify it under the terms of the 
+ * GNU Lesser General Public License as published by the Free Software 
+ * Foundation; version 2.1 of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package es.axios.udig.spatialoperations.tasks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.geotools.data.simple.SimpleFeatureStore;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.index.quadtree.Quadtree;
+
+import es.axios.geotools.util.GeoToolsUtils;
+import es.axios.geotools.util.split.CannotSplitException;
+import es.axios.geotools.util.split.SplitFeatureBuilder;
+
+/**
+ * Maintains the fragments of the features to split in a dynamic spatial
+ * index.
+ * <p>
+ * The split lines are applied one by one over the indexed fragments. The
+ * fragments that suffer split are removed from the index and the new fragments
+ * are added, the neighbours which receive new vertices are re-indexed. When
+ * all lines were applied {@link #write()} sends the changes to the store in
+ * one transaction.
+ * </p>
+ * 
+ * @author Mauricio Pazos (www.axios.es)
+ * @author Aritz Davila (www.axios.es)
+ * @since 1.3.1
+ */
+final class SplitFragmentIndex {
+
+	private final SimpleFeatureStore			store;
+	private final CoordinateReferenceSystem		storeCrs;
+	private final CoordinateReferenceSystem		mapCrs;
+
+	private final Quadtree						index		= new Quadtree();
+	private final List<Fragment>				fragments	= new ArrayList<Fragment>();
+	private long								sequence	= 0;
+
+	/**
+	 * Feature and state of a fragment
+	 */
+	private static final class Fragment implements Comparable<Fragment> {
+
+		final SimpleFeature	feature;
+		final long			sequence;
+		/** true if the feature exists in the store */
+		final boolean		stored;
+		Envelope			envelope;
+		boolean				modified	= false;
+		boolean				deleted		= false;
+
+		Fragment(final SimpleFeature feature, final long sequence, final boolean stored) {
+
+			this.feature = feature;
+			this.sequence = sequence;
+			this.stored = stored;
+			this.envelope = ((Geometry) feature.getDefaultGeometry()).getEnvelopeInternal();
+		}
+
+		/**
+		 * Creation order
+		 */
+		public int compareTo(final Fragment other) {
+
+			return (this.sequence < other.sequence) ? -1 : ((this.sequence == other.sequence) ? 0 : 1);
+		}
+	}
+
+	private SplitFragmentIndex(final SimpleFeatureStore store, final CoordinateReferenceSystem mapCrs) {
+
+		this.store = store;
+		this.storeCrs = store.getSchema().getCoordinateReferenceSystem();
+		this.mapCrs = mapCrs;
+	}
+
+	/**
+	 * New instance of {@link SplitFragmentIndex}
+	 * 
+	 * @param store
+	 *            the store where the result will be written
+	 * @param mapCrs
+	 *            the CRS where the split operation is done
+	 * @return {@link SplitFragmentIndex}
+	 */
+	public static SplitFragmentIndex newInstance(final SimpleFeatureStore store, final CoordinateReferenceSystem mapCrs) {
+
+		assert store != null;
+		assert mapCrs != null;
+
+		return new SplitFragmentIndex(store, mapCrs);
+	}
+
+	/**
+	 * Adds a feature retrieved from the store
+	 * 
+	 * @param feature
+	 */
+	public void addStoredFeature(final SimpleFeature feature) {
+
+		add(feature, true);
+	}
+
+	/**
+	 * Adds a feature that will be inserted in the store
+	 * 
+	 * @param feature
+	 *            feature of the store's feature type
+	 */
+	public void addNewFeature(final SimpleFeature feature) {
+
+		add(feature, false);
+	}
+
+	private void add(final SimpleFeature feature, final boolean stored) {
+
+		Fragment fragment = new Fragment(feature, this.sequence++, stored);
+		this.fragments.add(fragment);
+		this.index.insert(fragment.envelope, fragment);
+	}
+
+	/**
+	 * Splits the indexed fragments which intersect the line.
+	 * 
+	 * @param splitLine
+	 * @param splitLineCrs
+	 * @return true if the line split some fragment
+	 * @throws Exception
+	 */
+	public boolean split(final LineString splitLine, final CoordinateReferenceSystem splitLineCrs) throws Exception {
+
+		splitLine.setUserData(splitLineCrs);
+
+		Geometry lineOnStoreCrs = GeoToolsUtils.reproject(splitLine, splitLineCrs, this.storeCrs);
+
+		List<Fragment> candidates = findIntersected(lineOnStoreCrs);
+		if (candidates.isEmpty()) {
+			return false;
+		}
+		Map<SimpleFeature, Fragment> fragmentOf = new IdentityHashMap<SimpleFeature, Fragment>();
+		List<SimpleFeature> features = new ArrayList<SimpleFeature>(candidates.size());
+		for (Fragment fragment : candidates) {
+			fragmentOf.put(fragment.feature, fragment);
+			features.add(fragment.feature);
+		}
+		SplitFeatureBuilder builder = SplitFeatureBuilder.newInstance(features, splitLine, this.mapCrs);
+		try {
+			builder.buildSplit();
+			builder.buildNeighbours();
+
+		} catch (CannotSplitException e) {
+			return false;
+		}
+		for (SimpleFeature feature : builder.getFeaturesThatSufferedSplit()) {
+			remove(fragmentOf.get(feature));
+		}
+		for (SimpleFeature feature : builder.getNeighbourResult()) {
+			reindex(fragmentOf.get(feature));
+		}
+		for (SimpleFeature feature : builder.getSplitResult()) {
+			addNewFeature(feature);
+		}
+		return true;
+	}
+
+	/**
+	 * @param lineOnStoreCrs
+	 * @return the fragments which intersect the line in creation order
+	 */
+	private List<Fragment> findIntersected(final Geometry lineOnStoreCrs) {
+
+		final Envelope lineEnvelope = lineOnStoreCrs.getEnvelopeInternal();
+
+		List<Fragment> intersected = new ArrayList<Fragment>();
+		for (Object item : this.index.query(lineEnvelope)) {
+
+			Fragment fragment = (Fragment) item;
+			if (fragment.deleted || !lineEnvelope.intersects(fragment.envelope)) {
+				continue;
+			}
+			if (lineOnStoreCrs.intersects((Geometry) fragment.feature.getDefaultGeometry())) {
+				intersected.add(fragment);
+			}
+		}
+		Collections.sort(intersected);
+
+		return intersected;
+	}
+
+	private void remove(final Fragment fragment) {
+
+		this.index.remove(fragment.envelope, fragment);
+		fragment.deleted = true;
+	}
+
+	/**
+	 * Updates the index with the new geometry of the fragment
+	 */
+	private void reindex(final Fragment fragment) {
+
+		this.index.remove(fragment.envelope, fragment);
+		fragment.envelope = ((Geometry) fragment.feature.getDefaultGeometry()).getEnvelopeInternal();
+		fragment.modified = true;
+		this.index.insert(fragment.envelope, fragment);
+	}
+
+	/**
+	 * Inserts the new fragments, modifies the neighbours and deletes the
+	 * features that were split. All changes are committed in one transaction.
+	 * 
+	 * @throws Exception
+	 */
+	public void write() throws Exception {
+
+		List<SimpleFeature> toAdd = new ArrayList<SimpleFeature>();
+		List<SimpleFeature> toModify = new ArrayList<SimpleFeature>();
+		List<SimpleFeature> toDelete = new ArrayList<SimpleFeature>();
+
+		for (Fragment fragment : this.fragments) {
+
+			if (fragment.deleted) {
+				if (fragment.stored) {
+					toDelete.add(fragment.feature);
+				}
+			} else if (!fragment.stored) {
+				toAdd.add(fragment.feature);
+			} else if (fragment.modified) {
+				toModify.add(fragment.feature);
+			}
+		}
+		SplitTransaction transaction = SplitTransaction.newInstance(this.store, toAdd, toDelete, toModify);
+		transaction.execute();
+	}
+}
@@ -20,7 +20,7 @@
  */
 package es.axios.udig.spatialoperations.tasks;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.geotools.data.FeatureStore;
@@ -31,14 +31,14 @@ import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.FeatureType;
 import org.opengis.filter.FilterFactory2;
-import org.opengis.filter.spatial.Intersects;
+import org.opengis.filter.spatial.BBOX;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.LineString;
 
-import es.axios.geotools.util.split.CannotSplitException;
-import es.axios.geotools.util.split.SplitFeatureBuilder;
+import es.axios.geotools.util.GeoToolsUtils;
 
 /**
  * Task for doing the split operation.
@@ -120,134 +120,160 @@ final class SplitTask extends AbstractSpatialOperationTask<FeatureStore<SimpleFe
 		return this.targetStore;
 	}
 
+	/**
+	 * Loads the features to split in a {@link SplitFragmentIndex}, applies all
+	 * the split lines over the indexed fragments and writes the result in one
+	 * transaction.
+	 */
 	protected void perform() throws SpatialOperationException {
 
-		// iterators of the first and second layers.
-
 		try {
+			List<SimpleFeature> splitLines = loadSplitLines();
+
+			setTotalCount(splitLines.size());
+
+			SimpleFeatureStore store = (SimpleFeatureStore) this.targetStore;
+			SplitFragmentIndex fragments = SplitFragmentIndex.newInstance(store, this.mapCrs);
+
+			// the features of target store that could be split
+			if (!splitLines.isEmpty()) {
+				loadStoredFeatures(store, splitLines, fragments);
+			}
 			// if a new result layer is required or was selected a
 			// target different of layer to split (source)
 			// adds the feature without changes in target store before
 			// split them.
 			if (isCreatingNewLayer || (!this.layerToSplitName.equals(this.targetLayerName))) {
 
-				// adds features from source layer to the target store.
 				FeatureIterator<SimpleFeature> iterSource = null;
-				try{
+				try {
 					iterSource = featuresInFirstLayer.features();
 					while (iterSource.hasNext()) {
 
 						SimpleFeature sourceFeature = iterSource.next();
 
-						sourceFeature = createFeatureInStore(this.targetStore,
-								sourceFeature, getTargetGeometry(),
-								isCreatingNewLayer);
+						SimpleFeature newFeature = createFeatureFor(store, sourceFeature, getTargetGeometry(),
+									isCreatingNewLayer);
+						fragments.addNewFeature(newFeature);
 					}
-				} finally{
+				} finally {
 					if (iterSource != null) {
 						iterSource.close();
 					}
 				}
 			}
-			//postcondition: the target layer have all source feature without modifications
+			// postcondition: the index has all source feature without
+			// modifications
 
-			// Splits the initialized collection, in the previous step, using the lineString present in the second layer
-			FeatureIterator <SimpleFeature> iterSplitLineLayer = null;
-			try{
-				iterSplitLineLayer = this.splitLineLayer.features();
-				
-				while (iterSplitLineLayer.hasNext()) {
+			// Splits the indexed fragments using the lineString present in
+			// the second layer
+			for (SimpleFeature splitLine : splitLines) {
 
-					SimpleFeature splitLine = iterSplitLineLayer.next();
-					splitFeatureUsingSplitLine((SimpleFeatureStore) this.targetStore,  splitLine, mapCrs);
-				}
-			} finally {
-				if (iterSplitLineLayer != null) {
-					iterSplitLineLayer.close();
-				}
+				splitFeatureUsingSplitLine(fragments, splitLine);
+				worked();
 			}
-			
+			fragments.write();
+
+		} catch (SpatialOperationException e) {
+			throw e;
 		} catch (Exception e) {
-			e.printStackTrace();
-			makeException(e);
-		} 
+			throw makeException(e);
+		}
 	}
 
 	/**
-	 * Using the splitLine feature, go through the target feature store, and
-	 * apply the split operation for each feature, if that correspond.
-	 * 
-	 * @param store the store to split
-	 * @param splitLine
-	 *            the feature used to split the feature collection
-	 * @param mapCrs
-	 *            map's crs
-	 * 
-	 * @throws SpatialOperationException
+	 * @return the features of split line layer
 	 */
-	private final void splitFeatureUsingSplitLine( 
-			final SimpleFeatureStore store, 
-			final SimpleFeature splitLine,
-			final CoordinateReferenceSystem mapCrs)
-		throws SpatialOperationException {
-
-		FeatureCollection<SimpleFeatureType, SimpleFeature> targetFeatreCollection = null;
-		FeatureIterator<SimpleFeature> targetIterator = null;
+	private List<SimpleFeature> loadSplitLines() {
+
+		List<SimpleFeature> splitLines = new ArrayList<SimpleFeature>();
+		FeatureIterator<SimpleFeature> iterSplitLineLayer = null;
 		try {
-			Geometry splitLineGeometry = (Geometry) splitLine.getDefaultGeometry();
-			
-			// the number of geometries the line is made of.
-			final int numLineGeometries = splitLineGeometry.getNumGeometries();
+			iterSplitLineLayer = this.splitLineLayer.features();
+			while (iterSplitLineLayer.hasNext()) {
+
+				splitLines.add(iterSplitLineLayer.next());
+			}
+		} finally {
+			if (iterSplitLineLayer != null) {
+				iterSplitLineLayer.close();
+			}
+		}
+		return splitLines;
+	}
+
+	/**
+	 * Adds to the index the features of store which are in the extent of the
+	 * split lines.
+	 * 
+	 * @param store
+	 * @param splitLines
+	 * @param fragments
+	 * @throws Exception
+	 */
+	private void loadStoredFeatures(final SimpleFeatureStore store,
+									final List<SimpleFeature> splitLines,
+									final SplitFragmentIndex fragments) throws Exception {
 
-			for (int i = 0; (i < numLineGeometries); i++) {
+		final CoordinateReferenceSystem storeCrs = store.getSchema().getCoordinateReferenceSystem();
 
-				LineString currentSplitLine = (LineString) splitLineGeometry.getGeometryN(i);
-				
-				currentSplitLine.setUserData(splitLine.getFeatureType().getCoordinateReferenceSystem());
+		Envelope extent = new Envelope();
+		for (SimpleFeature splitLine : splitLines) {
 
+			Geometry splitLineGeometry = (Geometry) splitLine.getDefaultGeometry();
+			Geometry lineOnStoreCrs = GeoToolsUtils.reproject(splitLineGeometry, splitLine.getFeatureType()
+						.getCoordinateReferenceSystem(), storeCrs);
+			extent.expandToInclude(lineOnStoreCrs.getEnvelopeInternal());
+		}
+		String geometryName = store.getSchema().getGeometryDescriptor().getLocalName();
 
-				// for each feature that intersect with the split line applies the split operation.
+		FilterFactory2 ff = (FilterFactory2) FILTER_FACTORY;
+		BBOX bbox = ff.bbox(ff.property(geometryName), extent.getMinX(), extent.getMinY(), extent.getMaxX(), extent
+					.getMaxY(), null);
 
-				// retrieves the intersected features with the split line
-				String geometryName = store.getSchema().getGeometryDescriptor().getName().toString();
-		    	
-		    	FilterFactory2 ff = (FilterFactory2)FILTER_FACTORY;
-				Intersects intersect = ff.intersects(ff.property(geometryName),  ff.literal( currentSplitLine.toText()) );
-		    	
-				List<SimpleFeature> intersectedFeatures = new LinkedList<SimpleFeature>();
-				targetFeatreCollection = store.getFeatures(intersect);
-				targetIterator = targetFeatreCollection.features();
-				while (targetIterator.hasNext()) {
+		FeatureIterator<SimpleFeature> iter = null;
+		try {
+			iter = store.getFeatures(bbox).features();
+			while (iter.hasNext()) {
 
-					intersectedFeatures.add( targetIterator.next() );
-				}
-				targetIterator.close();
-
-				// executes the split operation in the intersected features
-				SplitFeatureBuilder builder = SplitFeatureBuilder.newInstance(intersectedFeatures, currentSplitLine, mapCrs);
-			    try{
-			    	builder.buildSplit();
-			    	builder.buildNeighbours();
-			    	
-					// modify the target store
-					SplitTransaction transaction = SplitTransaction.newInstance(
-							store, builder.getSplitResult(), builder.getFeaturesThatSufferedSplit(), builder.getNeighbourResult());
-					transaction.execute();
-
-			    } catch (CannotSplitException cse){
-			    	// continue processing the next feature
-			    }
-				
+				fragments.addStoredFeature(iter.next());
 			}
-		} catch (Exception e) {
-			throw makeException(e, e.getMessage());
 		} finally {
-			if (targetIterator != null) {
-				targetIterator.close();
+			if (iter != null) {
+				iter.close();
 			}
 		}
 	}
 
+	/**
+	 * Applies the split line over the indexed fragments.
+	 * 
+	 * @param fragments
+	 *            the fragments to split
+	 * @param splitLine
+	 *            the feature used to split the fragments
+	 * 
+	 * @throws Exception
+	 */
+	private final void splitFeatureUsingSplitLine(final SplitFragmentIndex fragments, final SimpleFeature splitLine)
+		throws Exception {
+
+		Geometry splitLineGeometry = (Geometry) splitLine.getDefaultGeometry();
+		CoordinateReferenceSystem splitLineCrs = splitLine.getFeatureType().getCoordinateReferenceSystem();
+
+		// the number of geometries the line is made of.
+		final int numLineGeometries = splitLineGeometry.getNumGeometries();
+
+		for (int i = 0; (i < numLineGeometries); i++) {
+
+			LineString currentSplitLine = (LineString) splitLineGeometry.getGeometryN(i);
+
+			// continue processing the next line if it cannot split any
+			// fragment
+			fragments.split(currentSplitLine, splitLineCrs);
+		}
+	}
+
 	/**
 	 * Get the geometry class of the target store.
 	 * 
@@ -37,8 +37,6 @@ import org.opengis.filter.FilterFactory;
 import org.opengis.filter.Id;
 import org.opengis.filter.identity.FeatureId;
 import org.opengis.filter.identity.Identifier;
-import org.opengis.referencing.operation.OperationNotFoundException;
-import org.opengis.referencing.operation.TransformException;
 
 import com.vividsolutions.jts.geom.Geometry;
 
@@ -95,19 +93,34 @@ final class SplitTransaction {
 	}
 
 	/**
-	 * Executes the add, modify, and Delete operations in the store. 
+	 * Executes the add, modify, and Delete operations in the store. All the
+	 * changes are committed in one transaction.
+	 * 
 	 * @throws IOException
 	 */
 	public void execute() throws IOException {
 
-		// Adds the split result in the target layer
-		insertFeaturesInStore(this.store, this.createdFeatures);
+		Transaction tx = this.store.getTransaction();
+		try {
+			// Adds the split result in the target layer
+			insertFeaturesInStore(this.store, this.createdFeatures);
+
+			// modifies the neighbors features
+			modifyFeaturesInStore(this.store, this.modifiedFeatures);
 
-		// modifies the neighbors features
-		modifyFeaturesInStore(this.store, this.modifiedFeatures);
+			// deletes the feature what was split.
+			deleteFeatureInStore(this.store, this.deletedFeatures);
+
+			tx.commit();
 
-		// deletes the feature what was split.
-		deleteFeatureInStore(this.store, this.deletedFeatures);
+		} catch (IOException e) {
+
+			tx.rollback();
+			LOGGER.severe(e.getMessage());
+			throw e;
+		} finally {
+			tx.close();
+		}
 	}
 	
 	/**
@@ -115,33 +128,24 @@ final class SplitTransaction {
 	 * 
 	 * @param store	the store
 	 * @param featureList the feature that will be deleted from store
-	 * @throws SpatialOperationException
+	 * @throws IOException
 	 */
 	private void deleteFeatureInStore(
 			SimpleFeatureStore store,
 			List<SimpleFeature> featureList)
 		throws IOException {
 
+		if (featureList.isEmpty()) {
+			return;
+		}
 		// makes a filter ID with the feature's identifiers that will be deleted
 		Set<Identifier> idsToDelete = new HashSet<Identifier>();
 		for (SimpleFeature feature: featureList) {
 			Identifier id = FILTER_FACTORY.featureId(feature.getID());
 			idsToDelete.add(id);
 		}
-		Transaction tx = store.getTransaction();
-		try {
-			Id IdFilter = FILTER_FACTORY.id(idsToDelete);
-			store.removeFeatures(IdFilter);
-			tx.commit();
-			
-		} catch (Exception e) {
-			
-			tx.rollback();
-			LOGGER.severe(e.getMessage());
-			throw new IOException(e);
-		} finally {
-			tx.close();
-		}
+		Id IdFilter = FILTER_FACTORY.id(idsToDelete);
+		store.removeFeatures(IdFilter);
 	}
 
 	/**
@@ -150,8 +154,6 @@ final class SplitTransaction {
 	 * @param store
 	 * @param featureList	features that its geometries were modified
 	 * 
-	 * @throws TransformException 
-	 * @throws OperationNotFoundException 
 	 * @throws IOException 
 	 */
 	private void modifyFeaturesInStore(
@@ -177,19 +179,8 @@ final class SplitTransaction {
 			ids.add(id);
 			Id filter = FILTER_FACTORY.id(ids);
 
-			Transaction transaction = this.store.getTransaction();
-			try {
-				store.modifyFeatures(feature.getDefaultGeometryProperty()
-						.getName(), geomInTargetCRS, filter);
-				transaction.commit();
-			} catch (Exception e) {
-				LOGGER.severe(e.getMessage());
-				transaction.rollback();
-				throw new IOException(e);
-			} finally {
-				transaction.close();
-			}
-
+			store.modifyFeatures(feature.getDefaultGeometryProperty()
+					.getName(), geomInTargetCRS, filter);
 		}
 	}
 
@@ -198,8 +189,6 @@ final class SplitTransaction {
 	 * @param store the data store
 	 * @param featureList the list of features to insert
 	 * 
-	 * @throws TransformException 
-	 * @throws OperationNotFoundException 
 	 * @throws IOException 
 	 */
 	private void insertFeaturesInStore(
@@ -207,6 +196,9 @@ final class SplitTransaction {
 			final List<SimpleFeature> featureList)
 			throws  IOException {
 
+		if (featureList.isEmpty()) {
+			return;
+		}
 		SimpleFeature[] featuresArray = new SimpleFeature[featureList.size()];
 		try {
 			int i = 0;
@@ -226,22 +218,11 @@ final class SplitTransaction {
 			throw new IOException(e.getMessage());
 		}
 
-		Transaction tx = store.getTransaction();
-		try{
-			List<FeatureId> fidSet = store.addFeatures(DataUtilities
-					.collection(featuresArray));
-			if (fidSet.isEmpty()) {
-				tx.rollback();
-				new SpatialOperationException(
-						"The split features are not inserted in the store.s"); //$NON-NLS-1$
-			}
-			tx.commit();
-		} catch (Exception e){
-			tx.rollback();
-			LOGGER.severe(e.getMessage());
-			throw new IOException(e.getMessage());
-		} finally{
-			tx.close();
+		List<FeatureId> fidSet = store.addFeatures(DataUtilities
+				.collection(featuresArray));
+		if (fidSet.size() != featuresArray.length) {
+			throw new IOException(
+					"The split features are not inserted in the store."); //$NON-NLS-1$
 		}
 	}	
 
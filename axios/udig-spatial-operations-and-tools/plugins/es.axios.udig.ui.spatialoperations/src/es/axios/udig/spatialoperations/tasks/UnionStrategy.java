@@ -0,0 +1,37 @@
+/* Spatial Operations & Editing Tools for uDig
+ * 
+ * Axios Engineering under a funding contract with: 
+ *      Diputación Foral de Gipuzkoa, Ordenación Territorial 
+ *
+ *      http://b5m.gipuzkoa.net
+ *      http://www.axios.es 
+ *
+ * (C) 2006, Diputación Foral de Gipuzkoa, Ordenación Territorial (DFG-OT). 
+ * DFG-OT agrees to licence under Lesser General Public License (LGPL).
+ * 
+ * You can redistribute it and/or modify it under the terms of the 
+ * GNU Lesser General Public License as published by the Free Software 
+ * Foundation; version 2.1 of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package es.axios.udig.spatialoperations.tasks;
+
+/**
+ * Strategies to make the union of a group of geometries.
+ * <p>
+ * <b>Pairwise</b> adds each geometry to the accumulated union.
+ * <b>Cascaded</b> joins the near geometries first and then the partial
+ * results (see {@link es.axios.lib.geometry.merge.CascadedUnion}).
+ * </p>
+ * 
+ * @author Mauricio Pazos (www.axios.es)
+ * @since 1.3.1
+ */
+public enum UnionStrategy {
+	Pairwise,
+	Cascaded;
+}
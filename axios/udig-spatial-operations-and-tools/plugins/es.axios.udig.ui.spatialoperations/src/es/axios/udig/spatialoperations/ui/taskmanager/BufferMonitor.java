@@ -53,6 +53,7 @@ import es.axios.udig.spatialoperations.internal.parameters.IBufferInExistentLaye
 import es.axios.udig.spatialoperations.internal.parameters.IBufferInNewLayerParameters;
 import es.axios.udig.spatialoperations.internal.parameters.IBufferParameters;
 import es.axios.udig.spatialoperations.tasks.IBufferTask;
+import es.axios.udig.spatialoperations.tasks.ISpatialOperationTask;
 import es.axios.udig.spatialoperations.tasks.SpatialOperationFactory;
 import es.axios.udig.ui.commons.mediator.AppGISMediator;
 import es.axios.udig.ui.commons.util.LayerUtil;
@@ -68,6 +69,7 @@ import es.axios.udig.ui.commons.util.MapUtil;
 final class BufferMonitor extends SOTaskMonitor<FeatureStore<SimpleFeatureType, SimpleFeature>> {
 
 	private Future<FeatureStore<SimpleFeatureType, SimpleFeature>>	future;
+	private IBufferTask					task;
 	private IBufferParameters			params;
 	private ILayer						sourceLayer	= null;
 	private CoordinateReferenceSystem	sourceCRS	= null;
@@ -126,6 +128,8 @@ final class BufferMonitor extends SOTaskMonitor<FeatureStore<SimpleFeatureType,
 						widthConverted, params.getUnitsOfMeasure(), params.isMergeGeometries(), params
 									.getQuadrantSegments(), params.getCapStyle(), sourceCRS, targetCRS);
 
+			this.task = task;
+
 			ExecutorService executor = Executors.newCachedThreadPool();
 
 			this.future = executor.submit(task);
@@ -242,6 +246,11 @@ final class BufferMonitor extends SOTaskMonitor<FeatureStore<SimpleFeatureType,
 		return this.future;
 	}
 
+	@Override
+	protected ISpatialOperationTask<FeatureStore<SimpleFeatureType, SimpleFeature>> getTask() {
+		return this.task;
+	}
+
 	@Override
 	protected IMap getMap() {
 		IMap map = this.sourceLayer.getMap();
@@ -51,6 +51,7 @@ import es.axios.udig.spatialoperations.internal.parameters.IIntersectInExistentL
 import es.axios.udig.spatialoperations.internal.parameters.IIntersectInNewLayerParameters;
 import es.axios.udig.spatialoperations.internal.parameters.IIntersectParameters;
 import es.axios.udig.spatialoperations.tasks.IIntersectTask;
+import es.axios.udig.spatialoperations.tasks.ISpatialOperationTask;
 import es.axios.udig.spatialoperations.tasks.SpatialOperationException;
 import es.axios.udig.spatialoperations.tasks.SpatialOperationFactory;
 import es.axios.udig.ui.commons.mediator.AppGISMediator;
@@ -66,6 +67,7 @@ import es.axios.udig.ui.commons.util.MapUtil;
 final class IntersectMonitor extends SOTaskMonitor<FeatureStore<SimpleFeatureType, SimpleFeature>> {
 
 	private Future<FeatureStore<SimpleFeatureType, SimpleFeature>>	future;
+	private IIntersectTask											task;
 	private IIntersectParameters									params;
 	private ILayer													targetLayer	= null;
 	private ILayer													secondLayer	= null;
@@ -130,6 +132,12 @@ final class IntersectMonitor extends SOTaskMonitor<FeatureStore<SimpleFeatureTyp
 		return this.future;
 	}
 
+	@Override
+	protected ISpatialOperationTask<FeatureStore<SimpleFeatureType, SimpleFeature>> getTask() {
+
+		return this.task;
+	}
+
 	@Override
 	protected IMap getMap() {
 
@@ -184,6 +192,8 @@ final class IntersectMonitor extends SOTaskMonitor<FeatureStore<SimpleFeatureTyp
 						featuresInSecondLayer, firstLayerCrs, mapCrs, isCreatingNewLayer, featureUnionBuilder,
 						secondLayerCrs);
 
+			this.task = task;
+
 			ExecutorService executor = Executors.newCachedThreadPool();
 
 			this.future = executor.submit(task);
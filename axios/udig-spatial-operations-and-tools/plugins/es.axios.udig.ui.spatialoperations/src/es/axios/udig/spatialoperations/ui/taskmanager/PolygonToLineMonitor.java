@@ -47,6 +47,7 @@ import es.axios.udig.spatialoperations.internal.parameters.IPolygonToLineInExist
 import es.axios.udig.spatialoperations.internal.parameters.IPolygonToLineInNewLayerParameters;
 import es.axios.udig.spatialoperations.internal.parameters.IPolygonToLineParameters;
 import es.axios.udig.spatialoperations.tasks.IPolygonToLineTask;
+import es.axios.udig.spatialoperations.tasks.ISpatialOperationTask;
 import es.axios.udig.spatialoperations.tasks.SpatialOperationFactory;
 import es.axios.udig.ui.commons.mediator.AppGISMediator;
 import es.axios.udig.ui.commons.util.LayerUtil;
@@ -59,6 +60,7 @@ import es.axios.udig.ui.commons.util.LayerUtil;
 final class PolygonToLineMonitor extends SOTaskMonitor<FeatureStore<SimpleFeatureType, SimpleFeature>> {
 
 	private Future<FeatureStore<SimpleFeatureType, SimpleFeature>>	future;
+	private IPolygonToLineTask										task;
 	private IPolygonToLineParameters								params;
 	private ILayer													sourceLayer	= null;
 	private ILayer													targetLayer	= null;
@@ -123,6 +125,12 @@ final class PolygonToLineMonitor extends SOTaskMonitor<FeatureStore<SimpleFeatur
 		return this.future;
 	}
 
+	@Override
+	protected ISpatialOperationTask<FeatureStore<SimpleFeatureType, SimpleFeature>> getTask() {
+
+		return this.task;
+	}
+
 	@Override
 	protected IMap getMap() {
 
@@ -160,6 +168,8 @@ final class PolygonToLineMonitor extends SOTaskMonitor<FeatureStore<SimpleFeatur
 			IPolygonToLineTask task = SpatialOperationFactory.createPolygonToLine(targetStore, featuresFromSource,
 						sourceLayerCrs, explode);
 
+			this.task = task;
+
 			ExecutorService executor = Executors.newCachedThreadPool();
 
 			this.future = executor.submit(task);
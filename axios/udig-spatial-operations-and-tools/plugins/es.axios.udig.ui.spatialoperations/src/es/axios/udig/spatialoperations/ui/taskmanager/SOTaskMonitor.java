@@ -30,6 +30,8 @@ import net.refractions.udig.project.IMap;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 
+import es.axios.udig.spatialoperations.tasks.ISpatialOperationTask;
+
 /**
  * This class abstracts the common behavior of monitor for a task which produce
  * new features into a result (or target) layer.
@@ -40,7 +42,10 @@ import org.eclipse.core.runtime.NullProgressMonitor;
  */
 abstract class SOTaskMonitor<V> extends AbstractMonitor {
 
-	private static final Logger	LOGGER	= Logger.getLogger(SOTaskMonitor.class.getName());
+	private static final Logger	LOGGER			= Logger.getLogger(SOTaskMonitor.class.getName());
+
+	/** units of work reported when the task knows the number of features */
+	private static final int	PROGRESS_UNITS	= 1000;
 
 	/**
 	 * This method does the monitoring of the associated task. It checks if the
@@ -51,7 +56,13 @@ abstract class SOTaskMonitor<V> extends AbstractMonitor {
 
 		try {
 
-			progress.beginTask(getBeginMessage(), IProgressMonitor.UNKNOWN);
+			final ISpatialOperationTask<V> task = getTask();
+			if (task != null) {
+				progress.beginTask(getBeginMessage(), PROGRESS_UNITS);
+			} else {
+				progress.beginTask(getBeginMessage(), IProgressMonitor.UNKNOWN);
+			}
+			int reportedUnits = 0;
 
 			// Checks the finalization of task
 			Future<V> future = getFuture();
@@ -65,7 +76,15 @@ abstract class SOTaskMonitor<V> extends AbstractMonitor {
 					future.cancel(true);
 				} else {
 
-					progress.worked(1);
+					if (task != null) {
+						int units = computeProgressUnits(task);
+						if (units > reportedUnits) {
+							progress.worked(units - reportedUnits);
+							reportedUnits = units;
+						}
+					} else {
+						progress.worked(1);
+					}
 					Thread.sleep(250);
 				}
 			}
@@ -100,6 +119,21 @@ abstract class SOTaskMonitor<V> extends AbstractMonitor {
 		}
 	}
 
+	/**
+	 * @param task
+	 * @return the units of work done by the task
+	 */
+	private int computeProgressUnits(final ISpatialOperationTask<V> task) {
+
+		final int total = task.getTotalCount();
+		if (total <= 0) {
+			return 0;
+		}
+		long units = ((long) task.getProcessedCount() * PROGRESS_UNITS) / total;
+
+		return (int) Math.min(units, PROGRESS_UNITS);
+	}
+
 	@Override
 	public boolean isCancelled() {
 
@@ -163,4 +197,15 @@ abstract class SOTaskMonitor<V> extends AbstractMonitor {
 	 */
 	protected abstract Future<V> getFuture();
 
+	/**
+	 * The monitors of the tasks that count the processed features override
+	 * this method to report the progress.
+	 * 
+	 * @return the monitored task or null if the progress is unknown
+	 */
+	protected ISpatialOperationTask<V> getTask() {
+
+		return null;
+	}
+
 }
@@ -0,0 +1,130 @@
+package net.refractions.udig.catalog.wfs.cache;
+
+import java.io.File;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.geotools.caching.grid.spatialindex.store.BufferedDiskStorage;
+import org.geotools.caching.grid.spatialindex.store.DiskStorage;
+import org.geotools.caching.grid.spatialindex.store.MemoryStorage;
+import org.geotools.caching.spatialindex.Storage;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.FeatureSource;
+import org.geotools.data.memory.MemoryDataStore;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * Seeds a feature cache from a MemoryDataStore holding a 10x10 grid of points.
+ *
+ * @author Emily Gouge
+ * @since 1.2.0
+ */
+public class WFScCacheSeederTest extends TestCase {
+
+    private static final String TYPE_NAME = "points"; //$NON-NLS-1$
+
+    private FeatureSource<SimpleFeatureType, SimpleFeature> source;
+    private ReferencedEnvelope bounds;
+    private File directory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        SimpleFeatureType type = DataUtilities.createType(TYPE_NAME, "geom:Point,name:String"); //$NON-NLS-1$
+        GeometryFactory factory = JTSFactoryFinder.getGeometryFactory(null);
+        MemoryDataStore store = new MemoryDataStore(type);
+        for( int x = 0; x < 10; x++ ) {
+            for( int y = 0; y < 10; y++ ) {
+                SimpleFeature feature = SimpleFeatureBuilder.build(type, new Object[]{
+                        factory.createPoint(new Coordinate(x + 0.5, y + 0.5)), x + "," + y}, //$NON-NLS-1$
+                        TYPE_NAME + "." + x + "." + y); //$NON-NLS-1$ //$NON-NLS-2$
+                store.addFeature(feature);
+            }
+        }
+        source = store.getFeatureSource(TYPE_NAME);
+        bounds = new ReferencedEnvelope(0, 10, 0, 10, null);
+
+        directory = File.createTempFile("wfscache", ""); //$NON-NLS-1$ //$NON-NLS-2$
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = directory.listFiles();
+        for( int i = 0; files != null && i < files.length; i++ ) {
+            files[i].delete();
+        }
+        directory.delete();
+        super.tearDown();
+    }
+
+    public void testSeed() throws Exception {
+        WFScFeatureCache cache = createCache(MemoryStorage.createInstance());
+        int tiles = cache.missingTiles(bounds).size();
+        assertTrue(tiles > 1);
+
+        WFScCacheSeeder seeder = new WFScCacheSeeder(cache);
+        assertEquals(tiles, seeder.seed(bounds, null));
+        assertTrue(cache.missingTiles(bounds).isEmpty());
+
+        // nothing left to seed
+        assertEquals(0, seeder.seed(bounds, null));
+        cache.dispose();
+    }
+
+    public void testCancel() throws Exception {
+        WFScFeatureCache cache = createCache(MemoryStorage.createInstance());
+        int tiles = cache.missingTiles(bounds).size();
+
+        WFScCacheSeeder seeder = new WFScCacheSeeder(cache);
+        seeder.setThreads(1);
+        int seeded = seeder.seed(bounds, new NullProgressMonitor(){
+            @Override
+            public void worked( int work ) {
+                setCanceled(true);
+            }
+        });
+        assertEquals(1, seeded);
+        assertEquals(tiles - 1, cache.missingTiles(bounds).size());
+        cache.dispose();
+    }
+
+    public void testIndexPersisted() throws Exception {
+        WFScFeatureCache cache = createCache(createDiskStorage());
+        int tiles = new WFScCacheSeeder(cache).seed(bounds, null);
+        assertTrue(tiles > 1);
+
+        // the seeder flushes the index, so a cache opened on the same files has the tiles
+        File index = new File(directory, TYPE_NAME + ".idx"); //$NON-NLS-1$
+        assertTrue(index.length() > 0);
+        WFScFeatureCache reopened = createCache(createDiskStorage());
+        assertTrue(reopened.missingTiles(bounds).isEmpty());
+
+        reopened.dispose();
+        cache.dispose();
+    }
+
+    private WFScFeatureCache createCache( Storage storage ) {
+        return new WFScFeatureCache(source, bounds, WFScDataStore.GRID_SIZE_DEFAULT,
+                WFScDataStore.FEATURE_SIZE_DEFAULT, storage, TYPE_NAME);
+    }
+
+    private Storage createDiskStorage() {
+        Properties prop = new Properties();
+        prop.put(DiskStorage.DATA_FILE_PROPERTY, new File(directory, TYPE_NAME + ".cache").getPath()); //$NON-NLS-1$
+        prop.put(DiskStorage.INDEX_FILE_PROPERTY, new File(directory, TYPE_NAME + ".idx").getPath()); //$NON-NLS-1$
+        prop.put(DiskStorage.PAGE_SIZE_PROPERTY, WFScDataStore.PAGE_SIZE_DEFAULT);
+        prop.put(BufferedDiskStorage.BUFFER_SIZE_PROPERTY, WFScDataStore.BUFFER_SIZE_DEFAULT);
+        return BufferedDiskStorage.createInstance(prop);
+    }
+}
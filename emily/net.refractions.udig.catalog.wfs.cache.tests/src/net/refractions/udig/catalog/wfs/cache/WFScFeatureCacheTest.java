@@ -0,0 +1,91 @@
+package net.refractions.udig.catalog.wfs.cache;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.geotools.caching.grid.spatialindex.store.MemoryStorage;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.memory.MemoryDataStore;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * Refreshes expired tiles of a feature cache backed by a MemoryDataStore.
+ *
+ * @author Emily Gouge
+ * @since 1.2.0
+ */
+public class WFScFeatureCacheTest extends TestCase {
+
+    private static final String TYPE_NAME = "points"; //$NON-NLS-1$
+
+    private SimpleFeatureType type;
+    private MemoryDataStore store;
+    private GeometryFactory factory;
+    private ReferencedEnvelope bounds;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        type = DataUtilities.createType(TYPE_NAME, "geom:Point,name:String"); //$NON-NLS-1$
+        factory = JTSFactoryFinder.getGeometryFactory(null);
+        store = new MemoryDataStore(type);
+        for( int x = 0; x < 10; x++ ) {
+            for( int y = 0; y < 10; y++ ) {
+                add(new Coordinate(x + 0.5, y + 0.5), x + "." + y); //$NON-NLS-1$
+            }
+        }
+        bounds = new ReferencedEnvelope(0, 10, 0, 10, null);
+    }
+
+    public void testPutTile() throws Exception {
+        WFScFeatureCache cache = createCache();
+        Envelope tile = cache.missingTiles(bounds).get(0);
+
+        cache.putTile(DataUtilities.collection(store.getFeatureSource(TYPE_NAME).getFeatures(
+                cache.createFilter(tile))), tile);
+        assertFalse(cache.missingTiles(bounds).contains(tile));
+        cache.dispose();
+    }
+
+    public void testRefreshExpired() throws Exception {
+        WFScFeatureCache cache = createCache();
+        List<Envelope> tiles = cache.missingTiles(bounds);
+        new WFScCacheSeeder(cache).seed(bounds, null);
+
+        Envelope tile = tiles.get(tiles.size() / 2);
+        int before = cache.peek(tile).size();
+
+        // the source changes and the tile expires
+        add(tile.centre(), "added"); //$NON-NLS-1$
+        cache.setFreshness(1, WFScFeatureCache.REVALIDATE_NONE);
+        Thread.sleep(10);
+
+        // the query is answered from the cache and queues the refresh
+        cache.matchNodeIds(tile);
+        for( int wait = 0; cache.peek(tile).size() == before && wait < 50; wait++ ) {
+            Thread.sleep(100);
+        }
+        assertEquals(before + 1, cache.peek(tile).size());
+        assertFalse(cache.missingTiles(bounds).contains(tile));
+        cache.dispose();
+    }
+
+    private WFScFeatureCache createCache() throws Exception {
+        return new WFScFeatureCache(store.getFeatureSource(TYPE_NAME), bounds,
+                WFScDataStore.GRID_SIZE_DEFAULT, WFScDataStore.FEATURE_SIZE_DEFAULT, MemoryStorage
+                        .createInstance(), TYPE_NAME);
+    }
+
+    private void add( Coordinate coordinate, String name ) throws Exception {
+        store.addFeature(SimpleFeatureBuilder.build(type, new Object[]{
+                factory.createPoint(coordinate), name}, TYPE_NAME + "." + name)); //$NON-NLS-1$
+    }
+}
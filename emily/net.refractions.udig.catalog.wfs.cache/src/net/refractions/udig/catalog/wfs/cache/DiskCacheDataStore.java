@@ -14,6 +14,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.geotools.caching.featurecache.FeatureCacheException;
+import org.geotools.caching.spatialindex.Storage;
 import org.geotools.data.FeatureReader;
 import org.geotools.data.FeatureSource;
 import org.geotools.data.FeatureWriter;
@@ -78,8 +79,9 @@ public class DiskCacheDataStore extends WFScDataStore {
         //init types
         for( Iterator<String> iterator = types.iterator(); iterator.hasNext(); ) {
             String typeName = (String) iterator.next();
-            File myfile = new File(getCacheFileName(typeName, "cache")); //$NON-NLS-1$
-            if (myfile.exists()){
+            File myfile = new File(getCacheFileName(typeName, DATA_EXTENSION));
+            File index = new File(getCacheFileName(typeName, INDEX_EXTENSION));
+            if (myfile.exists() && index.exists()){
                 //we have cached stuff for this layer so show it; otherwise there is no point??
                 nameToCache.put(typeName, null);
             }
@@ -176,6 +178,7 @@ public class DiskCacheDataStore extends WFScDataStore {
 
     @Override
     public void dispose() {
+        disposeCaches();
     }
 
     @Override
@@ -241,7 +244,15 @@ public class DiskCacheDataStore extends WFScDataStore {
         throw new UnsupportedOperationException();
     }
     
+    /**
+     * Opens the disk cache using the feature type and bounds recorded
+     * with its spatial index.
+     */
     private FeatureSource makeFeatureCache(String typeName) throws FeatureCacheException{
-        return super.makeFeatureCache(new EmptyFeatureSource(this), typeName);
+        Storage storage = createDiskStorage(typeName);
+        EmptyFeatureSource source = new EmptyFeatureSource(this, getCachedSchema(storage));
+        FeatureSource cache = makeFeatureCache(source, typeName, storage);
+        releaseIndex(typeName);
+        return cache;
     }
 }
\ No newline at end of file
@@ -28,10 +28,19 @@ import org.opengis.filter.Filter;
 public class EmptyFeatureSource implements FeatureSource {
  
     private DataAccess parent;
+    private FeatureType schema;
     
     public EmptyFeatureSource( DataAccess parent  ){
+        this(parent, null);
+    }
+    
+    /**
+     * @param parent
+     * @param schema feature type of the cached features; may be null
+     */
+    public EmptyFeatureSource( DataAccess parent, FeatureType schema ){
         this.parent = parent;
-        
+        this.schema = schema;
     }
     
     public void addFeatureListener( FeatureListener listener ) {
@@ -70,7 +79,7 @@ public class EmptyFeatureSource implements FeatureSource {
     }
 
     public Name getName() {
-        return null;
+        return schema == null ? null : schema.getName();
     }
 
     public QueryCapabilities getQueryCapabilities() {
@@ -78,7 +87,7 @@ public class EmptyFeatureSource implements FeatureSource {
     }
 
     public FeatureType getSchema() {
-        return null;
+        return schema;
     }
 
     public Set getSupportedHints() {
@@ -0,0 +1,155 @@
+package net.refractions.udig.catalog.wfs.cache;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.geotools.caching.CacheOversizedException;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.FeatureSource;
+import org.geotools.feature.FeatureCollection;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Fills a feature type cache for an area ahead of time.
+ * <p>
+ * The area is split into the grid tiles of the cache that are not filled yet;
+ * the features of each tile are requested from the source with a bbox query,
+ * several tiles at a time, and added to the cache as each request completes.
+ * The spatial index is flushed at the end so a disk cache keeps the seeded
+ * tiles for the next session.
+ * </p>
+ * 
+ * @author Emily Gouge
+ * @since 1.2.0
+ */
+public class WFScCacheSeeder {
+
+    /** Number of parallel requests to the wfs server */
+    public static final int DEFAULT_THREADS = 4;
+
+    private final WFScFeatureCache cache;
+    private int threads = DEFAULT_THREADS;
+
+    public WFScCacheSeeder( WFScFeatureCache cache ) {
+        this.cache = cache;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @param threads number of parallel requests, at least 1
+     */
+    public void setThreads( int threads ) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread required:" + threads); //$NON-NLS-1$
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Seeds the tiles intersecting bbox.
+     * 
+     * @param bbox area to seed, in the crs of the feature type
+     * @param monitor progress (one unit per tile) and cancellation
+     * @return number of tiles seeded
+     * @throws IOException if a request failed; tiles seeded so far are kept
+     */
+    public int seed( Envelope bbox, IProgressMonitor monitor ) throws IOException {
+        if (monitor == null) monitor = new NullProgressMonitor();
+
+        List<Envelope> tiles = cache.missingTiles(bbox);
+        monitor.beginTask("Seed Cache", tiles.size()); //$NON-NLS-1$
+        if (tiles.isEmpty()) {
+            monitor.done();
+            return 0;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tiles.size()),
+                new ThreadFactory(){
+                    public Thread newThread( Runnable r ) {
+                        Thread thread = new Thread(r, "WFS cache seed"); //$NON-NLS-1$
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        CompletionService<Tile> requests = new ExecutorCompletionService<Tile>(executor);
+        try {
+            for( Envelope tile : tiles ) {
+                requests.submit(new Request(tile));
+            }
+            int seeded = 0;
+            while( seeded < tiles.size() ) {
+                if (monitor.isCanceled()) {
+                    break;
+                }
+                Future<Tile> done = requests.poll(100, TimeUnit.MILLISECONDS);
+                if (done == null) {
+                    continue;
+                }
+                Tile tile = done.get();
+                try {
+                    cache.putTile(tile.features, tile.bounds);
+                } catch (CacheOversizedException full) {
+                    throw (IOException) new IOException("Cache is full; " + seeded + " tiles seeded").initCause(full); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+                seeded++;
+                monitor.worked(1);
+            }
+            return seeded;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (IOException) new IOException("Seeding interrupted").initCause(e); //$NON-NLS-1$
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw (IOException) new IOException(String.valueOf(cause.getMessage())).initCause(cause);
+        } finally {
+            executor.shutdownNow();
+            cache.flush();
+            monitor.done();
+        }
+    }
+
+    /** Features of one grid tile */
+    private static class Tile {
+        final Envelope bounds;
+        final FeatureCollection<SimpleFeatureType, SimpleFeature> features;
+        Tile( Envelope bounds, FeatureCollection<SimpleFeatureType, SimpleFeature> features ) {
+            this.bounds = bounds;
+            this.features = features;
+        }
+    }
+
+    /** GetFeature for one grid tile, read into memory off the caller thread */
+    private class Request implements Callable<Tile> {
+        private final Envelope bounds;
+
+        Request( Envelope bounds ) {
+            this.bounds = bounds;
+        }
+
+        @SuppressWarnings("unchecked")
+        public Tile call() throws Exception {
+            FeatureSource<SimpleFeatureType, SimpleFeature> source = cache.getSource();
+
+            return new Tile(bounds, DataUtilities.collection(source.getFeatures(cache.createFilter(bounds))));
+        }
+    }
+}
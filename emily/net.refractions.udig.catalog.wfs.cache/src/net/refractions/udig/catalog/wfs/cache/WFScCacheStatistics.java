@@ -0,0 +1,80 @@
+package net.refractions.udig.catalog.wfs.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts how often a feature type cache could answer a bbox query without
+ * going back to the wfs server.
+ * <p>
+ * A query is a hit when every grid tile it touches is already filled; the
+ * tile counters show how much of the remaining queries came from the cache.
+ * </p>
+ * 
+ * @author Emily Gouge
+ * @since 1.2.0
+ */
+public class WFScCacheStatistics {
+
+    private final String typeName;
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong cachedTiles = new AtomicLong();
+    private final AtomicLong missingTiles = new AtomicLong();
+
+    public WFScCacheStatistics( String typeName ) {
+        this.typeName = typeName;
+    }
+
+    /**
+     * Records a query.
+     * 
+     * @param cached number of filled tiles used
+     * @param missing number of tiles requested from the server
+     */
+    void query( int cached, int missing ) {
+        queries.incrementAndGet();
+        if (missing == 0) {
+            hits.incrementAndGet();
+        }
+        cachedTiles.addAndGet(cached);
+        missingTiles.addAndGet(missing);
+    }
+
+    public String getTypeName() {
+        return typeName;
+    }
+    public long getQueries() {
+        return queries.get();
+    }
+    public long getHits() {
+        return hits.get();
+    }
+    public long getCachedTiles() {
+        return cachedTiles.get();
+    }
+    public long getMissingTiles() {
+        return missingTiles.get();
+    }
+
+    /**
+     * @return hits / queries; 0 if there have been no queries
+     */
+    public double getHitRatio() {
+        long count = queries.get();
+        return count == 0 ? 0 : (double) hits.get() / count;
+    }
+
+    public void reset() {
+        queries.set(0);
+        hits.set(0);
+        cachedTiles.set(0);
+        missingTiles.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return typeName + ": " + getHits() + "/" + getQueries() + " queries from cache (" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                + Math.round(getHitRatio() * 100) + "%), " + getCachedTiles() + " tiles cached, " //$NON-NLS-1$ //$NON-NLS-2$
+                + getMissingTiles() + " tiles fetched"; //$NON-NLS-1$
+    }
+}
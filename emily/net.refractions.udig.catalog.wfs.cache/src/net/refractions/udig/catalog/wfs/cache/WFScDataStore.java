@@ -7,6 +7,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.net.URI;
 import java.net.URL;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -18,9 +19,9 @@ import javax.xml.namespace.QName;
 
 import net.refractions.udig.catalog.URLUtils;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.geotools.caching.featurecache.FeatureCache;
 import org.geotools.caching.featurecache.FeatureCacheException;
-import org.geotools.caching.grid.featurecache.StreamingGridFeatureCache;
 import org.geotools.caching.grid.spatialindex.store.BufferedDiskStorage;
 import org.geotools.caching.grid.spatialindex.store.DiskStorage;
 import org.geotools.caching.grid.spatialindex.store.MemoryStorage;
@@ -38,13 +39,26 @@ import org.geotools.feature.SchemaException;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.FeatureType;
 import org.opengis.feature.type.Name;
 import org.opengis.filter.Filter;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
+import com.vividsolutions.jts.geom.Envelope;
+
 public class WFScDataStore implements WFSDataStore {
 
     public static final String PAGE_SIZE_DEFAULT = "1000"; //$NON-NLS-1$
+    public static final String BUFFER_SIZE_DEFAULT = "100"; //$NON-NLS-1$
+    /** number of tiles in the grid if GRID_CACHE_SIZE is not specified */
+    public static final int GRID_SIZE_DEFAULT = 1000;
+    /** features kept before tiles are evicted if CACHE_FEATURE_SIZE is not specified */
+    public static final int FEATURE_SIZE_DEFAULT = 100000;
+    
+    /** extension of the cached features */
+    protected static final String DATA_EXTENSION = "cache"; //$NON-NLS-1$
+    /** extension of the spatial index of the cached features */
+    protected static final String INDEX_EXTENSION = "idx"; //$NON-NLS-1$
     
     private WFSDataStore parent;
     
@@ -60,6 +74,10 @@ public class WFScDataStore implements WFSDataStore {
      * <li>WFScServiceImpl.CACHE_DIR_KEY - the disk location (for disk cache)</li>
      * <li>WFScServiceImpl.CACHE_PAGE_SIZE_KEY - the page size of the disk cache (optional)</li>
      * <li>WFScServiceImpl.GRID_CACHE_SIZE_KEY - the size of the grid cache (optional)</li>
+     * <li>WFScServiceImpl.CACHE_BUFFER_SIZE_KEY - the nodes buffered by the disk cache (optional)</li>
+     * <li>WFScServiceImpl.CACHE_FEATURE_SIZE_KEY - the features kept in the cache (optional)</li>
+     * <li>WFScServiceImpl.CACHE_TTL_KEY - seconds a cached tile stays fresh (optional)</li>
+     * <li>WFScServiceImpl.CACHE_REVALIDATE_KEY - how expired tiles are checked (optional)</li>
      * 
      * @param parent
      * @param param
@@ -115,36 +133,94 @@ public class WFScDataStore implements WFSDataStore {
     /**
      * Get the page index size from the parameters
      *
-     * @return
+     * @return page size; null if not specified or not a positive integer
      */
     protected Integer getPageSize(){
-        return (Integer)this.params.get(WFScServiceImpl.CACHE_PAGE_SIZE_KEY);
+        return getPositiveInteger(WFScServiceImpl.CACHE_PAGE_SIZE_KEY);
+    }
+    /**
+     * Get the number of nodes buffered in memory by the disk cache from the parameters
+     *
+     * @return buffer size; null if not specified or not a positive integer
+     */
+    protected Integer getBufferSize(){
+        return getPositiveInteger(WFScServiceImpl.CACHE_BUFFER_SIZE_KEY);
     }
     /**
      * Gets the cache size from the parameters. 
      *
-     * @return the cache size; null if not specified or not an integer
+     * @return the cache size; null if not specified or not a positive integer
      */
     protected Integer getCacheSize(){
-        try{
-            return (Integer)this.params.get(WFScServiceImpl.GRID_CACHE_SIZE_KEY);
-        }catch (Exception ex){
-            return null;
-        }
+        return getPositiveInteger(WFScServiceImpl.GRID_CACHE_SIZE_KEY);
     }
     
     /**
      * Gets the maximum number of features allowed in the cache.
      * 
-     * @return max features or null if not specified
+     * @return max features or null if not specified or not a positive integer
      */
     protected Integer getCacheFeatureSize(){
-        try{
-            return (Integer)this.params.get(WFScServiceImpl.CACHE_FEATURE_SIZE_KEY);
-        }catch (Exception ex){
+        return getPositiveInteger(WFScServiceImpl.CACHE_FEATURE_SIZE_KEY);
+    }
+    
+    /**
+     * Gets the number of milliseconds a tile of the provided type stays fresh.
+     * 
+     * @return time to live; 0 if tiles never expire
+     */
+    protected long getTimeToLive(String typeName){
+        Integer seconds = getPositiveInteger(WFScServiceImpl.CACHE_TTL_KEY + "." + typeName); //$NON-NLS-1$
+        if (seconds == null){
+            seconds = getPositiveInteger(WFScServiceImpl.CACHE_TTL_KEY);
+        }
+        return seconds == null ? 0 : seconds * 1000L;
+    }
+    
+    /**
+     * Gets how expired tiles of the provided type are checked against the server.
+     * 
+     * @return one of the WFScFeatureCache.REVALIDATE_* values
+     */
+    protected String getRevalidation(String typeName){
+        Object value = this.params.get(WFScServiceImpl.CACHE_REVALIDATE_KEY + "." + typeName); //$NON-NLS-1$
+        if (value == null){
+            value = this.params.get(WFScServiceImpl.CACHE_REVALIDATE_KEY);
+        }
+        if (value == null){
+            return WFScFeatureCache.REVALIDATE_NONE;
+        }
+        String revalidation = value.toString().trim().toLowerCase();
+        if (revalidation.equals(WFScFeatureCache.REVALIDATE_COUNT) || revalidation.equals(WFScFeatureCache.REVALIDATE_CHECKSUM)){
+            return revalidation;
+        }
+        if (!revalidation.equals(WFScFeatureCache.REVALIDATE_NONE)){
+            WfsCachePlugin.log("Ignoring unknown " + WFScServiceImpl.CACHE_REVALIDATE_KEY + " value: " + value, null); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return WFScFeatureCache.REVALIDATE_NONE;
+    }
+    
+    /**
+     * Reads an integer connection parameter; parameters restored from the catalog
+     * may be strings.
+     * 
+     * @return the value; or null if not specified or not a positive integer
+     */
+    private Integer getPositiveInteger(String key){
+        Object value = this.params.get(key);
+        if (value == null){
             return null;
         }
-        
+        try{
+            int number = value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(value.toString().trim());
+            if (number > 0){
+                return number;
+            }
+        }catch (NumberFormatException ex){
+            // logged below
+        }
+        WfsCachePlugin.log("Ignoring invalid " + key + " value: " + value, null); //$NON-NLS-1$ //$NON-NLS-2$
+        return null;
     }
     
     public URL getCapabilitiesURL() {
@@ -267,11 +343,23 @@ public class WFScDataStore implements WFSDataStore {
     }
 
     public void dispose() {
+        disposeCaches();
+        parent.dispose();
+    }
+    
+    /**
+     * Disposes the caches; disk caches write their spatial index.
+     */
+    protected void disposeCaches() {
         for( Iterator iterator = nameToCache.values().iterator(); iterator.hasNext(); ) {
-            FeatureCache type = (FeatureCache) iterator.next();
-            if (type != null) type.dispose();
+            Object type = iterator.next();
+            if (type instanceof WFScFeatureCache){
+                WfsCachePlugin.trace(((WFScFeatureCache) type).getStatistics().toString(), null);
+            }
+            if (type instanceof FeatureCache){
+                ((FeatureCache) type).dispose();
+            }
         }
-        parent.dispose();
     }
 
     public List<Name> getNames() throws IOException {
@@ -336,53 +424,132 @@ public class WFScDataStore implements WFSDataStore {
     protected FeatureSource makeFeatureCache(FeatureSource sourceFeatureSource, String typeName) throws FeatureCacheException{
         FeatureSource cachingFS;
         
-        //max out the cache size
+        if (this.getCacheType().equals(WFScServiceImpl.CACHE_MEMORY)){
+            Storage storage = MemoryStorage.createInstance();
+            WFScFeatureCache cache = makeFeatureCache(sourceFeatureSource, typeName, storage);
+            cache.setFreshness(getTimeToLive(typeName), getRevalidation(typeName));
+            cachingFS = cache;
+        }else if (this.getCacheType().equals(WFScServiceImpl.CACHE_DISK)){
+            Storage storage = createDiskStorage(typeName);
+            WFScFeatureCache cache = makeFeatureCache(sourceFeatureSource, typeName, storage);
+            cache.setFreshness(getTimeToLive(typeName), getRevalidation(typeName));
+            cachingFS = cache;
+            releaseIndex(typeName);
+        }else{
+            cachingFS = sourceFeatureSource;
+        }
         
-        int featurecapacity = Integer.MAX_VALUE;
+        return cachingFS;
+    }
+    
+    /**
+     * Creates the grid feature cache over the provided storage.
+     * <p>
+     * If the bounds cannot be obtained from the feature source the bounds
+     * recorded in the storage (from a previous session) are used.
+     * </p>
+     */
+    protected WFScFeatureCache makeFeatureCache(FeatureSource sourceFeatureSource, String typeName, Storage storage) throws FeatureCacheException{
+        //least recently used tiles are evicted past this number of features
+        int featurecapacity = FEATURE_SIZE_DEFAULT;
         if (getCacheFeatureSize() != null){
             featurecapacity = getCacheFeatureSize();
         }
-        int indexcapacity = 1000;    //size of the number of tiles in the grid feature cache.
+        int indexcapacity = GRID_SIZE_DEFAULT;    //size of the number of tiles in the grid feature cache.
         Integer cacheSize = getCacheSize();
         if (cacheSize != null){
             indexcapacity = cacheSize;
         }
         
-        if (this.getCacheType().equals(WFScServiceImpl.CACHE_MEMORY)){
-            Storage storage = MemoryStorage.createInstance();
-            ReferencedEnvelope bnds = getExpandedBounds(sourceFeatureSource);
-
-            if (bnds != null){
-                cachingFS = new StreamingGridFeatureCache(sourceFeatureSource, bnds, indexcapacity, featurecapacity, storage);
-            }else{
-                cachingFS = new StreamingGridFeatureCache(sourceFeatureSource, indexcapacity, featurecapacity, storage);
-            }
-        }else if (this.getCacheType().equals(WFScServiceImpl.CACHE_DISK)){
-            Properties prop = new Properties();
-            
-            String filename = getCacheFileName(typeName, "cache");             //$NON-NLS-1$
-            
-            prop.put(DiskStorage.DATA_FILE_PROPERTY, filename);
-            if (this.getPageSize() != null){
-                prop.put(DiskStorage.PAGE_SIZE_PROPERTY, this.getPageSize().toString());
-            }else{
-                prop.put(DiskStorage.PAGE_SIZE_PROPERTY, PAGE_SIZE_DEFAULT);
-            }
-            prop.put( BufferedDiskStorage.BUFFER_SIZE_PROPERTY, "100"); //$NON-NLS-1$
-
-            Storage storage = BufferedDiskStorage.createInstance(prop);
-            //Storage storage = DiskStorage.createInstance(prop);
-            ReferencedEnvelope bnds = getExpandedBounds(sourceFeatureSource);
-            if (bnds != null){
-                cachingFS = new StreamingGridFeatureCache(sourceFeatureSource, bnds, indexcapacity, featurecapacity, storage);
-            }else{
-                cachingFS = new StreamingGridFeatureCache(sourceFeatureSource, indexcapacity, featurecapacity, storage);
-            }        
-        }else{
-            cachingFS = sourceFeatureSource;
+        ReferencedEnvelope bnds = getExpandedBounds(sourceFeatureSource);
+        if (bnds == null){
+            bnds = storage.getBounds();
+        }
+        if (bnds == null){
+            bnds = WFScFeatureCache.getSourceBounds(sourceFeatureSource);
         }
+        return new WFScFeatureCache(sourceFeatureSource, bnds, indexcapacity, featurecapacity, storage, typeName);
+    }
+    
+    /**
+     * Creates the disk storage for a feature type.
+     * <p>
+     * The storage keeps its page index, feature type and bounds in an index file
+     * next to the data file; when both exist the storage is opened with the
+     * cached features and filled tiles of the previous session.
+     * </p>
+     */
+    protected Storage createDiskStorage(String typeName){
+        Properties prop = new Properties();
         
-        return cachingFS;
+        prop.put(DiskStorage.DATA_FILE_PROPERTY, getCacheFileName(typeName, DATA_EXTENSION));
+        File index = new File(getCacheFileName(typeName, INDEX_EXTENSION));
+        if (index.exists() && !new File(getCacheFileName(typeName, DATA_EXTENSION)).exists()){
+            index.delete(); // nothing to index
+        }
+        prop.put(DiskStorage.INDEX_FILE_PROPERTY, index.getPath());
+        if (this.getPageSize() != null){
+            prop.put(DiskStorage.PAGE_SIZE_PROPERTY, this.getPageSize().toString());
+        }else{
+            prop.put(DiskStorage.PAGE_SIZE_PROPERTY, PAGE_SIZE_DEFAULT);
+        }
+        if (this.getBufferSize() != null){
+            prop.put(BufferedDiskStorage.BUFFER_SIZE_PROPERTY, this.getBufferSize().toString());
+        }else{
+            prop.put(BufferedDiskStorage.BUFFER_SIZE_PROPERTY, BUFFER_SIZE_DEFAULT);
+        }
+        return BufferedDiskStorage.createInstance(prop);
+    }
+    
+    /**
+     * Removes the index file of an open disk cache.
+     * <p>
+     * The index written when the cache is opened only matches the data file until
+     * the next change, so it is removed and written again when the cache is flushed
+     * or disposed. A session that ends without either starts with an empty cache.
+     * </p>
+     */
+    protected void releaseIndex(String typeName){
+        new File(getCacheFileName(typeName, INDEX_EXTENSION)).delete();
+    }
+    
+    /**
+     * The feature type recorded in the disk cache of a previous session.
+     *
+     * @return feature type; or null if the type has no disk cache
+     */
+    protected SimpleFeatureType getCachedSchema(Storage storage){
+        Collection<FeatureType> types = storage.getFeatureTypes();
+        if (types == null || types.isEmpty()){
+            return null;
+        }
+        return (SimpleFeatureType) types.iterator().next();
+    }
+    
+    /**
+     * Writes the spatial index of each disk cache, so the features cached so far
+     * are available in the next session even if this one is not closed cleanly.
+     */
+    public void flush(){
+        for( Iterator<FeatureSource<SimpleFeatureType, SimpleFeature>> iterator = nameToCache.values().iterator(); iterator.hasNext(); ) {
+            FeatureSource<SimpleFeatureType, SimpleFeature> cache = iterator.next();
+            if (cache instanceof WFScFeatureCache){
+                ((WFScFeatureCache) cache).flush();
+            }
+        }
+    }
+    
+    /**
+     * Statistics of the cache for the provided type.
+     * 
+     * @return statistics; or null if the type is not cached
+     */
+    public WFScCacheStatistics getStatistics(String typeName){
+        FeatureSource<SimpleFeatureType, SimpleFeature> cache = nameToCache.get(typeName);
+        if (cache instanceof WFScFeatureCache){
+            return ((WFScFeatureCache) cache).getStatistics();
+        }
+        return null;
     }
     
     /**
@@ -405,6 +572,26 @@ public class WFScDataStore implements WFSDataStore {
         return bnds;
     }
     
+    /**
+     * Fills the cache of the provided type for an area ahead of time.
+     *
+     * @param typeName
+     * @param bbox area to seed, in the crs of the feature type
+     * @param monitor progress and cancellation
+     * @return number of grid tiles seeded
+     * @throws IOException if the features could not be requested
+     */
+    public int seedCache(String typeName, Envelope bbox, IProgressMonitor monitor) throws IOException{
+        FeatureSource<SimpleFeatureType, SimpleFeature> cache = getFeatureSource(typeName);
+        
+        if (cache instanceof WFScFeatureCache){
+            return new WFScCacheSeeder((WFScFeatureCache) cache).seed(bbox, monitor);
+        }else{
+            //nothing to seed for an uncached type
+            return 0;
+        }
+    }
+    
     public void clearCache(Name typeName){
         clearCache(typeName.getLocalPart());
     }
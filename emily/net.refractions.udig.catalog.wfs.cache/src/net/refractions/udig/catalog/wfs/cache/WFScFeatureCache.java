@@ -0,0 +1,384 @@
+package net.refractions.udig.catalog.wfs.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+import org.geotools.caching.CacheOversizedException;
+import org.geotools.caching.featurecache.FeatureCacheException;
+import org.geotools.caching.grid.featurecache.StreamingGridFeatureCache;
+import org.geotools.caching.spatialindex.NodeIdentifier;
+import org.geotools.caching.spatialindex.Region;
+import org.geotools.caching.spatialindex.Storage;
+import org.geotools.caching.util.CacheUtil;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.DefaultQuery;
+import org.geotools.data.FeatureSource;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.FeatureIterator;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.spatial.BBOX;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * Grid feature cache that records hit statistics and can write its
+ * spatial index to storage on request.
+ * <p>
+ * With a disk storage the index (the grid and which tiles are filled) is
+ * written next to the data file, so a cache opened later can answer bbox
+ * queries for the filled tiles straight away.
+ * </p>
+ * <p>
+ * When a time to live is set each tile remembers when it was filled; an expired
+ * tile is still served from the cache while it is refreshed from the source in
+ * the background. Tiles restored from a previous session have no fill time and
+ * are refreshed the first time they are used.
+ * </p>
+ * 
+ * @author Emily Gouge
+ * @since 1.2.0
+ */
+public class WFScFeatureCache extends StreamingGridFeatureCache {
+
+    /** Expired tiles are fetched again */
+    public static final String REVALIDATE_NONE = "none"; //$NON-NLS-1$
+    /** Expired tiles are fetched again only if the source reports a different feature count */
+    public static final String REVALIDATE_COUNT = "count"; //$NON-NLS-1$
+    /** Expired tiles are fetched and only written to the cache if the features changed */
+    public static final String REVALIDATE_CHECKSUM = "checksum"; //$NON-NLS-1$
+
+    private static final FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2(null);
+
+    private final WFScCacheStatistics statistics;
+    private final String typeName;
+
+    /** tile bounds to the time (ms) the tile was filled */
+    private final Map<Envelope, Long> filled = new ConcurrentHashMap<Envelope, Long>();
+    /** tiles waiting for a refresh */
+    private final Set<Envelope> refreshing = new HashSet<Envelope>();
+    private ExecutorService refresher;
+
+    private volatile long timeToLive = 0;
+    private volatile String revalidation = REVALIDATE_NONE;
+
+    public WFScFeatureCache( FeatureSource fs, ReferencedEnvelope bounds, int indexcapacity,
+            int featurecapacity, Storage storage, String typeName ) {
+        super(fs, bounds, indexcapacity, featurecapacity, storage);
+        this.statistics = new WFScCacheStatistics(typeName);
+        this.typeName = typeName;
+    }
+
+    /**
+     * Bounds of the feature source, computed from the features if not advertised.
+     */
+    static ReferencedEnvelope getSourceBounds( FeatureSource fs ) throws FeatureCacheException {
+        return getFeatureBounds(fs);
+    }
+
+    /**
+     * Sets how long a filled tile is considered fresh.
+     * 
+     * @param timeToLive time to live in milliseconds; 0 or less never expires
+     * @param revalidation one of REVALIDATE_NONE, REVALIDATE_COUNT or REVALIDATE_CHECKSUM
+     */
+    public void setFreshness( long timeToLive, String revalidation ) {
+        if (!REVALIDATE_NONE.equals(revalidation) && !REVALIDATE_COUNT.equals(revalidation)
+                && !REVALIDATE_CHECKSUM.equals(revalidation)) {
+            throw new IllegalArgumentException("Unknown revalidation:" + revalidation); //$NON-NLS-1$
+        }
+        this.timeToLive = timeToLive;
+        this.revalidation = revalidation;
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    public String getRevalidation() {
+        return revalidation;
+    }
+
+    /**
+     * Called for every bbox query; the first list holds the tiles missing from
+     * the cache, the second the tiles already filled.
+     * <p>
+     * Expired tiles are left in the second list, so they are served from the
+     * cache, and queued for a refresh.
+     * </p>
+     */
+    @Override
+    public List<NodeIdentifier>[] matchNodeIds( Envelope e ) {
+        List<NodeIdentifier>[] match = super.matchNodeIds(e);
+        statistics.query(match[1].size(), match[0].size());
+        if (timeToLive > 0) {
+            long now = System.currentTimeMillis();
+            for( NodeIdentifier id : match[1] ) {
+                Envelope tile = CacheUtil.convert((Region) id.getShape());
+                Long time = filled.get(tile);
+                if (time == null || now - time > timeToLive) {
+                    scheduleRefresh(tile);
+                }
+            }
+        }
+        return match;
+    }
+
+    /**
+     * Grid tiles intersecting the provided area that are not filled yet;
+     * unlike matchNodeIds this is not recorded in the statistics.
+     */
+    public List<Envelope> missingTiles( Envelope e ) {
+        List<NodeIdentifier> missing = super.matchNodeIds(e)[0];
+        List<Envelope> tiles = new ArrayList<Envelope>(missing.size());
+        for( NodeIdentifier id : missing ) {
+            tiles.add(CacheUtil.convert((Region) id.getShape()));
+        }
+        return tiles;
+    }
+
+    /**
+     * Records the fill time of tiles filled while streaming features from the source.
+     */
+    @Override
+    public void register( Collection<NodeIdentifier> ids ) {
+        super.register(ids);
+        long now = System.currentTimeMillis();
+        for( NodeIdentifier id : ids ) {
+            filled.put(CacheUtil.convert((Region) id.getShape()), now);
+        }
+    }
+
+    /**
+     * Records the fill time of the tiles within the area put in the cache.
+     */
+    @Override
+    protected void register( Envelope e ) {
+        super.register(e);
+        long now = System.currentTimeMillis();
+        for( NodeIdentifier id : super.matchNodeIds(e)[1] ) {
+            Envelope tile = CacheUtil.convert((Region) id.getShape());
+            if (e.contains(tile)) {
+                filled.put(tile, now);
+            }
+        }
+    }
+
+    @Override
+    public void unregister( Collection<NodeIdentifier> ids ) {
+        super.unregister(ids);
+        for( NodeIdentifier id : ids ) {
+            filled.remove(CacheUtil.convert((Region) id.getShape()));
+        }
+    }
+
+    @Override
+    protected void unregister( Envelope e ) {
+        super.unregister(e);
+        for( Iterator<Envelope> tiles = filled.keySet().iterator(); tiles.hasNext(); ) {
+            if (e.contains(tiles.next())) {
+                tiles.remove();
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        filled.clear();
+    }
+
+    @Override
+    public void dispose() {
+        synchronized (refreshing) {
+            if (refresher != null) {
+                refresher.shutdownNow();
+                refresher = null;
+            }
+            refreshing.clear();
+        }
+        super.dispose();
+    }
+
+    /**
+     * The feature source being cached.
+     */
+    public FeatureSource getSource() {
+        return fs;
+    }
+
+    /**
+     * Filter selecting the features of the source within a tile.
+     */
+    public BBOX createFilter( Envelope tile ) {
+        SimpleFeatureType schema = (SimpleFeatureType) fs.getSchema();
+        CoordinateReferenceSystem crs = schema.getCoordinateReferenceSystem();
+        return ff.bbox(schema.getGeometryDescriptor().getLocalName(), tile.getMinX(),
+                tile.getMinY(), tile.getMaxX(), tile.getMaxY(), crs == null ? null : crs.toString());
+    }
+
+    public WFScCacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Puts the features of one grid tile in the cache, replacing any features
+     * cached for the tile.
+     * <p>
+     * The streaming cache only fills tiles while features are read from the
+     * source (put throws UnsupportedOperationException), this is the write path
+     * used to seed and refresh tiles.
+     * </p>
+     * 
+     * @param features all the features of the source within the tile
+     * @param tile bounds of the grid tile
+     * @throws CacheOversizedException if the features do not fit in the cache;
+     *         the cache is left unchanged
+     */
+    public void putTile( FeatureCollection<SimpleFeatureType, SimpleFeature> features, Envelope tile )
+            throws CacheOversizedException {
+        isOversized(features);
+        writeLock();
+        try {
+            unregister(tile);
+            register(tile);
+            FeatureIterator<SimpleFeature> it = features.features();
+            try {
+                while( it.hasNext() ) {
+                    SimpleFeature feature = it.next();
+                    tracker.insertData(feature, CacheUtil.convert((Envelope) feature.getBounds()));
+                }
+            } finally {
+                features.close(it);
+            }
+        } catch (RuntimeException e) {
+            unregister(tile);
+            throw e;
+        } finally {
+            writeUnLock();
+        }
+    }
+
+    /**
+     * Writes the spatial index and any buffered nodes to storage.
+     */
+    public void flush() {
+        writeLock();
+        try {
+            tracker.flush();
+        } finally {
+            writeUnLock();
+        }
+    }
+
+    private void scheduleRefresh( final Envelope tile ) {
+        synchronized (refreshing) {
+            if (!refreshing.add(tile)) {
+                return; // already queued
+            }
+            if (refresher == null) {
+                refresher = Executors.newSingleThreadExecutor(new ThreadFactory(){
+                    public Thread newThread( Runnable r ) {
+                        Thread thread = new Thread(r, "WFS cache refresh " + typeName); //$NON-NLS-1$
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+            refresher.execute(new Runnable(){
+                public void run() {
+                    try {
+                        refresh(tile);
+                    } catch (Throwable t) {
+                        // keep serving the stale tile; it is tried again on the next query
+                        WfsCachePlugin.trace("Could not refresh " + typeName + " " + tile, t); //$NON-NLS-1$ //$NON-NLS-2$
+                    } finally {
+                        synchronized (refreshing) {
+                            refreshing.remove(tile);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Brings an expired tile up to date with the source.
+     */
+    @SuppressWarnings("unchecked")
+    private void refresh( Envelope tile ) throws IOException {
+        FeatureSource<SimpleFeatureType, SimpleFeature> source = fs;
+        BBOX filter = createFilter(tile);
+
+        if (REVALIDATE_COUNT.equals(revalidation)) {
+            int count = source.getCount(new DefaultQuery(typeName, filter));
+            if (count >= 0 && count == digest(peek(tile), tile)[0]) {
+                filled.put(tile, System.currentTimeMillis());
+                return;
+            }
+        }
+        FeatureCollection<SimpleFeatureType, SimpleFeature> features = DataUtilities.collection(source.getFeatures(filter));
+        if (REVALIDATE_CHECKSUM.equals(revalidation)) {
+            long[] current = digest(features, tile);
+            long[] cached = digest(peek(tile), tile);
+            if (current[0] == cached[0] && current[1] == cached[1]) {
+                filled.put(tile, System.currentTimeMillis());
+                return;
+            }
+        }
+        try {
+            // the new contents replace the old ones under the write lock
+            putTile(features, tile);
+        } catch (CacheOversizedException full) {
+            WfsCachePlugin.log("Tile too large for the " + typeName + " cache: " + tile, full); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /**
+     * Count and checksum of the features within a tile, independent of feature order.
+     * 
+     * @return { count, checksum }
+     */
+    private static long[] digest( FeatureCollection<SimpleFeatureType, SimpleFeature> features,
+            Envelope tile ) {
+        Set<String> seen = new HashSet<String>();
+        long checksum = 0;
+        CRC32 crc = new CRC32();
+        FeatureIterator<SimpleFeature> it = features.features();
+        try {
+            while( it.hasNext() ) {
+                SimpleFeature feature = it.next();
+                Geometry geom = (Geometry) feature.getDefaultGeometry();
+                if (geom == null || !tile.intersects(geom.getEnvelopeInternal())
+                        || !seen.add(feature.getID())) {
+                    continue;
+                }
+                crc.reset();
+                crc.update(feature.getID().getBytes());
+                for( Object value : feature.getAttributes() ) {
+                    crc.update(String.valueOf(value).getBytes());
+                }
+                checksum += crc.getValue();
+            }
+        } finally {
+            features.close(it);
+        }
+        return new long[]{seen.size(), checksum};
+    }
+}
@@ -77,6 +77,10 @@ public class WFScServiceImpl extends IService {
      * The size of the page size.
      */
     public static final String CACHE_PAGE_SIZE_KEY = "CACHE_PAGE_SIZE"; //$NON-NLS-1$
+    /**
+     * The number of grid nodes the disk cache keeps in memory (optional; default 100).
+     */
+    public static final String CACHE_BUFFER_SIZE_KEY = "CACHE_BUFFER_SIZE"; //$NON-NLS-1$
     /**
      * The size of the grid cache.
      * <p>
@@ -94,11 +98,35 @@ public class WFScServiceImpl extends IService {
     /**
      * The maximum number of features allowed in the cache.
      * <p>
-     * If not specified the default is Integer.MAX_VALUE;
+     * When the cache holds more features the least recently used grid tiles are
+     * evicted. If not specified the default is WFScDataStore.FEATURE_SIZE_DEFAULT.
      * </p>
      */
     public static final String CACHE_FEATURE_SIZE_KEY = "CACHE_FEATURE_SIZE"; //$NON-NLS-1$
 
+    /**
+     * The number of seconds a cached grid tile stays fresh (optional; default never expires).
+     * <p>
+     * Expired tiles are served from the cache while they are refreshed in the background.
+     * A value for a single feature type can be provided with the key
+     * <code>CACHE_TTL.typeName</code>.
+     * </p>
+     */
+    public static final String CACHE_TTL_KEY = "CACHE_TTL"; //$NON-NLS-1$
+
+    /**
+     * How an expired tile is checked against the server (optional; default WFScFeatureCache.REVALIDATE_NONE).
+     * <p>
+     * The associated value should be one of:
+     * <li>WFScFeatureCache.REVALIDATE_NONE - fetch the tile again</li>
+     * <li>WFScFeatureCache.REVALIDATE_COUNT - fetch the tile again if the feature count changed</li>
+     * <li>WFScFeatureCache.REVALIDATE_CHECKSUM - fetch the tile, replace it if the features changed</li>
+     * A value for a single feature type can be provided with the key
+     * <code>CACHE_REVALIDATE.typeName</code>.
+     * </p>
+     */
+    public static final String CACHE_REVALIDATE_KEY = "CACHE_REVALIDATE"; //$NON-NLS-1$
+
     /**
      * Key for In Memeory cache.
      */
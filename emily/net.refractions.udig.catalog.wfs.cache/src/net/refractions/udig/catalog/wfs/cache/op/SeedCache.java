@@ -0,0 +1,38 @@
+package net.refractions.udig.catalog.wfs.cache.op;
+
+import net.refractions.udig.catalog.IGeoResourceInfo;
+import net.refractions.udig.catalog.wfs.cache.WFScDataStore;
+import net.refractions.udig.catalog.wfs.cache.WFScGeoResourceImpl;
+import net.refractions.udig.ui.operations.IOp;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubProgressMonitor;
+import org.eclipse.swt.widgets.Display;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+
+/**
+ * Operation to fill the cache of a wfsc layer for its whole extent, so
+ * it can be used offline without panning over it first.
+ * 
+ * @author Emily Gouge
+ * @since 1.2.0
+ */
+public class SeedCache implements IOp {
+
+    @Override
+    public void op( Display display, Object target, IProgressMonitor monitor ) throws Exception {
+        monitor.beginTask("Seed Cache", 12); //$NON-NLS-1$
+        WFScGeoResourceImpl geo = (WFScGeoResourceImpl) target;
+        monitor.worked(1);
+        WFScDataStore datastore = geo.resolve(WFScDataStore.class, monitor);
+        monitor.worked(1);
+        IGeoResourceInfo info = geo.getInfo(monitor);
+        String typename = info.getName();
+        ReferencedEnvelope bounds = info.getBounds();
+        if (bounds.getCoordinateReferenceSystem() != null && info.getCRS() != null){
+            bounds = bounds.transform(info.getCRS(), true);
+        }
+        datastore.seedCache(typename, bounds, new SubProgressMonitor(monitor, 10));
+        monitor.done();
+    }
+}
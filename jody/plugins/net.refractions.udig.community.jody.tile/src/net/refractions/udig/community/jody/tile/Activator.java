@@ -10,6 +10,8 @@ import net.refractions.udig.catalog.CatalogPlugin;
 import net.refractions.udig.catalog.ICatalog;
 import net.refractions.udig.catalog.IService;
 
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
 import org.eclipse.ui.IStartup;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.geotools.tile.TileServer;
@@ -61,4 +63,19 @@ public class Activator extends AbstractUIPlugin {
 		return plugin;
 	}
 
+	/**
+	 * Logs a problem to the plug-in log (or standard error if the plug-in is not running).
+	 *
+	 * @param message description of the problem
+	 * @param t cause, may be null
+	 */
+	public static void log( String message, Throwable t ) {
+		if( plugin == null ){
+			System.err.println( message );
+			if( t != null ) t.printStackTrace();
+			return;
+		}
+		plugin.getLog().log( new Status( IStatus.WARNING, PLUGIN_ID, IStatus.OK, message, t ) );
+	}
+
 }
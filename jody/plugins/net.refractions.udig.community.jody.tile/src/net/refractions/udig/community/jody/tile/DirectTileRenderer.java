@@ -3,12 +3,16 @@ package net.refractions.udig.community.jody.tile;
 import java.awt.AlphaComposite;
 import java.awt.Composite;
 import java.awt.Graphics2D;
-import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
 import java.io.IOException;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Set;
+import java.util.Map;
 
 import net.refractions.udig.catalog.IGeoResource;
 import net.refractions.udig.project.internal.render.impl.RendererImpl;
@@ -25,9 +29,11 @@ import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.event.GTAdapter;
 import org.geotools.geometry.Envelope2D;
 import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.CRS;
 import org.geotools.renderer.lite.GridCoverageRenderer;
 import org.geotools.tile.TileMap;
 import org.geotools.tile.ZoomLevel;
+import org.geotools.tile.cache.TileKey;
 import org.geotools.tile.cache.TileRange;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
@@ -36,7 +42,17 @@ import com.vividsolutions.jts.geom.Envelope;
 public class DirectTileRenderer extends RendererImpl implements IRenderer {
     
     private Job load; // no longer used
-    private Set<String> drawn=new HashSet(); // names of drawn grid coverages
+    /** Coverage last drawn for each key, placeholders are replaced as tiles load */
+    private Map<TileKey,GridCoverage2D> drawn=new HashMap<TileKey,GridCoverage2D>();
+    
+    /** Tiles scaled for the display, reused while the tile size on screen is unchanged */
+    private Map<TileKey,Blit> blits=new HashMap<TileKey,Blit>();
+    
+    /** Loaded tiles are drawn at most once per FRAME milliseconds */
+    private static final long FRAME = 50;
+    private long lastDraw;
+    /** true when a loaded tile was not drawn as the last frame was too recent */
+    private boolean skipped;
     
     public void render( final Graphics2D destination, IProgressMonitor monitor ) throws RenderException {
         if( monitor == null ) monitor = new NullProgressMonitor();
@@ -85,6 +101,11 @@ public class DirectTileRenderer extends RendererImpl implements IRenderer {
                         }
         
                         public boolean isCanceled() {
+                            // checked while waiting for tiles, draw any skipped by worked
+                            if( skipped && System.currentTimeMillis() - lastDraw >= FRAME ){
+                                drawTiles( destination, range, false );
+                                setState(RENDERING);
+                            }
                             return progress.isCanceled();
                         }
         
@@ -102,8 +123,14 @@ public class DirectTileRenderer extends RendererImpl implements IRenderer {
                         }
         
                         public void worked( int work ) {
-                            drawTiles( destination, range, false );
-                            setState(RENDERING);
+                            if( System.currentTimeMillis() - lastDraw >= FRAME ){
+                                // coalesce the tiles that arrived since the last frame
+                                drawTiles( destination, range, false );
+                                setState(RENDERING);
+                            }
+                            else {
+                                skipped = true; // drawn by the next frame
+                            }
                             progress.worked(work);
                         }
                     });
@@ -198,56 +225,65 @@ public class DirectTileRenderer extends RendererImpl implements IRenderer {
         }
     }
     */    
+    /**
+     * Draw the tiles that changed since the last call.
+     * <p>
+     * A tile is drawn when the coverage in the range is not the one drawn last
+     * time (ie a placeholder was replaced), so each loaded tile is blitted once
+     * to its pixel rectangle.
+     * </p>
+     * @param graphics
+     * @param range
+     * @param all true to draw every tile, including placeholders
+     */
     private void drawTiles( Graphics2D graphics, TileRange range, boolean all) {
         if( range == TileRange.EMPTY ) return;
 
-        if( all ) drawn.clear(); // don't skip
+        if( all ){
+            drawn.clear(); // don't skip
+            blits.keySet().retainAll( range.getKeys() );
+        }
+        lastDraw = System.currentTimeMillis();
+        skipped = false;
         
         //double scale = getContext().getViewportModel().getScaleDenominator();
         //if(scale < state.minScale || scale > state.maxScale) return;
         float opacity = 1.0f;
         
         CoordinateReferenceSystem crs = getContext().getViewportModel().getCRS();
+        AffineTransform toScreen = getContext().worldToScreenTransform();
         
         Composite oldComposite = graphics.getComposite();        
         AffineTransform graphicsTransform = graphics.getTransform();
+        graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity));
         
-        for( Iterator i=range.getTiles().iterator(); i.hasNext(); ){
-            GridCoverage2D coverage = (GridCoverage2D) i.next();
-            Envelope2D bounds = coverage.getEnvelope2D();
-            
-            //Point p = getContext().worldToPixel( 
-            //g.fillOval(p.x, p.y, 10, 10);
-            if( coverage.getRenderedImage().getWidth() == 512 ){
-                // real image
-                String name = coverage.getName().toString();
-                if( drawn.contains( name ) ){
-                    continue; // skip this image as we have drawn it "last" time                    
+        for( Iterator i=range.getKeys().iterator(); i.hasNext(); ){
+            TileKey key = (TileKey) i.next();
+            GridCoverage2D coverage = range.getTile( key );
+            if( coverage == null || drawn.get( key ) == coverage ){
+                continue; // skip this image as we have drawn it "last" time
+            }
+            drawn.put( key, coverage );
+            try {
+                if( CRS.equalsIgnoreMetadata( crs, coverage.getCoordinateReferenceSystem() )){
+                    Rectangle pixels = toPixels( toScreen, coverage.getEnvelope2D() );
+                    BufferedImage image = blit( key, coverage, pixels );
+                    if( image != null ){
+                        graphics.drawImage( image, pixels.x, pixels.y, null );
+                    }
                 }
                 else {
-                    drawn.add( name ); // mark this one as drawn for next time
+                    // needs reprojection
+                    GridCoverageRenderer paint = new GridCoverageRenderer(coverage, crs);
+                    AffineTransform transform  = new AffineTransform(graphicsTransform);                
+                    transform.concatenate(toScreen);
+                    
+                    graphics.setTransform( transform );
+                    paint.paint( graphics );
                 }
             }
-            else {
-                // placeholder!
-                if( !all ) continue; // skip if this is not the first draw
-            }
-            GridCoverageRenderer paint = new GridCoverageRenderer(coverage, crs);            
-            try {
-                graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity));
-                
-                AffineTransform toScreen = getContext().worldToScreenTransform();
-                AffineTransform transform  = new AffineTransform(graphicsTransform);                
-                transform.concatenate(toScreen);
-                
-                graphics.setTransform( transform );
-                paint.paint( graphics );                               
-            }
             catch ( Throwable t ){
-                if( coverage != null ){
-                    System.out.println("paint tile:"+coverage.getName());
-                }
-                t.printStackTrace();
+                Activator.log( "Unable to paint tile "+coverage.getName(), t );
                 break; // just one for now
             }
             finally {
@@ -257,6 +293,68 @@ public class DirectTileRenderer extends RendererImpl implements IRenderer {
         graphics.setComposite(oldComposite);
     }
     
+    /**
+     * Pixel rectangle of the provided world bounds.
+     * <p>
+     * The edges are rounded (rather than the size) so neighbouring tiles
+     * meet without gaps.
+     * </p>
+     */
+    private static Rectangle toPixels( AffineTransform toScreen, Envelope2D bounds ){
+        Point2D min = toScreen.transform( new Point2D.Double( bounds.getMinX(), bounds.getMinY() ), null );
+        Point2D max = toScreen.transform( new Point2D.Double( bounds.getMaxX(), bounds.getMaxY() ), null );
+        
+        int x1 = (int) Math.round( Math.min( min.getX(), max.getX() ));
+        int x2 = (int) Math.round( Math.max( min.getX(), max.getX() ));
+        int y1 = (int) Math.round( Math.min( min.getY(), max.getY() ));
+        int y2 = (int) Math.round( Math.max( min.getY(), max.getY() ));
+        return new Rectangle( x1, y1, x2 - x1, y2 - y1 );
+    }
+    
+    /**
+     * Tile image scaled to the provided pixel size.
+     * <p>
+     * The scaled image is kept until the tile or the size changes, so panning
+     * and redrawing the same tiles only copies pixels.
+     * </p>
+     * @return scaled image, or null if the tile is not visible at this size
+     */
+    private BufferedImage blit( TileKey key, GridCoverage2D coverage, Rectangle pixels ){
+        if( pixels.width <= 0 || pixels.height <= 0 ) return null;
+        
+        Blit blit = blits.get( key );
+        if( blit != null && blit.coverage == coverage && 
+            blit.image.getWidth() == pixels.width && blit.image.getHeight() == pixels.height ){
+            return blit.image;
+        }
+        RenderedImage source = coverage.getRenderedImage();
+        BufferedImage image = new BufferedImage( pixels.width, pixels.height, BufferedImage.TYPE_INT_ARGB );
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint( RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR );
+            // rows are stored top down
+            AffineTransform scale = AffineTransform.getScaleInstance(
+                    (double) pixels.width / source.getWidth(),
+                    (double) pixels.height / source.getHeight() );
+            g.drawRenderedImage( source, scale );
+        }
+        finally {
+            g.dispose();
+        }
+        blits.put( key, new Blit( coverage, image ));
+        return image;
+    }
+    
+    /** Tile scaled to the display, and the coverage it was scaled from */
+    private static class Blit {
+        final GridCoverage2D coverage;
+        final BufferedImage image;
+        Blit( GridCoverage2D coverage, BufferedImage image ){
+            this.coverage = coverage;
+            this.image = image;
+        }
+    }
+    
     public void render( IProgressMonitor monitor ) throws RenderException {
         Graphics2D g2 = (Graphics2D) context.getImage().getGraphics();
         render( g2, monitor );        
@@ -0,0 +1,79 @@
+package net.refractions.udig.community.jody.tile;
+
+import java.io.File;
+
+import net.refractions.udig.catalog.IGeoResource;
+import net.refractions.udig.project.ILayer;
+import net.refractions.udig.ui.operations.IOp;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.jface.window.Window;
+import org.eclipse.swt.widgets.Display;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.CRS;
+import org.geotools.tile.TileMap;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Operation asking for a region, zoom levels and archive file, then
+ * scheduling a SeedTilesJob to download the tiles of a layer for offline use.
+ * <p>
+ * The region starts as the area shown by the map when it is in the
+ * TileMap CRS, otherwise as the bounds of the TileMap.
+ * </p>
+ * @author Jody Garnett
+ * @since 1.1.0
+ */
+public class SeedTiles implements IOp {
+
+    public void op( final Display display, Object target, IProgressMonitor monitor ) throws Exception {
+        final ILayer layer = (ILayer) target;
+        IGeoResource handle = layer.findGeoResource( TileMap.class );
+        if( handle == null ){
+            display.asyncExec( new Runnable(){
+                public void run() {
+                    MessageDialog.openInformation( display.getActiveShell(), "Seed Tiles",
+                            layer.getName()+" is not a tile layer" );
+                }
+            });
+            return;
+        }
+        final TileMap tileMap = handle.resolve( TileMap.class, monitor );
+        final Envelope bbox = defaultBBox( layer, tileMap );
+        final File archive = new File( System.getProperty( "user.home" ),
+                tileMap.getInfo().getName()+".tiles" );
+
+        final SeedTilesDialog[] prompt = new SeedTilesDialog[1];
+        display.syncExec( new Runnable(){
+            public void run() {
+                SeedTilesDialog dialog = new SeedTilesDialog( display.getActiveShell(), tileMap, bbox, archive );
+                if( dialog.open() == Window.OK ){
+                    prompt[0] = dialog;
+                }
+            }
+        });
+        if( prompt[0] == null ){
+            return; // user canceled
+        }
+        SeedTilesDialog dialog = prompt[0];
+        new SeedTilesJob( tileMap, dialog.getBBox(), dialog.getMinZoom(), dialog.getMaxZoom(),
+                dialog.getArchive() ).schedule();
+    }
+
+    private Envelope defaultBBox( ILayer layer, TileMap tileMap ) {
+        CoordinateReferenceSystem crs = tileMap.getInfo().getCRS();
+        ReferencedEnvelope viewbounds = (ReferencedEnvelope) layer.getMap().getViewportModel().getBounds();
+        if( viewbounds != null && !viewbounds.isNull() && crs != null
+                && CRS.equalsIgnoreMetadata( crs, viewbounds.getCoordinateReferenceSystem() )){
+            Envelope bbox = new Envelope( viewbounds );
+            bbox = bbox.intersection( tileMap.getInfo().getBounds() );
+            if( !bbox.isNull() ){
+                return bbox;
+            }
+        }
+        return new Envelope( tileMap.getInfo().getBounds() );
+    }
+}
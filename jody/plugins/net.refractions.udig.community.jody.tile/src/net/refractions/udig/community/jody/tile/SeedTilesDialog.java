@@ -0,0 +1,196 @@
+package net.refractions.udig.community.jody.tile;
+
+import java.io.File;
+
+import org.eclipse.jface.dialogs.Dialog;
+import org.eclipse.jface.dialogs.IDialogConstants;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.FileDialog;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Spinner;
+import org.eclipse.swt.widgets.Text;
+import org.geotools.tile.TileMap;
+import org.geotools.tile.archive.TileSeeder;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Asks for the region, zoom levels and archive file used by SeedTilesJob.
+ * <p>
+ * The number of tiles to download is shown as the values are changed, so
+ * the user can tell before starting if the span of zoom levels is too large.
+ * </p>
+ * @author Jody Garnett
+ * @since 1.1.0
+ */
+public class SeedTilesDialog extends Dialog {
+    private TileMap tileMap;
+    private int levels;
+
+    // results of prompt
+    private Envelope bbox;
+    private int minZoom;
+    private int maxZoom;
+    private File archive;
+
+    private Text minX, minY, maxX, maxY;
+    private Spinner minZoomSpinner, maxZoomSpinner;
+    private Text file;
+    private Label count;
+
+    /**
+     * @param parentShell
+     * @param tileMap TileMap to seed from
+     * @param bbox Initial region, in the TileMap CRS
+     * @param archive Initial archive file
+     */
+    public SeedTilesDialog( Shell parentShell, TileMap tileMap, Envelope bbox, File archive ) {
+        super( parentShell );
+        this.tileMap = tileMap;
+        this.levels = tileMap.getInfo().getZoomLevels().size();
+        this.bbox = bbox;
+        this.minZoom = 0;
+        this.maxZoom = Math.max( 0, levels - 1 );
+        this.archive = archive;
+    }
+
+    protected void configureShell( Shell shell ) {
+        super.configureShell( shell );
+        shell.setText( "Seed "+tileMap.getInfo().getName() );
+    }
+
+    protected Control createDialogArea( Composite parent ) {
+        Composite composite = (Composite) super.createDialogArea( parent );
+        composite.setLayout( new GridLayout( 3, false ));
+
+        ModifyListener update = new ModifyListener(){
+            public void modifyText( ModifyEvent e ) {
+                updateCount();
+            }
+        };
+        minX = text( composite, "Min X:", Double.toString( bbox.getMinX() ), update );
+        minY = text( composite, "Min Y:", Double.toString( bbox.getMinY() ), update );
+        maxX = text( composite, "Max X:", Double.toString( bbox.getMaxX() ), update );
+        maxY = text( composite, "Max Y:", Double.toString( bbox.getMaxY() ), update );
+        minZoomSpinner = spinner( composite, "Least detailed zoom level:", minZoom, update );
+        maxZoomSpinner = spinner( composite, "Most detailed zoom level:", maxZoom, update );
+
+        new Label( composite, SWT.NONE ).setText( "Archive:" );
+        file = new Text( composite, SWT.BORDER );
+        file.setText( archive.getPath() );
+        file.setLayoutData( new GridData( SWT.FILL, SWT.CENTER, true, false ));
+        file.addModifyListener( update );
+        Button browse = new Button( composite, SWT.PUSH );
+        browse.setText( "Browse..." );
+        browse.addSelectionListener( new SelectionAdapter(){
+            public void widgetSelected( SelectionEvent e ) {
+                FileDialog fileDialog = new FileDialog( getShell(), SWT.SAVE );
+                fileDialog.setFilterExtensions( new String[]{"*.tiles"} );
+                fileDialog.setFilterNames( new String[]{"Tile Archive"} );
+                fileDialog.setFileName( file.getText() );
+                String path = fileDialog.open();
+                if( path != null ){
+                    file.setText( path );
+                }
+            }
+        });
+
+        count = new Label( composite, SWT.NONE );
+        count.setLayoutData( new GridData( SWT.FILL, SWT.CENTER, true, false, 3, 1 ));
+        return composite;
+    }
+
+    protected Control createContents( Composite parent ) {
+        Control contents = super.createContents( parent );
+        updateCount();
+        return contents;
+    }
+
+    private Text text( Composite parent, String label, String value, ModifyListener listener ) {
+        new Label( parent, SWT.NONE ).setText( label );
+        Text text = new Text( parent, SWT.BORDER );
+        text.setText( value );
+        text.setLayoutData( new GridData( SWT.FILL, SWT.CENTER, true, false, 2, 1 ));
+        text.addModifyListener( listener );
+        return text;
+    }
+
+    private Spinner spinner( Composite parent, String label, int value, ModifyListener listener ) {
+        new Label( parent, SWT.NONE ).setText( label );
+        Spinner spinner = new Spinner( parent, SWT.BORDER );
+        spinner.setValues( value, 0, Math.max( 0, levels - 1 ), 0, 1, 1 );
+        spinner.setLayoutData( new GridData( SWT.FILL, SWT.CENTER, true, false, 2, 1 ));
+        spinner.addModifyListener( listener );
+        return spinner;
+    }
+
+    /** Reads the controls, false if a value is missing or out of order */
+    private boolean read() {
+        try {
+            double x1 = Double.parseDouble( minX.getText().trim() );
+            double y1 = Double.parseDouble( minY.getText().trim() );
+            double x2 = Double.parseDouble( maxX.getText().trim() );
+            double y2 = Double.parseDouble( maxY.getText().trim() );
+            if( x1 >= x2 || y1 >= y2 ){
+                return false;
+            }
+            bbox = new Envelope( x1, x2, y1, y2 );
+        }
+        catch( NumberFormatException notANumber ){
+            return false;
+        }
+        minZoom = minZoomSpinner.getSelection();
+        maxZoom = maxZoomSpinner.getSelection();
+        if( minZoom > maxZoom || file.getText().trim().length() == 0 ){
+            return false;
+        }
+        archive = new File( file.getText().trim() );
+        return true;
+    }
+
+    private void updateCount() {
+        boolean valid = read();
+        if( valid ){
+            count.setText( TileSeeder.count( tileMap, bbox, minZoom, maxZoom )+" tiles" );
+        }
+        else {
+            count.setText( "Enter a region, a zoom span from least to most detailed and an archive file" );
+        }
+        Button ok = getButton( IDialogConstants.OK_ID );
+        if( ok != null ){
+            ok.setEnabled( valid );
+        }
+    }
+
+    protected void okPressed() {
+        if( read() ){
+            super.okPressed();
+        }
+    }
+
+    /** Region to seed, in the TileMap CRS */
+    public Envelope getBBox() {
+        return bbox;
+    }
+    /** Index of the least detailed zoom level */
+    public int getMinZoom() {
+        return minZoom;
+    }
+    /** Index of the most detailed zoom level */
+    public int getMaxZoom() {
+        return maxZoom;
+    }
+    public File getArchive() {
+        return archive;
+    }
+}
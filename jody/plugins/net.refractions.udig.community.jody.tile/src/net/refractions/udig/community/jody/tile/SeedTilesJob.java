@@ -0,0 +1,82 @@
+package net.refractions.udig.community.jody.tile;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.geotools.tile.TileMap;
+import org.geotools.tile.archive.TileArchiveWriter;
+import org.geotools.tile.archive.TileSeeder;
+import org.geotools.util.NullProgressListener;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Downloads a region of a TileMap into a tile archive for offline use.
+ * <p>
+ * The archive can be added to the catalog like any other file; running
+ * the job again on the same archive only downloads the missing tiles.
+ * </p>
+ * @author Jody Garnett
+ * @since 1.1.0
+ */
+public class SeedTilesJob extends Job {
+    private TileMap tileMap;
+    private Envelope bbox;
+    private int minZoom;
+    private int maxZoom;
+    private File archive;
+    
+    /**
+     * @param tileMap TileMap to download from
+     * @param bbox Region to seed, in the TileMap CRS
+     * @param minZoom Index of the least detailed zoom level
+     * @param maxZoom Index of the most detailed zoom level
+     * @param archive Archive file, created if needed
+     */
+    public SeedTilesJob( TileMap tileMap, Envelope bbox, int minZoom, int maxZoom, File archive ) {
+        super( "Seed "+archive.getName() );
+        this.tileMap = tileMap;
+        this.bbox = bbox;
+        this.minZoom = minZoom;
+        this.maxZoom = maxZoom;
+        this.archive = archive;
+        setUser( true );
+    }
+    
+    protected IStatus run( final IProgressMonitor monitor ) {
+        monitor.beginTask( getName(), 100 );
+        try {
+            TileArchiveWriter writer = TileArchiveWriter.open( archive );
+            try {
+                TileSeeder.seed( tileMap, bbox, minZoom, maxZoom, writer, new NullProgressListener(){
+                    int done = 0;
+                    public void progress( float percent ) {
+                        int work = (int) percent;
+                        if( work > done ){
+                            monitor.worked( work - done );
+                            done = work;
+                        }
+                    }
+                    public boolean isCanceled() {
+                        return monitor.isCanceled();
+                    }
+                });
+            }
+            finally {
+                writer.close(); // keep what was downloaded, even when canceled
+            }
+        }
+        catch( IOException e ){
+            return new Status( IStatus.ERROR, Activator.PLUGIN_ID, IStatus.OK,
+                    "Could not seed "+archive+":"+e.getMessage(), e );
+        }
+        finally {
+            monitor.done();
+        }
+        return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+    }
+}
@@ -18,6 +18,7 @@ import java.util.Map;
 import org.geotools.catalog.Catalog;
 import org.geotools.tile.TileServer;
 import org.geotools.tile.TileService;
+import org.geotools.tile.archive.TileArchive;
 
 import com.sun.jndi.toolkit.url.UrlUtil;
 
@@ -100,7 +101,11 @@ public class TileServiceExtention implements ServiceExtension {
         }
     }
     private boolean isGoodURL( URL url ){
-        return url.toExternalForm().endsWith(".xml");
+        return isGoodURL( url.toExternalForm() );
+    }
+    
+    private static boolean isGoodURL( String url ){
+        return url.endsWith(".xml") || url.endsWith( TileArchive.EXTENSION );
     }
 
     /**
@@ -108,7 +113,7 @@ public class TileServiceExtention implements ServiceExtension {
      */
     public IService createService( URL id, Map<String, Serializable> params ){
         if(  params.get("url") == null ||
-            !params.get("url").toString().endsWith(".xml") ){
+            !isGoodURL( params.get("url").toString() ) ){
             return null;
         }
         try {
@@ -1,6 +1,10 @@
 package org.geotools.tile;
 
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.tile.cache.TileKey;
 
 /**
  * Please note implementations should be threadsafe as TileCache
@@ -15,7 +19,48 @@ import org.geotools.coverage.grid.GridCoverage2D;
  * @author Jody Garnett, Refractions Research, Inc.
  */
 public abstract class TileDraw {
+     private static final AtomicInteger NEXT_ID = new AtomicInteger( 0 );
+     private final int id = NEXT_ID.incrementAndGet();
+     
+     /**
+      * Identifies this TileDraw (and so the TileSet it draws) in a TileKey.
+      */
+     public final int getId() {
+         return id;
+     }
+     
+     /**
+      * Key used by TileCache and TileRange for the tile at row, col.
+      */
+     public TileKey key( int row, int col ) {
+         return new TileKey( this, row, col );
+     }
+     
      public abstract String name( int row, int col );
      public abstract GridCoverage2D drawPlaceholder( int row, int col );
      public abstract GridCoverage2D drawTile( int row, int col );
+     
+     /**
+      * Encoded content of the tile (for example the jpeg bytes returned by
+      * the server).
+      * <p>
+      * Used by TileCache implementations that keep a copy of the tiles on disk;
+      * the content is turned into a GridCoverage2D with decodeTile.
+      * </p>
+      * @return encoded tile, or null if not supported or no data at that location
+      * @throws IOException if the tile could not be retrieved
+      */
+     public byte[] fetchTile( int row, int col ) throws IOException {
+         return null;
+     }
+     
+     /**
+      * Decode the content produced by fetchTile.
+      * 
+      * @param data encoded tile
+      * @return GridCoverage2D, or null if the data could not be decoded
+      */
+     public GridCoverage2D decodeTile( int row, int col, byte[] data ) {
+         return null;
+     }
 }
\ No newline at end of file
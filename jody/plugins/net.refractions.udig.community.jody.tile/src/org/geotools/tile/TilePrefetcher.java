@@ -0,0 +1,118 @@
+package org.geotools.tile;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.geotools.tile.cache.TileKey;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Works out the tiles likely to be visited after the visible range, and asks
+ * the TileCache to prefetch them.
+ * <p>
+ * The tiles are, in order:
+ * <ul>
+ * <li>a ring of neighbouring tiles around the visible range (panning)
+ * <li>the tiles covering the same area in the parent ZoomLevel (zooming out)
+ * <li>the tiles covering the same area in the child ZoomLevel (zooming in)
+ * </ul>
+ * Each call replaces the tiles still waiting from the previous call, so
+ * prefetching follows the viewport.
+ * </p>
+ * @author Jody Garnett, Refractions Research Inc.
+ */
+public final class TilePrefetcher {
+    private int ring = 1;
+    private boolean adjacentZoomLevels = true;
+    private boolean enabled = true;
+    
+    /** Width in tiles of the ring around the visible range, 1 by default; 0 for none */
+    public int getRing() {
+        return ring;
+    }
+    public void setRing( int ring ) {
+        if( ring < 0 ) throw new IllegalArgumentException("Ring must be positive:"+ring );
+        this.ring = ring;
+    }
+    /** True if the parent and child ZoomLevel tiles are prefetched */
+    public boolean isAdjacentZoomLevels() {
+        return adjacentZoomLevels;
+    }
+    public void setAdjacentZoomLevels( boolean adjacentZoomLevels ) {
+        this.adjacentZoomLevels = adjacentZoomLevels;
+    }
+    public boolean isEnabled() {
+        return enabled;
+    }
+    public void setEnabled( boolean enabled ) {
+        this.enabled = enabled;
+    }
+    
+    /**
+     * Schedule the tiles around the visible range.
+     * 
+     * @param tileSet TileSet of the visible range
+     * @param range Visible range
+     * @param bbox Visible area, used to find the tiles in the adjacent ZoomLevels
+     */
+    void schedule( TileSet tileSet, Rectangle range, Envelope bbox ){
+        if( !enabled ) return;
+        
+        List<TileKey> tiles = neighbours( tileSet, range );
+        if( adjacentZoomLevels ){
+            ZoomLevel parent = null;
+            ZoomLevel child = null;
+            for( Iterator i = tileSet.getTileMap().getInfo().getZoomLevels().iterator(); i.hasNext(); ){
+                ZoomLevel level = (ZoomLevel) i.next();
+                if( level.equals( tileSet.getZoomLevel() )){
+                    child = i.hasNext() ? (ZoomLevel) i.next() : null;
+                    break;
+                }
+                parent = level; // zoom levels are sorted from the least detailed
+            }
+            if( parent != null ){
+                addRange( tiles, tileSet.getTileMap().getTileSet( parent ), bbox );
+            }
+            if( child != null ){
+                addRange( tiles, tileSet.getTileMap().getTileSet( child ), bbox );
+            }
+        }
+        tileSet.server.cache.prefetch( tiles );
+    }
+    
+    /**
+     * Tiles in the ring around range, nearest first.
+     */
+    List<TileKey> neighbours( TileSet tileSet, Rectangle range ){
+        ZoomLevel level = tileSet.getZoomLevel();
+        List<TileKey> tiles = new ArrayList<TileKey>();
+        for( int distance = 1; distance <= ring; distance++ ){
+            int minCol = range.x - distance;
+            int maxCol = range.x + range.width - 1 + distance;
+            int minRow = range.y - distance;
+            int maxRow = range.y + range.height - 1 + distance;
+            for( int col = minCol; col <= maxCol; col++ ){
+                for( int row = minRow; row <= maxRow; row++ ){
+                    boolean edge = col == minCol || col == maxCol || row == minRow || row == maxRow;
+                    if( edge && col >= 0 && row >= 0 && 
+                        col < level.getNumberOfColumns() && row < level.getNumberOfRows() ){
+                        tiles.add( tileSet.draw.key( row, col ));
+                    }
+                }
+            }
+        }
+        return tiles;
+    }
+    
+    private void addRange( List<TileKey> tiles, TileSet tileSet, Envelope bbox ){
+        Rectangle range = tileSet.rangeOf( bbox );
+        for( int col = (int)range.x; col<range.getMaxX(); col++){
+            for( int row = (int)range.y; row<range.getMaxY(); row++){
+                tiles.add( tileSet.draw.key( row, col ));
+            }
+        }
+    }
+}
@@ -8,7 +8,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
-import org.geotools.tile.cache.SimpleTileCache;
+import org.geotools.tile.archive.ArchiveTileProtocolFactory;
+import org.geotools.tile.cache.LRUTileCache;
 import org.geotools.tile.cache.TileCache;
 import org.geotools.tile.nasa.WorldWindTileProtocolFactory;
 import org.geotools.tile.osgeo.OSGeoTileProtocolFactory;
@@ -22,6 +23,7 @@ import org.geotools.util.ProgressListener;
  * <ul>
  * <li>WorldWind: url points to a xml file conformat to the LayerSet.xsd schema
  * <li>OSGeo: url points to an xml file conformant to WMS Tile Server specification
+ * <li>TileArchive: url points to a local .tiles file seeded for offline use
  * </ul>
  * </p>
  * @author Jody Garnett, Refractions Research, Inc.
@@ -35,6 +37,7 @@ public final class TileServer {
     
     TileProtocol protocol;
     TileCache cache;
+    TilePrefetcher prefetcher = new TilePrefetcher();
     
     static private TileProtocol negotiateProtocol( URL server, ProgressListener monitor ) throws IOException{
     	List factories = listAvailableProtocols();
@@ -60,7 +63,8 @@ public final class TileServer {
     }
     
     static private List listAvailableProtocols() {
-    	List available = new ArrayList(2);
+    	List available = new ArrayList(3);
+    	available.add( new ArchiveTileProtocolFactory() );
     	available.add( new WorldWindTileProtocolFactory() );
     	available.add( new OSGeoTileProtocolFactory() );
 		return available;
@@ -74,20 +78,20 @@ public final class TileServer {
 	public TileServer( URL server, ProgressListener monitor ) throws IOException {    	
         protocol = negotiateProtocol( server, null );
         info = protocol.getInfo( monitor );        
-        cache = new SimpleTileCache();
+        cache = new LRUTileCache();
     }
     
     /** Incase info was created beforehand */
     public TileServer( TileServiceInfo info ){
         this.info = info;
         this.protocol = info.getTileStratagy();
-        this.cache = new SimpleTileCache();
+        this.cache = new LRUTileCache();
     }
     
     /**
      * Used to provide a custom implementation of tileCache.
      * <p>
-     * By default TileServer will use "SimpleTileCache", this method
+     * By default TileServer will use "LRUTileCache", this method
      * allows you to configure a more approriate implemntation
      * for you application.
      * </p>
@@ -97,6 +101,13 @@ public final class TileServer {
     	this.cache = cache;
     }
     
+    /**
+     * Used to configure which tiles are fetched ahead of the visible range.
+     */
+    public TilePrefetcher getPrefetcher(){
+        return prefetcher;
+    }
+    
     public TileServiceInfo getInfo(){
         return info;
     }
@@ -12,6 +12,8 @@ import java.util.Map;
 import org.geotools.catalog.AbstractService;
 import org.geotools.catalog.Catalog;
 import org.geotools.catalog.ServiceInfo;
+import org.geotools.tile.archive.ArchiveTileProtocol;
+import org.geotools.tile.archive.TileArchive;
 import org.geotools.tile.nasa.WorldWindTileProtocol;
 import org.geotools.util.ProgressListener;
 
@@ -42,12 +44,12 @@ public class TileService extends AbstractService {
         // should process available stratagies...
         Object connect =getConnectionParams().get("url");
         if( connect instanceof URL){
-            TileProtocol stratagy = new WorldWindTileProtocol( (URL) getConnectionParams().get("url") );
+            TileProtocol stratagy = createStratagy( (URL) getConnectionParams().get("url") );
             info = stratagy.getInfo( monitor );
         }
         else if( connect instanceof String){
             System.out.println("Udig did not preserve my URL");
-            TileProtocol stratagy = new WorldWindTileProtocol( new URL( (String) connect) );
+            TileProtocol stratagy = createStratagy( new URL( (String) connect) );
             info = stratagy.getInfo( monitor );            
         }
         else {
@@ -56,6 +58,13 @@ public class TileService extends AbstractService {
         return info;
     }
 
+    private static TileProtocol createStratagy( URL url ) throws IOException {
+        if( url.getPath().endsWith( TileArchive.EXTENSION )){
+            return new ArchiveTileProtocol( url );
+        }
+        return new WorldWindTileProtocol( url );
+    }
+
     public synchronized TileServer getServer(ProgressListener monitor) throws IOException {
         if( server != null ) return server;
         
@@ -23,7 +23,7 @@ public final class TileSet {
     TileMap tileMap;
     ZoomLevel level; // valid according to metadata
     TileDraw draw; // provided from stratagy
-    private TileServer server;
+    TileServer server;
     
     protected TileSet( TileServer server, TileMap tileMap, ZoomLevel level ){
         this.server = server;
@@ -38,6 +38,10 @@ public final class TileSet {
     public ZoomLevel getZoomLevel(){
         return level;
     }
+    /** TileDraw provided by the protocol for this TileSet */
+    public TileDraw getTileDraw(){
+        return draw;
+    }
     
     /**
      * Request tiles in a provided range
@@ -56,6 +60,34 @@ public final class TileSet {
      * @return
      */
     public TileRange getTileRange( Envelope bbox ){
+        Rectangle range = rangeOf( bbox );
+        TileRange tiles = getTileRange( range );
+        server.prefetcher.schedule( this, range, bbox );
+        return tiles;
+    }
+    
+    /**
+     * Range of tiles covering the provided bbox, limited to 3x3 tiles.
+     * 
+     * @param bbox Understood to match CRS
+     * @return Rectangle( col, row, width, height )
+     */
+    Rectangle rangeOf( Envelope bbox ){
+        Rectangle range = getRange( bbox );
+        limitRange( range );        
+        return range;
+    }
+    
+    /**
+     * Range of all the tiles covering the provided bbox.
+     * <p>
+     * Unlike getTileRange this is not limited to 3x3 tiles; it is used
+     * to seed a TileArchive.
+     * </p>
+     * @param bbox Understood to match CRS
+     * @return Rectangle( col, row, width, height )
+     */
+    public Rectangle getRange( Envelope bbox ){
         Envelope bounds = tileMap.getInfo().getBounds();
         Envelope area = bounds.intersection( bbox );
         DirectPosition2D areaMin = new DirectPosition2D( area.getMinX(), area.getMinY() );
@@ -67,8 +99,7 @@ public final class TileSet {
         Rectangle range = new Rectangle( min );
         range.add( max );
         
-        limitRange( range );        
-        return getTileRange( range );
+        return range.intersection( new Rectangle( 0, 0, level.getNumberOfColumns(), level.getNumberOfRows() ));
     }
 
     /** Used to limit the range to 3x3 tiles */
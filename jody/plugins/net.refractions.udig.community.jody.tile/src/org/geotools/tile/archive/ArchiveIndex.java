@@ -0,0 +1,77 @@
+package org.geotools.tile.archive;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of a TileArchive: the tile maps and the location of each tile in the file.
+ * <p>
+ * The index is written after the tile content:
+ * <pre><code>
+ * int mapCount
+ *   ArchiveTileMapInfo (see ArchiveTileMapInfo.write)
+ * int tileCount
+ *   int map, int zoom, int row, int col, long offset, int length
+ * </code></pre>
+ * </p>
+ * @author Jody Garnett, Refractions Research Inc.
+ */
+final class ArchiveIndex {
+    
+    /** Position of the index in the file, that is the end of the tile content */
+    long offset = TileArchive.HEADER;
+    
+    /** List<ArchiveTileMapInfo> */
+    final List<ArchiveTileMapInfo> maps = new ArrayList<ArchiveTileMapInfo>();
+    
+    /** Map<ArchiveKey,long[]> of { offset, length } */
+    final Map<ArchiveKey,long[]> tiles = new HashMap<ArchiveKey,long[]>();
+    
+    void read( DataInput in ) throws IOException {
+        int mapCount = in.readInt();
+        for( int i=0; i<mapCount; i++){
+            maps.add( ArchiveTileMapInfo.read( in ));
+        }
+        int tileCount = in.readInt();
+        for( int i=0; i<tileCount; i++){
+            ArchiveKey key = new ArchiveKey( in.readInt(), in.readInt(), in.readInt(), in.readInt() );
+            long offset = in.readLong();
+            long length = in.readInt();
+            tiles.put( key, new long[]{ offset, length });
+        }
+    }
+    
+    void write( DataOutput out ) throws IOException {
+        out.writeInt( maps.size() );
+        for( Iterator<ArchiveTileMapInfo> i = maps.iterator(); i.hasNext(); ){
+            i.next().write( out );
+        }
+        out.writeInt( tiles.size() );
+        for( Iterator<Map.Entry<ArchiveKey,long[]>> i = tiles.entrySet().iterator(); i.hasNext(); ){
+            Map.Entry<ArchiveKey,long[]> entry = i.next();
+            ArchiveKey key = entry.getKey();
+            out.writeInt( key.map );
+            out.writeInt( key.zoom );
+            out.writeInt( key.row );
+            out.writeInt( key.col );
+            out.writeLong( entry.getValue()[0] );
+            out.writeInt( (int) entry.getValue()[1] );
+        }
+    }
+    
+    /** Index of the tile map with the provided id, -1 if not found */
+    int indexOf( String id ){
+        for( int i=0; i<maps.size(); i++){
+            if( maps.get(i).getIdentifier().toString().equals( id )){
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,37 @@
+package org.geotools.tile.archive;
+
+/**
+ * Location of a tile in a TileArchive: tile map, zoom level, row and col.
+ * <p>
+ * The tile map and zoom level are indexes into the tile maps of the archive
+ * and the (sorted) zoom levels of each tile map.
+ * </p>
+ * @author Jody Garnett, Refractions Research Inc.
+ */
+final class ArchiveKey {
+    final int map;
+    final int zoom;
+    final int row;
+    final int col;
+    
+    ArchiveKey( int map, int zoom, int row, int col ){
+        this.map = map;
+        this.zoom = zoom;
+        this.row = row;
+        this.col = col;
+    }
+    public boolean equals( Object obj ) {
+        if( obj == this ) return true;
+        if( obj == null || !(obj instanceof ArchiveKey)){
+            return false;
+        }
+        ArchiveKey other = (ArchiveKey) obj;
+        return map == other.map && zoom == other.zoom && row == other.row && col == other.col;
+    }
+    public int hashCode() {
+        return ((map * 31 + zoom) * 31 + row) * 31 + col;
+    }
+    public String toString() {
+        return "ArchiveKey("+map+":"+zoom+":"+row+"x"+col+")";
+    }
+}
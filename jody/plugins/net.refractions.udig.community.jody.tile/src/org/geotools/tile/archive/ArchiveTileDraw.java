@@ -0,0 +1,98 @@
+package org.geotools.tile.archive;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridCoverageFactory;
+import org.geotools.geometry.Envelope2D;
+import org.geotools.tile.TileDraw;
+import org.geotools.tile.TileMapInfo;
+import org.geotools.tile.TileSet;
+import org.geotools.tile.ZoomLevel;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Draws tiles from a TileArchive.
+ * <p>
+ * fetchTile is not provided as the encoded tiles are already on disk; a TileCache
+ * will keep the decoded tiles in memory only.
+ * </p>
+ * @author Jody Garnett, Refractions Research Inc.
+ */
+class ArchiveTileDraw extends TileDraw {
+    static GridCoverageFactory factory = new GridCoverageFactory();
+    
+    private TileSet tileset;
+    private TileArchive archive;
+    private int map;
+    private int zoom;
+    private String prefix;
+    private BufferedImage empty;
+    
+    ArchiveTileDraw( TileSet tileset, TileArchive archive, int map, int zoom ){
+        this.tileset = tileset;
+        this.archive = archive;
+        this.map = map;
+        this.zoom = zoom;
+        this.prefix = tileset.getTileMap().getInfo().getName() + "@" + zoom + ":";
+    }
+    
+    @Override
+    public String name( int row, int col ) {
+        return prefix+col+"x"+row;
+    }
+    
+    @Override
+    public GridCoverage2D drawPlaceholder( int row, int col ) {
+        return factory.create( name(row,col), createEmpty(), createRectangle( row, col ) );
+    }
+    
+    @Override
+    public GridCoverage2D drawTile( int row, int col ) {
+        byte[] data = archive.get( map, zoom, row, col );
+        if( data != null ){
+            GridCoverage2D tile = decodeTile( row, col, data );
+            if( tile != null ) return tile;
+        }
+        return drawPlaceholder( row, col ); // not seeded
+    }
+    
+    @Override
+    public GridCoverage2D decodeTile( int row, int col, byte[] data ) {
+        try {
+            RenderedImage image = ImageIO.read( new ByteArrayInputStream( data ) );
+            if( image == null ){
+                return null; // unknown format
+            }
+            return factory.create( name(row,col), image, createRectangle( row, col ) );
+        }
+        catch (IOException notDecoded ){
+            return null;
+        }
+    }
+    
+    private Envelope2D createRectangle( int row, int col ){
+        ZoomLevel level = tileset.getZoomLevel();
+        TileMapInfo info = tileset.getTileMap().getInfo();
+        Envelope bounds = info.getBounds();
+        
+        double x = bounds.getMinX() + bounds.getWidth() * level.getColRatio(col);
+        double y = bounds.getMinY() + bounds.getHeight() * level.getRowRatio(row);
+        double w = bounds.getWidth() / level.getNumberOfColumns();
+        double h = bounds.getHeight() / level.getNumberOfRows();
+        return new Envelope2D( info.getCRS(), x, y, w, h );
+    }
+    
+    private synchronized RenderedImage createEmpty(){
+        if( empty == null ){
+            empty = new BufferedImage( 45, 45, BufferedImage.TYPE_INT_ARGB );
+        }
+        return empty;
+    }
+}
@@ -0,0 +1,161 @@
+package org.geotools.tile.archive;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import javax.swing.Icon;
+
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.CRS;
+import org.geotools.tile.TileMapInfo;
+import org.geotools.tile.ZoomLevel;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Description of a tile map stored in a TileArchive.
+ * <p>
+ * The description is copied from the TileMapInfo of the seeded tile map, so the
+ * archived tile map keeps the same identifier, bounds and zoom levels.
+ * </p>
+ * @author Jody Garnett, Refractions Research Inc.
+ */
+public final class ArchiveTileMapInfo implements TileMapInfo {
+    final static URI SCHEMA;
+    static {
+        try {
+            SCHEMA = new URI("TileArchive");
+        } catch (URISyntaxException e) {
+            throw (RuntimeException) new RuntimeException( ).initCause( e );
+        }
+    }
+    
+    private URI identifier;
+    private String name;
+    private String title;
+    private CoordinateReferenceSystem crs;
+    private Envelope bounds;
+    
+    /** List<ZoomLevel> in the order of getZoomLevels() */
+    private List<ZoomLevel> levels;
+    
+    private ArchiveTileMapInfo(){        
+    }
+    
+    /** Copy of the provided description */
+    ArchiveTileMapInfo( TileMapInfo info ){
+        this.identifier = info.getIdentifier();
+        this.name = info.getName();
+        this.title = info.getTitle();
+        this.crs = info.getCRS();
+        this.bounds = new Envelope( info.getBounds() );
+        this.levels = new ArrayList<ZoomLevel>( info.getZoomLevels() );
+    }
+    
+    public URI getIdentifier() {
+        return identifier;
+    }
+    public String getName() {
+        return name;
+    }
+    public String getTitle() {
+        return title;
+    }
+    public String getDescription() {
+        return "Archived copy of "+title;
+    }
+    public Icon getIcon() {
+        return null;
+    }
+    public String[] getKeywords() {
+        return new String[]{ "TileMap", "TileArchive" };
+    }
+    public URI getSchema() {
+        return SCHEMA;
+    }
+    public CoordinateReferenceSystem getCRS() {
+        return crs;
+    }
+    public Envelope getBounds() {
+        return new ReferencedEnvelope( bounds, crs );
+    }
+    public SortedSet getZoomLevels() {
+        return new TreeSet( levels );
+    }
+    
+    /** Position of the zoom level in getZoomLevels(), -1 if not found */
+    int indexOf( ZoomLevel level ){
+        return levels.indexOf( level );
+    }
+    
+    /**
+     * <pre><code>
+     * UTF identifier, UTF name, UTF title, UTF crs (as WKT)
+     * double minX, double maxX, double minY, double maxY
+     * int levelCount
+     *   double scaleDenominator, int rows, int cols
+     * </code></pre>
+     */
+    void write( DataOutput out ) throws IOException {
+        out.writeUTF( identifier.toString() );
+        out.writeUTF( name == null ? "" : name );
+        out.writeUTF( title == null ? "" : title );
+        out.writeUTF( crs.toWKT() );
+        out.writeDouble( bounds.getMinX() );
+        out.writeDouble( bounds.getMaxX() );
+        out.writeDouble( bounds.getMinY() );
+        out.writeDouble( bounds.getMaxY() );
+        out.writeInt( levels.size() );
+        for( Iterator<ZoomLevel> i = levels.iterator(); i.hasNext(); ){
+            ZoomLevel level = i.next();
+            out.writeDouble( level.getScaleDenominator() );
+            out.writeInt( level.getNumberOfRows() );
+            out.writeInt( level.getNumberOfColumns() );
+        }
+    }
+    
+    static ArchiveTileMapInfo read( DataInput in ) throws IOException {
+        ArchiveTileMapInfo info = new ArchiveTileMapInfo();
+        try {
+            info.identifier = new URI( in.readUTF() );
+            info.name = in.readUTF();
+            info.title = in.readUTF();
+            info.crs = CRS.parseWKT( in.readUTF() );
+        }
+        catch( URISyntaxException e ){
+            throw (IOException) new IOException("Invalid tile map identifier").initCause( e );
+        }
+        catch( FactoryException e ){
+            throw (IOException) new IOException("Invalid tile map crs").initCause( e );
+        }
+        double minX = in.readDouble();
+        double maxX = in.readDouble();
+        double minY = in.readDouble();
+        double maxY = in.readDouble();
+        info.bounds = new Envelope( minX, maxX, minY, maxY );
+        
+        int levelCount = in.readInt();
+        info.levels = new ArrayList<ZoomLevel>( levelCount );
+        for( int i=0; i<levelCount; i++){
+            double scale = in.readDouble();
+            int rows = in.readInt();
+            int cols = in.readInt();
+            info.levels.add( new ZoomLevel( scale, rows, cols ));
+        }
+        return info;
+    }
+    
+    public String toString() {
+        return "ArchiveTileMapInfo("+name+")";
+    }
+}
@@ -0,0 +1,130 @@
+package org.geotools.tile.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.swing.Icon;
+
+import org.geotools.tile.TileDraw;
+import org.geotools.tile.TileMapInfo;
+import org.geotools.tile.TileProtocol;
+import org.geotools.tile.TileServiceInfo;
+import org.geotools.tile.TileSet;
+import org.geotools.util.NullProgressListener;
+import org.geotools.util.ProgressListener;
+
+/**
+ * Serves tiles from a local TileArchive, without network access.
+ * 
+ * @author Jody Garnett, Refractions Research Inc.
+ */
+public class ArchiveTileProtocol extends TileProtocol {
+    private TileArchive archive;
+    private URI source;
+    
+    public ArchiveTileProtocol( URL url ) throws IOException {
+        this( toFile( url ));
+    }
+    
+    public ArchiveTileProtocol( File file ) throws IOException {
+        archive = TileArchive.open( file );
+        source = file.toURI();
+    }
+    
+    static File toFile( URL url ) throws IOException {
+        if( !"file".equalsIgnoreCase( url.getProtocol() )){
+            throw new IOException("Tile archive must be a file:"+url );
+        }
+        try {
+            return new File( url.toURI() );
+        }
+        catch( URISyntaxException e ){
+            return new File( url.getPath() );
+        }
+    }
+    
+    public TileArchive getArchive() {
+        return archive;
+    }
+    
+    public TileServiceInfo getInfo( ProgressListener monitor ) {
+        return new ArchiveServiceInfo();
+    }
+    
+    /**
+     * List<URI> of the tile maps in the archive.
+     */
+    public List getTileMapIds( TileServiceInfo info, ProgressListener monitor ) {
+        if( monitor == null ) monitor = new NullProgressListener();
+        try {
+            List maps = archive.getTileMaps();
+            List ids = new ArrayList( maps.size() );
+            for( Iterator i = maps.iterator(); i.hasNext(); ){
+                ids.add( ((TileMapInfo) i.next()).getIdentifier() );
+            }
+            return ids;
+        }
+        finally {
+            monitor.complete();
+        }
+    }
+    
+    public TileMapInfo getTileMapInfo( TileServiceInfo info, URI id, ProgressListener monitor ) {
+        if( monitor == null ) monitor = new NullProgressListener();
+        try {
+            for( Iterator i = archive.getTileMaps().iterator(); i.hasNext(); ){
+                TileMapInfo tileMapInfo = (TileMapInfo) i.next();
+                if( tileMapInfo.getIdentifier().equals( id )){
+                    return tileMapInfo;
+                }
+            }
+            return null;
+        }
+        finally {
+            monitor.complete();
+        }
+    }
+    
+    public TileDraw getTileDraw( TileSet tileset ) {
+        ArchiveTileMapInfo info = (ArchiveTileMapInfo) tileset.getTileMap().getInfo();
+        int map = archive.getTileMaps().indexOf( info );
+        int zoom = info.indexOf( tileset.getZoomLevel() );
+        return new ArchiveTileDraw( tileset, archive, map, zoom );
+    }
+    
+    class ArchiveServiceInfo implements TileServiceInfo {
+        public TileProtocol getTileStratagy() {
+            return ArchiveTileProtocol.this;
+        }
+        public String getAbstract() {
+            return "Tiles stored in "+archive.getFile().getName();
+        }
+        public String getDescription() {
+            return archive.getTileCount()+" tiles stored in "+archive.getFile();
+        }
+        public Icon getIcon() {
+            return null;
+        }
+        public String[] getKeywords() {
+            return new String[]{ "tile", "TileArchive" };
+        }
+        public URI getPublisher() {
+            return null;
+        }
+        public URI getSchema() {
+            return ArchiveTileMapInfo.SCHEMA;
+        }
+        public URI getSource() {
+            return source;
+        }
+        public String getTitle() {
+            return archive.getFile().getName();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.geotools.tile.archive;
+
+import java.io.IOException;
+import java.net.URL;
+
+import org.geotools.tile.TileProtocol;
+import org.geotools.tile.TileProtocolFactory;
+import org.geotools.util.SimpleInternationalString;
+import org.opengis.util.InternationalString;
+
+public class ArchiveTileProtocolFactory implements TileProtocolFactory {
+
+	public boolean canTile(URL url) {
+		try {
+			return TileArchive.isArchive( ArchiveTileProtocol.toFile( url ) );
+		}
+		catch( IOException notFile ){
+			return false;
+		}
+	}
+
+	public TileProtocol createTileStratagy(URL url) throws IOException {
+		return new ArchiveTileProtocol(url);
+	}
+
+	public InternationalString getDescription() {
+		return new SimpleInternationalString("Tile Archive File");
+	}
+
+	public InternationalString getName() {
+		return new SimpleInternationalString(
+				"Used to work offline with tiles seeded into a local tile archive "+
+				"file (for example world.tiles).");
+	}
+}
@@ -0,0 +1,154 @@
+package org.geotools.tile.archive;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Single file archive of encoded tiles, read through a memory mapped buffer.
+ * <p>
+ * File layout:
+ * <pre><code>
+ * int MAGIC, int VERSION, long indexOffset
+ * tile content ...
+ * index (see ArchiveIndex)
+ * </code></pre>
+ * Archives are created and extended with TileArchiveWriter (usually by TileSeeder).
+ * </p>
+ * @author Jody Garnett, Refractions Research Inc.
+ */
+public final class TileArchive {
+    /** "GTTA" */
+    static final int MAGIC = 0x47545441;
+    static final int VERSION = 1;
+    
+    /** Size of the header: magic, version and index offset */
+    static final int HEADER = 16;
+    
+    /** Suggested file extension */
+    public static final String EXTENSION = ".tiles";
+    
+    private final File file;
+    private final ArchiveIndex index;
+    private final MappedByteBuffer content;
+    
+    private TileArchive( File file, ArchiveIndex index, MappedByteBuffer content ){
+        this.file = file;
+        this.index = index;
+        this.content = content;
+    }
+    
+    /**
+     * Open an archive for reading.
+     * 
+     * @param file Archive created by TileArchiveWriter
+     * @return TileArchive
+     * @throws IOException If the file is not a tile archive
+     */
+    public static TileArchive open( File file ) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        try {
+            ArchiveIndex index = readIndex( raf );
+            
+            FileChannel channel = raf.getChannel();
+            long size = index.offset;
+            if( size > Integer.MAX_VALUE ){
+                throw new IOException("Tile archive is too large to map:"+file );
+            }
+            MappedByteBuffer content = channel.map( FileChannel.MapMode.READ_ONLY, 0, size );
+            return new TileArchive( file, index, content );
+        }
+        finally {
+            raf.close(); // the mapping remains valid
+        }
+    }
+    
+    /**
+     * Reads the index from the end of the file.
+     */
+    static ArchiveIndex readIndex( RandomAccessFile raf ) throws IOException {
+        raf.seek( 0 );
+        if( raf.length() < HEADER || raf.readInt() != MAGIC ){
+            throw new IOException("Not a tile archive");
+        }
+        int version = raf.readInt();
+        if( version != VERSION ){
+            throw new IOException("Unsupported tile archive version "+version );
+        }
+        long offset = raf.readLong();
+        
+        ArchiveIndex index = new ArchiveIndex();
+        index.offset = offset;
+        raf.seek( offset );
+        index.read( raf );
+        return index;
+    }
+    
+    /**
+     * Quick check of the file header.
+     */
+    public static boolean isArchive( File file ) {
+        if( !file.isFile() ) return false;
+        try {
+            InputStream in = new FileInputStream( file );
+            try {
+                return new DataInputStream( in ).readInt() == MAGIC;
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch( IOException notArchive ){
+            return false;
+        }
+    }
+    
+    public File getFile() {
+        return file;
+    }
+    
+    /**
+     * Tile maps in the archive.
+     * 
+     * @return List of ArchiveTileMapInfo
+     */
+    public List getTileMaps() {
+        return Collections.unmodifiableList( index.maps );
+    }
+    
+    /** Number of tiles in the archive */
+    public int getTileCount() {
+        return index.tiles.size();
+    }
+    
+    /**
+     * Encoded content of the tile.
+     * 
+     * @param map Index of the tile map in getTileMaps()
+     * @param zoom Index of the zoom level in the tile map zoom levels
+     * @return content, or null if the tile is not in the archive
+     */
+    public byte[] get( int map, int zoom, int row, int col ) {
+        long[] location = index.tiles.get( new ArchiveKey( map, zoom, row, col ));
+        if( location == null ){
+            return null;
+        }
+        byte[] data = new byte[ (int) location[1] ];
+        ByteBuffer view = content.duplicate(); // independent position for each reader
+        view.position( (int) location[0] );
+        view.get( data );
+        return data;
+    }
+    
+    public String toString() {
+        return "TileArchive("+file+")";
+    }
+}
@@ -0,0 +1,225 @@
+package org.geotools.tile.archive;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import javax.imageio.ImageIO;
+import javax.swing.Icon;
+
+import junit.framework.TestCase;
+
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.tile.TileDraw;
+import org.geotools.tile.TileMap;
+import org.geotools.tile.TileMapInfo;
+import org.geotools.tile.TileProtocol;
+import org.geotools.tile.TileServer;
+import org.geotools.tile.TileServiceInfo;
+import org.geotools.tile.TileSet;
+import org.geotools.tile.ZoomLevel;
+import org.geotools.util.ProgressListener;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+public class TileArchiveTest extends TestCase {
+    File file;
+    
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = File.createTempFile("world", TileArchive.EXTENSION );
+        file.delete();
+    }
+    
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        super.tearDown();
+    }
+    
+    public void testWriteRead() throws Exception {
+        TileArchiveWriter writer = TileArchiveWriter.open( file );
+        int map = writer.addTileMap( new TestTileMapInfo() );
+        writer.put( map, 1, 2, 3, new byte[]{ 1, 2, 3 } );
+        writer.put( map, 0, 0, 0, new byte[]{ 4 } );
+        writer.close();
+        
+        assertTrue( TileArchive.isArchive( file ));
+        TileArchive archive = TileArchive.open( file );
+        assertEquals( 1, archive.getTileMaps().size() );
+        assertEquals( 2, archive.getTileCount() );
+        
+        TileMapInfo info = (TileMapInfo) archive.getTileMaps().get( 0 );
+        assertEquals( new TestTileMapInfo().getIdentifier(), info.getIdentifier() );
+        assertEquals( new TestTileMapInfo().getZoomLevels(), info.getZoomLevels() );
+        
+        byte[] data = archive.get( map, 1, 2, 3 );
+        assertEquals( 3, data.length );
+        assertEquals( 3, data[2] );
+        assertNull( archive.get( map, 1, 3, 2 ));
+    }
+    
+    public void testReopen() throws Exception {
+        TileArchiveWriter writer = TileArchiveWriter.open( file );
+        int map = writer.addTileMap( new TestTileMapInfo() );
+        writer.put( map, 0, 0, 0, new byte[]{ 1 } );
+        writer.close();
+        
+        writer = TileArchiveWriter.open( file );
+        assertEquals( map, writer.addTileMap( new TestTileMapInfo() ));
+        assertTrue( writer.contains( map, 0, 0, 0 ));
+        writer.put( map, 0, 0, 1, new byte[]{ 2 } );
+        writer.close();
+        
+        TileArchive archive = TileArchive.open( file );
+        assertEquals( 2, archive.getTileCount() );
+        assertEquals( 1, archive.get( map, 0, 0, 0 )[0] );
+        assertEquals( 2, archive.get( map, 0, 0, 1 )[0] );
+    }
+    
+    public void testSeed() throws Exception {
+        TestTileProtocol source = new TestTileProtocol();
+        TileServer server = new TileServer( source.getInfo( null ) );
+        TileMap tileMap = server.getTileMap( TestTileMapInfo.ID );
+        
+        Envelope bbox = new Envelope( -180, 180, -90, 90 );
+        assertEquals( 1+4, TileSeeder.count( tileMap, bbox, 0, 1 ));
+        
+        TileArchiveWriter writer = TileArchiveWriter.open( file );
+        assertEquals( 5, TileSeeder.seed( tileMap, bbox, 0, 1, writer, null ));
+        assertEquals( 0, TileSeeder.seed( tileMap, bbox, 0, 1, writer, null ));
+        writer.close();
+        assertEquals( 5, source.fetched );
+        
+        // work offline
+        ArchiveTileProtocol protocol = new ArchiveTileProtocol( file );
+        TileServer offline = new TileServer( protocol.getInfo( null ) );
+        assertEquals( Collections.singletonList( TestTileMapInfo.ID ), offline.getTileMapIds( null ));
+        
+        TileMap archived = offline.getTileMap( TestTileMapInfo.ID );
+        Iterator levels = archived.getInfo().getZoomLevels().iterator();
+        levels.next();
+        TileSet tileSet = archived.getTileSet( (ZoomLevel) levels.next() ); // 2x2
+        
+        GridCoverage2D tile = tileSet.getTileDraw().drawTile( 0, 0 );
+        assertEquals( 16, tile.getRenderedImage().getWidth() );
+        
+        GridCoverage2D missing = tileSet.getTileDraw().drawTile( 1, 2 );
+        assertFalse( 16 == missing.getRenderedImage().getWidth() );
+    }
+    
+    /** World in 1x1 tiles, then 2x2, then 4x4 */
+    static class TestTileMapInfo implements TileMapInfo {
+        static final URI ID = URI.create( "http://localhost/test#world" );
+        
+        public URI getIdentifier() {
+            return ID;
+        }
+        public SortedSet getZoomLevels() {
+            SortedSet levels = new TreeSet();
+            levels.add( new ZoomLevel( 4000000, 1, 1 ));
+            levels.add( new ZoomLevel( 2000000, 2, 2 ));
+            levels.add( new ZoomLevel( 1000000, 4, 4 ));
+            return levels;
+        }
+        public Envelope getBounds() {
+            return new ReferencedEnvelope( -180, 180, -90, 90, DefaultGeographicCRS.WGS84 );
+        }
+        public CoordinateReferenceSystem getCRS() {
+            return DefaultGeographicCRS.WGS84;
+        }
+        public String getDescription() {
+            return "test";
+        }
+        public Icon getIcon() {
+            return null;
+        }
+        public String[] getKeywords() {
+            return new String[]{ "test" };
+        }
+        public String getName() {
+            return "world";
+        }
+        public URI getSchema() {
+            return null;
+        }
+        public String getTitle() {
+            return "World";
+        }
+    }
+    
+    /** Serves 16x16 PNG tiles */
+    static class TestTileProtocol extends TileProtocol implements TileServiceInfo {
+        int fetched = 0;
+        
+        public TileServiceInfo getInfo( ProgressListener monitor ) {
+            return this;
+        }
+        public List getTileMapIds( TileServiceInfo info, ProgressListener monitor ) {
+            return Collections.singletonList( TestTileMapInfo.ID );
+        }
+        public TileMapInfo getTileMapInfo( TileServiceInfo info, URI id, ProgressListener monitor ) {
+            return new TestTileMapInfo();
+        }
+        public TileDraw getTileDraw( TileSet tileset ) {
+            return new TileDraw(){
+                public String name( int row, int col ) {
+                    return "test"+row+"x"+col;
+                }
+                public GridCoverage2D drawPlaceholder( int row, int col ) {
+                    return null;
+                }
+                public GridCoverage2D drawTile( int row, int col ) {
+                    return null;
+                }
+                public byte[] fetchTile( int row, int col ) throws IOException {
+                    synchronized( TestTileProtocol.this ){
+                        fetched++;
+                    }
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    ImageIO.write( new BufferedImage( 16, 16, BufferedImage.TYPE_INT_ARGB ), "png", out );
+                    return out.toByteArray();
+                }
+            };
+        }
+        public TileProtocol getTileStratagy() {
+            return this;
+        }
+        public String getAbstract() {
+            return "test";
+        }
+        public String getDescription() {
+            return "test";
+        }
+        public Icon getIcon() {
+            return null;
+        }
+        public String[] getKeywords() {
+            return new String[]{ "test" };
+        }
+        public URI getPublisher() {
+            return null;
+        }
+        public URI getSchema() {
+            return null;
+        }
+        public URI getSource() {
+            return ID;
+        }
+        public String getTitle() {
+            return "test";
+        }
+        static final URI ID = URI.create( "http://localhost/test" );
+    }
+}
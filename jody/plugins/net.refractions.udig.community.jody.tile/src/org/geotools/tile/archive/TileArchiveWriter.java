@@ -0,0 +1,119 @@
+package org.geotools.tile.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.geotools.tile.TileMapInfo;
+
+/**
+ * Adds tiles to a TileArchive.
+ * <p>
+ * Tile content is appended to the file as it is provided; the index is kept
+ * in memory and written when the writer is closed. The header is updated last,
+ * so an archive that was not closed keeps the index of the previous session.
+ * </p>
+ * @author Jody Garnett, Refractions Research Inc.
+ */
+public final class TileArchiveWriter {
+    private final RandomAccessFile raf;
+    private final ArchiveIndex index;
+    
+    /** End of the tile content, where the next tile is written */
+    private long end;
+    
+    private TileArchiveWriter( RandomAccessFile raf, ArchiveIndex index ) throws IOException {
+        this.raf = raf;
+        this.index = index;
+        this.end = raf.length(); // after the previous index, which stays valid until close
+    }
+    
+    /**
+     * Open the archive for writing, creating it if needed.
+     * 
+     * @param file Archive file
+     * @return TileArchiveWriter, remember to close
+     * @throws IOException If the file exists and is not an archive
+     */
+    public static TileArchiveWriter open( File file ) throws IOException {
+        boolean create = !file.exists() || file.length() == 0;
+        RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+        try {
+            if( create ){
+                ArchiveIndex index = new ArchiveIndex();
+                raf.setLength( 0 );
+                raf.writeInt( TileArchive.MAGIC );
+                raf.writeInt( TileArchive.VERSION );
+                raf.writeLong( index.offset );
+                writeIndex( raf, index );
+                return new TileArchiveWriter( raf, index );
+            }
+            return new TileArchiveWriter( raf, TileArchive.readIndex( raf ));
+        }
+        catch( IOException notArchive ){
+            raf.close();
+            throw notArchive;
+        }
+    }
+    
+    /**
+     * Add the tile map, or find it if already in the archive.
+     * 
+     * @return index of the tile map, used to put tiles
+     */
+    public synchronized int addTileMap( TileMapInfo info ) {
+        int map = index.indexOf( info.getIdentifier().toString() );
+        if( map == -1 ){
+            index.maps.add( new ArchiveTileMapInfo( info ));
+            map = index.maps.size() - 1;
+        }
+        return map;
+    }
+    
+    public synchronized boolean contains( int map, int zoom, int row, int col ) {
+        return index.tiles.containsKey( new ArchiveKey( map, zoom, row, col ));
+    }
+    
+    /**
+     * Append the tile content; a tile already in the archive is replaced
+     * (the previous content is left unused in the file).
+     * 
+     * @param map Index returned by addTileMap
+     * @param zoom Index of the zoom level in the tile map zoom levels
+     * @param data Encoded tile
+     */
+    public synchronized void put( int map, int zoom, int row, int col, byte[] data ) throws IOException {
+        raf.seek( end );
+        raf.write( data );
+        index.tiles.put( new ArchiveKey( map, zoom, row, col ), new long[]{ end, data.length });
+        end += data.length;
+    }
+    
+    /**
+     * Write the index and close the file.
+     */
+    public synchronized void close() throws IOException {
+        try {
+            index.offset = end;
+            writeIndex( raf, index );
+        }
+        finally {
+            raf.close();
+        }
+    }
+    
+    private static void writeIndex( RandomAccessFile raf, ArchiveIndex index ) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream( buffer );
+        index.write( out );
+        out.flush();
+        
+        raf.seek( index.offset );
+        raf.write( buffer.toByteArray() );
+        raf.setLength( index.offset + buffer.size() );
+        raf.seek( 8 );
+        raf.writeLong( index.offset );
+    }
+}
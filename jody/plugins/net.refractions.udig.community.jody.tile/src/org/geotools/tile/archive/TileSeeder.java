@@ -0,0 +1,102 @@
+package org.geotools.tile.archive;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.geotools.tile.TileDraw;
+import org.geotools.tile.TileMap;
+import org.geotools.tile.TileSet;
+import org.geotools.tile.ZoomLevel;
+import org.geotools.util.NullProgressListener;
+import org.geotools.util.ProgressListener;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Downloads the tiles covering a region into a TileArchive, for use offline.
+ * <p>
+ * Zoom levels are indexed in TileMapInfo.getZoomLevels() order, 0 being the
+ * least detailed. Tiles already in the archive are skipped so an interrupted
+ * seed can be run again to finish.
+ * </p>
+ * @author Jody Garnett, Refractions Research Inc.
+ */
+public final class TileSeeder {
+    
+    private TileSeeder(){
+        // utility class
+    }
+    
+    /**
+     * Number of tiles covering bbox between minZoom and maxZoom.
+     */
+    public static long count( TileMap tileMap, Envelope bbox, int minZoom, int maxZoom ){
+        long count = 0;
+        int zoom = 0;
+        for( Iterator i = tileMap.getInfo().getZoomLevels().iterator(); i.hasNext(); zoom++ ){
+            ZoomLevel level = (ZoomLevel) i.next();
+            if( zoom < minZoom || zoom > maxZoom ) continue;
+            
+            Rectangle range = tileMap.getTileSet( level ).getRange( bbox );
+            if( !range.isEmpty() ){
+                count += (long) range.width * range.height;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Seed the archive with the tiles covering bbox.
+     * 
+     * @param tileMap TileMap to download from
+     * @param bbox Region to seed, in the TileMap CRS
+     * @param minZoom Index of the least detailed zoom level to seed
+     * @param maxZoom Index of the most detailed zoom level to seed
+     * @param writer Archive to write to, left open
+     * @param monitor Used to report progress and cancel
+     * @return number of tiles written
+     * @throws IOException If a tile could not be downloaded or written
+     */
+    public static int seed( TileMap tileMap, Envelope bbox, int minZoom, int maxZoom,
+            TileArchiveWriter writer, ProgressListener monitor ) throws IOException {
+        if( monitor == null ) monitor = new NullProgressListener();
+        
+        long total = Math.max( 1, count( tileMap, bbox, minZoom, maxZoom ) );
+        long visited = 0;
+        int written = 0;
+        
+        int map = writer.addTileMap( tileMap.getInfo() );
+        monitor.started();
+        try {
+            int zoom = 0;
+            for( Iterator i = tileMap.getInfo().getZoomLevels().iterator(); i.hasNext(); zoom++ ){
+                ZoomLevel level = (ZoomLevel) i.next();
+                if( zoom < minZoom || zoom > maxZoom ) continue;
+                
+                TileSet tileSet = tileMap.getTileSet( level );
+                TileDraw draw = tileSet.getTileDraw();
+                Rectangle range = tileSet.getRange( bbox );
+                for( int row = range.y; row < range.y + range.height; row++ ){
+                    for( int col = range.x; col < range.x + range.width; col++ ){
+                        if( monitor.isCanceled() ) return written;
+                        visited++;
+                        
+                        if( writer.contains( map, zoom, row, col )) continue;
+                        byte[] data = draw.fetchTile( row, col );
+                        if( data == null ){
+                            continue; // tile not available, or protocol without fetchTile
+                        }
+                        writer.put( map, zoom, row, col, data );
+                        written++;
+                        monitor.progress( 100f * visited / total );
+                    }
+                }
+            }
+            return written;
+        }
+        finally {
+            monitor.complete();
+        }
+    }
+}
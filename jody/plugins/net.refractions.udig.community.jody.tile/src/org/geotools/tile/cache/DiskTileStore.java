@@ -0,0 +1,242 @@
+package org.geotools.tile.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps the encoded content of tiles in a directory, removing the least
+ * recently used tiles when the total size exceeds the budget.
+ * <p>
+ * Each tile is stored in a file named after the tile name; the last modified
+ * time of the file is updated on access so the order of use is recovered
+ * when the store is opened again.
+ * </p>
+ * <p>
+ * Caches sharing a directory should share the store returned by open, so
+ * a single index and budget covers all the files in the directory.
+ * </p>
+ * @author Jody Garnett, Refractions Research Inc.
+ */
+public class DiskTileStore {
+    private static final String SUFFIX = ".tile";
+    
+    private final File directory;
+    private final long budget;
+    
+    /** Map<String,Long> from file name to size, in order of access */
+    private final LinkedHashMap<String,Long> index = new LinkedHashMap<String,Long>( 256, 0.75f, true );
+    private long size = 0;
+    
+    /** Statistics of each cache using this store */
+    private final List<TileCacheStatistics> statistics = new CopyOnWriteArrayList<TileCacheStatistics>();
+    
+    /** Map<String,DiskTileStore> from canonical directory path to the store opened on it */
+    private static final Map<String,DiskTileStore> opened = new HashMap<String,DiskTileStore>();
+    
+    /**
+     * The store for the provided directory, shared by everyone using that directory.
+     * <p>
+     * The budget is the one given when the store was first opened.
+     * </p>
+     * @param directory Directory used to store the tiles; created if needed
+     * @param budget Maximum number of bytes kept in the directory
+     * @throws IOException If the directory is not available
+     */
+    public static DiskTileStore open( File directory, long budget ) throws IOException {
+        String path = directory.getCanonicalPath();
+        synchronized( opened ){
+            DiskTileStore store = opened.get( path );
+            if( store == null || !store.getDirectory().isDirectory() ){
+                store = new DiskTileStore( directory, budget ); // first use, or directory removed
+                opened.put( path, store );
+            }
+            return store;
+        }
+    }
+    
+    /**
+     * Opens the store, indexing the tiles already present in the directory.
+     * 
+     * @param directory Directory used to store the tiles; created if needed
+     * @param budget Maximum number of bytes kept in the directory
+     * @throws IOException If the directory is not available
+     */
+    public DiskTileStore( File directory, long budget ) throws IOException {
+        if( !directory.isDirectory() && !directory.mkdirs() ){
+            throw new IOException("Could not create tile cache directory "+directory );
+        }
+        this.directory = directory;
+        this.budget = budget;
+        
+        File[] files = directory.listFiles();
+        Arrays.sort( files, new Comparator<File>(){
+            public int compare( File a, File b ) {
+                long diff = a.lastModified() - b.lastModified(); 
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }            
+        });
+        for( int i=0; i<files.length; i++){
+            File file = files[i];
+            if( file.isFile() && file.getName().endsWith( SUFFIX )){
+                index.put( file.getName(), new Long( file.length() ));
+                size += file.length();
+            }
+        }
+        evict();
+    }
+    
+    /** Evictions are counted in the statistics of every cache using this store */
+    void addStatistics( TileCacheStatistics cacheStatistics ) {
+        statistics.add( cacheStatistics );
+    }
+    
+    /** Called as a cache is closed so the store no longer holds on to its statistics */
+    void removeStatistics( TileCacheStatistics cacheStatistics ) {
+        statistics.remove( cacheStatistics );
+    }
+    
+    public File getDirectory() {
+        return directory;
+    }
+    
+    /** Number of bytes currently stored */
+    public synchronized long getSize() {
+        return size;
+    }
+    
+    public synchronized boolean contains( String name ) {
+        return index.containsKey( fileName( name ));
+    }
+    
+    /**
+     * Content of the named tile.
+     * 
+     * @return content, or null if the tile is not stored
+     */
+    public synchronized byte[] get( String name ) {
+        String fileName = fileName( name );
+        if( index.get( fileName ) == null ){
+            return null; // get (unlike containsKey) marks the tile as recently used
+        }
+        File file = new File( directory, fileName );
+        try {
+            byte[] content = read( file );
+            file.setLastModified( System.currentTimeMillis() );
+            return content;
+        }
+        catch( IOException unreadable ){
+            remove( name );
+            return null;
+        }
+    }
+    
+    /**
+     * Store the content of the named tile, replacing any previous content.
+     */
+    public synchronized void put( String name, byte[] content ) {
+        String fileName = fileName( name );
+        File file = new File( directory, fileName );
+        File temp = new File( directory, fileName + ".tmp" );
+        try {
+            write( temp, content );
+            if( file.exists() ) file.delete();
+            if( !temp.renameTo( file )){
+                temp.delete();
+                return;
+            }
+        }
+        catch( IOException notWritten ){
+            temp.delete();
+            System.out.println("Could not cache tile "+name+":"+notWritten );
+            return;
+        }
+        Long previous = index.put( fileName, new Long( content.length ));
+        if( previous != null ){
+            size -= previous.longValue();
+        }
+        size += content.length;
+        evict();
+    }
+    
+    public synchronized void remove( String name ) {
+        String fileName = fileName( name );
+        Long previous = index.remove( fileName );
+        if( previous != null ){
+            size -= previous.longValue();
+        }
+        new File( directory, fileName ).delete();
+    }
+    
+    /**
+     * Remove all the tiles from disk.
+     */
+    public synchronized void clear() {
+        for( Iterator<String> i = index.keySet().iterator(); i.hasNext(); ){
+            new File( directory, i.next() ).delete();
+        }
+        index.clear();
+        size = 0;
+    }
+    
+    /** Remove least recently used tiles until we are within the budget */
+    private void evict() {
+        for( Iterator<Map.Entry<String,Long>> i = index.entrySet().iterator(); size > budget && i.hasNext(); ){
+            Map.Entry<String,Long> entry = i.next();
+            new File( directory, entry.getKey() ).delete();
+            size -= entry.getValue().longValue();
+            i.remove();
+            for( Iterator<TileCacheStatistics> s = statistics.iterator(); s.hasNext(); ){
+                s.next().diskEviction();
+            }
+        }
+    }
+    
+    private static String fileName( String name ) {
+        try {
+            return URLEncoder.encode( name, "UTF-8" ) + SUFFIX;
+        }
+        catch( UnsupportedEncodingException e ){
+            throw new RuntimeException( e ); // UTF-8 is always supported
+        }
+    }
+    
+    private static byte[] read( File file ) throws IOException {
+        InputStream in = new FileInputStream( file );
+        try {
+            ByteArrayOutputStream content = new ByteArrayOutputStream( (int) file.length() );
+            byte[] buffer = new byte[ 8 * 1024 ];
+            for( int read = in.read( buffer ); read != -1; read = in.read( buffer ) ){
+                content.write( buffer, 0, read );
+            }
+            return content.toByteArray();
+        }
+        finally {
+            in.close();
+        }
+    }
+    
+    private static void write( File file, byte[] content ) throws IOException {
+        OutputStream out = new FileOutputStream( file );
+        try {
+            out.write( content );
+        }
+        finally {
+            out.close();
+        }
+    }
+}
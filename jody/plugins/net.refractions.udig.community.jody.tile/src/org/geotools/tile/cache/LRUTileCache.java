@@ -0,0 +1,405 @@
+package org.geotools.tile.cache;
+
+import java.awt.Rectangle;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.geometry.Envelope2D;
+import org.geotools.tile.TileDraw;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * TileCache with two levels: decoded tiles in memory and encoded tiles on disk.
+ * <p>
+ * Decoded GridCoverage2D are kept in memory in least recently used order,
+ * up to a budget in bytes estimated from the size of the images. The encoded
+ * content provided by TileDraw.fetchTile is kept in a DiskTileStore so tiles
+ * evicted from memory (or left over from a previous session) are decoded
+ * again without a server request.
+ * </p>
+ * <p>
+ * TileDraw implementations that do not provide fetchTile are cached in memory only.
+ * </p>
+ * @author Jody Garnett, Refractions Research Inc.
+ */
+public class LRUTileCache implements TileCache {
+    
+    /** Default memory budget, 64 MB of decoded images */
+    public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+    
+    /** Default disk budget, 256 MB of encoded tiles */
+    public static final long DEFAULT_DISK_BUDGET = 256L * 1024 * 1024;
+    
+    private final long memoryBudget;
+    private long memorySize = 0;
+    
+    /** Map<TileKey,GridCoverage2D> in order of access */
+    private final LinkedHashMap<TileKey,GridCoverage2D> memory = new LinkedHashMap<TileKey,GridCoverage2D>( 64, 0.75f, true );
+    
+    /** Second level, may be null */
+    private final DiskTileStore disk;
+    
+    private final TileCacheStatistics statistics = new TileCacheStatistics();
+    
+    private final TileFetcher fetcher = new TileFetcher( this );
+    
+    /**
+     * Cache using the default budgets, the tiles are stored on disk in the
+     * temporary directory.
+     */
+    public LRUTileCache(){
+        this( DEFAULT_MEMORY_BUDGET, defaultDirectory(), DEFAULT_DISK_BUDGET );
+    }
+    
+    /**
+     * Cache with the provided budgets.
+     * 
+     * @param memoryBudget Bytes of decoded images to keep in memory
+     * @param directory Directory for encoded tiles, null to only cache in memory;
+     *        caches using the same directory share one DiskTileStore
+     * @param diskBudget Bytes of encoded tiles to keep on disk, ignored if the
+     *        directory is already used by another cache
+     */
+    public LRUTileCache( long memoryBudget, File directory, long diskBudget ){
+        this.memoryBudget = memoryBudget;
+        this.disk = directory == null ? null : openDisk( directory, diskBudget );
+        if( disk != null ){
+            disk.addStatistics( statistics );
+        }
+    }
+    
+    private static File defaultDirectory() {
+        return new File( System.getProperty("java.io.tmpdir"), "geotools-tiles" );
+    }
+    
+    private static DiskTileStore openDisk( File directory, long budget ) {
+        try {
+            return DiskTileStore.open( directory, budget );
+        }
+        catch( IOException unavailable ){
+            System.out.println( unavailable.getMessage()+", tiles will only be cached in memory" );
+            return null;
+        }
+    }
+    
+    public TileCacheStatistics getStatistics() {
+        return statistics;
+    }
+    
+    /**
+     * Number of tiles downloaded at the same time, 4 by default.
+     */
+    public void setDownloadThreads( int threads ) {
+        fetcher.setDownloadThreads( threads );
+    }
+    
+    /**
+     * Number of tiles decoded at the same time, by default the number of processors.
+     */
+    public void setDecodeThreads( int threads ) {
+        fetcher.setDecodeThreads( threads );
+    }
+    
+    /** Second level store, null if tiles are only cached in memory */
+    public DiskTileStore getDiskStore() {
+        return disk;
+    }
+    
+    /** Estimated bytes of decoded images held in memory */
+    public synchronized long getMemorySize() {
+        return memorySize;
+    }
+    
+    public TileRange createRange( TileDraw draw, Rectangle range ) {
+        int size = range.width*range.height;
+        List<TileKey> keys = new ArrayList<TileKey>( size );
+        List<GridCoverage2D> tiles = new ArrayList<GridCoverage2D>( size );
+        Set<TileKey> loaded = new HashSet<TileKey>();
+        
+        for( int col = (int)range.x; col<range.getMaxX(); col++){
+            for( int row = (int)range.y; row<range.getMaxY(); row++){
+                TileKey key = draw.key( row, col );
+                GridCoverage2D hit = memoryHit( key );
+                keys.add( key );
+                if( hit != null ){
+                    tiles.add( hit );
+                    loaded.add( key );
+                }
+                else {
+                    tiles.add( draw.drawPlaceholder( row, col ) );
+                }
+            }
+        }
+        return new LRUTileRange( draw, range, keys, tiles, loaded );
+    }
+    
+    /**
+     * Tile from memory, or null if the tile is not in memory.
+     */
+    synchronized GridCoverage2D memoryHit( TileKey key ){
+        GridCoverage2D hit = memory.get( key );
+        if( hit != null ){
+            statistics.memoryHit();
+        }
+        return hit;
+    }
+    
+    /**
+     * True if the tile is in memory or on disk; does not count as a hit.
+     */
+    boolean contains( TileKey key ){
+        synchronized( this ){
+            if( memory.containsKey( key )) return true;
+        }
+        return disk != null && disk.contains( key.getName() );
+    }
+    
+    /**
+     * Encoded tile from disk, or null if the tile is not on disk.
+     */
+    byte[] diskGet( TileKey key ){
+        return disk == null ? null : disk.get( key.getName() );
+    }
+    
+    synchronized void store( TileKey key, GridCoverage2D tile ){
+        GridCoverage2D previous = memory.put( key, tile );
+        if( previous != null ){
+            memorySize -= sizeOf( previous );
+        }
+        memorySize += sizeOf( tile );
+        
+        // remove least recently used, always keeping the tile just stored
+        for( Iterator<Map.Entry<TileKey,GridCoverage2D>> i = memory.entrySet().iterator(); memorySize > memoryBudget && memory.size() > 1; ){
+            Map.Entry<TileKey,GridCoverage2D> entry = i.next();
+            memorySize -= sizeOf( entry.getValue() );
+            i.remove();
+            statistics.memoryEviction();
+        }
+    }
+    
+    /** Estimated bytes used by the image of the tile */
+    static long sizeOf( GridCoverage2D tile ){
+        RenderedImage image = tile.getRenderedImage();
+        SampleModel model = image.getSampleModel();
+        long bits = 0;
+        for( int band=0; band<model.getNumBands(); band++){
+            bits += model.getSampleSize( band );
+        }
+        return (long) image.getWidth() * image.getHeight() * bits / 8;
+    }
+    
+    /**
+     * Fetch the tiles in the background at low priority.
+     * <p>
+     * Tiles still queued from a previous call are dropped, and the
+     * prefetch waits while visible tiles are being loaded. Tiles are only
+     * prefetched to disk, so nothing is done without a disk store.
+     * </p>
+     */
+    public void prefetch( List tiles ) {
+        List<TileKey> keys = new ArrayList<TileKey>( tiles.size() );
+        for( Iterator<?> i = tiles.iterator(); i.hasNext(); ){
+            keys.add( (TileKey) i.next() );
+        }
+        fetcher.prefetch( keys );
+    }
+    
+    /**
+     * Removes the decoded tiles of the provided TileDraw from memory.
+     * <p>
+     * The copy on disk is kept as it is useful when the tiles are visited again.
+     * </p>
+     */
+    public synchronized void retireTiles( TileDraw draw ) {
+        fetcher.cancelPrefetch();
+        for( Iterator<Map.Entry<TileKey,GridCoverage2D>> i = memory.entrySet().iterator(); i.hasNext(); ){
+            Map.Entry<TileKey,GridCoverage2D> entry = i.next();
+            if( entry.getKey().getDraw() == draw ){
+                memorySize -= sizeOf( entry.getValue() );
+                i.remove();
+            }
+        }
+    }
+    
+    /**
+     * Removes the decoded tiles of the provided TileDraw from memory.
+     * <p>
+     * The copy on disk is kept for the next session, and is subject
+     * to the disk budget.
+     * </p>
+     */
+    public void flushTiles( TileDraw draw ) {
+        retireTiles( draw );
+    }
+    
+    public void close() {
+        fetcher.shutdown();
+        if( disk != null ){
+            disk.removeStatistics( statistics );
+        }
+        synchronized( this ){
+            memory.clear();
+            memorySize = 0;
+        }
+    }
+    
+    class LRUTileRange implements TileRange {
+        private TileDraw draw;
+        private Rectangle range;
+        
+        /** List<TileKey> in the same order as tiles */
+        private List<TileKey> keys;
+        
+        /** Position of each key in keys */
+        private Map<TileKey,Integer> index;
+        
+        /** List of GridCoverage2D defined by this TileRange, placeholders until loaded */
+        private List<GridCoverage2D> tiles;
+        
+        /** keys of tiles already loaded */
+        private Set<TileKey> loaded;
+        private boolean isLoaded;
+        
+        LRUTileRange( TileDraw draw, Rectangle range, List<TileKey> keys, List<GridCoverage2D> tiles, Set<TileKey> loaded ){
+            this.draw = draw;
+            this.range = range;
+            this.keys = keys;
+            this.tiles = tiles;
+            this.loaded = loaded;
+            this.index = new HashMap<TileKey,Integer>( keys.size() * 2 );
+            for( int i=0; i<keys.size(); i++){
+                index.put( keys.get( i ), new Integer( i ));
+            }
+            this.isLoaded = loaded.size() == keys.size();
+        }
+        
+        public Rectangle getRange() {
+            return range;
+        }
+        public Envelope getBounds() {
+            Envelope bounds = new Envelope();
+            for( Iterator<GridCoverage2D> i=tiles.iterator();i.hasNext();){
+                Envelope2D area = i.next().getEnvelope2D();
+                bounds.expandToInclude( area.getMinX(), area.getMinY() );
+                bounds.expandToInclude( area.getMaxX(), area.getMaxY() );
+            }
+            return bounds;
+        }
+        public Envelope2D getEnvelope2D() {
+            Envelope2D bounds = null;
+            for( Iterator<GridCoverage2D> i=tiles.iterator();i.hasNext();){
+                GridCoverage2D tile = i.next();
+                if( bounds == null){
+                    bounds = new Envelope2D( tile.getEnvelope() );                    
+                }
+                else {
+                    bounds.add( tile.getEnvelope2D() );
+                }
+            }
+            return bounds;
+        }
+        public String toString() {
+            return "LRUTileRange("+range+")";
+        }
+        public boolean equals( Object obj ) {
+            if( obj == this ) return true;
+            if( obj == null || !(obj instanceof LRUTileRange)){
+                return false;
+            }            
+            LRUTileRange other = (LRUTileRange) obj;
+            return this.draw == other.draw && this.range.equals( other.range );
+        }
+        public int hashCode() {
+            return draw.hashCode() | range.hashCode() << 3;
+        }
+        /**
+         * Set up available GridCoverage2d.
+         * <p>
+         * An entry is provided for every tile, even if just a placeholder.
+         */
+        public synchronized Set getTiles() {
+            HashSet<GridCoverage2D> set = new HashSet<GridCoverage2D>( tiles );
+            return Collections.unmodifiableSet( set);
+        }
+        public List getKeys() {
+            return Collections.unmodifiableList( keys );
+        }
+        public synchronized GridCoverage2D getTile( TileKey key ) {
+            Integer position = index.get( key );
+            return position == null ? null : tiles.get( position.intValue() );
+        }
+        public boolean isLoaded() {
+            return isLoaded;
+        }
+        /**
+         * Load tiles; this will replace existing placeholders.
+         */
+        public void load( IProgressMonitor monitor ) {
+            fetchTiles( monitor, false ); 
+            this.isLoaded = true;          
+        }
+        /**
+         * Refresh tiles; this will request the tiles again ignoring the cached copies.
+         */
+        public void refresh( IProgressMonitor monitor ) {
+            if( isLoaded ){
+                loaded.clear();
+                fetchTiles( monitor, true );
+            }
+            else {
+                if( monitor == null ) monitor = new NullProgressMonitor();
+                monitor.setTaskName( "Load already in progress" );
+                monitor.isCanceled();
+            }
+        }
+        /**
+         * Fetch the tiles not loaded yet, from the centre of the range outwards.
+         * <p>
+         * Placeholders are replaced as each tile arrives, and monitor.worked( 1 )
+         * is called so the tiles can be drawn as they arrive.
+         * </p>
+         */
+        private void fetchTiles( IProgressMonitor monitor, boolean refresh ) {
+            if( monitor == null ) monitor = new NullProgressMonitor();
+            
+            List<TileKey> missing = new ArrayList<TileKey>( keys.size() );
+            for( Iterator<TileKey> i = keys.iterator(); i.hasNext(); ){
+                TileKey key = i.next();
+                if( !loaded.contains( key )){
+                    missing.add( key );
+                }
+            }
+            monitor.beginTask("Fetch Tiles", keys.size() );
+            try {
+                monitor.worked( keys.size() - missing.size() );
+                
+                missing = TileFetcher.centreOut( missing, range.getCenterY(), range.getCenterX() );
+                fetcher.fetch( missing, refresh, new TileFetcher.Delivery(){
+                    public void delivered( TileKey key, GridCoverage2D tile ) {
+                        synchronized( LRUTileRange.this ){
+                            tiles.set( index.get( key ).intValue(), tile );
+                        }
+                        loaded.add( key );
+                    }
+                }, monitor );
+            } finally{
+                monitor.done();
+            }
+        }
+    }
+}
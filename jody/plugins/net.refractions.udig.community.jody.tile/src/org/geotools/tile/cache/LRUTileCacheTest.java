@@ -0,0 +1,171 @@
+package org.geotools.tile.cache;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import junit.framework.TestCase;
+
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridCoverageFactory;
+import org.geotools.geometry.Envelope2D;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.tile.TileDraw;
+
+public class LRUTileCacheTest extends TestCase {
+    File directory;
+    CountingTileDraw draw;
+    
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        directory = File.createTempFile("tiles", "");
+        directory.delete();
+        directory.mkdirs();
+        draw = new CountingTileDraw();
+    }
+    
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = directory.listFiles();
+        for( int i=0; i<files.length; i++){
+            files[i].delete();
+        }
+        directory.delete();
+        super.tearDown();
+    }
+    
+    public void testMemoryHit() throws Exception {
+        LRUTileCache cache = new LRUTileCache( LRUTileCache.DEFAULT_MEMORY_BUDGET, directory, LRUTileCache.DEFAULT_DISK_BUDGET );
+        
+        TileRange range = cache.createRange( draw, new Rectangle(0,0,3,3) );
+        assertFalse( range.isLoaded() );
+        range.load( null );
+        assertEquals( 9, draw.fetched );
+        assertEquals( 9, cache.getStatistics().getMisses() );
+        
+        // pan one tile and back again
+        cache.createRange( draw, new Rectangle(1,0,3,3) ).load( null );
+        assertEquals( 12, draw.fetched );
+        
+        TileRange again = cache.createRange( draw, new Rectangle(0,0,3,3) );
+        assertTrue( again.isLoaded() );
+        assertEquals( 12, draw.fetched );
+        assertEquals( draw.fetched, draw.decoded );
+        assertTrue( cache.getStatistics().getMemoryHits() >= 9 );
+    }
+    
+    public void testDiskHit() throws Exception {
+        long tile = 16*16*4; // one decoded tile
+        LRUTileCache cache = new LRUTileCache( 4*tile, directory, LRUTileCache.DEFAULT_DISK_BUDGET );
+        
+        cache.createRange( draw, new Rectangle(0,0,3,3) ).load( null );
+        assertEquals( 9, draw.fetched );
+        assertEquals( 5, cache.getStatistics().getMemoryEvictions() );
+        assertTrue( cache.getMemorySize() <= 4*tile );
+        
+        // evicted tiles are decoded from disk
+        cache.createRange( draw, new Rectangle(0,0,3,3) ).load( null );
+        assertEquals( 9, draw.fetched );
+        assertTrue( cache.getStatistics().getDiskHits() > 0 );
+        
+        // and are still available in the next session
+        LRUTileCache next = new LRUTileCache( 4*tile, directory, LRUTileCache.DEFAULT_DISK_BUDGET );
+        next.createRange( draw, new Rectangle(0,0,3,3) ).load( null );
+        assertEquals( 9, draw.fetched );
+        assertEquals( 9, next.getStatistics().getDiskHits() );
+    }
+    
+    public void testTileKey() throws Exception {
+        TileKey key = draw.key( 7, -3 );
+        assertEquals( 7, key.getRow() );
+        assertEquals( -3, key.getCol() );
+        assertEquals( TileKey.pack( 7, -3 ), key.getTile() );
+        
+        assertEquals( key, draw.key( 7, -3 ) );
+        assertEquals( key.hashCode(), draw.key( 7, -3 ).hashCode() );
+        assertFalse( key.equals( draw.key( -3, 7 ) ));
+        assertFalse( key.equals( new CountingTileDraw().key( 7, -3 ) ));
+        
+        assertSame( key.getName(), key.getName() );
+    }
+    
+    public void testDiskBudget() throws Exception {
+        DiskTileStore store = new DiskTileStore( directory, 100 );
+        TileCacheStatistics statistics = new TileCacheStatistics();
+        store.addStatistics( statistics );
+        
+        store.put( "a", new byte[40] );
+        store.put( "b", new byte[40] );
+        assertNotNull( store.get( "a" ));
+        store.put( "c", new byte[40] );
+        
+        assertTrue( store.contains( "a" ));
+        assertFalse( store.contains( "b" ));
+        assertTrue( store.contains( "c" ));
+        assertEquals( 80, store.getSize() );
+        assertEquals( 1, statistics.getDiskEvictions() );
+    }
+    
+    public void testCloseRemovesStatistics() throws Exception {
+        LRUTileCache cache = new LRUTileCache( LRUTileCache.DEFAULT_MEMORY_BUDGET, directory, 100 );
+        DiskTileStore store = cache.getDiskStore();
+        
+        store.put( "a", new byte[60] );
+        store.put( "b", new byte[60] );
+        assertEquals( 1, cache.getStatistics().getDiskEvictions() );
+        
+        // the store outlives the cache, later evictions are not counted against it
+        cache.close();
+        store.put( "c", new byte[60] );
+        assertEquals( 1, cache.getStatistics().getDiskEvictions() );
+    }
+    
+    public void testSharedDiskStore() throws Exception {
+        LRUTileCache one = new LRUTileCache( LRUTileCache.DEFAULT_MEMORY_BUDGET, directory, LRUTileCache.DEFAULT_DISK_BUDGET );
+        LRUTileCache two = new LRUTileCache( LRUTileCache.DEFAULT_MEMORY_BUDGET, new File( directory.getPath() ), LRUTileCache.DEFAULT_DISK_BUDGET );
+        assertSame( one.getDiskStore(), two.getDiskStore() );
+    }
+    
+    /** Draws 16x16 tiles counting the requests */
+    static class CountingTileDraw extends TileDraw {
+        static GridCoverageFactory factory = new GridCoverageFactory();
+        int fetched = 0;
+        int decoded = 0;
+        
+        public String name( int row, int col ) {
+            return "test"+row+"x"+col;
+        }
+        public GridCoverage2D drawPlaceholder( int row, int col ) {
+            return create( row, col, new BufferedImage( 1, 1, BufferedImage.TYPE_INT_ARGB ) );
+        }
+        public GridCoverage2D drawTile( int row, int col ) {
+            fail("tile should be provided by fetchTile");
+            return null;
+        }
+        public synchronized byte[] fetchTile( int row, int col ) throws IOException {
+            fetched++;
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write( new BufferedImage( 16, 16, BufferedImage.TYPE_INT_ARGB ), "png", out );
+            return out.toByteArray();
+        }
+        public synchronized GridCoverage2D decodeTile( int row, int col, byte[] data ) {
+            decoded++;
+            try {
+                return create( row, col, ImageIO.read( new ByteArrayInputStream( data ) ) );
+            }
+            catch( IOException e ){
+                return null;
+            }
+        }
+        private GridCoverage2D create( int row, int col, BufferedImage image ){
+            Envelope2D rectangle = new Envelope2D( DefaultGeographicCRS.WGS84, col, row, 1, 1 );
+            return factory.create( name(row,col), image, rectangle );
+        }
+    }
+}
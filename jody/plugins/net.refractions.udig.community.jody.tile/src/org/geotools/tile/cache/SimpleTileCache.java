@@ -29,8 +29,9 @@ public class SimpleTileCache implements TileCache {
     
     public TileRange createRange( TileDraw draw, Rectangle range ) {
         Set loaded = cacheHits( draw, range );
-        List tiles = createClearRange(draw, range);
-        DirectTileRange tileRange = new DirectTileRange( draw, range, tiles, loaded );        
+        List keys = createKeys( draw, range );
+        List tiles = createClearRange(draw, keys);
+        DirectTileRange tileRange = new DirectTileRange( draw, range, keys, tiles, loaded );        
         if( tileRange.equals( cached )){
             return cached;            
         }
@@ -40,47 +41,53 @@ public class SimpleTileCache implements TileCache {
         return tileRange;
     }
 
-    synchronized GridCoverage2D cacheHit( String name ){
+    synchronized GridCoverage2D cacheHit( TileKey key ){
         if( cached == null ) return null;
-        for( Iterator i = cached.getTiles().iterator(); i.hasNext(); ){
-            GridCoverage2D tile = (GridCoverage2D) i.next();
-            if( name.equals( tile.getName().toString() )){
-                return tile;
-            }
-        }
-        return null;
+        return cached.getTile( key );
     }
     synchronized Set cacheHits( TileDraw draw, Rectangle range ) {
         if( cached == null ) return Collections.EMPTY_SET;        
         Set hits = new HashSet( range.width*range.height);
         for( int col = (int)range.x; col<range.getMaxX(); col++){
             for( int row = (int)range.y; row<range.getMaxY(); row++){
-                String name = draw.name(row, col);
-                if( cached.loaded.contains(name) ){
-                    hits.add( name );
+                TileKey key = draw.key(row, col);
+                if( cached.loaded.contains(key) ){
+                    hits.add( key );
                 }
             }
         }
         return hits;
     }
     
-    synchronized List createClearRange( TileDraw draw, Rectangle range ) {
-        List clear = new ArrayList( range.width*range.height);
+    List createKeys( TileDraw draw, Rectangle range ) {
+        List keys = new ArrayList( range.width*range.height);
         for( int col = (int)range.x; col<range.getMaxX(); col++){
             for( int row = (int)range.y; row<range.getMaxY(); row++){
-                String name = draw.name(row, col);
-                GridCoverage2D hit = cacheHit( name );
-                if( hit != null ){
-                    clear.add( hit );
-                }
-                else {
-                    clear.add( draw.drawPlaceholder( row, col ) );
-                }
+                keys.add( draw.key(row, col) );
+            }
+        }
+        return keys;
+    }
+    
+    synchronized List createClearRange( TileDraw draw, List keys ) {
+        List clear = new ArrayList( keys.size() );
+        for( Iterator i = keys.iterator(); i.hasNext(); ){
+            TileKey key = (TileKey) i.next();
+            GridCoverage2D hit = cacheHit( key );
+            if( hit != null ){
+                clear.add( hit );
+            }
+            else {
+                clear.add( draw.drawPlaceholder( key.getRow(), key.getCol() ) );
             }
         }
         return clear;
     }
     
+    /** Prefetch is not supported, only one TileRange is cached */
+    public void prefetch( List tiles ) {
+    }
+    
     public void flushTiles( TileDraw draw ) {
         cached = null;
     }
@@ -106,7 +113,10 @@ public class SimpleTileCache implements TileCache {
          */
         private List tiles;
         
-        /** names of tiles already loaded */
+        /** List of TileKey in the same order as tiles */
+        private List keys;
+        
+        /** keys of tiles already loaded */
         Set loaded;
         boolean isLoaded;
 
@@ -117,10 +127,11 @@ public class SimpleTileCache implements TileCache {
          * @param draw Stratagy object used to produce GridCoverages
          * @param range Range of tiles to produce
          */
-        DirectTileRange( TileDraw draw, Rectangle range, List tiles, Set loaded ){            
+        DirectTileRange( TileDraw draw, Rectangle range, List keys, List tiles, Set loaded ){            
             this.draw = draw;
             this.range = range;
             this.isLoaded = false;
+            this.keys = keys;
             this.tiles = tiles;
             this.loaded = loaded.isEmpty() ? new HashSet() : loaded;
         }
@@ -183,6 +194,15 @@ public class SimpleTileCache implements TileCache {
             return Collections.unmodifiableSet( set);
         }
 
+        public List getKeys() {
+            return Collections.unmodifiableList( keys );
+        }
+        
+        public GridCoverage2D getTile( TileKey key ) {
+            int index = keys.indexOf( key );
+            return index == -1 ? null : (GridCoverage2D) tiles.get( index );
+        }
+
         public boolean isLoaded() {
             return isLoaded;
         }
@@ -221,17 +241,17 @@ public class SimpleTileCache implements TileCache {
                         if( monitor.isCanceled() ) {
                             return;
                         }
-                        String name = draw.name(row, col);
+                        TileKey key = (TileKey) keys.get( count );
                         
-                        if( loaded.contains( name )){
+                        if( loaded.contains( key )){
                             count++;
                             monitor.worked( 1 );    
                         }
                         else {
-                            monitor.setTaskName(name);                                                       
+                            monitor.setTaskName(key.getName());                                                       
                             GridCoverage2D tile = draw.drawTile(row, col );                            
                             tiles.set( count, tile );
-                            loaded.add(name);
+                            loaded.add(key);
                             count++;
                             monitor.worked( 1 );
                         }                        
@@ -1,6 +1,7 @@
 package org.geotools.tile.cache;
 
 import java.awt.Rectangle;
+import java.util.List;
 
 import org.geotools.tile.TileDraw;
 
@@ -20,6 +21,18 @@ public interface TileCache {
      */
     TileRange createRange( TileDraw draw, Rectangle range );
     
+    /**
+     * Fetch tiles that are likely to be visited soon, such as the tiles around
+     * the visible range or at the adjacent zoom levels.
+     * <p>
+     * The tiles are fetched in the background at low priority and must never delay
+     * the tiles requested with createRange. Tiles still waiting from a previous call
+     * are dropped, as the viewport has moved on.
+     * </p>
+     * @param tiles List of TileKey
+     */
+    void prefetch( List tiles );
+    
     /**
      * Indicate lack of interest in the tiles created by the provided TileDraw.
      * <p>
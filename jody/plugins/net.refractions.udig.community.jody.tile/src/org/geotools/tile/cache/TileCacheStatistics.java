@@ -0,0 +1,79 @@
+package org.geotools.tile.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hit, miss and eviction counts of a TileCache.
+ * <p>
+ * A tile request is counted once: as a memory hit, a disk hit or a miss
+ * (when the tile has to be requested from the server).
+ * </p>
+ * @author Jody Garnett, Refractions Research Inc.
+ */
+public final class TileCacheStatistics {
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong memoryEvictions = new AtomicLong();
+    private final AtomicLong diskEvictions = new AtomicLong();
+    private final AtomicLong prefetches = new AtomicLong();
+    
+    void memoryHit(){
+        memoryHits.incrementAndGet();
+    }
+    void diskHit(){
+        diskHits.incrementAndGet();
+    }
+    void miss(){
+        misses.incrementAndGet();
+    }
+    void memoryEviction(){
+        memoryEvictions.incrementAndGet();
+    }
+    void diskEviction(){
+        diskEvictions.incrementAndGet();
+    }
+    void prefetch(){
+        prefetches.incrementAndGet();
+    }
+    
+    /** Tiles found decoded in memory */
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+    /** Tiles decoded from the copy kept on disk */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+    /** Tiles requested from the server */
+    public long getMisses() {
+        return misses.get();
+    }
+    /** Decoded tiles removed from memory to respect the memory budget */
+    public long getMemoryEvictions() {
+        return memoryEvictions.get();
+    }
+    /** Encoded tiles removed from disk to respect the disk budget */
+    public long getDiskEvictions() {
+        return diskEvictions.get();
+    }
+    
+    /** Tiles fetched in the background before being visible */
+    public long getPrefetches() {
+        return prefetches.get();
+    }
+    
+    public void reset(){
+        memoryHits.set(0);
+        diskHits.set(0);
+        misses.set(0);
+        memoryEvictions.set(0);
+        diskEvictions.set(0);
+        prefetches.set(0);
+    }
+    
+    public String toString() {
+        return "TileCacheStatistics(memory hits:"+memoryHits+" disk hits:"+diskHits+" misses:"+misses+
+               " memory evictions:"+memoryEvictions+" disk evictions:"+diskEvictions+" prefetches:"+prefetches+")";
+    }
+}
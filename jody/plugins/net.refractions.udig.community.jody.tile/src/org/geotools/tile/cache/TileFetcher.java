@@ -0,0 +1,418 @@
+package org.geotools.tile.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.tile.TileDraw;
+
+/**
+ * Fetches tiles for an LRUTileCache with two pools of worker threads.
+ * <p>
+ * Download workers look for the tile on disk or ask the TileDraw for the encoded
+ * content (usually a blocking http request); decode workers turn the content into
+ * a GridCoverage2D. Tiles are requested from the centre of the range outwards, and
+ * are delivered on the calling thread as each one is available, so the monitor
+ * can be used to draw tiles as they arrive.
+ * </p>
+ * <p>
+ * Prefetched tiles are downloaded one at a time by a low priority thread, which
+ * waits while any visible tiles are being fetched.
+ * </p>
+ * @author Jody Garnett, Refractions Research Inc.
+ */
+class TileFetcher {
+    /** Default number of concurrent downloads */
+    static final int DEFAULT_DOWNLOADS = 4;
+    
+    /** How often (in milliseconds) the monitor is checked for cancel while waiting */
+    private static final long POLL = 100;
+    
+    /** Callback used to deliver fetched tiles on the calling thread */
+    interface Delivery {
+        void delivered( TileKey key, GridCoverage2D tile );
+    }
+    
+    private final LRUTileCache cache;
+    private int downloadThreads = DEFAULT_DOWNLOADS;
+    private int decodeThreads = Runtime.getRuntime().availableProcessors();
+    
+    private ExecutorService downloads;
+    private ExecutorService decoders;
+    private ExecutorService prefetcher;
+    
+    /** Number of fetch calls (for visible tiles) in progress */
+    private final AtomicInteger visible = new AtomicInteger( 0 );
+    
+    /** true when the pools should be replaced once the fetches in progress are done */
+    private boolean stale = false;
+    
+    /** Incremented by each prefetch call, queued prefetches of older generations are dropped */
+    private final AtomicInteger generation = new AtomicInteger( 0 );
+    
+    TileFetcher( LRUTileCache cache ){
+        this.cache = cache;
+    }
+    
+    synchronized void setDownloadThreads( int threads ) {
+        if( threads < 1 ) throw new IllegalArgumentException("At least one download thread is required");
+        this.downloadThreads = threads;
+        shutdown();
+    }
+    
+    synchronized void setDecodeThreads( int threads ) {
+        if( threads < 1 ) throw new IllegalArgumentException("At least one decode thread is required");
+        this.decodeThreads = threads;
+        shutdown();
+    }
+    
+    private synchronized ExecutorService downloads(){
+        if( downloads == null ){
+            downloads = Executors.newFixedThreadPool( downloadThreads, new WorkerFactory("Tile Download") );
+        }
+        return downloads;
+    }
+    
+    private synchronized ExecutorService decoders(){
+        if( decoders == null ){
+            decoders = Executors.newFixedThreadPool( decodeThreads, new WorkerFactory("Tile Decode") );
+        }
+        return decoders;
+    }
+    
+    private synchronized ExecutorService prefetcher(){
+        if( prefetcher == null ){
+            prefetcher = Executors.newSingleThreadExecutor( new WorkerFactory("Tile Prefetch", Thread.MIN_PRIORITY) );
+        }
+        return prefetcher;
+    }
+    
+    /**
+     * Stop the worker threads; they are started again as needed.
+     * <p>
+     * Download and decode workers are only stopped once the fetch calls in
+     * progress are done, as dropping their tasks would leave fetch waiting
+     * for tiles that never arrive.
+     * </p>
+     */
+    synchronized void shutdown(){
+        cancelPrefetch();
+        if( prefetcher != null ){
+            prefetcher.shutdownNow();
+            prefetcher = null;
+        }
+        if( visible.get() > 0 ){
+            stale = true;
+            return;
+        }
+        stopWorkers();
+    }
+    
+    /** Called as each fetch is done, stops the workers if shutdown was deferred */
+    private synchronized void released(){
+        if( stale && visible.get() == 0 ){
+            stopWorkers();
+        }
+    }
+    
+    private synchronized void stopWorkers(){
+        stale = false;
+        if( downloads != null ){
+            downloads.shutdownNow();
+            downloads = null;
+        }
+        if( decoders != null ){
+            decoders.shutdownNow();
+            decoders = null;
+        }
+    }
+    
+    /**
+     * Fetch the provided tiles, blocking until all of them are delivered
+     * or the monitor is canceled.
+     * 
+     * @param keys Tiles to fetch, in the order they should be requested
+     * @param refresh true to ignore the cached copies
+     * @param delivery Receives each tile on the calling thread
+     * @param monitor worked( 1 ) is called after each delivered tile
+     */
+    void fetch( List<TileKey> keys, boolean refresh, Delivery delivery, IProgressMonitor monitor ){
+        if( monitor == null ) monitor = new NullProgressMonitor();
+        
+        visible.incrementAndGet();
+        final LinkedBlockingQueue<Fetched> done = new LinkedBlockingQueue<Fetched>();
+        final AtomicBoolean canceled = new AtomicBoolean( false );
+        List<Future<?>> pending = new ArrayList<Future<?>>( keys.size() );
+        
+        ExecutorService pool = downloads();
+        for( Iterator<TileKey> i = keys.iterator(); i.hasNext(); ){
+            pending.add( pool.submit( new Download( i.next(), refresh, done, canceled )));
+        }
+        try {
+            int remaining = keys.size();
+            while( remaining > 0 ){
+                if( monitor.isCanceled() ){
+                    return;
+                }
+                Fetched fetched = done.poll( POLL, TimeUnit.MILLISECONDS );
+                if( fetched == null ){
+                    continue;
+                }
+                remaining--;
+                if( fetched.tile != null ){
+                    monitor.setTaskName( fetched.key.getName() );
+                    delivery.delivered( fetched.key, fetched.tile );
+                }
+                monitor.worked( 1 );
+            }
+        }
+        catch( InterruptedException interrupted ){
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            canceled.set( true );
+            for( Iterator<Future<?>> i = pending.iterator(); i.hasNext(); ){
+                i.next().cancel( false );
+            }
+            if( visible.decrementAndGet() == 0 ){
+                released();
+            }
+        }
+    }
+    
+    /**
+     * Queue the provided tiles to be fetched in the background, dropping the
+     * tiles still queued by a previous call.
+     * <p>
+     * The encoded content is kept on disk; tiles already cached are skipped.
+     * Without a disk store nothing is prefetched, as decoded tiles kept in
+     * memory would evict the visible ones.
+     * </p>
+     * @param keys Tiles to prefetch, in the order they should be requested
+     */
+    void prefetch( List<TileKey> keys ){
+        if( cache.getDiskStore() == null ){
+            return;
+        }
+        int current = generation.incrementAndGet();
+        ExecutorService pool = prefetcher();
+        for( Iterator<TileKey> i = keys.iterator(); i.hasNext(); ){
+            pool.execute( new Prefetch( i.next(), current ));
+        }
+    }
+    
+    /**
+     * Drop the tiles waiting to be prefetched.
+     */
+    void cancelPrefetch(){
+        generation.incrementAndGet();
+    }
+    
+    /**
+     * Order the keys from the centre of the range outwards.
+     */
+    static List<TileKey> centreOut( List<TileKey> keys, final double centreRow, final double centreCol ){
+        List<TileKey> sorted = new ArrayList<TileKey>( keys );
+        Collections.sort( sorted, new Comparator<TileKey>(){
+            public int compare( TileKey a, TileKey b ) {
+                double da = distance( a );
+                double db = distance( b );
+                return da < db ? -1 : (da > db ? 1 : 0);
+            }
+            private double distance( TileKey key ){
+                double dr = key.getRow() + 0.5 - centreRow;
+                double dc = key.getCol() + 0.5 - centreCol;
+                return dr*dr + dc*dc;
+            }
+        });
+        return sorted;
+    }
+    
+    /** Tile ready to be delivered, tile is null if it could not be produced */
+    private static final class Fetched {
+        final TileKey key;
+        final GridCoverage2D tile;
+        Fetched( TileKey key, GridCoverage2D tile ){
+            this.key = key;
+            this.tile = tile;
+        }
+    }
+    
+    /**
+     * Looks for the tile in memory or on disk, otherwise asks the TileDraw
+     * for the encoded content. Decoding is handed over to the decode workers.
+     */
+    private final class Download implements Runnable {
+        private final TileKey key;
+        private final boolean refresh;
+        private final LinkedBlockingQueue<Fetched> done;
+        private final AtomicBoolean canceled;
+        
+        Download( TileKey key, boolean refresh, LinkedBlockingQueue<Fetched> done, AtomicBoolean canceled ){
+            this.key = key;
+            this.refresh = refresh;
+            this.done = done;
+            this.canceled = canceled;
+        }
+        public void run() {
+            if( canceled.get() ){
+                done.add( new Fetched( key, null ));
+                return;
+            }
+            try {
+                if( !refresh ){
+                    GridCoverage2D hit = cache.memoryHit( key );
+                    if( hit != null ){
+                        done.add( new Fetched( key, hit ));
+                        return;
+                    }
+                    byte[] data = cache.diskGet( key );
+                    if( data != null ){
+                        decoders().execute( new Decode( key, data, true, done ));
+                        return;
+                    }
+                }
+                cache.getStatistics().miss();
+                if( cache.getDiskStore() != null ){
+                    byte[] data = null;
+                    try {
+                        data = key.getDraw().fetchTile( key.getRow(), key.getCol() );
+                    }
+                    catch( IOException notFetched ){
+                        data = null; // drawTile will report the problem
+                    }
+                    if( data != null ){
+                        decoders().execute( new Decode( key, data, false, done ));
+                        return;
+                    }
+                }
+                done.add( new Fetched( key, draw( key )));
+            }
+            catch( Throwable t ){
+                done.add( new Fetched( key, null ));
+            }
+        }
+    }
+    
+    /**
+     * Decodes the content, storing the result in the cache.
+     */
+    private final class Decode implements Runnable {
+        private final TileKey key;
+        private final byte[] data;
+        private final boolean fromDisk;
+        private final LinkedBlockingQueue<Fetched> done;
+        
+        Decode( TileKey key, byte[] data, boolean fromDisk, LinkedBlockingQueue<Fetched> done ){
+            this.key = key;
+            this.data = data;
+            this.fromDisk = fromDisk;
+            this.done = done;
+        }
+        public void run() {
+            try {
+                GridCoverage2D tile = key.getDraw().decodeTile( key.getRow(), key.getCol(), data );
+                if( tile == null ){
+                    if( fromDisk ){
+                        cache.getDiskStore().remove( key.getName() ); // could not be decoded
+                        cache.getStatistics().miss();
+                    }
+                    done.add( new Fetched( key, draw( key )));
+                    return;
+                }
+                if( fromDisk ){
+                    cache.getStatistics().diskHit();
+                }
+                else {
+                    cache.getDiskStore().put( key.getName(), data );
+                }
+                cache.store( key, tile );
+                done.add( new Fetched( key, tile ));
+            }
+            catch( Throwable t ){
+                done.add( new Fetched( key, null ));
+            }
+        }
+    }
+    
+    /**
+     * Fetches a tile that is not visible yet, as long as no newer prefetch was requested.
+     */
+    private final class Prefetch implements Runnable {
+        private final TileKey key;
+        private final int generation;
+        
+        Prefetch( TileKey key, int generation ){
+            this.key = key;
+            this.generation = generation;
+        }
+        private boolean isDropped(){
+            return generation != TileFetcher.this.generation.get();
+        }
+        public void run() {
+            try {
+                // visible tiles go first
+                while( visible.get() > 0 ){
+                    if( isDropped() ) return;
+                    Thread.sleep( POLL );
+                }
+                if( isDropped() || cache.contains( key ) ) return;
+                
+                DiskTileStore disk = cache.getDiskStore();
+                byte[] data = key.getDraw().fetchTile( key.getRow(), key.getCol() );
+                if( data != null ){
+                    disk.put( key.getName(), data );
+                    cache.getStatistics().prefetch();
+                }
+            }
+            catch( InterruptedException shutdown ){
+                return;
+            }
+            catch( Throwable notFetched ){
+                return; // it will be requested again if it becomes visible
+            }
+        }
+    }
+    
+    /** Draw the tile directly, used when the encoded content is not available */
+    private GridCoverage2D draw( TileKey key ){
+        TileDraw draw = key.getDraw();
+        GridCoverage2D tile = draw.drawTile( key.getRow(), key.getCol() );
+        cache.store( key, tile );
+        return tile;
+    }
+    
+    /** Daemon threads so an idle cache does not keep the application alive */
+    private static final class WorkerFactory implements ThreadFactory {
+        private final String name;
+        private final int priority;
+        private int count = 0;
+        WorkerFactory( String name ){
+            this( name, Thread.NORM_PRIORITY );
+        }
+        WorkerFactory( String name, int priority ){
+            this.name = name;
+            this.priority = priority;
+        }
+        public synchronized Thread newThread( Runnable runnable ) {
+            Thread thread = new Thread( runnable, name + " " + (++count) );
+            thread.setDaemon( true );
+            thread.setPriority( priority );
+            return thread;
+        }
+    }
+}
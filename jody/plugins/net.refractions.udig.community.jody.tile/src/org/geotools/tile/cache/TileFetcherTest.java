@@ -0,0 +1,230 @@
+package org.geotools.tile.cache;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridCoverageFactory;
+import org.geotools.geometry.Envelope2D;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.tile.TileDraw;
+
+/**
+ * Fetches tiles from a local TileHttpServer with a fixed latency.
+ */
+public class TileFetcherTest extends TestCase {
+    private static final long LATENCY = 200;
+    
+    TileHttpServer server;
+    File directory;
+    
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        server = new TileHttpServer( LATENCY );
+        server.start();
+        directory = File.createTempFile("tiles", "");
+        directory.delete();
+    }
+    
+    @Override
+    protected void tearDown() throws Exception {
+        server.stop();
+        File[] files = directory.listFiles();
+        for( int i=0; files != null && i<files.length; i++){
+            files[i].delete();
+        }
+        directory.delete();
+        super.tearDown();
+    }
+    
+    public void testCentreOut() throws Exception {
+        LRUTileCache cache = new LRUTileCache( LRUTileCache.DEFAULT_MEMORY_BUDGET, directory, LRUTileCache.DEFAULT_DISK_BUDGET );
+        cache.setDownloadThreads( 1 );
+        
+        cache.createRange( new HttpTileDraw( server ), new Rectangle(0,0,3,3) ).load( null );
+        
+        List<String> requests = server.getRequests();
+        assertEquals( 9, requests.size() );
+        assertEquals( "1x1", requests.get(0) );
+        cache.close();
+    }
+    
+    public void testDeliveredAsTheyArrive() throws Exception {
+        LRUTileCache cache = new LRUTileCache( LRUTileCache.DEFAULT_MEMORY_BUDGET, directory, LRUTileCache.DEFAULT_DISK_BUDGET );
+        final TileRange range = cache.createRange( new HttpTileDraw( server ), new Rectangle(0,0,3,3) );
+        final int[] worked = new int[1];
+        final int[] real = new int[1];
+        
+        range.load( new NullProgressMonitor(){
+            public void worked( int work ) {
+                worked[0] += work;
+                real[0] = 0;
+                for( Object tile : range.getTiles() ){
+                    if( ((GridCoverage2D) tile).getRenderedImage().getWidth() == 16 ) real[0]++;
+                }
+                assertEquals( worked[0], real[0] );
+            }
+        });
+        assertEquals( 9, worked[0] );
+        cache.close();
+    }
+    
+    public void testPrefetch() throws Exception {
+        LRUTileCache cache = new LRUTileCache( LRUTileCache.DEFAULT_MEMORY_BUDGET, directory, LRUTileCache.DEFAULT_DISK_BUDGET );
+        HttpTileDraw draw = new HttpTileDraw( server );
+        
+        List<TileKey> ring = new ArrayList<TileKey>();
+        for( int col = 0; col < 3; col++ ){
+            ring.add( new TileKey( draw, 3, col ));
+        }
+        cache.prefetch( ring );
+        for( int wait = 0; cache.getStatistics().getPrefetches() < 3 && wait < 50; wait++ ){
+            Thread.sleep( LATENCY );
+        }
+        assertEquals( 3, cache.getStatistics().getPrefetches() );
+        assertEquals( 3, server.getRequests().size() );
+        
+        // panning down is served from disk
+        cache.createRange( draw, new Rectangle(0,3,3,1) ).load( null );
+        assertEquals( 3, server.getRequests().size() );
+        assertEquals( 3, cache.getStatistics().getDiskHits() );
+        cache.close();
+    }
+    
+    public void testPrefetchDropped() throws Exception {
+        LRUTileCache cache = new LRUTileCache( LRUTileCache.DEFAULT_MEMORY_BUDGET, directory, LRUTileCache.DEFAULT_DISK_BUDGET );
+        HttpTileDraw draw = new HttpTileDraw( server );
+        
+        List<TileKey> first = new ArrayList<TileKey>();
+        for( int col = 0; col < 10; col++ ){
+            first.add( new TileKey( draw, 0, col ));
+        }
+        cache.prefetch( first );
+        Thread.sleep( LATENCY / 2 );
+        
+        // viewport moved on
+        List<TileKey> second = new ArrayList<TileKey>();
+        second.add( new TileKey( draw, 5, 5 ));
+        cache.prefetch( second );
+        
+        for( int wait = 0; !server.getRequests().contains("5x5") && wait < 50; wait++ ){
+            Thread.sleep( LATENCY );
+        }
+        Thread.sleep( LATENCY );
+        
+        // at most the request in flight is made from the first list
+        assertTrue( server.getRequests().size() <= 2 );
+        assertTrue( server.getRequests().contains("5x5") );
+        cache.close();
+    }
+    
+    public void testResizeDuringFetch() throws Exception {
+        final LRUTileCache cache = new LRUTileCache( LRUTileCache.DEFAULT_MEMORY_BUDGET, directory, LRUTileCache.DEFAULT_DISK_BUDGET );
+        cache.setDownloadThreads( 1 );
+        final TileRange range = cache.createRange( new HttpTileDraw( server ), new Rectangle(0,0,3,3) );
+        final int[] worked = new int[1];
+        
+        Thread load = new Thread(){
+            public void run() {
+                range.load( new NullProgressMonitor(){
+                    public void worked( int work ) {
+                        worked[0] += work;
+                    }
+                });
+            }
+        };
+        load.start();
+        Thread.sleep( LATENCY / 2 );
+        cache.setDownloadThreads( 2 ); // must not drop the downloads of the fetch
+        load.join( 20 * LATENCY );
+        
+        assertFalse( load.isAlive() );
+        assertEquals( 9, worked[0] );
+        cache.close();
+    }
+    
+    public void testConcurrentDownloads() throws Exception {
+        long serial = time( 1 );
+        long concurrent = time( 4 );
+        
+        System.out.println( "9 tiles with "+LATENCY+"ms latency: serial "+serial+"ms, 4 downloads "+concurrent+"ms" );
+        assertTrue( serial >= 9 * LATENCY );
+        assertTrue( concurrent < serial );
+    }
+    
+    private long time( int downloads ) throws IOException {
+        LRUTileCache cache = new LRUTileCache( LRUTileCache.DEFAULT_MEMORY_BUDGET, null, 0 );
+        cache.setDownloadThreads( downloads );
+        TileRange range = cache.createRange( new HttpTileDraw( server ), new Rectangle(0,0,3,3) );
+        
+        long start = System.currentTimeMillis();
+        range.load( null );
+        long time = System.currentTimeMillis() - start;
+        
+        cache.close();
+        return time;
+    }
+    
+    /** Requests 16x16 png tiles from the server */
+    static class HttpTileDraw extends TileDraw {
+        static GridCoverageFactory factory = new GridCoverageFactory();
+        private TileHttpServer server;
+        
+        HttpTileDraw( TileHttpServer server ){
+            this.server = server;
+        }
+        public String name( int row, int col ) {
+            return row+"x"+col;
+        }
+        public GridCoverage2D drawPlaceholder( int row, int col ) {
+            return create( row, col, new BufferedImage( 1, 1, BufferedImage.TYPE_INT_ARGB ) );
+        }
+        public GridCoverage2D drawTile( int row, int col ) {
+            try {
+                return decodeTile( row, col, fetchTile( row, col ) );
+            }
+            catch( IOException e ){
+                return drawPlaceholder( row, col );
+            }
+        }
+        public byte[] fetchTile( int row, int col ) throws IOException {
+            InputStream in = server.getURL( name( row, col )).openStream();
+            try {
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                byte[] buffer = new byte[ 1024 ];
+                for( int read = in.read( buffer ); read != -1; read = in.read( buffer ) ){
+                    content.write( buffer, 0, read );
+                }
+                return content.toByteArray();
+            }
+            finally {
+                in.close();
+            }
+        }
+        public GridCoverage2D decodeTile( int row, int col, byte[] data ) {
+            try {
+                return create( row, col, ImageIO.read( new ByteArrayInputStream( data ) ) );
+            }
+            catch( IOException e ){
+                return null;
+            }
+        }
+        private GridCoverage2D create( int row, int col, BufferedImage image ){
+            Envelope2D rectangle = new Envelope2D( DefaultGeographicCRS.WGS84, col, row, 1, 1 );
+            return factory.create( name(row,col), image, rectangle );
+        }
+    }
+}
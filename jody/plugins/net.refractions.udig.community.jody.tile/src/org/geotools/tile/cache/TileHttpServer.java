@@ -0,0 +1,118 @@
+package org.geotools.tile.cache;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Local http server standing in for a tile server in tests and latency benchmarks.
+ * <p>
+ * Every GET request is answered with the same png tile after the configured
+ * latency; requested paths are recorded in order of arrival.
+ * </p>
+ * @author Jody Garnett, Refractions Research Inc.
+ */
+public class TileHttpServer implements Runnable {
+    private final ServerSocket socket;
+    private final long latency;
+    private final byte[] tile;
+    private final List<String> requests = Collections.synchronizedList( new ArrayList<String>() );
+    private Thread thread;
+    
+    /**
+     * @param latency Delay in milliseconds before each response
+     */
+    public TileHttpServer( long latency ) throws IOException {
+        this.socket = new ServerSocket( 0, 50, InetAddress.getByName("127.0.0.1") );
+        this.latency = latency;
+        
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write( new BufferedImage( 16, 16, BufferedImage.TYPE_INT_ARGB ), "png", png );
+        this.tile = png.toByteArray();
+    }
+    
+    public void start() {
+        thread = new Thread( this, "Tile Http Server" );
+        thread.setDaemon( true );
+        thread.start();
+    }
+    
+    public void stop() throws IOException {
+        socket.close();
+    }
+    
+    public URL getURL( String path ) throws IOException {
+        return new URL( "http://127.0.0.1:"+socket.getLocalPort()+"/"+path );
+    }
+    
+    /** List<String> of requested paths in order of arrival */
+    public List<String> getRequests() {
+        synchronized( requests ){
+            return new ArrayList<String>( requests );
+        }
+    }
+    
+    public void run() {
+        while( !socket.isClosed() ){
+            try {
+                final Socket connection = socket.accept();
+                Thread handler = new Thread( new Runnable(){
+                    public void run() {
+                        respond( connection );
+                    }
+                }, "Tile Http Request" );
+                handler.setDaemon( true );
+                handler.start();
+            }
+            catch( IOException closed ){
+                return;
+            }
+        }
+    }
+    
+    private void respond( Socket connection ) {
+        try {
+            InputStream in = connection.getInputStream();
+            BufferedReader reader = new BufferedReader( new InputStreamReader( in, "ISO-8859-1" ));
+            String request = reader.readLine(); // GET /path HTTP/1.1
+            for( String line = reader.readLine(); line != null && line.length() > 0; line = reader.readLine() ){
+                // skip headers
+            }
+            if( request != null ){
+                String[] parts = request.split(" ");
+                requests.add( parts.length > 1 ? parts[1].substring(1) : "" );
+            }
+            Thread.sleep( latency );
+            
+            OutputStream out = connection.getOutputStream();
+            String header = "HTTP/1.0 200 OK\r\nContent-Type: image/png\r\nContent-Length: "+tile.length+
+                            "\r\nConnection: close\r\n\r\n";
+            out.write( header.getBytes("ISO-8859-1") );
+            out.write( tile );
+            out.flush();
+        }
+        catch( Exception ignore ){
+            // client went away
+        }
+        finally {
+            try {
+                connection.close();
+            }
+            catch( IOException ignore ){
+            }
+        }
+    }
+}
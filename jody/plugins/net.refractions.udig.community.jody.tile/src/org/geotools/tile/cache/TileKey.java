@@ -0,0 +1,77 @@
+package org.geotools.tile.cache;
+
+import org.geotools.tile.TileDraw;
+
+/**
+ * Identifies a tile in a TileCache.
+ * <p>
+ * A TileDraw is created for each TileSet (that is each TileMap and ZoomLevel),
+ * so the id of the TileDraw together with the row and col identifies a single tile.
+ * The row and col are packed into a single long, and the hash code is worked out
+ * once, so keys are cheap to compare and hash in the render loop.
+ * </p>
+ * @author Jody Garnett, Refractions Research Inc.
+ */
+public final class TileKey {
+    private final TileDraw draw;
+    
+    /** row in the high 32 bits, col in the low 32 bits */
+    private final long tile;
+    private final int hash;
+    
+    /** Name provided by the TileDraw, created on first use */
+    private String name;
+    
+    public TileKey( TileDraw draw, int row, int col ){
+        this.draw = draw;
+        this.tile = pack( row, col );
+        this.hash = 31 * draw.getId() + (int)(tile ^ (tile >>> 32));
+    }
+    
+    /** Pack the row and col into a long */
+    public static long pack( int row, int col ){
+        return ((long) row << 32) | (col & 0xFFFFFFFFL);
+    }
+    
+    public TileDraw getDraw() {
+        return draw;
+    }
+    /** Id of the TileSet (the TileDraw id) */
+    public int getTileSetId(){
+        return draw.getId();
+    }
+    /** Row and col packed in a long */
+    public long getTile(){
+        return tile;
+    }
+    public int getRow() {
+        return (int)(tile >>> 32);
+    }
+    public int getCol() {
+        return (int) tile;
+    }
+    /**
+     * Name of the tile as provided by the TileDraw; this name is stable between
+     * sessions and is used to locate the tile on disk.
+     */
+    public String getName(){
+        if( name == null ){
+            name = draw.name( getRow(), getCol() );
+        }
+        return name;
+    }
+    public boolean equals( Object obj ) {
+        if( obj == this ) return true;
+        if( obj == null || !(obj instanceof TileKey)){
+            return false;
+        }
+        TileKey other = (TileKey) obj;
+        return tile == other.tile && draw.getId() == other.draw.getId();
+    }
+    public int hashCode() {
+        return hash;
+    }
+    public String toString() {
+        return "TileKey("+draw.getId()+":"+getRow()+"x"+getCol()+")";
+    }
+}
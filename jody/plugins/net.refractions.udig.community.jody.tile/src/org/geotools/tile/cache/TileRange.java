@@ -2,9 +2,11 @@ package org.geotools.tile.cache;
 
 import java.awt.Rectangle;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.geometry.Envelope2D;
 
 import com.vividsolutions.jts.geom.Envelope;
@@ -23,6 +25,14 @@ public interface TileRange {
             return Collections.EMPTY_SET;
         }
 
+        public List getKeys() {
+            return Collections.EMPTY_LIST;
+        }
+
+        public GridCoverage2D getTile( TileKey key ) {
+            return null;
+        }
+
         public boolean isLoaded() {
             return true; // as loaded as we will ever be
         }
@@ -71,4 +81,18 @@ public interface TileRange {
      * @return Set of GridCoverage2d
      */
     Set getTiles();
+    
+    /**
+     * Keys of the tiles in range; unlike getTiles this does not copy the tiles.
+     * 
+     * @return List of TileKey
+     */
+    List getKeys();
+    
+    /**
+     * Tile (or placeholder) for the provided key.
+     * 
+     * @return GridCoverage2D, or null if the key is not in range
+     */
+    GridCoverage2D getTile( TileKey key );
 }
@@ -1,7 +1,9 @@
 package org.geotools.tile.nasa;
 
 import java.awt.image.RenderedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -34,6 +36,11 @@ public abstract class Accessor {
     /** Non null RenderedImage if data exists at that location */
     abstract RenderedImage tileImage( TileSet tileset, int row, int col ) throws IOException;
 
+    /** Encoded image (as provided by the server), null if not supported or no data exists at that location */
+    byte[] tileData( TileSet tileset, int row, int col ) throws IOException {
+        return null;
+    }
+
     /**
      * Create an accessor for the provided layer.
      * <p>
@@ -95,6 +102,12 @@ public abstract class Accessor {
                         return null;
                     }
                 }
+                byte[] tileData( TileSet tileset, int row, int col ) throws IOException {
+                    URL request = requestURL( tileset, row, col );
+                    if( request == null ) return null; // no data here move on
+                    
+                    return readContent( request );
+                }
                 /**
                  * Set up the request url.
                  * 
@@ -212,6 +225,36 @@ public abstract class Accessor {
         }
         return ImageIO.createImageInputStream( url.openStream() ); 
     }
+    /**
+     * Read the content of the url, checking the connection header as openImageInput does.
+     * 
+     * @return content (or null if No data for this region)
+     */
+    static byte[] readContent( URL url ) throws IOException {
+        InputStream in;
+        if( "http".equalsIgnoreCase(url.getProtocol())){
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            if( connection.getResponseCode() == 204 ){
+                connection.disconnect();
+                return null; // we must be "No data for this region.";
+            }
+            in = connection.getInputStream();
+        }
+        else {
+            in = url.openStream();
+        }
+        try {
+            ByteArrayOutputStream content = new ByteArrayOutputStream( 32 * 1024 );
+            byte[] buffer = new byte[ 8 * 1024 ];
+            for( int read = in.read( buffer ); read != -1; read = in.read( buffer ) ){
+                content.write( buffer, 0, read );
+            }
+            return content.toByteArray();
+        }
+        finally {
+            in.close();
+        }
+    }
     private static Accessor createWMSAccessor( final Element wmsAccessor ) {
         String server = wmsAccessor.getChildText("ServerGetMapUrl");
         String data = wmsAccessor.getChildText("global_mosaic");
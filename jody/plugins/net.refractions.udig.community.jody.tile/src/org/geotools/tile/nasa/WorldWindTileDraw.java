@@ -4,8 +4,11 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.RenderedImage;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 
+import javax.imageio.ImageIO;
+
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.coverage.grid.GridCoverageFactory;
 import org.geotools.geometry.DirectPosition2D;
@@ -29,17 +32,18 @@ public class WorldWindTileDraw extends TileDraw {
     
     static GridCoverageFactory factory = new GridCoverageFactory();
     
+    /** map name and scale, shared by all the tile names */
+    private String prefix;
+    
     WorldWindTileDraw( TileSet tileset, Accessor accessor ){
         this.tileset = tileset;
         this.accessor = accessor;
+        this.prefix = tileset.getTileMap().getInfo().getName() + tileset.getZoomLevel().getScaleDenominator() + "grid";
     }
     
     @Override
     public String name( int row, int col ) {
-        String name = tileset.getTileMap().getInfo().getName();
-        name += tileset.getZoomLevel().getScaleDenominator();
-        name += "grid"+col+"x"+row;
-        return name;
+        return prefix+col+"x"+row;
     }
     @Override
     public GridCoverage2D drawPlaceholder( int row, int col ) {
@@ -64,6 +68,25 @@ public class WorldWindTileDraw extends TileDraw {
         }
     }
 
+    @Override
+    public byte[] fetchTile( int row, int col ) throws IOException {
+        return accessor.tileData( tileset, row, col );
+    }
+    
+    @Override
+    public GridCoverage2D decodeTile( int row, int col, byte[] data ) {
+        try {
+            RenderedImage image = ImageIO.read( new ByteArrayInputStream( data ) );
+            if( image == null ){
+                return null; // unknown format
+            }
+            return factory.create( name(row,col), image, createRectangle( row, col ) );
+        }
+        catch (IOException notDecoded ){
+            return null;
+        }
+    }
+
     private RenderedImage createImage( Throwable e ) {
         BufferedImage image = new BufferedImage( 90, 90, BufferedImage.TYPE_INT_ARGB );        
         Graphics2D g = (Graphics2D) image.getGraphics();        
@@ -1,106 +1,275 @@
 package net.refractions.udig.georss;
 
-import java.io.*;
-import java.util.*;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
+import org.geotools.data.AbstractDataStore;
+import org.geotools.data.CollectionFeatureReader;
+import org.geotools.data.FeatureReader;
+import org.geotools.data.Query;
+import org.geotools.feature.AttributeType;
+import org.geotools.feature.AttributeTypeFactory;
+import org.geotools.feature.DefaultFeatureTypeFactory;
+import org.geotools.feature.Feature;
+import org.geotools.feature.FeatureType;
+import org.geotools.feature.IllegalAttributeException;
+import org.geotools.feature.SchemaException;
+import org.geotools.filter.visitor.ExtractBoundsFilterVisitor;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.opengis.filter.And;
+import org.opengis.filter.BinaryComparisonOperator;
+import org.opengis.filter.Filter;
+import org.opengis.filter.PropertyIsBetween;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.PropertyIsGreaterThan;
+import org.opengis.filter.PropertyIsGreaterThanOrEqualTo;
+import org.opengis.filter.PropertyIsLessThan;
+import org.opengis.filter.PropertyIsLessThanOrEqualTo;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
 
-import org.geotools.data.*;
-import org.geotools.feature.*;
-import org.jdom.JDOMException;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
 
-import com.vividsolutions.jts.geom.Point;
-import net.refractions.udig.georss.Georss;
 /**
+ * DataStore of the items of one GeoRSS feed.
+ * <p>
+ * Features are created as the feed is parsed; the parsed items are kept by the
+ * {@link GeoRSSFeed} so later reads do not download or parse the feed again
+ * unless it has changed.
+ * </p>
+ * <p>
+ * Filtered queries are answered from the {@link GeoRSSSnapshot} of the feed:
+ * the bounding box and any time or magnitude range of the filter select the
+ * candidate features from its indexes before the filter itself is applied.
+ * </p>
+ *
  * @author RUI LI
- * 
- * 
- * 
  */
+public class GeoRSSDataStore extends AbstractDataStore {
 
-public class GeoRSSDataStore extends AbstractDataStore{
-	
+	public static final String TYPE_NAME = "GeoRSSFeatures";
+	public static final String TIME = "time";
+	public static final String MAGNITUDE = "magnitude";
 
-	public static DefaultFeatureType createEarthQuakeFeatureType(){
-		AttributeType[] types = new AttributeType[4];
-		types[0] = AttributeTypeFactory.newAttributeType("point", Point.class);
-		types[1] = AttributeTypeFactory.newAttributeType("time", String.class);
+	private static final FeatureType FEATURE_TYPE = createFeatureType();
+
+	private final GeoRSSFeed feed;
+
+	public GeoRSSDataStore(URL url) {
+		this(new GeoRSSFeed(url));
+	}
+
+	public GeoRSSDataStore(GeoRSSFeed feed) {
+		this.feed = feed;
+	}
+
+	private static FeatureType createFeatureType() {
+		AttributeType[] types = new AttributeType[5];
+		types[0] = AttributeTypeFactory.newAttributeType("geometry",
+				Geometry.class, true, null, null, DefaultGeographicCRS.WGS84);
+		types[1] = AttributeTypeFactory.newAttributeType(TIME, Date.class);
 		types[2] = AttributeTypeFactory.newAttributeType("place", String.class);
 		types[3] = AttributeTypeFactory.newAttributeType("link", String.class);
+		types[4] = AttributeTypeFactory.newAttributeType(MAGNITUDE, Double.class);
 
 		DefaultFeatureTypeFactory factory = new DefaultFeatureTypeFactory();
 		factory.addTypes(types);
-		
-		
-	    DefaultFeatureType ftEarthQuake = null;
-	  	  try{
-	  		factory.setName("earthquake");
-			ftEarthQuake= (DefaultFeatureType)factory.getFeatureType();
-			 } 
-		     catch (SchemaException e){
-				e.printStackTrace();
-			}
-		     return ftEarthQuake;
+		factory.setName(TYPE_NAME);
+		try {
+			return factory.getFeatureType();
+		} catch (SchemaException e) {
+			throw new IllegalStateException("GeoRSS feature type: " + e);
+		}
 	}
 
-	
-		
-	public static DefaultFeature createEarthQuakeFeature(EarthQuakeItem item){
-		Object[] featureAttributes = {item.point, item.time,item.name, item.link};
-		DefaultFeature fEarthQuake = null;
-		
-		try {
-			DefaultFeatureType ftEarthQuake = createEarthQuakeFeatureType();
-			fEarthQuake = (DefaultFeature)ftEarthQuake.create(featureAttributes);
-			} catch (IllegalAttributeException e){
-			e.printStackTrace();
+	public static Feature createFeature(GeoRSSItem item, String fid)
+			throws IllegalAttributeException {
+		Object[] featureAttributes = { item.geometry, item.time, item.title,
+				item.link, item.magnitude };
+		return FEATURE_TYPE.create(featureAttributes, fid);
+	}
+
+	public GeoRSSFeed getFeed() {
+		return feed;
+	}
+
+	public FeatureReader getFeatureReader(String typeName) throws IOException {
+		return new GeoRSSFeatureReader(feed.reader());
+	}
+
+	protected FeatureReader getFeatureReader(String typeName, Query query)
+			throws IOException {
+		Filter filter = query.getFilter();
+		if (filter == null || filter == Filter.INCLUDE)
+			return getFeatureReader(typeName);
+
+		Envelope bbox = (Envelope) filter.accept(
+				ExtractBoundsFilterVisitor.BOUNDS_VISITOR, null);
+		if (bbox != null
+				&& (Double.isInfinite(bbox.getWidth()) || Double
+						.isInfinite(bbox.getHeight())))
+			bbox = null;
+
+		GeoRSSSnapshot snapshot = feed.snapshot();
+		return new CollectionFeatureReader(snapshot.query(bbox, range(filter,
+				TIME), range(filter, MAGNITUDE)), FEATURE_TYPE);
+	}
+
+	protected Envelope getBounds(Query query) throws IOException {
+		Filter filter = query.getFilter();
+		if (filter != null && filter != Filter.INCLUDE)
+			return null;
+		return new ReferencedEnvelope(feed.snapshot().getBounds(),
+				DefaultGeographicCRS.WGS84);
+	}
+
+	protected int getCount(Query query) throws IOException {
+		Filter filter = query.getFilter();
+		if (filter != null && filter != Filter.INCLUDE)
+			return -1;
+		return feed.snapshot().size();
+	}
+
+	/**
+	 * Range of an attribute required by a filter made of comparisons joined
+	 * with And.
+	 *
+	 * @return the range; or null if the filter does not limit the attribute
+	 */
+	static GeoRSSSnapshot.Range range(Filter filter, String attribute) {
+		double min = Double.NEGATIVE_INFINITY;
+		double max = Double.POSITIVE_INFINITY;
+
+		if (filter instanceof And) {
+			GeoRSSSnapshot.Range combined = null;
+			for (Iterator it = ((And) filter).getChildren().iterator(); it
+					.hasNext();) {
+				GeoRSSSnapshot.Range child = range((Filter) it.next(), attribute);
+				if (child != null) {
+					combined = combined == null ? child
+							: new GeoRSSSnapshot.Range(Math.max(combined.min,
+									child.min), Math.min(combined.max, child.max));
+				}
 			}
-			return fEarthQuake;
-    }
-		
-		public static FeatureCollection createFeatureCollection()throws IOException,JDOMException {
-			Georss georss = new Georss();
-			List items = georss.getItems();
-			FeatureCollection fcEarthQuake = FeatureCollections.newCollection();
-			
-			for (int i=0; i<items.size();i++){
-			EarthQuakeItem item = (EarthQuakeItem)items.get(i);
-		    DefaultFeature fEarthQuake = createEarthQuakeFeature (item);
-			fcEarthQuake.add(fEarthQuake);
+			return combined;
+		}
+		if (filter instanceof PropertyIsBetween) {
+			PropertyIsBetween between = (PropertyIsBetween) filter;
+			if (!isAttribute(between.getExpression(), attribute))
+				return null;
+			double lower = value(between.getLowerBoundary());
+			double upper = value(between.getUpperBoundary());
+			if (Double.isNaN(lower) || Double.isNaN(upper))
+				return null;
+			return new GeoRSSSnapshot.Range(lower, upper);
+		}
+		if (!(filter instanceof BinaryComparisonOperator))
+			return null;
+
+		BinaryComparisonOperator compare = (BinaryComparisonOperator) filter;
+		boolean left = isAttribute(compare.getExpression1(), attribute);
+		boolean right = isAttribute(compare.getExpression2(), attribute);
+		if (left == right)
+			return null;
+		double value = value(left ? compare.getExpression2() : compare
+				.getExpression1());
+		if (Double.isNaN(value))
+			return null;
+
+		// bounds are inclusive; the filter is applied to the candidates anyway
+		if (filter instanceof PropertyIsEqualTo) {
+			min = value;
+			max = value;
+		} else if (filter instanceof PropertyIsGreaterThan
+				|| filter instanceof PropertyIsGreaterThanOrEqualTo) {
+			if (left)
+				min = value;
+			else
+				max = value;
+		} else if (filter instanceof PropertyIsLessThan
+				|| filter instanceof PropertyIsLessThanOrEqualTo) {
+			if (left)
+				max = value;
+			else
+				min = value;
+		} else {
+			return null;
+		}
+		return new GeoRSSSnapshot.Range(min, max);
+	}
+
+	private static boolean isAttribute(Expression expression, String attribute) {
+		return expression instanceof PropertyName
+				&& attribute.equals(((PropertyName) expression)
+						.getPropertyName());
+	}
+
+	/** @return a time (ms) or number literal as a double; NaN otherwise */
+	private static double value(Expression expression) {
+		if (!(expression instanceof Literal))
+			return Double.NaN;
+		Object value = ((Literal) expression).getValue();
+		if (value instanceof Date)
+			return ((Date) value).getTime();
+		if (value instanceof Number)
+			return ((Number) value).doubleValue();
+		if (value instanceof String) {
+			try {
+				return Double.parseDouble((String) value);
+			} catch (NumberFormatException e) {
+				return Double.NaN;
 			}
-			
-			return fcEarthQuake; 
 		}
-	
-	 
-		
-	 public CollectionFeatureReader getFeatureReader(String typeNames)throws IOException {
-		 	
-		 DefaultFeatureType ftEarthQuake = null;
-		 FeatureCollection fcEarthQuake = null;
-		 try{
-				ftEarthQuake = createEarthQuakeFeatureType(); 
-			    fcEarthQuake = createFeatureCollection();	
-				
-			} catch (IOException e){
-				e.printStackTrace();
-				throw new IOException("Unable to parse GeoRSS feed.");
-			} catch (JDOMException ee){
-				ee.printStackTrace();
-			} 
-				
-			    return new CollectionFeatureReader(fcEarthQuake,ftEarthQuake);
-	 }
-	 
-	 public DefaultFeatureType getSchema(String typeName){
-		 return createEarthQuakeFeatureType(); 
-		 }
-	 
-     public String[] getTypeNames(){
-		 String[] typeName = new String []{"GeoRSSFeatures"};
-		 return typeName;
-	 }
-     
-     
-	 
+		return Double.NaN;
+	}
+
+	public FeatureType getSchema(String typeName) {
+		return FEATURE_TYPE;
+	}
+
+	public String[] getTypeNames() {
+		String[] typeName = new String[] { TYPE_NAME };
+		return typeName;
+	}
+
+	/** Features of the items returned by a feed reader */
+	private static class GeoRSSFeatureReader implements FeatureReader {
+		private final GeoRSSFeed.ItemReader items;
+		private GeoRSSItem next;
+		private int index;
+
+		GeoRSSFeatureReader(GeoRSSFeed.ItemReader items) {
+			this.items = items;
+		}
+
+		public FeatureType getFeatureType() {
+			return FEATURE_TYPE;
+		}
+
+		public boolean hasNext() throws IOException {
+			if (next == null)
+				next = items.next();
+			return next != null;
+		}
+
+		public Feature next() throws IOException, IllegalAttributeException,
+				NoSuchElementException {
+			if (!hasNext())
+				throw new NoSuchElementException("No more GeoRSS items");
+			GeoRSSItem item = next;
+			next = null;
+			index++;
+			return createFeature(item, GeoRSSSnapshot.fid(item, index - 1));
+		}
+
+		public void close() throws IOException {
+			items.close();
+		}
+	}
 }
-	
\ No newline at end of file
@@ -0,0 +1,190 @@
+package net.refractions.udig.georss;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.geotools.feature.IllegalAttributeException;
+
+/**
+ * A GeoRSS feed at a URL (http or a local file) and the items read from it last.
+ * <p>
+ * Reading the feed returns the cached items unless the check interval has
+ * passed and the server (ETag / Last-Modified) or file (modification time)
+ * reports a change. A changed feed is parsed as it is read, and a new
+ * {@link GeoRSSSnapshot} of its items replaces the cached one once the whole
+ * feed has been read.
+ * </p>
+ *
+ * @author RUI LI
+ */
+public class GeoRSSFeed {
+
+	/** Default time between checks of the feed for changes, in milliseconds */
+	public static final long CHECK_INTERVAL = 60 * 1000;
+
+	/** Reads items one at a time */
+	public interface ItemReader {
+		/** @return the next item; or null when there are no more */
+		GeoRSSItem next() throws IOException;
+
+		void close() throws IOException;
+	}
+
+	private final URL url;
+	private long checkInterval = CHECK_INTERVAL;
+	private volatile GeoRSSSnapshot snapshot;
+	/** when the snapshot was last found to be current */
+	private volatile long checked;
+
+	public GeoRSSFeed(URL url) {
+		this.url = url;
+	}
+
+	public URL getURL() {
+		return url;
+	}
+
+	public long getCheckInterval() {
+		return checkInterval;
+	}
+
+	/**
+	 * @param checkInterval milliseconds the cached items are used without
+	 *        asking the server; 0 to check on every read
+	 */
+	public void setCheckInterval(long checkInterval) {
+		this.checkInterval = checkInterval;
+	}
+
+	/**
+	 * Items of the feed, from the cache if it is still current.
+	 */
+	public ItemReader reader() throws IOException {
+		GeoRSSSnapshot current = snapshot;
+		long now = System.currentTimeMillis();
+		if (current != null && now - checked < checkInterval) {
+			return new CachedReader(current.getItems());
+		}
+
+		URLConnection connection = url.openConnection();
+		if (current != null) {
+			if (current.etag != null)
+				connection.setRequestProperty("If-None-Match", current.etag);
+			if (current.lastModified > 0)
+				connection.setIfModifiedSince(current.lastModified);
+		}
+		connection.connect();
+
+		if (connection instanceof HttpURLConnection) {
+			HttpURLConnection http = (HttpURLConnection) connection;
+			int code = http.getResponseCode();
+			if (code == HttpURLConnection.HTTP_NOT_MODIFIED && current != null) {
+				http.disconnect();
+				checked = now;
+				return new CachedReader(current.getItems());
+			}
+			if (code != HttpURLConnection.HTTP_OK) {
+				http.disconnect();
+				throw new IOException("GeoRSS feed " + url + " returned " + code);
+			}
+		} else if (current != null && current.lastModified > 0
+				&& connection.getLastModified() == current.lastModified) {
+			// files and other protocols answer without looking at the request
+			connection.getInputStream().close();
+			checked = now;
+			return new CachedReader(current.getItems());
+		}
+
+		InputStream in = new BufferedInputStream(connection.getInputStream());
+		return new ParsingReader(new GeoRSSParser(in), connection
+				.getHeaderField("ETag"), connection.getLastModified(), now);
+	}
+
+	/**
+	 * The indexed items of the feed, reading the feed first if the cached
+	 * items may be out of date.
+	 */
+	public GeoRSSSnapshot snapshot() throws IOException {
+		ItemReader reader = reader();
+		try {
+			if (!(reader instanceof CachedReader)) {
+				while (reader.next() != null) {
+					// the reader replaces the snapshot at the end of the feed
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Forgets the cached items, so the next read fetches the whole feed.
+	 */
+	public void reset() {
+		snapshot = null;
+	}
+
+	private static class CachedReader implements ItemReader {
+		private final Iterator<GeoRSSItem> items;
+
+		CachedReader(List<GeoRSSItem> items) {
+			this.items = items.iterator();
+		}
+
+		public GeoRSSItem next() {
+			return items.hasNext() ? items.next() : null;
+		}
+
+		public void close() {
+		}
+	}
+
+	/** Parses the feed, keeping the items once the whole feed has been read */
+	private class ParsingReader implements ItemReader {
+		private final GeoRSSParser parser;
+		private final String etag;
+		private final long lastModified;
+		private final long checked;
+		private final List<GeoRSSItem> items = new ArrayList<GeoRSSItem>();
+		private boolean done;
+
+		ParsingReader(GeoRSSParser parser, String etag, long lastModified,
+				long checked) {
+			this.parser = parser;
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.checked = checked;
+		}
+
+		public GeoRSSItem next() throws IOException {
+			if (done)
+				return null;
+			GeoRSSItem item = parser.next();
+			if (item == null) {
+				done = true;
+				try {
+					snapshot = new GeoRSSSnapshot(items, etag, lastModified);
+				} catch (IllegalAttributeException e) {
+					throw (IOException) new IOException(
+							"Unable to create GeoRSS features.").initCause(e);
+				}
+				GeoRSSFeed.this.checked = checked;
+			} else {
+				items.add(item);
+			}
+			return item;
+		}
+
+		public void close() throws IOException {
+			parser.close();
+		}
+	}
+}
@@ -59,9 +59,9 @@ public class GeoRSSGeoResource extends IGeoResource {
 			FeatureSource fs = parent.resolve(GeoRSSDataStore.class, monitor).getFeatureSource(typename);  
 			if (fs instanceof FeatureStore)
 				return adaptee.cast(fs);
+		}
 		if(adaptee.isAssignableFrom(FeatureSource.class))
-				return adaptee.cast(parent.resolve(GeoRSSDataStore.class, monitor).getFeatureSource(typename));
-			}
+			return adaptee.cast(parent.resolve(GeoRSSDataStore.class, monitor).getFeatureSource(typename));
 		
 		return super.resolve(adaptee, monitor);
 		} 
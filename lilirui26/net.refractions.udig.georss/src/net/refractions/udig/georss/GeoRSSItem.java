@@ -0,0 +1,33 @@
+package net.refractions.udig.georss;
+
+import java.util.Date;
+
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * One item (RSS) or entry (Atom) of a GeoRSS feed.
+ *
+ * @author RUI LI
+ */
+public class GeoRSSItem {
+
+	public final String id;
+	public final Geometry geometry;
+	public final Date time;
+	public final String title;
+	public final String link;
+	/** magnitude of an earthquake feed item; null if not known */
+	public final Double magnitude;
+
+	public GeoRSSItem(final String id, final Geometry geometry,
+			final Date time, final String title, final String link,
+			final Double magnitude) {
+		this.id = id;
+		this.geometry = geometry;
+		this.time = time;
+		this.title = title;
+		this.link = link;
+		this.magnitude = magnitude;
+	}
+
+}
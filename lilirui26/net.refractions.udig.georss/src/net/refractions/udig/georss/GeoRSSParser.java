@@ -0,0 +1,352 @@
+package net.refractions.udig.georss;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LinearRing;
+
+/**
+ * Pull parser for GeoRSS feeds, returning one item at a time.
+ * <p>
+ * Reads RSS items and Atom entries located with any of the GeoRSS encodings:
+ * <ul>
+ * <li>GeoRSS Simple - georss:point, georss:line, georss:polygon, georss:box</li>
+ * <li>GeoRSS GML - georss:where holding a gml:Point, gml:LineString,
+ * gml:Polygon or gml:Envelope</li>
+ * <li>W3C geo - geo:lat and geo:long, optionally inside geo:Point</li>
+ * </ul>
+ * Only the current item is held in memory, so feeds of any size can be read.
+ * </p>
+ *
+ * @author RUI LI
+ */
+public class GeoRSSParser {
+
+	public static final String GEORSS = "http://www.georss.org/georss";
+	public static final String GML = "http://www.opengis.net/gml";
+	public static final String GEO = "http://www.w3.org/2003/01/geo/wgs84_pos#";
+
+	private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+
+	/** magnitude at the start of an earthquake title, as in "M 2.5, Alaska" */
+	private static final Pattern MAGNITUDE = Pattern
+			.compile("^\\s*M\\s*(\\d+(\\.\\d+)?)\\b");
+
+	private final XMLStreamReader xml;
+	private final InputStream in;
+	private final GeometryFactory gf = new GeometryFactory();
+
+	private final DateFormat rfc822 = new SimpleDateFormat(
+			"EEE, dd MMM yyyy HH:mm:ss Z", Locale.US);
+	private final DateFormat rfc822NoDay = new SimpleDateFormat(
+			"dd MMM yyyy HH:mm:ss Z", Locale.US);
+	private final DateFormat iso8601 = new SimpleDateFormat(
+			"yyyy-MM-dd'T'HH:mm:ssZ", Locale.US);
+
+	public GeoRSSParser(InputStream in) throws IOException {
+		this.in = in;
+		try {
+			xml = FACTORY.createXMLStreamReader(in);
+		} catch (XMLStreamException e) {
+			throw (IOException) new IOException("Unable to parse GeoRSS feed.")
+					.initCause(e);
+		}
+	}
+
+	/**
+	 * @return the next item that has a location; or null at the end of the
+	 *         feed
+	 */
+	public GeoRSSItem next() throws IOException {
+		try {
+			while (xml.hasNext()) {
+				if (xml.next() == XMLStreamConstants.START_ELEMENT) {
+					String name = xml.getLocalName();
+					if ("item".equals(name) || "entry".equals(name)) {
+						GeoRSSItem item = readItem(name);
+						if (item != null)
+							return item;
+					}
+				}
+			}
+			return null;
+		} catch (XMLStreamException e) {
+			throw (IOException) new IOException("Unable to parse GeoRSS feed.")
+					.initCause(e);
+		}
+	}
+
+	public void close() throws IOException {
+		try {
+			xml.close();
+		} catch (XMLStreamException e) {
+			// closing the stream below is what matters
+		}
+		in.close();
+	}
+
+	/**
+	 * Reads an item up to its end element.
+	 *
+	 * @return the item; or null if it has no location
+	 */
+	private GeoRSSItem readItem(String element) throws XMLStreamException {
+		String id = null;
+		String title = null;
+		String link = null;
+		Date time = null;
+		Geometry geometry = null;
+		String lat = null;
+		String lon = null;
+		Double magnitude = null;
+
+		int depth = 1;
+		while (depth > 0 && xml.hasNext()) {
+			int event = xml.next();
+			if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+				continue;
+			}
+			if (event != XMLStreamConstants.START_ELEMENT)
+				continue;
+
+			String ns = xml.getNamespaceURI();
+			String name = xml.getLocalName();
+
+			if (GEORSS.equals(ns)) {
+				if ("where".equals(name)) {
+					geometry = readWhere();
+				} else {
+					Geometry simple = simple(name, xml.getElementText());
+					if (simple != null)
+						geometry = simple;
+				}
+			} else if (GEO.equals(ns) && "lat".equals(name)) {
+				lat = xml.getElementText();
+			} else if (GEO.equals(ns) && "long".equals(name)) {
+				lon = xml.getElementText();
+			} else if (GEO.equals(ns)) {
+				depth++; // geo:Point
+			} else if (depth > 1) {
+				depth++; // content of an element we do not read
+			} else if ("title".equals(name)) {
+				title = text();
+			} else if ("link".equals(name)) {
+				String href = xml.getAttributeValue(null, "href");
+				String rel = xml.getAttributeValue(null, "rel");
+				String text = text();
+				if (href == null) {
+					link = text;
+				} else if (link == null || "alternate".equals(rel)) {
+					link = href;
+				}
+			} else if ("magnitude".equals(name) || "mag".equals(name)) {
+				magnitude = parseDouble(text());
+			} else if ("guid".equals(name) || "id".equals(name)) {
+				id = text();
+			} else if ("pubDate".equals(name) || "updated".equals(name)
+					|| "published".equals(name) || "date".equals(name)) {
+				Date date = parseDate(text());
+				if (time == null || "published".equals(name))
+					time = date;
+			} else {
+				depth++;
+			}
+		}
+
+		if (geometry == null && lat != null && lon != null) {
+			geometry = simple("point", lat + " " + lon);
+		}
+		if (geometry == null)
+			return null;
+		if (magnitude == null && title != null) {
+			Matcher matcher = MAGNITUDE.matcher(title);
+			if (matcher.find())
+				magnitude = parseDouble(matcher.group(1));
+		}
+
+		return new GeoRSSItem(id, geometry, time, title, link, magnitude);
+	}
+
+	/** text of the current element, which may contain markup (Atom content) */
+	private String text() throws XMLStreamException {
+		StringBuffer text = new StringBuffer();
+		int depth = 1;
+		while (depth > 0) {
+			int event = xml.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			} else if (event == XMLStreamConstants.CHARACTERS
+					|| event == XMLStreamConstants.CDATA
+					|| event == XMLStreamConstants.SPACE) {
+				text.append(xml.getText());
+			}
+		}
+		return text.toString().trim();
+	}
+
+	/** Reads georss:where up to its end element */
+	private Geometry readWhere() throws XMLStreamException {
+		Geometry geometry = null;
+		String geometryType = null;
+		String lower = null;
+		List<Coordinate[]> rings = new ArrayList<Coordinate[]>();
+		Coordinate[] coordinates = null;
+
+		int depth = 1;
+		while (depth > 0 && xml.hasNext()) {
+			int event = xml.next();
+			if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+				continue;
+			}
+			if (event != XMLStreamConstants.START_ELEMENT)
+				continue;
+
+			String name = xml.getLocalName();
+			if ("pos".equals(name) || "posList".equals(name)) {
+				coordinates = coordinates(xml.getElementText());
+				if ("Polygon".equals(geometryType)) {
+					rings.add(coordinates);
+				}
+			} else if ("lowerCorner".equals(name)) {
+				lower = xml.getElementText();
+			} else if ("upperCorner".equals(name)) {
+				geometry = simple("box", lower + " " + xml.getElementText());
+			} else {
+				if ("Point".equals(name) || "LineString".equals(name)
+						|| "Polygon".equals(name)) {
+					geometryType = name;
+				}
+				depth++;
+			}
+		}
+
+		if (geometry != null || coordinates == null || coordinates.length == 0)
+			return geometry;
+		if ("Point".equals(geometryType))
+			return gf.createPoint(coordinates[0]);
+		if ("LineString".equals(geometryType))
+			return gf.createLineString(coordinates);
+		if ("Polygon".equals(geometryType) && !rings.isEmpty()) {
+			LinearRing[] holes = new LinearRing[rings.size() - 1];
+			for (int i = 0; i < holes.length; i++) {
+				holes[i] = gf.createLinearRing(closed(rings.get(i + 1)));
+			}
+			return gf.createPolygon(gf.createLinearRing(closed(rings.get(0))),
+					holes);
+		}
+		return null;
+	}
+
+	/** GeoRSS Simple geometry from "lat lon ..." text */
+	private Geometry simple(String name, String text) {
+		Coordinate[] coordinates = coordinates(text);
+		if (coordinates.length == 0)
+			return null;
+
+		if ("point".equals(name))
+			return gf.createPoint(coordinates[0]);
+		if ("line".equals(name) && coordinates.length > 1)
+			return gf.createLineString(coordinates);
+		if ("polygon".equals(name) && coordinates.length > 2)
+			return gf.createPolygon(gf.createLinearRing(closed(coordinates)),
+					null);
+		if ("box".equals(name) && coordinates.length == 2) {
+			Coordinate low = coordinates[0];
+			Coordinate high = coordinates[1];
+			return gf.createPolygon(gf.createLinearRing(new Coordinate[] {
+					low, new Coordinate(high.x, low.y), high,
+					new Coordinate(low.x, high.y), new Coordinate(low) }), null);
+		}
+		return null;
+	}
+
+	/** Coordinates from GeoRSS "lat lon lat lon ..." text */
+	private static Coordinate[] coordinates(String text) {
+		String[] values = text.trim().split("[\\s,]+");
+		if (values.length < 2)
+			return new Coordinate[0];
+
+		Coordinate[] coordinates = new Coordinate[values.length / 2];
+		try {
+			for (int i = 0; i < coordinates.length; i++) {
+				double lat = Double.parseDouble(values[i * 2]);
+				double lon = Double.parseDouble(values[i * 2 + 1]);
+				coordinates[i] = new Coordinate(lon, lat);
+			}
+		} catch (NumberFormatException e) {
+			return new Coordinate[0];
+		}
+		return coordinates;
+	}
+
+	private static Coordinate[] closed(Coordinate[] ring) {
+		if (ring[0].equals2D(ring[ring.length - 1]))
+			return ring;
+		Coordinate[] closed = new Coordinate[ring.length + 1];
+		System.arraycopy(ring, 0, closed, 0, ring.length);
+		closed[ring.length] = new Coordinate(ring[0]);
+		return closed;
+	}
+
+	private static Double parseDouble(String text) {
+		try {
+			return Double.valueOf(text.trim());
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/** RFC 822 (RSS) or ISO 8601 (Atom, Dublin Core) date */
+	Date parseDate(String text) {
+		if (text == null || text.length() == 0)
+			return null;
+		try {
+			if (Character.isDigit(text.charAt(0)) && text.indexOf('T') == 10) {
+				String iso = text;
+				int fraction = iso.indexOf('.', 19);
+				if (fraction != -1) {
+					int zone = fraction + 1;
+					while (zone < iso.length()
+							&& Character.isDigit(iso.charAt(zone)))
+						zone++;
+					iso = iso.substring(0, fraction) + iso.substring(zone);
+				}
+				if (iso.endsWith("Z")) {
+					iso = iso.substring(0, iso.length() - 1) + "+0000";
+				} else if (iso.length() > 19 && iso.charAt(iso.length() - 3) == ':') {
+					iso = iso.substring(0, iso.length() - 3)
+							+ iso.substring(iso.length() - 2);
+				} else if (iso.length() == 19) {
+					iso = iso + "+0000";
+				}
+				return iso8601.parse(iso);
+			}
+			if (Character.isDigit(text.charAt(0)))
+				return rfc822NoDay.parse(text);
+			return rfc822.parse(text);
+		} catch (ParseException e) {
+			return null;
+		}
+	}
+}
@@ -66,7 +66,7 @@ public class GeoRSSService extends IService {
 	
 		if(this.ds == null)
 		{
-			this.ds = new GeoRSSDataStore();
+			this.ds = new GeoRSSDataStore(url);
 		}
 
 	return ds;
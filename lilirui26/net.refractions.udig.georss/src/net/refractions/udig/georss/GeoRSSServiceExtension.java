@@ -12,20 +12,32 @@ import net.refractions.udig.catalog.ServiceExtension2;
 
 public class GeoRSSServiceExtension implements ServiceExtension2 {
 	
+	/** Connection parameter holding the URL of the feed */
+	public static final String KEY = "net.refractions.udig.georss.url";
+	
+	/** Feed used when no URL is provided */
+	public static final String DEFAULT_FEED = "http://earthquake.usgs.gov/eqcenter/catalogs/eqs1day-M2.5.xml";
 
 	public IService createService(URL id, Map<String, Serializable> params) {
 		
-		try {
-			 id = new URL ("http://earthquake.usgs.gov/eqcenter/catalogs/eqs1day-M2.5.xml");
-			 } catch (MalformedURLException e) {
-			e.printStackTrace();
-		}return new GeoRSSService(id, params);
+		if (params != null && params.get(KEY) instanceof URL) {
+			id = (URL) params.get(KEY);
+		}
+		if (id == null) {
+			try {
+				id = new URL(DEFAULT_FEED);
+			} catch (MalformedURLException e) {
+				e.printStackTrace();
+			}
+		}
+		return new GeoRSSService(id, params);
 		
 	}
 	
 	public Map<String, Serializable> createParams(URL url) {
 		Map<String, Serializable> params = new HashMap<String, Serializable>();
-		
+		if (url != null)
+			params.put(KEY, url);
 		return params;
 	}
 
@@ -0,0 +1,175 @@
+package net.refractions.udig.georss;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import org.geotools.feature.Feature;
+import org.geotools.feature.IllegalAttributeException;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+/**
+ * The items of one reading of a feed, indexed for queries.
+ * <p>
+ * A snapshot never changes once built: the features are created once, held in
+ * an STRtree for bbox queries and sorted by time and magnitude for range
+ * queries. A refreshed feed replaces its snapshot as a whole, so readers of the
+ * old snapshot are not disturbed.
+ * </p>
+ *
+ * @author RUI LI
+ */
+public class GeoRSSSnapshot {
+
+	/** An inclusive range of time (ms) or magnitude values */
+	public static class Range {
+		public final double min;
+		public final double max;
+
+		public Range(double min, double max) {
+			this.min = min;
+			this.max = max;
+		}
+	}
+
+	private final List<GeoRSSItem> items;
+	private final Feature[] features;
+	private final Envelope bounds = new Envelope();
+	private final STRtree index = new STRtree();
+
+	private final int[] byTime;
+	private final double[] times;
+	private final int[] byMagnitude;
+	private final double[] magnitudes;
+
+	final String etag;
+	final long lastModified;
+
+	GeoRSSSnapshot(List<GeoRSSItem> items, String etag, long lastModified)
+			throws IllegalAttributeException {
+		this.items = Collections.unmodifiableList(items);
+		this.etag = etag;
+		this.lastModified = lastModified;
+
+		features = new Feature[items.size()];
+		for (int i = 0; i < features.length; i++) {
+			GeoRSSItem item = items.get(i);
+			features[i] = GeoRSSDataStore.createFeature(item, fid(item, i));
+			Envelope envelope = item.geometry.getEnvelopeInternal();
+			bounds.expandToInclude(envelope);
+			index.insert(envelope, new Integer(i));
+		}
+		index.build();
+
+		byTime = sort(new Comparator<GeoRSSItem>() {
+			public int compare(GeoRSSItem a, GeoRSSItem b) {
+				return a.time.compareTo(b.time);
+			}
+		}, true);
+		times = new double[byTime.length];
+		for (int i = 0; i < byTime.length; i++)
+			times[i] = items.get(byTime[i]).time.getTime();
+
+		byMagnitude = sort(new Comparator<GeoRSSItem>() {
+			public int compare(GeoRSSItem a, GeoRSSItem b) {
+				return a.magnitude.compareTo(b.magnitude);
+			}
+		}, false);
+		magnitudes = new double[byMagnitude.length];
+		for (int i = 0; i < byMagnitude.length; i++)
+			magnitudes[i] = items.get(byMagnitude[i]).magnitude.doubleValue();
+	}
+
+	/** Feature id of an item: its guid or id, else its position in the feed */
+	static String fid(GeoRSSItem item, int position) {
+		return item.id != null ? item.id : GeoRSSDataStore.TYPE_NAME + "."
+				+ (position + 1);
+	}
+
+	/** Positions of the items with a time (or magnitude), in increasing order */
+	private int[] sort(final Comparator<GeoRSSItem> order, boolean time) {
+		List<Integer> positions = new ArrayList<Integer>();
+		for (int i = 0; i < items.size(); i++) {
+			GeoRSSItem item = items.get(i);
+			if (time ? item.time != null : item.magnitude != null)
+				positions.add(new Integer(i));
+		}
+		Collections.sort(positions, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return order.compare(items.get(a.intValue()), items.get(b
+						.intValue()));
+			}
+		});
+		int[] sorted = new int[positions.size()];
+		for (int i = 0; i < sorted.length; i++)
+			sorted[i] = positions.get(i).intValue();
+		return sorted;
+	}
+
+	public List<GeoRSSItem> getItems() {
+		return items;
+	}
+
+	public int size() {
+		return features.length;
+	}
+
+	public Envelope getBounds() {
+		return new Envelope(bounds);
+	}
+
+	/**
+	 * Features within all of the provided constraints, in feed order.
+	 *
+	 * @param bbox area; or null for anywhere
+	 * @param time time range in ms; or null for any time
+	 * @param magnitude magnitude range; or null for any magnitude
+	 */
+	public List<Feature> query(Envelope bbox, Range time, Range magnitude) {
+		BitSet selected = new BitSet(features.length);
+		if (bbox == null) {
+			selected.set(0, features.length);
+		} else {
+			for (Iterator it = index.query(bbox).iterator(); it.hasNext();) {
+				selected.set(((Integer) it.next()).intValue());
+			}
+		}
+		if (time != null)
+			selected.and(range(byTime, times, time));
+		if (magnitude != null)
+			selected.and(range(byMagnitude, magnitudes, magnitude));
+
+		List<Feature> result = new ArrayList<Feature>(selected.cardinality());
+		for (int i = selected.nextSetBit(0); i >= 0; i = selected
+				.nextSetBit(i + 1)) {
+			result.add(features[i]);
+		}
+		return result;
+	}
+
+	/** Positions of the sorted values within the range */
+	private BitSet range(int[] positions, double[] values, Range range) {
+		BitSet selected = new BitSet(features.length);
+		int from = lowerBound(values, range.min);
+		for (int i = from; i < values.length && values[i] <= range.max; i++) {
+			selected.set(positions[i]);
+		}
+		return selected;
+	}
+
+	/** index of the first value not below the key */
+	private static int lowerBound(double[] values, double key) {
+		int found = Arrays.binarySearch(values, key);
+		if (found < 0)
+			return -found - 1;
+		while (found > 0 && values[found - 1] == key)
+			found--;
+		return found;
+	}
+}
@@ -0,0 +1,126 @@
+/* uDig - User Friendly Desktop Internet GIS client
+ * http://udig.refractions.net
+ * (C) 2008, AmanziTel
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation;
+ * version 2.1 of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+
+package net.refractions.udig.catalog.mitab;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.geotools.data.FeatureReader;
+import org.geotools.resources.TestData;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.MultiLineString;
+import com.vividsolutions.jts.geom.MultiPoint;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Reads test-data/styled.mif, whose objects are each followed by style clauses.
+ *
+ * @author Lucas Reed, (Refractions Research Inc)
+ * @since 1.2.0
+ */
+@SuppressWarnings("nls")
+public class MIFFeatureReaderTest extends TestCase {
+    private List<SimpleFeature> features;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        File         mif   = TestData.file(this, "styled.mif");
+        MIFDataStore store = new MIFDataStore(mif);
+
+        FeatureReader<SimpleFeatureType, SimpleFeature> reader = store.getFeatureReader(store
+                .getTypeNames()[0]);
+
+        this.features = new ArrayList<SimpleFeature>();
+
+        try {
+            while(reader.hasNext()) {
+                this.features.add(reader.next());
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testCount() throws Exception {
+        // no part of the collection is read as an object of its own
+        assertEquals(4, this.features.size());
+
+        for( int i = 0; i < this.features.size(); i++ ) {
+            assertEquals(Integer.valueOf(i + 1), this.features.get(i).getAttribute("ID"));
+        }
+    }
+
+    public void testCollection() throws Exception {
+        SimpleFeature feature = this.features.get(0);
+        assertEquals("collection", feature.getAttribute("Name"));
+
+        Geometry geometry = (Geometry) feature.getDefaultGeometry();
+        assertTrue(geometry instanceof GeometryCollection);
+        assertEquals(3, geometry.getNumGeometries());
+
+        Polygon region = (Polygon) geometry.getGeometryN(0);
+        assertEquals(1, region.getNumInteriorRing());
+        assertEquals(64.0, region.getArea(), 0.0);
+
+        assertTrue(geometry.getGeometryN(1) instanceof LineString);
+        assertTrue(geometry.getGeometryN(2) instanceof MultiPoint);
+    }
+
+    public void testRegionWithHole() throws Exception {
+        SimpleFeature feature = this.features.get(1);
+        assertEquals("island", feature.getAttribute("Name"));
+
+        MultiPolygon geometry = (MultiPolygon) feature.getDefaultGeometry();
+        assertEquals(2, geometry.getNumGeometries());
+
+        // the outer ring with its hole, then the island inside the hole
+        Polygon outer = (Polygon) geometry.getGeometryN(0);
+        assertEquals(1, outer.getNumInteriorRing());
+        assertEquals(800.0, outer.getArea(), 0.0);
+
+        Polygon island = (Polygon) geometry.getGeometryN(1);
+        assertEquals(0, island.getNumInteriorRing());
+        assertEquals(36.0, island.getArea(), 0.0);
+    }
+
+    public void testPlineMultiple() throws Exception {
+        SimpleFeature feature = this.features.get(2);
+        assertEquals("multiple", feature.getAttribute("Name"));
+
+        MultiLineString geometry = (MultiLineString) feature.getDefaultGeometry();
+        assertEquals(2, geometry.getNumGeometries());
+        assertEquals(2, geometry.getGeometryN(0).getNumPoints());
+        assertEquals(3, geometry.getGeometryN(1).getNumPoints());
+    }
+
+    public void testPoint() throws Exception {
+        SimpleFeature feature = this.features.get(3);
+        assertEquals("point", feature.getAttribute("Name"));
+        assertTrue(feature.getDefaultGeometry() instanceof Point);
+    }
+}
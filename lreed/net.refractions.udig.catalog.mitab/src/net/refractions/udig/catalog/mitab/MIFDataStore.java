@@ -0,0 +1,242 @@
+/* uDig - User Friendly Desktop Internet GIS client
+ * http://udig.refractions.net
+ * (C) 2008, AmanziTel
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation;
+ * version 2.1 of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+
+package net.refractions.udig.catalog.mitab;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+import org.geotools.data.AbstractDataStore;
+import org.geotools.data.FeatureReader;
+import org.geotools.data.Query;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.filter.visitor.ExtractBoundsFilterVisitor;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.CRS;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * Read only DataStore for a MapInfo Interchange Format (MIF/MID) file pair.
+ * <p>
+ * Features are read straight from the files as they are requested; bbox
+ * queries skip the objects outside the area before building them. The bounds
+ * and feature count are known once the file has been read through.
+ * </p>
+ *
+ * @author Lucas Reed, (Refractions Research Inc)
+ * @since 1.2.0
+ */
+@SuppressWarnings("nls")
+public class MIFDataStore extends AbstractDataStore {
+    /** Name of the geometry attribute, as in the shapefiles produced by ogr2ogr */
+    public static final String GEOMETRY = "the_geom";
+
+    private static final Charset HEADER_CHARSET = Charset.forName("ISO-8859-1");
+
+    private File               mif;
+    private File               mid;
+    private File               prj;
+    private String             typeName;
+    private MIFHeader          header;
+    private SimpleFeatureType  schema;
+    private Envelope           bounds;
+    private int                count = -1;
+
+    public MIFDataStore(File mif) {
+        super(false);
+
+        this.mif = mif;
+
+        String name = mif.getName();
+        int    a    = name.lastIndexOf(".");
+
+        this.typeName = -1 == a ? name : name.substring(0, a);
+        this.mid      = sibling(mif, this.typeName, "mid");
+        this.prj      = sibling(mif, this.typeName, "prj");
+    }
+
+    /**
+     * @return the file with the same name and the provided extension in either case; or null
+     */
+    static File sibling(File file, String bareName, String extension) {
+        File lower = new File(file.getParentFile(), bareName + "." + extension.toLowerCase());
+
+        if (lower.exists()) {
+            return lower;
+        }
+
+        File upper = new File(file.getParentFile(), bareName + "." + extension.toUpperCase());
+
+        if (upper.exists()) {
+            return upper;
+        }
+
+        return null;
+    }
+
+    public String[] getTypeNames() {
+        return new String[]{this.typeName};
+    }
+
+    public synchronized SimpleFeatureType getSchema(String typeName) throws IOException {
+        this.check(typeName);
+
+        if (null == this.schema) {
+            BufferedReader in = this.open(this.mif, HEADER_CHARSET);
+
+            try {
+                this.header = new MIFHeader(in);
+            } finally {
+                in.close();
+            }
+
+            SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+            builder.setName(this.typeName);
+            builder.setCRS(this.getCRS());
+            builder.add(GEOMETRY, Geometry.class);
+
+            for( MIFHeader.Column column : this.header.getColumns() ) {
+                builder.add(column.getName(), column.getBinding());
+            }
+
+            this.schema = builder.buildFeatureType();
+        }
+
+        return this.schema;
+    }
+
+    /**
+     * The crs from the .prj file next to the MIF file if there is one, otherwise
+     * from the CoordSys clause.
+     */
+    private CoordinateReferenceSystem getCRS() throws IOException {
+        if (null != this.prj) {
+            BufferedReader in  = this.open(this.prj, HEADER_CHARSET);
+            StringBuffer   wkt = new StringBuffer();
+
+            try {
+                String line;
+
+                while(null != (line = in.readLine())) {
+                    wkt.append(line);
+                }
+            } finally {
+                in.close();
+            }
+
+            try {
+                return CRS.parseWKT(wkt.toString());
+            } catch(Exception e) {
+                // fall back on the CoordSys clause
+            }
+        }
+
+        return this.header.getCRS();
+    }
+
+    @Override
+    protected FeatureReader<SimpleFeatureType, SimpleFeature> getFeatureReader(String typeName)
+            throws IOException {
+        return this.getFeatureReader(typeName, (Envelope) null);
+    }
+
+    /**
+     * Passes the bounding box of the query filter to the reader; the filter itself
+     * is still applied to the features returned.
+     */
+    @Override
+    protected FeatureReader<SimpleFeatureType, SimpleFeature> getFeatureReader(String typeName,
+            Query query) throws IOException {
+        Envelope area = null;
+        Filter   filter = query.getFilter();
+
+        if (null != filter && Filter.INCLUDE != filter) {
+            area = (Envelope) filter.accept(ExtractBoundsFilterVisitor.BOUNDS_VISITOR, null);
+
+            if (null != area && (Double.isInfinite(area.getWidth()) || Double.isInfinite(area.getHeight()))) {
+                area = null;
+            }
+        }
+
+        return this.getFeatureReader(typeName, area);
+    }
+
+    private FeatureReader<SimpleFeatureType, SimpleFeature> getFeatureReader(String typeName,
+            Envelope area) throws IOException {
+        SimpleFeatureType type = this.getSchema(typeName);
+        BufferedReader    mif  = this.open(this.mif, HEADER_CHARSET);
+
+        try {
+            new MIFHeader(mif); // skip to the data section
+        } catch(IOException e) {
+            mif.close();
+            throw e;
+        }
+
+        BufferedReader mid = null == this.mid ? null : this.open(this.mid, this.header.getCharset());
+
+        return new MIFFeatureReader(this, type, this.header, mif, mid, area);
+    }
+
+    @Override
+    protected synchronized ReferencedEnvelope getBounds(Query query) throws IOException {
+        if (null == this.bounds || false == this.isAll(query)) {
+            return null;
+        }
+
+        return new ReferencedEnvelope(this.bounds, this.getSchema(this.typeName).getCoordinateReferenceSystem());
+    }
+
+    @Override
+    protected synchronized int getCount(Query query) throws IOException {
+        if (false == this.isAll(query)) {
+            return -1;
+        }
+
+        return this.count;
+    }
+
+    /**
+     * Called by a reader that has read the whole file.
+     */
+    synchronized void statistics(Envelope bounds, int count) {
+        this.bounds = new Envelope(bounds);
+        this.count  = count;
+    }
+
+    private boolean isAll(Query query) {
+        return null == query.getFilter() || Filter.INCLUDE == query.getFilter();
+    }
+
+    private void check(String typeName) throws IOException {
+        if (false == this.typeName.equals(typeName)) {
+            throw new IOException("No feature type '" + typeName + "' in " + this.mif);
+        }
+    }
+
+    private BufferedReader open(File file, Charset charset) throws IOException {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(file), charset));
+    }
+}
@@ -0,0 +1,583 @@
+/* uDig - User Friendly Desktop Internet GIS client
+ * http://udig.refractions.net
+ * (C) 2008, AmanziTel
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation;
+ * version 2.1 of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+
+package net.refractions.udig.catalog.mitab;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.geotools.data.FeatureReader;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.vividsolutions.jts.algorithm.CGAlgorithms;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Streams the features of a MIF/MID file pair.
+ * <p>
+ * Objects are read one at a time from the MIF file, together with the matching
+ * line of the MID file. When a bounding box is provided the coordinates of each
+ * object are compared with it before any geometry or attribute is created, so
+ * objects outside the area cost little more than reading their lines.
+ * </p>
+ *
+ * @author Lucas Reed, (Refractions Research Inc)
+ * @since 1.2.0
+ */
+@SuppressWarnings("nls")
+public class MIFFeatureReader implements FeatureReader<SimpleFeatureType, SimpleFeature> {
+    private static final Set<String> OBJECTS = new HashSet<String>();
+
+    static {
+        String[] objects = {"none", "point", "line", "pline", "region", "arc", "text", "rect",
+                "roundrect", "ellipse", "multipoint", "collection"};
+
+        for( String object : objects ) {
+            OBJECTS.add(object);
+        }
+    }
+
+    /** segments used to approximate a full ellipse */
+    private static final int SEGMENTS = 72;
+
+    private static final int POINT      = 0;
+    private static final int MULTIPOINT = 1;
+    private static final int PLINE      = 2;
+    private static final int REGION     = 3;
+
+    /** The coordinates of one part of an object, of one kind */
+    private static class Section {
+        int            kind;
+        List<double[]> parts = new ArrayList<double[]>();
+
+        Section(int kind) {
+            this.kind = kind;
+        }
+    }
+
+    private MIFDataStore      store;
+    private SimpleFeatureType type;
+    private MIFHeader         header;
+    private MIFTokenizer      mif;
+    private BufferedReader    mid;
+    private Envelope          filter;
+    private GeometryFactory   factory = new GeometryFactory();
+
+    private List<Section>     sections = new ArrayList<Section>();
+    private Envelope          envelope = new Envelope();
+    private Envelope          bounds   = new Envelope();
+    private int               index;
+    private SimpleFeature     next;
+    private boolean           done;
+
+    private DateFormat        dateFormat     = new SimpleDateFormat("yyyyMMdd");
+    private DateFormat        dateTimeFormat = new SimpleDateFormat("yyyyMMddHHmmssSSS");
+
+    /**
+     * @param store datastore informed of the bounds and count once the file is read
+     * @param mif reader positioned on the data section of the MIF file
+     * @param mid reader of the MID file; or null if there is no MID file
+     * @param filter only objects intersecting this area are returned; or null for all
+     */
+    MIFFeatureReader(MIFDataStore store, SimpleFeatureType type, MIFHeader header,
+            BufferedReader mif, BufferedReader mid, Envelope filter) {
+        this.store  = store;
+        this.type   = type;
+        this.header = header;
+        this.mif    = new MIFTokenizer(mif);
+        this.mid    = mid;
+        this.filter = filter;
+    }
+
+    public SimpleFeatureType getFeatureType() {
+        return this.type;
+    }
+
+    public boolean hasNext() throws IOException {
+        if (null == this.next && false == this.done) {
+            this.next = this.read();
+        }
+
+        return null != this.next;
+    }
+
+    public SimpleFeature next() throws IOException, IllegalArgumentException,
+            NoSuchElementException {
+        if (false == this.hasNext()) {
+            throw new NoSuchElementException("No more features in " + this.type.getTypeName());
+        }
+
+        SimpleFeature feature = this.next;
+        this.next = null;
+
+        return feature;
+    }
+
+    public void close() throws IOException {
+        try {
+            this.mif.close();
+        } finally {
+            if (null != this.mid) {
+                this.mid.close();
+            }
+        }
+    }
+
+    private SimpleFeature read() throws IOException {
+        while(this.readObject()) {
+            this.index++;
+
+            String line = null == this.mid ? null : this.mid.readLine();
+
+            if (false == this.envelope.isNull()) {
+                this.bounds.expandToInclude(this.envelope);
+            }
+
+            if (null != this.filter
+                    && (this.envelope.isNull() || false == this.filter.intersects(this.envelope))) {
+                continue;
+            }
+
+            Object[] values = new Object[this.type.getAttributeCount()];
+            values[0] = this.geometry();
+            this.attributes(line, values);
+
+            return SimpleFeatureBuilder.build(this.type, values, this.type.getTypeName() + "."
+                    + this.index);
+        }
+
+        this.done = true;
+        this.store.statistics(this.bounds, this.index);
+
+        return null;
+    }
+
+    /**
+     * Reads the coordinates of the next object, skipping the style clauses before it.
+     *
+     * @return false at the end of the file
+     */
+    private boolean readObject() throws IOException {
+        this.sections.clear();
+        this.envelope.setToNull();
+
+        String keyword = this.nextObject();
+
+        if (null == keyword) {
+            return false;
+        }
+
+        this.readObject(keyword);
+
+        return true;
+    }
+
+    /**
+     * Skips the style clauses (Pen, Brush, Symbol, Center...) up to the next object keyword.
+     *
+     * @return the keyword in lower case; or null at the end of the file
+     */
+    private String nextObject() throws IOException {
+        String keyword;
+
+        do {
+            keyword = this.mif.next();
+
+            if (null == keyword) {
+                return null;
+            }
+        } while(false == (this.mif.isLineStart() && OBJECTS.contains(keyword.toLowerCase())));
+
+        return keyword.toLowerCase();
+    }
+
+    private void readObject(String keyword) throws IOException {
+        if ("point".equals(keyword)) {
+            this.section(POINT).parts.add(this.readPart(1));
+        } else if ("line".equals(keyword)) {
+            this.section(PLINE).parts.add(this.readPart(2));
+        } else if ("pline".equals(keyword)) {
+            Section section = this.section(PLINE);
+            String  count   = this.mif.next();
+
+            if ("multiple".equalsIgnoreCase(count)) {
+                int parts = this.mif.nextInt();
+
+                for( int i = 0; i < parts; i++ ) {
+                    section.parts.add(this.readPart(this.mif.nextInt()));
+                }
+            } else {
+                this.mif.pushBack();
+                section.parts.add(this.readPart(this.mif.nextInt()));
+            }
+        } else if ("region".equals(keyword)) {
+            Section section = this.section(REGION);
+            int     rings   = this.mif.nextInt();
+
+            for( int i = 0; i < rings; i++ ) {
+                section.parts.add(this.readPart(this.mif.nextInt()));
+            }
+        } else if ("multipoint".equals(keyword)) {
+            this.section(MULTIPOINT).parts.add(this.readPart(this.mif.nextInt()));
+        } else if ("collection".equals(keyword)) {
+            int parts = this.mif.nextInt();
+
+            for( int i = 0; i < parts; i++ ) {
+                // each part may be followed by its own style clauses
+                String part = this.nextObject();
+
+                if (null == part) {
+                    throw new IOException("Unexpected end of MIF file in a collection.");
+                }
+
+                this.readObject(part);
+            }
+        } else if ("rect".equals(keyword) || "roundrect".equals(keyword)) {
+            double[] box = this.readPart(2);
+
+            if ("roundrect".equals(keyword)) {
+                this.mif.nextDouble(); // corner radius
+            }
+
+            this.section(REGION).parts.add(new double[]{box[0], box[1], box[2], box[1], box[2],
+                    box[3], box[0], box[3], box[0], box[1]});
+        } else if ("ellipse".equals(keyword)) {
+            double[] box = this.readPart(2);
+
+            this.section(REGION).parts.add(arc(box, 0, 360));
+        } else if ("arc".equals(keyword)) {
+            double[] box   = this.readPart(2);
+            double   start = this.mif.nextDouble();
+            double   end   = this.mif.nextDouble();
+
+            this.section(PLINE).parts.add(arc(box, start, end));
+        } else if ("text".equals(keyword)) {
+            this.mif.next(); // the text
+            double[] box = this.readPart(2);
+
+            this.section(POINT).parts.add(new double[]{box[0], box[1]});
+        }
+
+        return;
+    }
+
+    private Section section(int kind) {
+        Section section = new Section(kind);
+        this.sections.add(section);
+
+        return section;
+    }
+
+    private double[] readPart(int count) throws IOException {
+        double[] transform = this.header.getTransform();
+        double[] ordinates = new double[count * 2];
+
+        for( int i = 0; i < ordinates.length; i += 2 ) {
+            double x = this.mif.nextDouble();
+            double y = this.mif.nextDouble();
+
+            if (null != transform && transform.length >= 4 && 0 != transform[0] && 0 != transform[1]) {
+                x = (x - transform[2]) / transform[0];
+                y = (y - transform[3]) / transform[1];
+            }
+
+            ordinates[i]     = x;
+            ordinates[i + 1] = y;
+
+            this.envelope.expandToInclude(x, y);
+        }
+
+        return ordinates;
+    }
+
+    /**
+     * Approximates part of the ellipse inscribed in a box; angles in degrees,
+     * counterclockwise from east.
+     */
+    private static double[] arc(double[] box, double start, double end) {
+        double cx = (box[0] + box[2]) / 2;
+        double cy = (box[1] + box[3]) / 2;
+        double rx = Math.abs(box[2] - box[0]) / 2;
+        double ry = Math.abs(box[3] - box[1]) / 2;
+
+        while(end <= start) {
+            end += 360;
+        }
+
+        int      steps     = Math.max(2, (int) Math.ceil((end - start) / 360 * SEGMENTS));
+        double[] ordinates = new double[(steps + 1) * 2];
+
+        for( int i = 0; i <= steps; i++ ) {
+            double angle = Math.toRadians(start + (end - start) * i / steps);
+
+            ordinates[i * 2]     = cx + rx * Math.cos(angle);
+            ordinates[i * 2 + 1] = cy + ry * Math.sin(angle);
+        }
+
+        return ordinates;
+    }
+
+    private Geometry geometry() {
+        List<Geometry> geometries = new ArrayList<Geometry>();
+
+        for( Section section : this.sections ) {
+            Geometry geometry = null;
+
+            switch( section.kind ) {
+            case POINT:
+                geometry = this.factory.createPoint(coordinates(section.parts.get(0), false)[0]);
+                break;
+            case MULTIPOINT:
+                geometry = this.factory.createMultiPoint(coordinates(section.parts.get(0), false));
+                break;
+            case PLINE:
+                geometry = this.lines(section.parts);
+                break;
+            case REGION:
+                geometry = this.polygons(section.parts);
+                break;
+            }
+
+            if (null != geometry) {
+                geometries.add(geometry);
+            }
+        }
+
+        if (geometries.isEmpty()) {
+            return null;
+        }
+
+        if (1 == geometries.size()) {
+            return geometries.get(0);
+        }
+
+        return this.factory.buildGeometry(geometries);
+    }
+
+    private Geometry lines(List<double[]> parts) {
+        List<LineString> lines = new ArrayList<LineString>();
+
+        for( double[] part : parts ) {
+            if (part.length >= 4) {
+                lines.add(this.factory.createLineString(coordinates(part, false)));
+            }
+        }
+
+        if (lines.isEmpty()) {
+            return null;
+        }
+
+        if (1 == lines.size()) {
+            return lines.get(0);
+        }
+
+        return this.factory.createMultiLineString(lines.toArray(new LineString[lines.size()]));
+    }
+
+    /**
+     * MapInfo does not say which rings of a region are holes; the rings are
+     * nested by counting the larger rings around each one. A ring inside an odd
+     * number of rings is a hole of the smallest of them, any other ring (such as
+     * an island inside a hole) is a shell.
+     */
+    private Geometry polygons(List<double[]> parts) {
+        List<Coordinate[]> rings = new ArrayList<Coordinate[]>();
+
+        for( double[] part : parts ) {
+            Coordinate[] ring = coordinates(part, true);
+
+            if (ring.length >= 4) {
+                rings.add(ring);
+            }
+        }
+
+        if (rings.isEmpty()) {
+            return null;
+        }
+
+        Collections.sort(rings, new Comparator<Coordinate[]>(){
+            public int compare( Coordinate[] a, Coordinate[] b ) {
+                return Double.compare(Math.abs(CGAlgorithms.signedArea(b)),
+                        Math.abs(CGAlgorithms.signedArea(a)));
+            }
+        });
+
+        List<Coordinate[]>       shells = new ArrayList<Coordinate[]>();
+        List<List<LinearRing>>   holes  = new ArrayList<List<LinearRing>>();
+        // shell index of each ring already placed, -1 for holes
+        List<Integer>            placed = new ArrayList<Integer>();
+
+        for( int r = 0; r < rings.size(); r++ ) {
+            Coordinate[] ring = rings.get(r);
+            int depth = 0;
+            int innermost = -1;
+
+            // rings are sorted by area, so the last container found is the smallest
+            for( int i = 0; i < r; i++ ) {
+                if (CGAlgorithms.isPointInRing(ring[0], rings.get(i))) {
+                    depth++;
+                    innermost = i;
+                }
+            }
+
+            if (0 == depth % 2) {
+                shells.add(ring);
+                holes.add(new ArrayList<LinearRing>());
+                placed.add(shells.size() - 1);
+            } else {
+                holes.get(placed.get(innermost)).add(this.factory.createLinearRing(ring));
+                placed.add(-1);
+            }
+        }
+
+        Polygon[] polygons = new Polygon[shells.size()];
+
+        for( int i = 0; i < polygons.length; i++ ) {
+            List<LinearRing> inner = holes.get(i);
+
+            polygons[i] = this.factory.createPolygon(this.factory.createLinearRing(shells.get(i)),
+                    inner.toArray(new LinearRing[inner.size()]));
+        }
+
+        if (1 == polygons.length) {
+            return polygons[0];
+        }
+
+        return this.factory.createMultiPolygon(polygons);
+    }
+
+    private static Coordinate[] coordinates(double[] ordinates, boolean closed) {
+        int count = ordinates.length / 2;
+        boolean close = closed && count > 0
+                && (ordinates[0] != ordinates[ordinates.length - 2]
+                        || ordinates[1] != ordinates[ordinates.length - 1]);
+
+        Coordinate[] coordinates = new Coordinate[close ? count + 1 : count];
+
+        for( int i = 0; i < count; i++ ) {
+            coordinates[i] = new Coordinate(ordinates[i * 2], ordinates[i * 2 + 1]);
+        }
+
+        if (close) {
+            coordinates[count] = new Coordinate(coordinates[0]);
+        }
+
+        return coordinates;
+    }
+
+    private void attributes(String line, Object[] values) {
+        if (null == line) {
+            return;
+        }
+
+        List<String>           columns = this.split(line);
+        List<MIFHeader.Column> types   = this.header.getColumns();
+
+        for( int i = 0; i < types.size() && i < columns.size(); i++ ) {
+            values[i + 1] = this.convert(columns.get(i), types.get(i));
+        }
+
+        return;
+    }
+
+    private List<String> split(String line) {
+        List<String>  fields    = new ArrayList<String>();
+        StringBuilder field     = new StringBuilder();
+        char          delimiter = this.header.getDelimiter();
+        boolean       quoted    = false;
+
+        for( int i = 0; i < line.length(); i++ ) {
+            char c = line.charAt(i);
+
+            if ('"' == c) {
+                if (quoted && i + 1 < line.length() && '"' == line.charAt(i + 1)) {
+                    field.append(c);
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (delimiter == c && false == quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+
+        fields.add(field.toString());
+
+        return fields;
+    }
+
+    private Object convert(String value, MIFHeader.Column column) {
+        Class<?> binding = column.getBinding();
+
+        if (String.class == binding) {
+            return value;
+        }
+
+        value = value.trim();
+
+        if (0 == value.length()) {
+            return null;
+        }
+
+        try {
+            if (Integer.class == binding) {
+                return Integer.valueOf(value);
+            }
+
+            if (Long.class == binding) {
+                return Long.valueOf(value);
+            }
+
+            if (Double.class == binding) {
+                return Double.valueOf(value);
+            }
+
+            if (Boolean.class == binding) {
+                return Boolean.valueOf("t".equalsIgnoreCase(value) || "true".equalsIgnoreCase(value));
+            }
+
+            if ("date".equals(column.getType())) {
+                return this.dateFormat.parse(value);
+            }
+
+            return this.dateTimeFormat.parse(value);
+        } catch(NumberFormatException e) {
+            return null;
+        } catch(ParseException e) {
+            return null;
+        }
+    }
+}
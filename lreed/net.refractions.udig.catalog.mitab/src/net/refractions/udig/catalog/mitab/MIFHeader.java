@@ -0,0 +1,325 @@
+/* uDig - User Friendly Desktop Internet GIS client
+ * http://udig.refractions.net
+ * (C) 2008, AmanziTel
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation;
+ * version 2.1 of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+
+package net.refractions.udig.catalog.mitab;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.geotools.referencing.CRS;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+/**
+ * The header of a MIF file: everything up to the <code>Data</code> line.
+ * <p>
+ * Records the charset and delimiter used by the MID file, the attribute
+ * columns, the coordinate system and the optional coordinate transform.
+ * </p>
+ *
+ * @author Lucas Reed, (Refractions Research Inc)
+ * @since 1.2.0
+ */
+@SuppressWarnings("nls")
+public class MIFHeader {
+    /** MapInfo charset names to java charset names */
+    private static final Map<String, String> CHARSETS = new HashMap<String, String>();
+
+    /** MapInfo datum numbers to the EPSG code of the geographic crs */
+    private static final Map<String, String> DATUMS = new HashMap<String, String>();
+
+    static {
+        CHARSETS.put("neutral",            "ISO-8859-1");
+        CHARSETS.put("iso8859_1",          "ISO-8859-1");
+        CHARSETS.put("windowslatin1",      "windows-1252");
+        CHARSETS.put("windowslatin2",      "windows-1250");
+        CHARSETS.put("windowscyrillic",    "windows-1251");
+        CHARSETS.put("windowsgreek",       "windows-1253");
+        CHARSETS.put("windowsturkish",     "windows-1254");
+        CHARSETS.put("windowshebrew",      "windows-1255");
+        CHARSETS.put("windowsarabic",      "windows-1256");
+        CHARSETS.put("windowsbalticrim",   "windows-1257");
+        CHARSETS.put("windowssimpchinese", "GBK");
+        CHARSETS.put("windowstradchinese", "Big5");
+        CHARSETS.put("windowsjapanese",    "Shift_JIS");
+        CHARSETS.put("windowskorean",      "EUC-KR");
+        CHARSETS.put("utf-8",              "UTF-8");
+
+        DATUMS.put("104", "EPSG:4326"); // WGS 84
+        DATUMS.put("74",  "EPSG:4269"); // NAD 83
+        DATUMS.put("62",  "EPSG:4267"); // NAD 27
+    }
+
+    /**
+     * An attribute column of the MID file.
+     */
+    public static class Column {
+        private String   name;
+        private String   type;
+        private Class<?> binding;
+
+        Column(String name, String type) {
+            this.name    = name;
+            this.type    = type;
+            this.binding = binding(type);
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * @return lower case MapInfo type without the width, for example "char" or "decimal"
+         */
+        public String getType() {
+            return this.type;
+        }
+
+        public Class<?> getBinding() {
+            return this.binding;
+        }
+
+        private static Class<?> binding(String type) {
+            if ("integer".equals(type) || "smallint".equals(type)) {
+                return Integer.class;
+            }
+
+            if ("largeint".equals(type)) {
+                return Long.class;
+            }
+
+            if ("decimal".equals(type) || "float".equals(type)) {
+                return Double.class;
+            }
+
+            if ("date".equals(type) || "datetime".equals(type)) {
+                return Date.class;
+            }
+
+            if ("logical".equals(type)) {
+                return Boolean.class;
+            }
+
+            return String.class;
+        }
+    }
+
+    private Charset      charset   = Charset.forName("ISO-8859-1");
+    private char         delimiter = '\t';
+    private List<Column> columns   = new ArrayList<Column>();
+    private String       coordSys;
+    private double[]     transform;
+
+    /**
+     * Reads the header, leaving the reader on the first line of the data section.
+     */
+    public MIFHeader(BufferedReader in) throws IOException {
+        String line;
+
+        while(null != (line = in.readLine())) {
+            String trimmed = line.trim();
+            String keyword = keyword(trimmed);
+
+            if ("data".equals(keyword)) {
+                return;
+            }
+
+            if ("charset".equals(keyword)) {
+                this.charset = charset(unquote(trimmed.substring(keyword.length()).trim()));
+            } else if ("delimiter".equals(keyword)) {
+                String delimiter = unquote(trimmed.substring(keyword.length()).trim());
+
+                if (delimiter.length() > 0) {
+                    this.delimiter = delimiter.charAt(0);
+                }
+            } else if ("coordsys".equals(keyword)) {
+                this.coordSys = trimmed;
+            } else if ("transform".equals(keyword)) {
+                this.transform = numbers(trimmed.substring(keyword.length()));
+            } else if ("columns".equals(keyword)) {
+                int count = Integer.parseInt(trimmed.substring(keyword.length()).trim());
+
+                for( int i = 0; i < count; i++ ) {
+                    String column = in.readLine();
+
+                    if (null == column) {
+                        throw new IOException("MIF header ends within the column definitions.");
+                    }
+
+                    this.columns.add(column(column.trim()));
+                }
+            }
+        }
+
+        throw new IOException("MIF file has no Data section.");
+    }
+
+    public Charset getCharset() {
+        return this.charset;
+    }
+
+    public char getDelimiter() {
+        return this.delimiter;
+    }
+
+    public List<Column> getColumns() {
+        return Collections.unmodifiableList(this.columns);
+    }
+
+    /**
+     * @return the CoordSys clause; or null if the file does not have one
+     */
+    public String getCoordSys() {
+        return this.coordSys;
+    }
+
+    /**
+     * @return x multiplier, y multiplier, x displacement and y displacement; or null
+     */
+    public double[] getTransform() {
+        return this.transform;
+    }
+
+    /**
+     * The coordinate reference system described by the CoordSys clause.
+     * <p>
+     * Longitude/latitude and transverse mercator coordinate systems on the
+     * WGS 84, NAD 83 and NAD 27 datums are supported; other coordinate systems
+     * need a .prj file next to the MIF file.
+     * </p>
+     *
+     * @return the crs; or null if not supported
+     */
+    public CoordinateReferenceSystem getCRS() {
+        if (null == this.coordSys) {
+            return null;
+        }
+
+        String clause = this.coordSys.toLowerCase();
+        int    start  = clause.indexOf("projection");
+
+        if (-1 == start || -1 == clause.indexOf("earth")) {
+            return null; // NonEarth or Layout
+        }
+
+        int end = clause.indexOf("bounds");
+        String[] params = this.coordSys.substring(start + "projection".length(),
+                -1 == end ? clause.length() : end).split(",");
+
+        for( int i = 0; i < params.length; i++ ) {
+            params[i] = unquote(params[i].trim());
+        }
+
+        if (params.length < 2 || false == DATUMS.containsKey(params[1])) {
+            return null;
+        }
+
+        try {
+            CoordinateReferenceSystem geographic = CRS.decode(DATUMS.get(params[1]), true);
+
+            if ("1".equals(params[0])) {
+                return geographic;
+            }
+
+            if ("8".equals(params[0]) && params.length >= 8 && "m".equals(params[2])) {
+                String wkt = "PROJCS[\"MapInfo Transverse Mercator\", " + geographic.toWKT()
+                        + ", PROJECTION[\"Transverse_Mercator\"]"
+                        + ", PARAMETER[\"central_meridian\", " + params[3] + "]"
+                        + ", PARAMETER[\"latitude_of_origin\", " + params[4] + "]"
+                        + ", PARAMETER[\"scale_factor\", " + params[5] + "]"
+                        + ", PARAMETER[\"false_easting\", " + params[6] + "]"
+                        + ", PARAMETER[\"false_northing\", " + params[7] + "]"
+                        + ", UNIT[\"m\", 1.0]]";
+
+                return CRS.parseWKT(wkt);
+            }
+        } catch(Exception e) {
+            // fall through, unsupported
+        }
+
+        return null;
+    }
+
+    private static String keyword(String line) {
+        int end = 0;
+
+        while(end < line.length() && Character.isLetter(line.charAt(end))) {
+            end++;
+        }
+
+        return line.substring(0, end).toLowerCase();
+    }
+
+    private static Column column(String line) {
+        int split = 0;
+
+        while(split < line.length() && false == Character.isWhitespace(line.charAt(split))) {
+            split++;
+        }
+
+        String name = unquote(line.substring(0, split));
+        String type = line.substring(split).trim().toLowerCase();
+        int    open = type.indexOf('(');
+
+        if (-1 != open) {
+            type = type.substring(0, open).trim();
+        }
+
+        return new Column(name, type);
+    }
+
+    private static Charset charset(String name) {
+        String java = CHARSETS.get(name.toLowerCase());
+
+        if (null == java) {
+            java = name;
+        }
+
+        try {
+            if (Charset.isSupported(java)) {
+                return Charset.forName(java);
+            }
+        } catch(IllegalArgumentException e) {
+            // unknown name, use the default
+        }
+
+        return Charset.forName("ISO-8859-1");
+    }
+
+    private static double[] numbers(String text) {
+        String[] parts   = text.trim().split("[,\\s]+");
+        double[] numbers = new double[parts.length];
+
+        for( int i = 0; i < parts.length; i++ ) {
+            numbers[i] = Double.parseDouble(parts[i]);
+        }
+
+        return numbers;
+    }
+
+    static String unquote(String text) {
+        if (text.length() >= 2 && text.startsWith("\"") && text.endsWith("\"")) {
+            return text.substring(1, text.length() - 1);
+        }
+
+        return text;
+    }
+}
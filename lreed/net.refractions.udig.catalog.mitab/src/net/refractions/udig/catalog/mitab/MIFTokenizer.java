@@ -0,0 +1,156 @@
+/* uDig - User Friendly Desktop Internet GIS client
+ * http://udig.refractions.net
+ * (C) 2008, AmanziTel
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation;
+ * version 2.1 of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+
+package net.refractions.udig.catalog.mitab;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the data section of a MIF file into whitespace separated tokens.
+ * <p>
+ * Quoted strings (text objects, font names) are kept as a single token, and
+ * each token remembers whether it started a line so object keywords can be
+ * told apart from the same words inside style clauses.
+ * </p>
+ *
+ * @author Lucas Reed, (Refractions Research Inc)
+ * @since 1.2.0
+ */
+@SuppressWarnings("nls")
+class MIFTokenizer {
+    private BufferedReader in;
+    private List<String>   tokens = new ArrayList<String>();
+    private int            index;
+    private String         last;
+    private boolean        lineStart;
+    private boolean        pushedBack;
+
+    MIFTokenizer(BufferedReader in) {
+        this.in = in;
+    }
+
+    /**
+     * @return the next token; or null at the end of the file
+     */
+    String next() throws IOException {
+        if (this.pushedBack) {
+            this.pushedBack = false;
+
+            return this.last;
+        }
+
+        while(this.index >= this.tokens.size()) {
+            String line = this.in.readLine();
+
+            if (null == line) {
+                this.last = null;
+
+                return null;
+            }
+
+            split(line, this.tokens);
+            this.index = 0;
+        }
+
+        this.lineStart = 0 == this.index;
+        this.last      = this.tokens.get(this.index++);
+
+        return this.last;
+    }
+
+    /**
+     * @return true if the last token was the first on its line
+     */
+    boolean isLineStart() {
+        return this.lineStart;
+    }
+
+    /**
+     * Returns the last token again from the next call to next().
+     */
+    void pushBack() {
+        this.pushedBack = true;
+    }
+
+    double nextDouble() throws IOException {
+        String token = this.required();
+
+        try {
+            return Double.parseDouble(token);
+        } catch(NumberFormatException e) {
+            throw new IOException("Expected a number but found '" + token + "'.");
+        }
+    }
+
+    int nextInt() throws IOException {
+        String token = this.required();
+
+        try {
+            return Integer.parseInt(token);
+        } catch(NumberFormatException e) {
+            throw new IOException("Expected an integer but found '" + token + "'.");
+        }
+    }
+
+    private String required() throws IOException {
+        String token = this.next();
+
+        if (null == token) {
+            throw new EOFException("Unexpected end of MIF file.");
+        }
+
+        return token;
+    }
+
+    void close() throws IOException {
+        this.in.close();
+    }
+
+    private static void split(String line, List<String> tokens) {
+        tokens.clear();
+
+        int length = line.length();
+        int i      = 0;
+
+        while(i < length) {
+            while(i < length && Character.isWhitespace(line.charAt(i))) {
+                i++;
+            }
+
+            if (i == length) {
+                break;
+            }
+
+            int     start  = i;
+            boolean quoted = false;
+
+            while(i < length && (quoted || false == Character.isWhitespace(line.charAt(i)))) {
+                if ('"' == line.charAt(i)) {
+                    quoted = !quoted;
+                }
+
+                i++;
+            }
+
+            tokens.add(line.substring(start, i));
+        }
+
+        return;
+    }
+}
@@ -174,36 +174,51 @@ public class MITABReader {
             throw new IOException("Error creating ogr2ogr process.");
         }
 
-        BufferedReader stdout = new BufferedReader(new InputStreamReader(this.process.getInputStream()));
-        BufferedReader stderr = new BufferedReader(new InputStreamReader(this.process.getErrorStream()));
-
-        while(true) {
-            try {
-                String stdout_str;
-                String stderr_str;
-
-                while(null != (stdout_str = stdout.readLine())) {
-                    System.out.println(stdout_str);
+        // Drain stderr on its own thread so ogr2ogr cannot block on a full pipe
+        final BufferedReader stderr = new BufferedReader(new InputStreamReader(this.process.getErrorStream()));
+
+        Thread errors = new Thread("ogr2ogr stderr") {
+            public void run() {
+                try {
+                    String stderr_str;
+
+                    while(null != (stderr_str = stderr.readLine())) {
+                        System.err.println(stderr_str);
+                    }
+                } catch(IOException e) {
+                    // process ended
                 }
+            }
+        };
 
-                while(null != (stderr_str = stderr.readLine())) {
-                    System.err.println(stderr_str);
-                }
+        errors.setDaemon(true);
+        errors.start();
 
-                exitCode = this.process.exitValue();
+        BufferedReader stdout = new BufferedReader(new InputStreamReader(this.process.getInputStream()));
 
-                if (0 != exitCode) {
-                    throw new IOException("ogr2ogr exited with non-zero exit code of '" + exitCode + "'.");
-                }
+        try {
+            String stdout_str;
 
-                break;
-            } catch(IllegalThreadStateException e) {
-                continue;
+            while(null != (stdout_str = stdout.readLine())) {
+                System.out.println(stdout_str);
             }
+
+            exitCode = this.process.waitFor();
+
+            errors.join();
+        } catch(InterruptedException e) {
+            this.process.destroy();
+            Thread.currentThread().interrupt();
+
+            throw new IOException("Interrupted waiting for ogr2ogr.");
+        } finally {
+            stdout.close();
+            stderr.close();
         }
 
-        stdout.close();
-        stderr.close();
+        if (0 != exitCode) {
+            throw new IOException("ogr2ogr exited with non-zero exit code of '" + exitCode + "'.");
+        }
 
         return;
     }
@@ -132,13 +132,38 @@ public class MITABService extends IService {
             || super.canResolve(adaptee);
     }
 
+    /**
+     * MIF files are read directly; TAB files are read directly if a MIF export
+     * sits next to them, otherwise they are converted with ogr2ogr.
+     */
     @SuppressWarnings("deprecation")
     private synchronized DataStore getDS() throws IOException {
         if (null == this.dataStore) {
+            File file = this.getFile();
+            File mif  = null;
+
+            if (null != file) {
+                String name = file.getName();
+                int    a    = name.lastIndexOf(".");
+
+                if (-1 != a && ".mif".equalsIgnoreCase(name.substring(a))) {
+                    mif = file;
+                } else {
+                    mif = MIFDataStore.sibling(file, -1 == a ? name : name.substring(0, a), "mif");
+                }
+            }
+
+            if (null != mif) {
+                this.dataStore = new MIFDataStore(mif);
+                this.message   = null;
+
+                return this.dataStore;
+            }
+
             MITABReader reader = null;
 
             try {
-                reader = new MITABReader(this.file);
+                reader = new MITABReader(file);
             } catch(IOException e) {
                 this.message = e;
                 throw e;
@@ -48,7 +48,9 @@ public class MITABServiceExtension implements ServiceExtension {
                 String name  = file.getName();
                 int    start = name.lastIndexOf(".");
 
-                if (".tab".equalsIgnoreCase(name.substring(start))) {
+                String extension = name.substring(start);
+
+                if (".tab".equalsIgnoreCase(extension) || ".mif".equalsIgnoreCase(extension)) {
                     params = new HashMap<String, Serializable>();
 
                     params.put(MITABServiceExtension.KEY, url);
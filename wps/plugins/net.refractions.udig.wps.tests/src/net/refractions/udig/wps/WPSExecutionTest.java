@@ -0,0 +1,161 @@
+/*
+ * uDig - User Friendly Desktop Internet GIS client http://udig.refractions.net (C) 2004,
+ * Refractions Research Inc. This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation; version 2.1 of the License. This library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ */
+package net.refractions.udig.wps;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import junit.framework.TestCase;
+import net.opengis.ows11.CodeType;
+import net.opengis.ows11.Ows11Factory;
+import net.opengis.wps10.ProcessDescriptionType;
+import net.opengis.wps10.Wps10Factory;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.geotools.data.wps.WebProcessingService;
+import org.opengis.feature.simple.SimpleFeature;
+
+/**
+ * Runs processes of a {@link WPSHttpServer} through the asynchronous execution:
+ * the status poll loop, failures, cancellation and streaming of a GML output.
+ *
+ * @author Lucas Reed, Refractions Research Inc
+ */
+@SuppressWarnings("nls")
+public class WPSExecutionTest extends TestCase {
+
+    private WPSHttpServer server;
+    private WebProcessingService wps;
+    private Recorder recorder;
+    private IProgressMonitor monitor;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        server = new WPSHttpServer();
+        server.start();
+        wps = new WebProcessingService(server.getURL("wps"));
+        recorder = new Recorder();
+        monitor = new NullProgressMonitor();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.stop();
+        super.tearDown();
+    }
+
+    public void testSucceeded() throws Exception {
+        WPSExecution execution = createExecution("succeed");
+        assertTrue(execution.isAsynchronous());
+
+        execution.execute(new HashMap<String, Object>(), recorder, monitor);
+
+        // accepted by the execute response, started by the first poll
+        assertEquals(2, recorder.statuses.size());
+        assertEquals("accepted -1", recorder.statuses.get(0));
+        assertEquals("started 50", recorder.statuses.get(1));
+        assertEquals(2, Collections.frequency(server.getRequests(), "status/succeed"));
+
+        // streamed in batches, the last one partial
+        assertEquals(3, recorder.batches.size());
+        assertEquals(10, recorder.batches.get(0).intValue());
+        assertEquals(10, recorder.batches.get(1).intValue());
+        assertEquals(5, recorder.batches.get(2).intValue());
+        assertEquals(WPSHttpServer.FEATURES, recorder.features.size());
+        assertEquals("1", recorder.features.get(0).getAttribute("name"));
+        assertTrue(recorder.values.isEmpty());
+    }
+
+    public void testFailed() throws Exception {
+        WPSExecution execution = createExecution("fail");
+        try {
+            execution.execute(new HashMap<String, Object>(), recorder, monitor);
+            fail("the process failure should be reported");
+        } catch (IOException expected) {
+            assertEquals("boom", expected.getMessage());
+        }
+        assertEquals(1, Collections.frequency(server.getRequests(), "status/fail"));
+        assertTrue(recorder.features.isEmpty());
+    }
+
+    public void testCancelWhilePolling() throws Exception {
+        WPSExecution execution = createExecution("slow");
+        recorder.cancelOnStatus = 2;
+
+        execution.execute(new HashMap<String, Object>(), recorder, monitor);
+
+        // returns quietly, without polling again once canceled
+        assertTrue(monitor.isCanceled());
+        assertEquals(2, recorder.statuses.size());
+        assertEquals(1, Collections.frequency(server.getRequests(), "status/slow"));
+        assertTrue(recorder.features.isEmpty());
+    }
+
+    public void testCancelWhileStreaming() throws Exception {
+        WPSExecution execution = createExecution("succeed");
+        recorder.cancelOnBatch = 1;
+
+        execution.execute(new HashMap<String, Object>(), recorder, monitor);
+
+        assertTrue(monitor.isCanceled());
+        assertEquals(1, recorder.batches.size());
+        assertEquals(10, recorder.features.size());
+    }
+
+    private WPSExecution createExecution( String process ) {
+        CodeType identifier = Ows11Factory.eINSTANCE.createCodeType();
+        identifier.setValue(process);
+
+        ProcessDescriptionType description = Wps10Factory.eINSTANCE.createProcessDescriptionType();
+        description.setIdentifier(identifier);
+        description.setStoreSupported(true);
+        description.setStatusSupported(true);
+
+        WPSExecution execution = new WPSExecution(wps, description);
+        execution.setPollInterval(10);
+        execution.setBatchSize(10);
+        return execution;
+    }
+
+    /** Records what is handed over, canceling the monitor when asked to */
+    private class Recorder implements WPSExecution.ResultHandler {
+        List<String> statuses = new ArrayList<String>();
+        List<Integer> batches = new ArrayList<Integer>();
+        List<SimpleFeature> features = new ArrayList<SimpleFeature>();
+        List<Object> values = new ArrayList<Object>();
+        int cancelOnStatus = -1;
+        int cancelOnBatch = -1;
+
+        public void status( String message, int percent ) {
+            statuses.add(message + " " + percent);
+            if (statuses.size() == cancelOnStatus) {
+                monitor.setCanceled(true);
+            }
+        }
+
+        public void value( String output, Object value ) throws IOException {
+            values.add(value);
+        }
+
+        public void features( String output, List<SimpleFeature> batch ) throws IOException {
+            assertEquals("result", output);
+            assertFalse(batch.isEmpty());
+            batches.add(batch.size());
+            features.addAll(batch);
+            if (batches.size() == cancelOnBatch) {
+                monitor.setCanceled(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * uDig - User Friendly Desktop Internet GIS client http://udig.refractions.net (C) 2004,
+ * Refractions Research Inc. This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation; version 2.1 of the License. This library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ */
+package net.refractions.udig.wps;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local http server standing in for a WPS that runs its processes asynchronously.
+ * <p>
+ * The process to run is chosen by its identifier:
+ * <ul>
+ * <li><code>succeed</code> is accepted, reports it has started, then succeeds with a GML
+ * output of {@link #FEATURES} features returned by reference
+ * <li><code>fail</code> is accepted, then fails with the exception text <code>boom</code>
+ * <li><code>slow</code> is accepted and then never gets past started
+ * </ul>
+ * Requested paths are recorded in order of arrival.
+ * </p>
+ *
+ * @author Lucas Reed, Refractions Research Inc
+ */
+@SuppressWarnings("nls")
+public class WPSHttpServer implements Runnable {
+
+    /** Number of features in the output of the succeed process */
+    public static final int FEATURES = 25;
+
+    private static final String NAMESPACES = " xmlns:wps=\"http://www.opengis.net/wps/1.0.0\""
+            + " xmlns:ows=\"http://www.opengis.net/ows/1.1\""
+            + " xmlns:xlink=\"http://www.w3.org/1999/xlink\"";
+
+    private final ServerSocket socket;
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+    private final Map<String, Integer> polls = new HashMap<String, Integer>();
+    private Thread thread;
+
+    public WPSHttpServer() throws IOException {
+        this.socket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+    }
+
+    public void start() {
+        thread = new Thread(this, "WPS Http Server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() throws IOException {
+        socket.close();
+    }
+
+    public URL getURL( String path ) throws IOException {
+        return new URL("http://127.0.0.1:" + socket.getLocalPort() + "/" + path);
+    }
+
+    /** Requested paths, without the query, in order of arrival */
+    public List<String> getRequests() {
+        synchronized (requests) {
+            return new ArrayList<String>(requests);
+        }
+    }
+
+    public void run() {
+        while( !socket.isClosed() ) {
+            try {
+                final Socket connection = socket.accept();
+                Thread handler = new Thread(new Runnable(){
+                    public void run() {
+                        respond(connection);
+                    }
+                }, "WPS Http Request");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException closed) {
+                return;
+            }
+        }
+    }
+
+    private void respond( Socket connection ) {
+        try {
+            InputStream in = new BufferedInputStream(connection.getInputStream());
+            String request = readLine(in); // GET /path HTTP/1.1
+            int length = 0;
+            for( String line = readLine(in); line != null && line.length() > 0; line = readLine(in) ) {
+                if (line.toLowerCase().startsWith("content-length:")) {
+                    length = Integer.parseInt(line.substring("content-length:".length()).trim());
+                }
+            }
+            byte[] body = new byte[length];
+            for( int read = 0; read < length; ) {
+                int count = in.read(body, read, length - read);
+                if (count == -1) {
+                    break;
+                }
+                read += count;
+            }
+            if (request == null) {
+                return;
+            }
+            String[] parts = request.split(" ");
+            String path = parts.length > 1 ? parts[1].substring(1) : "";
+            if (path.indexOf('?') != -1) {
+                path = path.substring(0, path.indexOf('?'));
+            }
+            requests.add(path);
+
+            String document = document(parts[0], path, new String(body, "UTF-8"));
+            OutputStream out = connection.getOutputStream();
+            if (document == null) {
+                out.write("HTTP/1.0 404 Not Found\r\nConnection: close\r\n\r\n"
+                        .getBytes("ISO-8859-1"));
+            } else {
+                byte[] content = document.getBytes("UTF-8");
+                String header = "HTTP/1.0 200 OK\r\nContent-Type: text/xml\r\nContent-Length: "
+                        + content.length + "\r\nConnection: close\r\n\r\n";
+                out.write(header.getBytes("ISO-8859-1"));
+                out.write(content);
+            }
+            out.flush();
+        } catch (Exception ignore) {
+            // client went away
+        } finally {
+            try {
+                connection.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    private static String readLine( InputStream in ) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for( int c = in.read(); c != '\n'; c = in.read() ) {
+            if (c == -1) {
+                return line.size() == 0 ? null : line.toString("ISO-8859-1");
+            }
+            if (c != '\r') {
+                line.write(c);
+            }
+        }
+        return line.toString("ISO-8859-1");
+    }
+
+    private String document( String method, String path, String body ) throws IOException {
+        if ("wps".equals(path)) {
+            if ("POST".equals(method)) {
+                return execute(process(body));
+            }
+            return capabilities();
+        }
+        if (path.startsWith("status/")) {
+            return status(path.substring("status/".length()));
+        }
+        if ("output".equals(path)) {
+            return output();
+        }
+        if ("schema".equals(path)) {
+            return schema();
+        }
+        return null;
+    }
+
+    private static String process( String execute ) {
+        String[] processes = {"succeed", "fail", "slow"};
+        for( String process : processes ) {
+            if (execute.indexOf(">" + process + "<") != -1) {
+                return process;
+            }
+        }
+        return "unknown";
+    }
+
+    private String capabilities() throws IOException {
+        String href = getURL("wps").toString();
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<wps:Capabilities service=\"WPS\" version=\"1.0.0\" xml:lang=\"en\"" + NAMESPACES + ">"
+                + "<ows:ServiceIdentification><ows:Title>Test</ows:Title>"
+                + "<ows:ServiceType>WPS</ows:ServiceType>"
+                + "<ows:ServiceTypeVersion>1.0.0</ows:ServiceTypeVersion></ows:ServiceIdentification>"
+                + "<ows:OperationsMetadata>"
+                + operation("GetCapabilities", "Get", href + "?")
+                + operation("DescribeProcess", "Get", href + "?")
+                + operation("Execute", "Post", href)
+                + "</ows:OperationsMetadata>"
+                + "<wps:ProcessOfferings>" + offering("succeed") + offering("fail")
+                + offering("slow") + "</wps:ProcessOfferings>"
+                + "<wps:Languages><wps:Default><ows:Language>en-US</ows:Language></wps:Default>"
+                + "<wps:Supported><ows:Language>en-US</ows:Language></wps:Supported></wps:Languages>"
+                + "</wps:Capabilities>";
+    }
+
+    private static String operation( String name, String method, String href ) {
+        return "<ows:Operation name=\"" + name + "\"><ows:DCP><ows:HTTP><ows:" + method
+                + " xlink:href=\"" + href + "\"/></ows:HTTP></ows:DCP></ows:Operation>";
+    }
+
+    private static String offering( String process ) {
+        return "<wps:Process wps:processVersion=\"1\"><ows:Identifier>" + process
+                + "</ows:Identifier><ows:Title>" + process + "</ows:Title></wps:Process>";
+    }
+
+    private String execute( String process ) throws IOException {
+        return response(process, "<wps:ProcessAccepted>accepted</wps:ProcessAccepted>", "");
+    }
+
+    private String status( String process ) throws IOException {
+        int poll;
+        synchronized (polls) {
+            Integer previous = polls.get(process);
+            poll = previous == null ? 1 : previous.intValue() + 1;
+            polls.put(process, poll);
+        }
+        String started = "<wps:ProcessStarted percentCompleted=\"50\">started</wps:ProcessStarted>";
+        if ("succeed".equals(process)) {
+            if (poll == 1) {
+                return response(process, started, "");
+            }
+            return response(process, "<wps:ProcessSucceeded>done</wps:ProcessSucceeded>",
+                    "<wps:ProcessOutputs><wps:Output><ows:Identifier>result</ows:Identifier>"
+                            + "<ows:Title>result</ows:Title><wps:Reference href=\""
+                            + getURL("output") + "\" mimeType=\"text/xml; subtype=gml/3.1.1\"/>"
+                            + "</wps:Output></wps:ProcessOutputs>");
+        }
+        if ("fail".equals(process)) {
+            return response(process, "<wps:ProcessFailed>"
+                    + "<ows:ExceptionReport version=\"1.0.0\">"
+                    + "<ows:Exception exceptionCode=\"NoApplicableCode\">"
+                    + "<ows:ExceptionText>boom</ows:ExceptionText></ows:Exception>"
+                    + "</ows:ExceptionReport></wps:ProcessFailed>", "");
+        }
+        if ("slow".equals(process)) {
+            return response(process, started, "");
+        }
+        return null;
+    }
+
+    private String response( String process, String status, String outputs ) throws IOException {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<wps:ExecuteResponse service=\"WPS\" version=\"1.0.0\" xml:lang=\"en\""
+                + NAMESPACES + " serviceInstance=\"" + getURL("wps") + "\" statusLocation=\""
+                + getURL("status/" + process) + "\">" + offering(process)
+                + "<wps:Status creationTime=\"2008-01-01T00:00:00Z\">" + status + "</wps:Status>"
+                + outputs + "</wps:ExecuteResponse>";
+    }
+
+    private String output() throws IOException {
+        StringBuilder gml = new StringBuilder();
+        gml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        gml.append("<gml:FeatureCollection xmlns:gml=\"http://www.opengis.net/gml\"");
+        gml.append(" xmlns:test=\"http://udig.refractions.net/test\"");
+        gml.append(" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"");
+        gml.append(" xsi:schemaLocation=\"http://udig.refractions.net/test ");
+        gml.append(getURL("schema")).append("\">");
+        for( int i = 1; i <= FEATURES; i++ ) {
+            gml.append("<gml:featureMember><test:points gml:id=\"points.").append(i).append("\">");
+            gml.append("<test:name>").append(i).append("</test:name>");
+            gml.append("<test:geom><gml:Point><gml:pos>").append(i).append(" ").append(i);
+            gml.append("</gml:pos></gml:Point></test:geom>");
+            gml.append("</test:points></gml:featureMember>");
+        }
+        gml.append("</gml:FeatureCollection>");
+        return gml.toString();
+    }
+
+    private static String schema() {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<xsd:schema targetNamespace=\"http://udig.refractions.net/test\""
+                + " xmlns:test=\"http://udig.refractions.net/test\""
+                + " xmlns:gml=\"http://www.opengis.net/gml\""
+                + " xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\""
+                + " elementFormDefault=\"qualified\">"
+                + "<xsd:import namespace=\"http://www.opengis.net/gml\""
+                + " schemaLocation=\"http://schemas.opengis.net/gml/3.1.1/base/gml.xsd\"/>"
+                + "<xsd:complexType name=\"pointsType\"><xsd:complexContent>"
+                + "<xsd:extension base=\"gml:AbstractFeatureType\"><xsd:sequence>"
+                + "<xsd:element name=\"name\" type=\"xsd:string\"/>"
+                + "<xsd:element name=\"geom\" type=\"gml:PointPropertyType\"/>"
+                + "</xsd:sequence></xsd:extension></xsd:complexContent></xsd:complexType>"
+                + "<xsd:element name=\"points\" type=\"test:pointsType\""
+                + " substitutionGroup=\"gml:_Feature\"/>"
+                + "</xsd:schema>";
+    }
+}
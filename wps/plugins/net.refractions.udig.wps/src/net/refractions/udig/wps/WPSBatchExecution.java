@@ -0,0 +1,461 @@
+/*
+ * uDig - User Friendly Desktop Internet GIS client http://udig.refractions.net (C) 2004,
+ * Refractions Research Inc. This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation; version 2.1 of the License. This library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ */
+package net.refractions.udig.wps;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.FeatureSource;
+import org.geotools.data.Query;
+import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.FeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * Executes a WPS process over every feature of a layer.
+ * <p>
+ * The features are read from the FeatureSource in batches of
+ * {@link #getBatchSize()}; each batch is sent in one Execute request as the
+ * feature input (a feature collection, or a list of geometries for processes that
+ * take geometries). Up to {@link #getConcurrency()} requests run at once, and
+ * reading stops while they are all busy, so only that many batches are held in
+ * memory. A failed request is retried {@link #getRetries()} times before its batch
+ * is reported as failed; the other batches carry on.
+ * </p>
+ * <p>
+ * The features returned for each batch are added to one result layer per process
+ * output once the batch has succeeded, so a retried batch never adds its results
+ * twice. Geometry outputs become features of a geometry-only type.
+ * </p>
+ *
+ * @author Lucas Reed, Refractions Research Inc
+ */
+public class WPSBatchExecution {
+
+    /** Default number of features sent in one request */
+    public static final int BATCH_SIZE = 100;
+
+    /** Default number of requests running at once */
+    public static final int CONCURRENCY = 4;
+
+    /** Default number of times a failed request is sent again */
+    public static final int RETRIES = 2;
+
+    /** Wait before the first retry, in milliseconds; doubled for each further retry */
+    public static final long RETRY_DELAY = 1000;
+
+    /**
+     * Told of each batch as it finishes, from the threads executing the requests.
+     */
+    public interface Listener {
+        /**
+         * @param batch number of the batch, from 1
+         * @param features number of features sent
+         * @param results number of features returned
+         */
+        void batchCompleted( int batch, int features, int results );
+
+        /**
+         * @param batch number of the batch, from 1
+         * @param error the error of the last attempt
+         */
+        void batchFailed( int batch, IOException error );
+
+        /**
+         * A literal (or other non feature) output of a batch.
+         */
+        void value( int batch, String output, Object value );
+    }
+
+    /**
+     * Totals of a batch execution.
+     */
+    public static class Summary {
+        private int batches;
+        private int failed;
+        private int features;
+        private int results;
+        private long elapsed;
+
+        synchronized void completed( int sent, int returned ) {
+            batches++;
+            features += sent;
+            results += returned;
+        }
+
+        synchronized void failed() {
+            batches++;
+            failed++;
+        }
+
+        /** @return batches executed, including failed ones */
+        public synchronized int getBatches() {
+            return batches;
+        }
+
+        public synchronized int getFailed() {
+            return failed;
+        }
+
+        /** @return features of the batches that succeeded */
+        public synchronized int getFeatures() {
+            return features;
+        }
+
+        /** @return features added to the result layers */
+        public synchronized int getResults() {
+            return results;
+        }
+
+        /** @return milliseconds taken */
+        public synchronized long getElapsed() {
+            return elapsed;
+        }
+
+        /** @return features processed per second */
+        public synchronized double getThroughput() {
+            return elapsed == 0 ? 0 : features * 1000.0 / elapsed;
+        }
+    }
+
+    private final WPSExecution execution;
+    private final String featureInput;
+    private final Class< ? > featureInputType;
+    private final Map<String, Object> inputs;
+    private int batchSize = BATCH_SIZE;
+    private int concurrency = CONCURRENCY;
+    private int retries = RETRIES;
+
+    /**
+     * Construct <code>WPSBatchExecution</code>.
+     *
+     * @param execution execution of the process
+     * @param featureInput identifier of the input the features are sent as
+     * @param featureInputType type of that input: a FeatureCollection or Geometry
+     * @param inputs values of the other inputs, sent with every batch
+     */
+    public WPSBatchExecution( WPSExecution execution, String featureInput,
+            Class< ? > featureInputType, Map<String, Object> inputs ) {
+        this.execution = execution;
+        this.featureInput = featureInput;
+        this.featureInputType = featureInputType;
+        this.inputs = new HashMap<String, Object>(inputs);
+        this.inputs.remove(featureInput);
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize features sent in one request
+     */
+    public void setBatchSize( int batchSize ) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * @param concurrency requests running at once
+     */
+    public void setConcurrency( int concurrency ) {
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public void setRetries( int retries ) {
+        this.retries = Math.max(0, retries);
+    }
+
+    /**
+     * Executes the process over the features of a layer, returning once every
+     * batch has completed or failed, or the monitor was canceled.
+     *
+     * @param source features to process
+     * @param query features of the source to process
+     * @param layerName base name of the result layers
+     * @param listener told of each batch; may be null
+     * @param monitor reports progress in features
+     * @return totals of the execution
+     * @throws IOException if the features cannot be read
+     */
+    public Summary execute( FeatureSource<SimpleFeatureType, SimpleFeature> source,
+            Query query, String layerName, Listener listener, IProgressMonitor monitor )
+            throws IOException {
+        long start = System.currentTimeMillis();
+        Summary summary = new Summary();
+        Batches batches = new Batches(layerName, source.getSchema()
+                .getCoordinateReferenceSystem(), listener, summary, monitor);
+
+        int count = source.getCount(query);
+        monitor.beginTask(layerName, count > 0 ? count : IProgressMonitor.UNKNOWN);
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        Semaphore running = new Semaphore(concurrency);
+        FeatureCollection<SimpleFeatureType, SimpleFeature> features = source.getFeatures(query);
+        FeatureIterator<SimpleFeature> iterator = features.features();
+        try {
+            int number = 0;
+            List<SimpleFeature> batch = new ArrayList<SimpleFeature>(batchSize);
+            while( iterator.hasNext() && !monitor.isCanceled() ) {
+                batch.add(iterator.next());
+                if (batch.size() == batchSize) {
+                    if (!submit(executor, running, batches, ++number, batch, monitor)) {
+                        break;
+                    }
+                    batch = new ArrayList<SimpleFeature>(batchSize);
+                }
+            }
+            if (!batch.isEmpty() && !monitor.isCanceled()) {
+                submit(executor, running, batches, ++number, batch, monitor);
+            }
+        } finally {
+            iterator.close();
+            executor.shutdown();
+            try {
+                while( !executor.awaitTermination(1, TimeUnit.SECONDS) ) {
+                    // requests check the monitor themselves when canceled
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            synchronized (summary) {
+                summary.elapsed = System.currentTimeMillis() - start;
+            }
+            monitor.done();
+        }
+        WpsPlugin.trace("Batch execution: " + summary.getFeatures() + " features in " //$NON-NLS-1$
+                + summary.getElapsed() + "ms, " + summary.getThroughput() + " features/s", null); //$NON-NLS-1$ //$NON-NLS-2$
+        return summary;
+    }
+
+    /**
+     * Waits for a free request slot, then starts the batch.
+     *
+     * @return false if the monitor was canceled while waiting
+     */
+    private boolean submit( ExecutorService executor, final Semaphore running,
+            final Batches batches, final int number, final List<SimpleFeature> batch,
+            IProgressMonitor monitor ) {
+        try {
+            while( !running.tryAcquire(100, TimeUnit.MILLISECONDS) ) {
+                if (monitor.isCanceled()) {
+                    return false;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        executor.execute(new Runnable(){
+            public void run() {
+                try {
+                    batches.run(number, batch);
+                } finally {
+                    running.release();
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * State shared by the batches of one execution.
+     */
+    private class Batches {
+        private final String layerName;
+        private final CoordinateReferenceSystem crs;
+        private final Listener listener;
+        private final Summary summary;
+        private final IProgressMonitor monitor;
+        private final Map<String, WPSResultLayer> layers = new HashMap<String, WPSResultLayer>();
+        private SimpleFeatureType geometryType;
+
+        Batches( String layerName, CoordinateReferenceSystem crs, Listener listener,
+                Summary summary, IProgressMonitor monitor ) {
+            this.layerName = layerName;
+            this.crs = crs;
+            this.listener = listener;
+            this.summary = summary;
+            this.monitor = monitor;
+        }
+
+        void run( int number, List<SimpleFeature> batch ) {
+            int results;
+            try {
+                Map<String, Object> batchInputs = new HashMap<String, Object>(inputs);
+                batchInputs.put(featureInput, input(batch));
+
+                Outputs outputs = execute(number, batchInputs);
+                if (outputs == null) {
+                    return; // canceled
+                }
+                // results may already be partly added, so a failure here is not retried
+                results = add(number, outputs);
+            } catch (IOException e) {
+                failed(number, e);
+                return;
+            } catch (RuntimeException e) {
+                // a bad response or result must not end the execution of the other batches
+                failed(number, (IOException) new IOException(String.valueOf(e.getMessage())).initCause(e));
+                return;
+            } finally {
+                synchronized (monitor) {
+                    monitor.worked(batch.size());
+                }
+            }
+            summary.completed(batch.size(), results);
+            if (listener != null) {
+                listener.batchCompleted(number, batch.size(), results);
+            }
+        }
+
+        /**
+         * Executes the batch, sending the request again if it fails.
+         *
+         * @return the outputs; or null if the monitor was canceled
+         * @throws IOException if the last attempt failed
+         */
+        private Outputs execute( int number, Map<String, Object> batchInputs ) throws IOException {
+            long delay = RETRY_DELAY;
+            for( int attempt = 0; !monitor.isCanceled(); attempt++ ) {
+                Outputs outputs = new Outputs();
+                try {
+                    execution.execute(batchInputs, outputs, monitor);
+                    return monitor.isCanceled() ? null : outputs;
+                } catch (IOException e) {
+                    if (attempt >= retries) {
+                        throw e;
+                    }
+                    WpsPlugin.trace("Retrying batch " + number, e); //$NON-NLS-1$
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        return null;
+                    }
+                    delay *= 2;
+                }
+            }
+            return null;
+        }
+
+        private void failed( int number, IOException error ) {
+            summary.failed();
+            if (listener != null) {
+                listener.batchFailed(number, error);
+            }
+        }
+
+        /** the features as the process expects them */
+        private Object input( List<SimpleFeature> batch ) {
+            if (Geometry.class.isAssignableFrom(featureInputType)) {
+                List<Geometry> geometries = new ArrayList<Geometry>(batch.size());
+                for( SimpleFeature feature : batch ) {
+                    geometries.add((Geometry) feature.getDefaultGeometry());
+                }
+                return geometries;
+            }
+            return DataUtilities.collection(batch.toArray(new SimpleFeature[batch.size()]));
+        }
+
+        /**
+         * Adds the outputs of a successful batch to the result layers.
+         *
+         * @return number of features added
+         */
+        private int add( int number, Outputs outputs ) throws IOException {
+            int added = 0;
+            for( Map.Entry<String, List<SimpleFeature>> entry : outputs.features.entrySet() ) {
+                layer(entry.getKey()).add(entry.getValue(), monitor);
+                added += entry.getValue().size();
+            }
+            for( Object[] value : outputs.values ) {
+                String output = (String) value[0];
+                if (value[1] instanceof Geometry) {
+                    List<SimpleFeature> feature = new ArrayList<SimpleFeature>(1);
+                    feature.add(SimpleFeatureBuilder.build(geometryType(), new Object[]{value[1]},
+                            null));
+                    layer(output).add(feature, monitor);
+                    added++;
+                } else if (listener != null) {
+                    listener.value(number, output, value[1]);
+                }
+            }
+            return added;
+        }
+
+        private synchronized WPSResultLayer layer( String output ) {
+            WPSResultLayer layer = layers.get(output);
+            if (layer == null) {
+                layer = new WPSResultLayer(layerName + "_" + output); //$NON-NLS-1$
+                layers.put(output, layer);
+            }
+            return layer;
+        }
+
+        private synchronized SimpleFeatureType geometryType() {
+            if (geometryType == null) {
+                SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+                builder.setCRS(crs);
+                builder.add("geometry", Geometry.class); //$NON-NLS-1$
+                builder.setName(layerName);
+                geometryType = builder.buildFeatureType();
+            }
+            return geometryType;
+        }
+    }
+
+    /**
+     * Outputs of one attempt of a batch, held until the batch has succeeded.
+     */
+    private static class Outputs implements WPSExecution.ResultHandler {
+        final Map<String, List<SimpleFeature>> features = new HashMap<String, List<SimpleFeature>>();
+        final List<Object[]> values = new ArrayList<Object[]>();
+
+        public void status( String message, int percent ) {
+            // progress is reported per batch
+        }
+
+        public void value( String output, Object value ) {
+            values.add(new Object[]{output, value});
+        }
+
+        public void features( String output, List<SimpleFeature> batch ) {
+            List<SimpleFeature> list = features.get(output);
+            if (list == null) {
+                list = new ArrayList<SimpleFeature>();
+                features.put(output, list);
+            }
+            list.addAll(batch);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * uDig - User Friendly Desktop Internet GIS client http://udig.refractions.net (C) 2004,
+ * Refractions Research Inc. This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation; version 2.1 of the License. This library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ */
+package net.refractions.udig.wps;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * On disk cache of the GetCapabilities and DescribeProcess documents of WPS servers.
+ * <p>
+ * Documents are kept in a folder per service URL, named after the request URL,
+ * along with the time they were fetched and the ETag and Last-Modified headers the
+ * server sent with them:
+ * <ul>
+ * <li>a document younger than the time to live is used without asking the server,
+ * so restoring the catalog and browsing processes need no round trips;</li>
+ * <li>an older document is revalidated with If-None-Match / If-Modified-Since and
+ * only downloaded again if the server reports a change;</li>
+ * <li>if the server cannot be reached the old document is used anyway.</li>
+ * </ul>
+ * </p>
+ *
+ * @author Lucas Reed, Refractions Research Inc
+ */
+public class WPSCache {
+
+    /** Default time a document is used without revalidation: one day */
+    public static final long TIME_TO_LIVE = 24 * 60 * 60 * 1000;
+
+    private static final int TIMEOUT = 30000;
+
+    private static final String FETCHED = "fetched"; //$NON-NLS-1$
+    private static final String REQUEST_URL = "url"; //$NON-NLS-1$
+    private static final String ETAG = "etag"; //$NON-NLS-1$
+    private static final String LAST_MODIFIED = "lastModified"; //$NON-NLS-1$
+    private static final String CONTENT_TYPE = "contentType"; //$NON-NLS-1$
+
+    private static WPSCache instance;
+
+    private final File directory;
+    private volatile long timeToLive = TIME_TO_LIVE;
+    /** one lock per document, so different servers are fetched at the same time */
+    private final ConcurrentMap<String, Object> locks = new ConcurrentHashMap<String, Object>();
+
+    /**
+     * Construct <code>WPSCache</code>.
+     *
+     * @param directory folder the documents are kept in
+     */
+    public WPSCache( File directory ) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the cache kept in the plugin state location; or null if the plugin is
+     *         not running
+     */
+    public static synchronized WPSCache getDefault() {
+        if (instance == null) {
+            if (WpsPlugin.getDefault() == null) {
+                return null;
+            }
+            File state = WpsPlugin.getDefault().getStateLocation().toFile();
+            instance = new WPSCache(new File(state, "cache")); //$NON-NLS-1$
+        }
+        return instance;
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * @param timeToLive milliseconds a document is used without asking the server;
+     *        0 to revalidate every time
+     */
+    public void setTimeToLive( long timeToLive ) {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * A cached document.
+     */
+    public static class Document {
+        public final File file;
+        public final String contentType;
+
+        Document( File file, String contentType ) {
+            this.file = file;
+            this.contentType = contentType;
+        }
+
+        public InputStream open() throws IOException {
+            return new BufferedInputStream(new FileInputStream(file));
+        }
+    }
+
+    /**
+     * The response to a request, from the cache if it is still current.
+     *
+     * @param request GetCapabilities or DescribeProcess request (KVP)
+     * @return the cached document
+     * @throws IOException if the document is not cached and cannot be downloaded
+     */
+    public Document get( URL request ) throws IOException {
+        File folder = new File(directory, hash(service(request)));
+        String name = hash(request.toExternalForm());
+        File file = new File(folder, name + ".xml"); //$NON-NLS-1$
+        File metadataFile = new File(folder, name + ".properties"); //$NON-NLS-1$
+
+        synchronized (lock(file)) {
+            Properties metadata = load(metadataFile, request);
+            if (metadata != null && !file.exists()) {
+                metadata = null;
+            }
+
+            long now = System.currentTimeMillis();
+            if (metadata != null) {
+                long fetched = Long.parseLong(metadata.getProperty(FETCHED, "0")); //$NON-NLS-1$
+                if (now - fetched < timeToLive) {
+                    return new Document(file, metadata.getProperty(CONTENT_TYPE));
+                }
+            }
+
+            try {
+                return fetch(request, file, metadataFile, metadata, now);
+            } catch (IOException e) {
+                if (metadata == null) {
+                    throw e;
+                }
+                WpsPlugin.trace("Using cached " + request + " as the server could not be reached", e); //$NON-NLS-1$ //$NON-NLS-2$
+                return new Document(file, metadata.getProperty(CONTENT_TYPE));
+            }
+        }
+    }
+
+    /**
+     * Forgets a cached document, for instance one the server answered with an
+     * exception report.
+     *
+     * @param request the request the document was returned for
+     */
+    public void remove( URL request ) {
+        File folder = new File(directory, hash(service(request)));
+        String name = hash(request.toExternalForm());
+        File file = new File(folder, name + ".xml"); //$NON-NLS-1$
+        synchronized (lock(file)) {
+            new File(folder, name + ".properties").delete(); //$NON-NLS-1$
+            file.delete();
+        }
+    }
+
+    private Object lock( File file ) {
+        Object lock = new Object();
+        Object existing = locks.putIfAbsent(file.getPath(), lock);
+        return existing == null ? lock : existing;
+    }
+
+    /**
+     * Downloads the document, or confirms the cached one is current.
+     */
+    private Document fetch( URL request, File file, File metadataFile, Properties metadata,
+            long now ) throws IOException {
+        WpsPlugin.trace("Fetching " + request, null); //$NON-NLS-1$
+        URLConnection connection = request.openConnection();
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        if (metadata != null) {
+            String etag = metadata.getProperty(ETAG);
+            if (etag != null) {
+                connection.setRequestProperty("If-None-Match", etag); //$NON-NLS-1$
+            }
+            long lastModified = Long.parseLong(metadata.getProperty(LAST_MODIFIED, "0")); //$NON-NLS-1$
+            if (lastModified > 0) {
+                connection.setIfModifiedSince(lastModified);
+            }
+        }
+
+        if (connection instanceof HttpURLConnection) {
+            HttpURLConnection http = (HttpURLConnection) connection;
+            int code = http.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED && metadata != null) {
+                http.disconnect();
+                metadata.setProperty(FETCHED, Long.toString(now));
+                store(metadata, metadataFile);
+                return new Document(file, metadata.getProperty(CONTENT_TYPE));
+            }
+            if (code != HttpURLConnection.HTTP_OK) {
+                http.disconnect();
+                throw new IOException(request + " returned " + code); //$NON-NLS-1$
+            }
+        }
+
+        file.getParentFile().mkdirs();
+        File temp = new File(file.getParentFile(), file.getName() + ".part"); //$NON-NLS-1$
+        InputStream in = connection.getInputStream();
+        try {
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(temp));
+            try {
+                byte[] buffer = new byte[8192];
+                for( int read = in.read(buffer); read != -1; read = in.read(buffer) ) {
+                    out.write(buffer, 0, read);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+        if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Unable to update cached " + file); //$NON-NLS-1$
+        }
+
+        Properties updated = new Properties();
+        updated.setProperty(REQUEST_URL, request.toExternalForm());
+        updated.setProperty(FETCHED, Long.toString(now));
+        if (connection.getHeaderField("ETag") != null) { //$NON-NLS-1$
+            updated.setProperty(ETAG, connection.getHeaderField("ETag")); //$NON-NLS-1$
+        }
+        updated.setProperty(LAST_MODIFIED, Long.toString(connection.getLastModified()));
+        if (connection.getContentType() != null) {
+            updated.setProperty(CONTENT_TYPE, connection.getContentType());
+        }
+        store(updated, metadataFile);
+        return new Document(file, updated.getProperty(CONTENT_TYPE));
+    }
+
+    /**
+     * @return the metadata of the cached document; or null if it is missing or
+     *         belongs to another request
+     */
+    private static Properties load( File metadataFile, URL request ) {
+        if (!metadataFile.exists()) {
+            return null;
+        }
+        Properties metadata = new Properties();
+        try {
+            InputStream in = new FileInputStream(metadataFile);
+            try {
+                metadata.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            WpsPlugin.trace("Unable to read " + metadataFile, e); //$NON-NLS-1$
+            return null;
+        }
+        if (!request.toExternalForm().equals(metadata.getProperty(REQUEST_URL))) {
+            return null;
+        }
+        return metadata;
+    }
+
+    private static void store( Properties metadata, File metadataFile ) {
+        try {
+            OutputStream out = new FileOutputStream(metadataFile);
+            try {
+                metadata.store(out, null);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            WpsPlugin.log("Unable to write " + metadataFile, e); //$NON-NLS-1$
+        }
+    }
+
+    /** the service a request is sent to: the request URL without its query */
+    private static String service( URL request ) {
+        String external = request.toExternalForm();
+        int query = external.indexOf('?');
+        return query == -1 ? external : external.substring(0, query);
+    }
+
+    private static String hash( String text ) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5"); //$NON-NLS-1$
+            byte[] bytes = digest.digest(text.getBytes("UTF-8")); //$NON-NLS-1$
+            StringBuilder hex = new StringBuilder();
+            for( byte b : bytes ) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(text.hashCode());
+        } catch (IOException e) {
+            return Integer.toHexString(text.hashCode());
+        }
+    }
+}
@@ -0,0 +1,539 @@
+/*
+ * uDig - User Friendly Desktop Internet GIS client http://udig.refractions.net (C) 2004,
+ * Refractions Research Inc. This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation; version 2.1 of the License. This library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ */
+package net.refractions.udig.wps;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import net.opengis.ows11.CodeType;
+import net.opengis.ows11.ExceptionReportType;
+import net.opengis.ows11.ExceptionType;
+import net.opengis.ows11.Ows11Factory;
+import net.opengis.wps10.ComplexDataType;
+import net.opengis.wps10.DataType;
+import net.opengis.wps10.DocumentOutputDefinitionType;
+import net.opengis.wps10.ExecuteResponseType;
+import net.opengis.wps10.InputDescriptionType;
+import net.opengis.wps10.OutputDataType;
+import net.opengis.wps10.OutputDescriptionType;
+import net.opengis.wps10.OutputReferenceType;
+import net.opengis.wps10.ProcessDescriptionType;
+import net.opengis.wps10.ProcessFailedType;
+import net.opengis.wps10.ProcessStartedType;
+import net.opengis.wps10.ResponseDocumentType;
+import net.opengis.wps10.ResponseFormType;
+import net.opengis.wps10.StatusType;
+import net.opengis.wps10.Wps10Factory;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.emf.ecore.EObject;
+import org.geotools.data.wps.WebProcessingService;
+import org.geotools.data.wps.request.ExecuteProcessRequest;
+import org.geotools.data.wps.response.ExecuteProcessResponse;
+import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.FeatureIterator;
+import org.geotools.ows.ServiceException;
+import org.geotools.wps.WPSConfiguration;
+import org.geotools.xml.Configuration;
+import org.geotools.xml.Parser;
+import org.geotools.xml.StreamingParser;
+import org.opengis.feature.simple.SimpleFeature;
+import org.xml.sax.SAXException;
+
+/**
+ * Executes a WPS process, asynchronously when the server supports it.
+ * <p>
+ * When the process description advertises both <code>storeSupported</code> and
+ * <code>statusSupported</code> the Execute request asks for
+ * <code>storeExecuteResponse</code> and <code>status</code>, with complex outputs
+ * returned as references. The server answers at once with a status location which
+ * is polled (every {@link #getPollInterval()} ms) until the process succeeds or
+ * fails; other servers are sent a plain Execute request and answer when done.
+ * </p>
+ * <p>
+ * GML outputs returned by reference are parsed as they are downloaded and handed
+ * to the {@link ResultHandler} in batches of {@link #getBatchSize()} features, so
+ * large results never have to be held in memory at once.
+ * </p>
+ * <p>
+ * An execution holds no state of its own between calls and may be used by several
+ * threads at once.
+ * </p>
+ *
+ * @author Lucas Reed, Refractions Research Inc
+ */
+public class WPSExecution {
+
+    /** Default time between status requests, in milliseconds */
+    public static final long POLL_INTERVAL = 2000;
+
+    /** Default number of features handed to the result handler at once */
+    public static final int BATCH_SIZE = 500;
+
+    /** Connect and read timeout for status and output requests, in milliseconds */
+    private static final int TIMEOUT = 60000;
+
+    /**
+     * Receives the outputs of an execution as they become available.
+     */
+    public interface ResultHandler {
+        /**
+         * Progress reported by the server while the process runs.
+         *
+         * @param message status message from the server; may be null
+         * @param percent percentage completed; or -1 if not known
+         */
+        void status( String message, int percent );
+
+        /**
+         * An output that is not a feature collection: a literal, a geometry or
+         * the location of an output that could not be parsed as GML.
+         */
+        void value( String output, Object value ) throws IOException;
+
+        /**
+         * The next features of a feature output.
+         *
+         * @param output identifier of the output
+         * @param features features read since the last call, never empty
+         */
+        void features( String output, List<SimpleFeature> features ) throws IOException;
+    }
+
+    private final WebProcessingService wps;
+    private final ProcessDescriptionType description;
+    private long pollInterval = POLL_INTERVAL;
+    private int batchSize = BATCH_SIZE;
+
+    /**
+     * Construct <code>WPSExecution</code>.
+     *
+     * @param wps service the process is executed on
+     * @param description description of the process, from DescribeProcess
+     */
+    public WPSExecution( WebProcessingService wps, ProcessDescriptionType description ) {
+        this.wps = wps;
+        this.description = description;
+    }
+
+    public long getPollInterval() {
+        return pollInterval;
+    }
+
+    /**
+     * @param pollInterval milliseconds between status requests of an asynchronous
+     *        execution
+     */
+    public void setPollInterval( long pollInterval ) {
+        this.pollInterval = pollInterval;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize( int batchSize ) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * @return true if the server can run the process asynchronously
+     */
+    public boolean isAsynchronous() {
+        return description.isStoreSupported() && description.isStatusSupported();
+    }
+
+    /**
+     * Executes the process, returning once all its outputs have been handed to
+     * the handler.
+     * <p>
+     * The execution stops without an error if the monitor is canceled; the caller
+     * should check the monitor on return.
+     * </p>
+     *
+     * @param inputs values keyed by input identifier; an input with several values
+     *        may be given as a Collection or a Map of values
+     * @param handler receives the outputs
+     * @param monitor checked for cancellation while the process runs
+     * @throws IOException if the request fails or the process reports a failure
+     */
+    public void execute( Map<String, Object> inputs, ResultHandler handler,
+            IProgressMonitor monitor ) throws IOException {
+        if (monitor == null) {
+            monitor = new NullProgressMonitor();
+        }
+        boolean async = isAsynchronous();
+
+        ExecuteProcessRequest request = wps.createExecuteProcessRequest();
+        request.setIdentifier(description.getIdentifier().getValue());
+        addInputs(request, inputs);
+        if (async) {
+            request.setResponseForm(createResponseForm());
+        }
+
+        ExecuteResponseType response;
+        try {
+            ExecuteProcessResponse executeResponse = wps.issueRequest(request);
+            if (executeResponse.getExceptionResponse() != null) {
+                throw exception(executeResponse.getExceptionResponse());
+            }
+            response = executeResponse.getExecuteResponse();
+        } catch (ServiceException e) {
+            throw (IOException) new IOException(e.getMessage()).initCause(e);
+        }
+        if (response == null) {
+            throw new IOException("No response to Execute " //$NON-NLS-1$
+                    + description.getIdentifier().getValue());
+        }
+
+        while( !isFinished(response) ) {
+            String location = response.getStatusLocation();
+            if (location == null) {
+                throw new IOException("Process is running but the server gave no status location"); //$NON-NLS-1$
+            }
+            report(response.getStatus(), handler);
+            if (!sleep(monitor)) {
+                return;
+            }
+            response = poll(location);
+        }
+
+        ProcessFailedType failed = response.getStatus() == null ? null : response
+                .getStatus().getProcessFailed();
+        if (failed != null) {
+            throw exception(failed.getExceptionReport());
+        }
+        readOutputs(response, handler, monitor);
+    }
+
+    /**
+     * Adds the input values as literal or complex data depending on the process
+     * description.
+     */
+    @SuppressWarnings("unchecked")
+    private void addInputs( ExecuteProcessRequest request, Map<String, Object> inputs ) {
+        if (description.getDataInputs() == null) {
+            return;
+        }
+        List<InputDescriptionType> inputDescriptions = description.getDataInputs().getInput();
+        for( InputDescriptionType input : inputDescriptions ) {
+            String key = input.getIdentifier().getValue();
+            Object value = inputs.get(key);
+            if (value == null) {
+                continue;
+            }
+
+            int type = org.geotools.data.wps.WPSUtils.INPUTTYPE_LITERAL;
+            String schema = null;
+            if (input.getComplexData() != null) {
+                type = org.geotools.data.wps.WPSUtils.INPUTTYPE_COMPLEXDATA;
+                if (input.getComplexData().getDefault() != null
+                        && input.getComplexData().getDefault().getFormat() != null) {
+                    schema = input.getComplexData().getDefault().getFormat().getSchema();
+                }
+            }
+
+            List<EObject> values = new ArrayList<EObject>();
+            for( Object item : values(value) ) {
+                if (item != null) {
+                    values.add(org.geotools.data.wps.WPSUtils.createInputDataType(item, type,
+                            schema));
+                }
+            }
+            if (!values.isEmpty()) {
+                request.addInput(key, values);
+            }
+        }
+    }
+
+    private static Collection< ? > values( Object value ) {
+        if (value instanceof Map) {
+            return ((Map< ? , ? >) value).values();
+        }
+        if (value instanceof Collection) {
+            return (Collection< ? >) value;
+        }
+        return Collections.singletonList(value);
+    }
+
+    /**
+     * Asks for the response to be stored and its status updated, with complex
+     * outputs returned by reference so they can be streamed.
+     */
+    @SuppressWarnings("unchecked")
+    private ResponseFormType createResponseForm() {
+        Wps10Factory factory = Wps10Factory.eINSTANCE;
+        ResponseDocumentType document = factory.createResponseDocumentType();
+        document.setStoreExecuteResponse(true);
+        document.setStatus(true);
+
+        if (description.getProcessOutputs() != null) {
+            List<OutputDescriptionType> outputs = description.getProcessOutputs().getOutput();
+            for( OutputDescriptionType output : outputs ) {
+                CodeType identifier = Ows11Factory.eINSTANCE.createCodeType();
+                identifier.setValue(output.getIdentifier().getValue());
+
+                DocumentOutputDefinitionType definition = factory
+                        .createDocumentOutputDefinitionType();
+                definition.setIdentifier(identifier);
+                definition.setAsReference(output.getComplexOutput() != null);
+                document.getOutput().add(definition);
+            }
+        }
+
+        ResponseFormType form = factory.createResponseFormType();
+        form.setResponseDocument(document);
+        return form;
+    }
+
+    private static boolean isFinished( ExecuteResponseType response ) {
+        StatusType status = response.getStatus();
+        if (status == null) {
+            // synchronous responses need not include a status
+            return true;
+        }
+        return status.getProcessSucceeded() != null || status.getProcessFailed() != null;
+    }
+
+    private static void report( StatusType status, ResultHandler handler ) {
+        if (status == null) {
+            return;
+        }
+        ProcessStartedType started = status.getProcessStarted();
+        if (started != null) {
+            Object percent = started.getPercentCompleted();
+            handler.status(started.getValue(), percent instanceof Number
+                    ? ((Number) percent).intValue()
+                    : -1);
+        } else if (status.getProcessAccepted() != null) {
+            handler.status(status.getProcessAccepted(), -1);
+        }
+    }
+
+    /**
+     * Waits for the poll interval.
+     *
+     * @return false if the monitor was canceled while waiting
+     */
+    private boolean sleep( IProgressMonitor monitor ) {
+        long until = System.currentTimeMillis() + pollInterval;
+        try {
+            for( long now = System.currentTimeMillis(); now < until; now = System
+                    .currentTimeMillis() ) {
+                if (monitor.isCanceled()) {
+                    return false;
+                }
+                Thread.sleep(Math.min(100, until - now));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return !monitor.isCanceled();
+    }
+
+    /**
+     * Reads the stored response of an asynchronous execution.
+     */
+    private ExecuteResponseType poll( String location ) throws IOException {
+        WpsPlugin.trace("Execute status: " + location, null); //$NON-NLS-1$
+        InputStream in = open(location);
+        Object parsed;
+        try {
+            parsed = new Parser(new WPSConfiguration()).parse(in);
+        } catch (SAXException e) {
+            throw (IOException) new IOException("Unable to parse status " + location) //$NON-NLS-1$
+                    .initCause(e);
+        } catch (ParserConfigurationException e) {
+            throw (IOException) new IOException("Unable to parse status " + location) //$NON-NLS-1$
+                    .initCause(e);
+        } finally {
+            in.close();
+        }
+
+        if (parsed instanceof ExceptionReportType) {
+            throw exception((ExceptionReportType) parsed);
+        }
+        if (!(parsed instanceof ExecuteResponseType)) {
+            throw new IOException("Unexpected status document at " + location); //$NON-NLS-1$
+        }
+        return (ExecuteResponseType) parsed;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readOutputs( ExecuteResponseType response, ResultHandler handler,
+            IProgressMonitor monitor ) throws IOException {
+        if (response.getProcessOutputs() == null) {
+            return;
+        }
+        List<OutputDataType> outputs = response.getProcessOutputs().getOutput();
+        for( OutputDataType output : outputs ) {
+            if (monitor.isCanceled()) {
+                return;
+            }
+            String name = output.getIdentifier().getValue();
+
+            OutputReferenceType reference = output.getReference();
+            if (reference != null) {
+                readReference(name, reference, handler, monitor);
+                continue;
+            }
+
+            DataType data = output.getData();
+            if (data == null) {
+                continue;
+            }
+            if (data.getLiteralData() != null) {
+                handler.value(name, data.getLiteralData().getValue());
+            } else if (data.getBoundingBoxData() != null) {
+                handler.value(name, data.getBoundingBoxData());
+            } else if (data.getComplexData() != null) {
+                readComplexData(name, data.getComplexData(), handler, monitor);
+            }
+        }
+    }
+
+    /**
+     * Complex data returned inline has already been parsed with the response;
+     * feature collections are still handed over in batches.
+     */
+    private void readComplexData( String name, ComplexDataType complexData,
+            ResultHandler handler, IProgressMonitor monitor ) throws IOException {
+        for( Object value : complexData.getData() ) {
+            if (value instanceof FeatureCollection) {
+                FeatureIterator< ? > features = ((FeatureCollection< ? , ? >) value).features();
+                try {
+                    List<SimpleFeature> batch = new ArrayList<SimpleFeature>(batchSize);
+                    while( features.hasNext() && !monitor.isCanceled() ) {
+                        batch.add((SimpleFeature) features.next());
+                        if (batch.size() == batchSize) {
+                            handler.features(name, batch);
+                            batch = new ArrayList<SimpleFeature>(batchSize);
+                        }
+                    }
+                    if (!batch.isEmpty()) {
+                        handler.features(name, batch);
+                    }
+                } finally {
+                    features.close();
+                }
+            } else {
+                handler.value(name, value);
+            }
+        }
+    }
+
+    /**
+     * Streams a GML output from its reference; other outputs are reported by
+     * location.
+     */
+    private void readReference( String name, OutputReferenceType reference,
+            ResultHandler handler, IProgressMonitor monitor ) throws IOException {
+        String href = reference.getHref();
+        Configuration configuration = gmlConfiguration(reference.getMimeType(), reference
+                .getSchema());
+        if (configuration == null) {
+            handler.value(name, href);
+            return;
+        }
+
+        InputStream in = open(href);
+        try {
+            StreamingParser parser = new StreamingParser(configuration, in, SimpleFeature.class);
+            List<SimpleFeature> batch = new ArrayList<SimpleFeature>(batchSize);
+            for( Object feature = parser.parse(); feature != null; feature = parser.parse() ) {
+                batch.add((SimpleFeature) feature);
+                if (batch.size() == batchSize) {
+                    handler.features(name, batch);
+                    batch = new ArrayList<SimpleFeature>(batchSize);
+                    if (monitor.isCanceled()) {
+                        return;
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                handler.features(name, batch);
+            }
+        } catch (SAXException e) {
+            throw (IOException) new IOException("Unable to parse output " + name) //$NON-NLS-1$
+                    .initCause(e);
+        } catch (ParserConfigurationException e) {
+            throw (IOException) new IOException("Unable to parse output " + name) //$NON-NLS-1$
+                    .initCause(e);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return the GML configuration for the output format; or null if the output is
+     *         not GML
+     */
+    private static Configuration gmlConfiguration( String mimeType, String schema ) {
+        String format = (mimeType == null ? "" : mimeType.toLowerCase()) + " " //$NON-NLS-1$ //$NON-NLS-2$
+                + (schema == null ? "" : schema.toLowerCase()); //$NON-NLS-1$
+        if (mimeType != null && format.indexOf("xml") == -1 && format.indexOf("gml") == -1) { //$NON-NLS-1$ //$NON-NLS-2$
+            return null;
+        }
+        if (format.indexOf("2.1") != -1 || format.indexOf("gml/2") != -1) { //$NON-NLS-1$ //$NON-NLS-2$
+            return new org.geotools.gml2.GMLConfiguration();
+        }
+        return new org.geotools.gml3.GMLConfiguration();
+    }
+
+    private static InputStream open( String location ) throws IOException {
+        URLConnection connection = new URL(location).openConnection();
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        if (connection instanceof HttpURLConnection) {
+            int code = ((HttpURLConnection) connection).getResponseCode();
+            if (code != HttpURLConnection.HTTP_OK) {
+                ((HttpURLConnection) connection).disconnect();
+                throw new IOException(location + " returned " + code); //$NON-NLS-1$
+            }
+        }
+        return new BufferedInputStream(connection.getInputStream());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static IOException exception( ExceptionReportType report ) {
+        StringBuilder message = new StringBuilder();
+        if (report != null) {
+            List<ExceptionType> exceptions = report.getException();
+            for( ExceptionType exception : exceptions ) {
+                List<String> texts = exception.getExceptionText();
+                for( String text : texts ) {
+                    if (message.length() != 0) {
+                        message.append("; "); //$NON-NLS-1$
+                    }
+                    message.append(text);
+                }
+                if (texts.isEmpty() && exception.getExceptionCode() != null) {
+                    message.append(exception.getExceptionCode());
+                }
+            }
+        }
+        if (message.length() == 0) {
+            message.append("Process failed"); //$NON-NLS-1$
+        }
+        return new IOException(message.toString());
+    }
+}
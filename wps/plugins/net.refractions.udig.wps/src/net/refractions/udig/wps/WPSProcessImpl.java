@@ -17,6 +17,7 @@ import java.util.List;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import net.opengis.wps10.ProcessDescriptionType;
 import net.opengis.wps10.WPSCapabilitiesType;
 import net.refractions.udig.catalog.CatalogPlugin;
 import net.refractions.udig.catalog.IProcess;
@@ -134,6 +135,25 @@ public class WPSProcessImpl extends IProcess {
         return identifier;
     }
 
+    /**
+     * Prepares an execution of this process, which runs asynchronously if the
+     * server supports it.
+     *
+     * @param monitor
+     * @return execution of this process
+     * @throws IOException if the process description is not available
+     */
+    public WPSExecution createExecution( IProgressMonitor monitor ) throws IOException {
+        String name = ((WPSFactory) processFactory).getIdentifier();
+        ProcessDescriptionType description = service.getProcessDescription(name, monitor);
+        if (description == null) {
+            throw new IOException("No description of process " + name); //$NON-NLS-1$
+        }
+        WPSExecution execution = new WPSExecution(service.getWPS(monitor), description);
+        execution.setPollInterval(service.getPollInterval());
+        return execution;
+    }
+
     @Override
     public List<IResolve> members( IProgressMonitor monitor ) {
         return this.members;
@@ -0,0 +1,108 @@
+/*
+ * uDig - User Friendly Desktop Internet GIS client http://udig.refractions.net (C) 2004,
+ * Refractions Research Inc. This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation; version 2.1 of the License. This library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ */
+package net.refractions.udig.wps;
+
+import java.io.IOException;
+import java.util.List;
+
+import net.refractions.udig.catalog.CatalogPlugin;
+import net.refractions.udig.catalog.ICatalog;
+import net.refractions.udig.catalog.IGeoResource;
+import net.refractions.udig.project.ui.internal.AddReshapedToMap;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.FeatureStore;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * Scratch layer that WPS results are added to as they arrive.
+ * <p>
+ * The temporary resource is created from the type of the first features added and
+ * shown on the map straight away, so results appear while the rest are still being
+ * read. Features may be added from several threads.
+ * </p>
+ *
+ * @author Lucas Reed, Refractions Research Inc
+ */
+public class WPSResultLayer {
+
+    private final String name;
+    private SimpleFeatureType featureType;
+    private FeatureStore<SimpleFeatureType, SimpleFeature> store;
+    private int count;
+
+    /**
+     * Construct <code>WPSResultLayer</code>.
+     *
+     * @param name name of the layer; or null to keep the name of the feature type
+     */
+    public WPSResultLayer( String name ) {
+        this.name = name;
+    }
+
+    /**
+     * @return number of features added so far
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Adds features to the layer, creating it on the first call.
+     *
+     * @param features features of the same type as any added before
+     * @param monitor
+     * @throws IOException
+     */
+    public synchronized void add( List<SimpleFeature> features, IProgressMonitor monitor )
+            throws IOException {
+        if (features.isEmpty()) {
+            return;
+        }
+        if (store == null) {
+            create(features.get(0).getFeatureType(), monitor);
+        }
+
+        SimpleFeature[] copies = new SimpleFeature[features.size()];
+        for( int i = 0; i < copies.length; i++ ) {
+            SimpleFeature feature = features.get(i);
+            copies[i] = feature.getFeatureType() == featureType ? feature : SimpleFeatureBuilder
+                    .build(featureType, feature.getAttributes(), feature.getID());
+        }
+        store.addFeatures(DataUtilities.collection(copies));
+        count += copies.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void create( SimpleFeatureType type, IProgressMonitor monitor ) throws IOException {
+        if (name == null || name.equals(type.getTypeName())) {
+            featureType = type;
+        } else {
+            SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+            builder.init(type);
+            builder.setName(name);
+            featureType = builder.buildFeatureType();
+        }
+
+        // Add FeatureType to catalogue and get IGeoResource
+        ICatalog catalogue = CatalogPlugin.getDefault().getLocalCatalog();
+        IGeoResource geoResource = catalogue.createTemporaryResource(featureType);
+        store = geoResource.resolve(FeatureStore.class, SubMonitor.convert(monitor,
+                "Create scratch space", 10)); //$NON-NLS-1$
+
+        // Add IGeoResource to Map
+        AddReshapedToMap adder = new AddReshapedToMap();
+        adder.execute(null, geoResource);
+    }
+}
@@ -9,11 +9,13 @@
 package net.refractions.udig.wps;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.text.MessageFormat;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -33,7 +35,9 @@ import net.refractions.udig.ui.UDIGDisplaySafeLock;
 import net.refractions.udig.wps.internal.Messages;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.SubProgressMonitor;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.geotools.data.ows.AbstractWPSGetCapabilitiesResponse;
@@ -46,6 +50,7 @@ import org.geotools.data.wps.request.DescribeProcessRequest;
 import org.geotools.data.wps.request.ExecuteProcessRequest;
 import org.geotools.data.wps.response.DescribeProcessResponse;
 import org.geotools.data.wps.response.ExecuteProcessResponse;
+import org.geotools.data.wps.response.WPSGetCapabilitiesResponse;
 import org.geotools.ows.ServiceException;
 import org.xml.sax.SAXException;
 
@@ -62,6 +67,11 @@ public class WPSServiceImpl extends IService {
      */
     public static final String WPS_URL_KEY = "net.refractions.udig.wps.WPSServiceImpl.WPS_URL_KEY"; //$NON-NLS-1$
     public static final String WPS_WPS_KEY = "net.refractions.udig.wps.WPSServiceImpl.WPS_WMS_KEY"; //$NON-NLS-1$
+    /**
+     * Optional param: milliseconds between status requests of an asynchronous execute
+     * (defaults to {@link WPSExecution#POLL_INTERVAL}).
+     */
+    public static final String POLL_INTERVAL_KEY = "net.refractions.udig.wps.WPSServiceImpl.POLL_INTERVAL_KEY"; //$NON-NLS-1$
 
     private Map<String, Serializable> params;
 
@@ -74,6 +84,7 @@ public class WPSServiceImpl extends IService {
     private volatile List<IResolve> members;
     private int currentFolderID = 0;
     private WPSCapabilitiesType caps = null;
+    private final Map<String, ProcessDescriptionType> descriptions = new HashMap<String, ProcessDescriptionType>();
 
     /**
      * Construct <code>WPSServiceImpl</code>.
@@ -125,6 +136,7 @@ public class WPSServiceImpl extends IService {
                         wps = new CustomWPS(url1);
                         if (theUserIsWatching != null)
                             theUserIsWatching.done();
+                        prefetchProcesses();
                     } catch (IOException persived) {
                         error = persived;
                         throw persived;
@@ -144,6 +156,25 @@ public class WPSServiceImpl extends IService {
         return wps;
     }
 
+    /**
+     * Describes the processes in the background once connected, so they are ready
+     * by the time the service is expanded or a process is opened.
+     */
+    private void prefetchProcesses() {
+        Job job = new Job("Describe processes of " + url){ //$NON-NLS-1$
+            protected IStatus run( IProgressMonitor monitor ) {
+                try {
+                    members(monitor);
+                } catch (IOException e) {
+                    WpsPlugin.trace("Unable to describe processes of " + url, e); //$NON-NLS-1$
+                }
+                return org.eclipse.core.runtime.Status.OK_STATUS;
+            }
+        };
+        job.setSystem(true);
+        job.schedule();
+    }
+
     public IServiceInfo createInfo( IProgressMonitor monitor ) throws IOException {
         if (info == null) {
             getWPS(monitor);
@@ -267,6 +298,7 @@ public class WPSServiceImpl extends IService {
                 List<ProcessDescriptionType> processDescriptionBeans = response.getProcessDesc()
                         .getProcessDescription();
                 for( ProcessDescriptionType processDesc : processDescriptionBeans ) {
+                    descriptions.put(processDesc.getIdentifier().getValue(), processDesc);
                     try {
                         WPSFactory processFactory = new WPSFactory(processDesc, this.url);
                         WPSProcessImpl process = new WPSProcessImpl(this, null, processFactory);
@@ -284,6 +316,44 @@ public class WPSServiceImpl extends IService {
         return this.members;
     }
 
+    /**
+     * Description of one of the processes of this service, as returned by
+     * DescribeProcess.
+     *
+     * @param identifier process identifier
+     * @param monitor
+     * @return the process description; or null if the service has no such process
+     * @throws IOException
+     */
+    public ProcessDescriptionType getProcessDescription( String identifier,
+            IProgressMonitor monitor ) throws IOException {
+        members(monitor);
+        rLock.lock();
+        try {
+            return descriptions.get(identifier);
+        } finally {
+            rLock.unlock();
+        }
+    }
+
+    /**
+     * @return milliseconds between status requests of an asynchronous execute
+     */
+    public long getPollInterval() {
+        Object value = params.get(POLL_INTERVAL_KEY);
+        try {
+            if (value instanceof Number) {
+                return Math.max(100, ((Number) value).longValue());
+            }
+            if (value instanceof String) {
+                return Math.max(100, Long.parseLong(((String) value).trim()));
+            }
+        } catch (NumberFormatException e) {
+            WpsPlugin.log("Invalid poll interval: " + value, null); //$NON-NLS-1$
+        }
+        return WPSExecution.POLL_INTERVAL;
+    }
+
     /*
      * @see net.refractions.udig.catalog.IResolve#getMessage()
      */
@@ -403,18 +473,57 @@ public class WPSServiceImpl extends IService {
             }
         }
 
+        /**
+         * Capabilities are read through the {@link WPSCache}, so a restored service
+         * connects without a round trip while its cached capabilities are current.
+         */
         @Override
         public AbstractWPSGetCapabilitiesResponse issueRequest( GetCapabilitiesRequest arg0 )
                 throws IOException, ServiceException {
             WpsPlugin.log("GetCapabilities: " + arg0.getFinalURL(), null); //$NON-NLS-1$
-            return super.issueRequest(arg0);
+            WPSCache cache = WPSCache.getDefault();
+            if (cache == null) {
+                return super.issueRequest(arg0);
+            }
+            URL request = arg0.getFinalURL();
+            WPSCache.Document document = cache.get(request);
+            InputStream in = document.open();
+            try {
+                return new WPSGetCapabilitiesResponse(contentType(document), in);
+            } catch (ServiceException e) {
+                cache.remove(request);
+                throw e;
+            } finally {
+                in.close();
+            }
         }
 
+        /**
+         * Process descriptions are read through the {@link WPSCache} as well.
+         */
         @Override
         public DescribeProcessResponse issueRequest( DescribeProcessRequest arg0 )
                 throws IOException, ServiceException {
             WpsPlugin.log("DescribeProcessRequest: " + arg0.getFinalURL(), null); //$NON-NLS-1$
-            return super.issueRequest(arg0);
+            WPSCache cache = WPSCache.getDefault();
+            if (cache == null) {
+                return super.issueRequest(arg0);
+            }
+            URL request = arg0.getFinalURL();
+            WPSCache.Document document = cache.get(request);
+            InputStream in = document.open();
+            try {
+                return new DescribeProcessResponse(contentType(document), in);
+            } catch (ServiceException e) {
+                cache.remove(request);
+                throw e;
+            } finally {
+                in.close();
+            }
+        }
+
+        private static String contentType( WPSCache.Document document ) {
+            return document.contentType == null ? "text/xml" : document.contentType; //$NON-NLS-1$
         }
 
         @Override
@@ -10,6 +10,7 @@ package net.refractions.udig.wps;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -19,19 +20,13 @@ import java.util.Map.Entry;
 import net.opengis.ows11.KeywordsType;
 import net.opengis.ows11.LanguageStringType;
 import net.opengis.wps10.WPSCapabilitiesType;
-import net.refractions.udig.catalog.CatalogPlugin;
-import net.refractions.udig.catalog.ICatalog;
 import net.refractions.udig.catalog.IGeoResource;
 import net.refractions.udig.project.ILayer;
-import net.refractions.udig.project.ui.internal.AddReshapedToMap;
 import net.refractions.udig.wps.internal.Messages;
 
 import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.emf.common.util.EList;
-import org.geotools.data.DataUtilities;
 import org.geotools.data.FeatureSource;
-import org.geotools.data.FeatureStore;
 import org.geotools.data.Parameter;
 import org.geotools.data.Query;
 import org.geotools.feature.FeatureCollection;
@@ -124,22 +119,10 @@ public class WPSUtils {
     private static void createScratchLayer(final SimpleFeature feature,
     		final IProgressMonitor monitor)
     	throws Exception {
-    	// Add FeatureType to catalogue and get IGeoResource
-	    ICatalog     catalogue   = CatalogPlugin.getDefault().getLocalCatalog();
-	    IGeoResource geoResource = catalogue.createTemporaryResource(feature.getType());
-
-    	// Add Feature to IGeoResource
-	    FeatureStore<SimpleFeatureType, SimpleFeature> store = geoResource.resolve(
-                FeatureStore.class, SubMonitor.convert(monitor,
-                "Create scratch space", 10));//$NON-NLS-1$
-	    store.addFeatures(DataUtilities.collection(feature));
-
-	    // Add IGeoResource to Map
-	    AddReshapedToMap adder = new AddReshapedToMap();
-	    adder.execute(null, geoResource);
+	    new WPSResultLayer(null).add(Collections.singletonList(feature), monitor);
 
 	    return;
-    } 
+    }
 
     /**
      * Checks a map of values to Java type correctness against the process parameter data.
@@ -45,6 +45,18 @@ public class Messages extends NLS {
     public static String WPSExecute_gotResponse;
     public static String WPSExecute_creatingScratchLayer;
     public static String WPSExecute_scratchLayerBase;
+    public static String WPSExecute_status;
+    public static String WPSExecute_statusPercent;
+    public static String WPSExecute_featuresAdded;
+    public static String WPSExecute_cancelled;
+    public static String WPSExecute_batchStarted;
+    public static String WPSExecute_batchCompleted;
+    public static String WPSExecute_batchFailed;
+    public static String WPSExecute_batchDone;
+    public static String WPSProcessView_batchButton;
+    public static String WPSProcessView_batchToolTip;
+    public static String WPSProcessView_noLayer;
+    public static String WPSProcessView_noFeatureInput;
 
     static {
         // initialize resource bundle
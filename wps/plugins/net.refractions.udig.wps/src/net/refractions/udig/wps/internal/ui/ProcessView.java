@@ -9,8 +9,10 @@
 package net.refractions.udig.wps.internal.ui;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Map.Entry;
@@ -20,7 +22,13 @@ import net.refractions.udig.catalog.IProcessInfo;
 import net.refractions.udig.catalog.util.GeoToolsAdapters;
 import net.refractions.udig.project.ILayer;
 import net.refractions.udig.project.IMap;
+import net.refractions.udig.project.ui.ApplicationGIS;
+import net.refractions.udig.wps.WPSBatchExecution;
+import net.refractions.udig.wps.WPSExecution;
+import net.refractions.udig.wps.WPSProcessImpl;
+import net.refractions.udig.wps.WPSResultLayer;
 import net.refractions.udig.wps.WPSUtils;
+import net.refractions.udig.wps.WpsPlugin;
 import net.refractions.udig.wps.internal.Messages;
 
 import org.eclipse.core.runtime.IAdaptable;
@@ -56,12 +64,18 @@ import org.eclipse.ui.views.properties.IPropertySource;
 import org.eclipse.ui.views.properties.PropertyDescriptor;
 import org.eclipse.ui.views.properties.PropertySheetEntry;
 import org.eclipse.ui.views.properties.PropertySheetPage;
+import org.geotools.data.DefaultQuery;
+import org.geotools.data.FeatureSource;
 import org.geotools.data.Parameter;
+import org.geotools.data.Query;
+import org.geotools.feature.FeatureCollection;
 import org.geotools.process.Process;
 import org.geotools.process.ProcessException;
 import org.geotools.process.ProcessFactory;
 import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.Name;
+import org.opengis.filter.Filter;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 import com.vividsolutions.jts.geom.Geometry;
@@ -350,6 +364,20 @@ public class ProcessView extends ViewPart {
             }
         });
         
+        // create the button executing the process over every feature of a layer
+        if (this.process instanceof WPSProcessImpl) {
+            Button batchButton = new Button(innerProcessComp, SWT.PUSH | SWT.FLAT);
+            batchButton.setText(Messages.WPSProcessView_batchButton);
+            batchButton.setToolTipText(Messages.WPSProcessView_batchToolTip);
+            layoutData = new GridData(SWT.LEFT, SWT.TOP, false, false);
+            batchButton.setLayoutData(layoutData);
+            batchButton.addListener(SWT.MouseUp, new Listener() {
+                public void handleEvent(Event event) {
+                    executeOnLayer();
+                }
+            });
+        }
+        
         processComp.setContent(innerProcessComp);
         processComp.setExpandVertical(true);
         processComp.setExpandHorizontal(true);   
@@ -396,6 +424,10 @@ public class ProcessView extends ViewPart {
     	}
 
     	protected IStatus run(IProgressMonitor monitor) {
+    	    if (ProcessView.this.process instanceof WPSProcessImpl) {
+    	        return runExecution((WPSProcessImpl) ProcessView.this.process, monitor);
+    	    }
+
     	    // Create and send the execute request
         	Process process = processFactory.create(processName);
         	addConsoleText(Messages.WPSExecute_sendingRequest);
@@ -435,6 +467,183 @@ public class ProcessView extends ViewPart {
 
     		return Status.OK_STATUS;
     	}
+
+    	/**
+    	 * Executes the process through {@link WPSExecution}, polling the server while
+    	 * it runs and adding feature outputs to a scratch layer as they are read.
+    	 */
+    	private IStatus runExecution(WPSProcessImpl wpsProcess, final IProgressMonitor monitor) {
+    	    final Map<String, WPSResultLayer> layers = new HashMap<String, WPSResultLayer>();
+    	    final boolean[] gotResults = new boolean[1];
+    	    WPSExecution.ResultHandler handler = new WPSExecution.ResultHandler() {
+    	        public void status( String message, int percent ) {
+    	            String text = message == null ? "" : message; //$NON-NLS-1$
+    	            if (percent >= 0) {
+    	                addConsoleText(Messages.bind(Messages.WPSExecute_statusPercent, text, percent));
+    	            } else {
+    	                addConsoleText(Messages.bind(Messages.WPSExecute_status, text));
+    	            }
+    	        }
+
+    	        public void value( String output, Object value ) throws IOException {
+    	            gotResults[0] = true;
+    	            if (value instanceof Geometry) {
+    	                try {
+    	                    addConsoleText(Messages.bind(Messages.WPSExecute_result, output, Messages.WPSExecute_creatingScratchLayer));
+    	                    scratchLayerCount++;
+    	                    WPSUtils.createScratchLayer((Geometry) value, lastFoundCRS, monitor, scratchLayerCount);
+    	                } catch (Exception e) {
+    	                    addConsoleText(Messages.WPSExecute_layerCreationError);
+    	                }
+    	            } else {
+    	                addConsoleText(Messages.bind(Messages.WPSExecute_result, output, String.valueOf(value)));
+    	            }
+    	        }
+
+    	        public void features( String output, List<SimpleFeature> features ) throws IOException {
+    	            gotResults[0] = true;
+    	            WPSResultLayer layer = layers.get(output);
+    	            if (layer == null) {
+    	                addConsoleText(Messages.bind(Messages.WPSExecute_result, output, Messages.WPSExecute_creatingScratchLayer));
+    	                scratchLayerCount++;
+    	                layer = new WPSResultLayer(Messages.WPSExecute_scratchLayerBase + scratchLayerCount);
+    	                layers.put(output, layer);
+    	            }
+    	            layer.add(features, monitor);
+    	            addConsoleText(Messages.bind(Messages.WPSExecute_featuresAdded, output, layer.getCount()));
+    	        }
+    	    };
+
+    	    try {
+    	        WPSExecution execution = wpsProcess.createExecution(monitor);
+    	        addConsoleText(Messages.WPSExecute_sendingRequest);
+    	        execution.execute(this.inputs, handler, monitor);
+    	    } catch (IOException e) {
+    	        addConsoleText("Failure: " + e.getLocalizedMessage()); //$NON-NLS-1$
+    	        return new Status(IStatus.ERROR, WpsPlugin.ID, e.toString(), e);
+    	    }
+    	    if (monitor.isCanceled()) {
+    	        addConsoleText(Messages.WPSExecute_cancelled);
+    	        return Status.CANCEL_STATUS;
+    	    }
+    	    if (!gotResults[0]) {
+    	        addConsoleText(Messages.WPSExecute_noResults);
+    	    }
+    	    return Status.OK_STATUS;
+    	}
+    }
+
+    /**
+     * Starts a batch execution of the process over the selected layer: the
+     * features are sent as the first Geometry or FeatureCollection input, the
+     * other inputs are taken from the form.
+     */
+    private void executeOnLayer() {
+        ILayer layer = null;
+        if (workbenchSelection instanceof ILayer) {
+            layer = (ILayer) workbenchSelection;
+        } else if (ApplicationGIS.getActiveMap() != ApplicationGIS.NO_MAP) {
+            layer = ApplicationGIS.getActiveMap().getEditManager().getSelectedLayer();
+        }
+        if (layer == null || !layer.hasResource(FeatureSource.class)) {
+            addConsoleText(Messages.WPSProcessView_noLayer);
+            return;
+        }
+
+        Map<String, Parameter< ? >> parameterInfo = processFactory.getParameterInfo(processName);
+        Parameter< ? > featureParam = null;
+        for( Parameter< ? > param : parameterInfo.values() ) {
+            if (Geometry.class.isAssignableFrom(param.type)
+                    || FeatureCollection.class.isAssignableFrom(param.type)) {
+                featureParam = param;
+                break;
+            }
+        }
+        if (featureParam == null) {
+            addConsoleText(Messages.WPSProcessView_noFeatureInput);
+            return;
+        }
+
+        Map<String, Object> paramValues = inputParamPropertySource.getParamValues();
+        if (paramValues == null) {
+            paramValues = new HashMap<String, Object>();
+        }
+        // the feature input is filled in from the layer
+        Map<String, Object> errors = WPSUtils.checkProcessInputs(parameterInfo, paramValues);
+        errors.remove(featureParam.key);
+        if (0 != errors.size()) {
+            addConsoleText(Messages.bind(Messages.WPSExecute_invalidInput, errors.keySet().toString()));
+            return;
+        }
+
+        BatchExecuteJob job = new BatchExecuteJob(layer, featureParam, WPSUtils.toInput(paramValues));
+        job.schedule();
+    }
+
+    private class BatchExecuteJob extends Job {
+        private final ILayer layer;
+        private final Parameter< ? > featureParam;
+        private final Map<String, Object> inputs;
+
+        public BatchExecuteJob(ILayer layer, Parameter< ? > featureParam, Map<String, Object> inputs) {
+            super("Execute Request on " + layer.getName()); //$NON-NLS-1$
+            this.layer = layer;
+            this.featureParam = featureParam;
+            this.inputs = inputs;
+        }
+
+        @SuppressWarnings("unchecked")
+        protected IStatus run(IProgressMonitor monitor) {
+            WPSBatchExecution.Summary summary;
+            try {
+                FeatureSource<SimpleFeatureType, SimpleFeature> source = layer.getResource(
+                        FeatureSource.class, monitor);
+                WPSExecution execution = ((WPSProcessImpl) process).createExecution(monitor);
+                WPSBatchExecution batch = new WPSBatchExecution(execution, featureParam.key,
+                        featureParam.type, inputs);
+                if (Geometry.class.isAssignableFrom(featureParam.type) && featureParam.maxOccurs > 0) {
+                    // geometries are sent as repeated values of the input, -1 is unbounded
+                    batch.setBatchSize(Math.min(WPSBatchExecution.BATCH_SIZE,
+                            featureParam.maxOccurs));
+                }
+
+                addConsoleText(Messages.bind(Messages.WPSExecute_batchStarted, layer.getName(),
+                        batch.getBatchSize()));
+                scratchLayerCount++;
+                // every feature of the layer, not only the selection
+                Query query = new DefaultQuery(source.getSchema().getTypeName(), Filter.INCLUDE);
+                summary = batch.execute(source, query,
+                        Messages.WPSExecute_scratchLayerBase + scratchLayerCount,
+                        new WPSBatchExecution.Listener(){
+                            public void batchCompleted( int number, int features, int results ) {
+                                addConsoleText(Messages.bind(Messages.WPSExecute_batchCompleted,
+                                        new Object[]{number, features, results}));
+                            }
+
+                            public void batchFailed( int number, IOException error ) {
+                                addConsoleText(Messages.bind(Messages.WPSExecute_batchFailed,
+                                        number, error.getLocalizedMessage()));
+                            }
+
+                            public void value( int number, String output, Object value ) {
+                                addConsoleText(Messages.bind(Messages.WPSExecute_result, output,
+                                        String.valueOf(value)));
+                            }
+                        }, monitor);
+            } catch (IOException e) {
+                addConsoleText("Failure: " + e.getLocalizedMessage()); //$NON-NLS-1$
+                return new Status(IStatus.ERROR, WpsPlugin.ID, e.toString(), e);
+            }
+
+            addConsoleText(Messages.bind(Messages.WPSExecute_batchDone, new Object[]{
+                    summary.getFeatures(), summary.getBatches(), summary.getFailed(),
+                    summary.getElapsed() / 1000.0, Math.round(summary.getThroughput())}));
+            if (monitor.isCanceled()) {
+                addConsoleText(Messages.WPSExecute_cancelled);
+                return Status.CANCEL_STATUS;
+            }
+            return Status.OK_STATUS;
+        }
     }
 
     /**